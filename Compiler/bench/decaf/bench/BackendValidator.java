@@ -0,0 +1,363 @@
+package decaf.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+// Translation validation of the register allocated code (ant ralloc-validate). Every program of
+// tests/codegen, tests/codegen/hidden, tests/programs, tests/codegen-unit (where the register
+// pressure and call tests ralloc-NN are) and tests/dataflow is compiled with the stack code and
+// with each register allocator, linked with lib6035.a and run. A backend is right for a program
+// when the program prints the same and exits with the same status as with the stack code; the
+// expected output of the program is only reported, some of them fail with the stack code too
+// The exit status is 1 if a program behaves differently with a register allocator
+//
+// java decaf.bench.BackendValidator [-tests dir] [-sets a,b] [-opt a,b] [-noopt]
+//   [-config name=flags] [-configs a,b] [-lib lib6035.a] [-cc gcc] [-timeout s] [-work dir]
+public class BackendValidator {
+	private static final String[][] SETS = {
+		{ "codegen", "codegen" },
+		{ "hidden", "codegen/hidden" },
+		{ "programs", "programs" },
+		{ "unit", "codegen-unit" },
+		{ "dataflow", "dataflow" },
+	};
+	private static final String REFERENCE = "stack";
+
+	private String tests = "tests";
+	private List<String> sets = new ArrayList<String>();
+	private String opt = "all";
+	// Name of the configuration -> flags of the compiler, the first one is the reference
+	private LinkedHashMap<String, String> configs = new LinkedHashMap<String, String>();
+	private List<String> only = new ArrayList<String>();
+	private String lib = "tests/codegen/lib/lib6035.a";
+	private String cc = "gcc";
+	private int timeout = 20;
+	private File work;
+
+	public static void main(String[] args) throws Exception {
+		BackendValidator validator = new BackendValidator(args);
+		if (!validator.run()) {
+			System.exit(1);
+		}
+	}
+
+	public BackendValidator(String[] args) {
+		configs.put(REFERENCE, "");
+		configs.put("color", "-ralloc");
+		configs.put("linear", "-ralloc=linear");
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-tests")) {
+				tests = args[++i];
+			} else if (args[i].equals("-sets")) {
+				sets.addAll(Arrays.asList(args[++i].split(",")));
+			} else if (args[i].equals("-opt")) {
+				opt = args[++i].replace(',', ' ');
+			} else if (args[i].equals("-noopt")) {
+				opt = null;
+			} else if (args[i].equals("-config")) {
+				String config = args[++i];
+				int eq = config.indexOf('=');
+				if (eq < 0) {
+					throw new IllegalArgumentException("Configuration must be name=flags: " + config);
+				}
+				configs.put(config.substring(0, eq), config.substring(eq + 1));
+			} else if (args[i].equals("-configs")) {
+				only.addAll(Arrays.asList(args[++i].split(",")));
+			} else if (args[i].equals("-lib")) {
+				lib = args[++i];
+			} else if (args[i].equals("-cc")) {
+				cc = args[++i];
+			} else if (args[i].equals("-timeout")) {
+				timeout = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-work")) {
+				work = new File(args[++i]);
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		if (sets.isEmpty()) {
+			for (String[] set: SETS) {
+				sets.add(set[0]);
+			}
+		}
+		// The stack code is always run, it's what the others are compared with
+		if (!only.isEmpty()) {
+			only.add(REFERENCE);
+			configs.keySet().retainAll(only);
+		}
+	}
+
+	// False if a program behaved differently with a register allocator
+	public boolean run() throws Exception {
+		if (work == null) {
+			work = File.createTempFile("decaf-validate", "");
+			work.delete();
+		}
+		work = work.getAbsoluteFile();
+		lib = new File(lib).getAbsolutePath();
+
+		// Name of the program in the report -> source, expected output (may not exist)
+		LinkedHashMap<String, File[]> programs = findPrograms();
+
+		// Configuration -> program -> what it did, null if it has no code
+		HashMap<String, HashMap<String, Run>> runs = new HashMap<String, HashMap<String, Run>>();
+		for (String config: configs.keySet()) {
+			File dir = new File(work, config);
+			dir.mkdirs();
+			System.err.println("# compiling for " + config);
+			compile(dir, programs, configs.get(config));
+
+			HashMap<String, Run> results = new HashMap<String, Run>();
+			for (String program: programs.keySet()) {
+				results.put(program, execute(dir, program));
+			}
+			runs.put(config, results);
+		}
+
+		return printReport(programs, runs, System.out);
+	}
+
+	private LinkedHashMap<String, File[]> findPrograms() {
+		LinkedHashMap<String, File[]> programs = new LinkedHashMap<String, File[]>();
+		for (String set: sets) {
+			String path = null;
+			for (String[] known: SETS) {
+				if (known[0].equals(set)) path = known[1];
+			}
+			if (path == null) {
+				throw new IllegalArgumentException("Unknown set " + set);
+			}
+
+			File dir = new File(tests, path);
+			String[] names = dir.list();
+			if (names == null) {
+				throw new IllegalArgumentException("No directory " + dir);
+			}
+			Arrays.sort(names);
+			for (String name: names) {
+				// The programs are .dcf files, or have no extension
+				File source = new File(dir, name);
+				if (source.isDirectory()) continue;
+				if (!name.endsWith(".dcf") && name.indexOf('.') >= 0) continue;
+
+				String base = name.endsWith(".dcf") ? name.substring(0, name.length() - 4) : name;
+				programs.put(set + "/" + base, new File[] { source, new File(dir, "output/" + base + ".out") });
+			}
+		}
+		return programs;
+	}
+
+	// Compiles every program with the flags in one JVM (-batch), to dir
+	private void compile(File dir, LinkedHashMap<String, File[]> programs, String flags) throws Exception {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-cp");
+		command.add(getClassPath());
+		command.add("decaf.Main");
+		command.add("-batch");
+		command.add("-target");
+		command.add("codegen");
+		for (String program: programs.keySet()) {
+			File dcf = new File(dir, getFileName(program) + ".dcf");
+			copy(programs.get(program)[0], dcf);
+			new File(dir, getFileName(program) + ".s").delete();
+			command.add(dcf.getPath());
+		}
+		if (flags.trim().length() > 0) {
+			command.addAll(Arrays.asList(flags.trim().split("\\s+")));
+		}
+		// -opt takes the arguments after it
+		if (opt != null) {
+			command.add("-opt");
+			command.addAll(Arrays.asList(opt.trim().split("\\s+")));
+		}
+		exec(command, dir, 0);
+	}
+
+	private static String getFileName(String program) {
+		return program.replace('/', '_');
+	}
+
+	// The compiler runs in the scratch directory
+	private static String getClassPath() {
+		String path = "";
+		for (String entry: System.getProperty("java.class.path").split(File.pathSeparator)) {
+			path += (path.length() > 0 ? File.pathSeparator : "") + new File(entry).getAbsolutePath();
+		}
+		return path;
+	}
+
+	private Run execute(File dir, String program) throws Exception {
+		File asm = new File(dir, getFileName(program) + ".s");
+		if (!asm.exists()) return null;
+
+		File binary = new File(dir, getFileName(program));
+		List<String> link = new ArrayList<String>();
+		link.add(cc);
+		link.add("-no-pie");
+		link.add("-o");
+		link.add(binary.getPath());
+		link.add(asm.getPath());
+		link.add(lib);
+		link.add("-lpthread");
+		if (exec(link, dir, 0).exitValue != 0) return null;
+
+		List<String> command = new ArrayList<String>();
+		command.add(binary.getPath());
+		return exec(command, dir, timeout);
+	}
+
+	private boolean printReport(LinkedHashMap<String, File[]> programs,
+			HashMap<String, HashMap<String, Run>> runs, PrintStream out) throws IOException {
+		boolean success = true;
+		HashMap<String, Integer> passed = new HashMap<String, Integer>();
+		HashMap<String, Integer> differed = new HashMap<String, Integer>();
+		for (String config: configs.keySet()) {
+			passed.put(config, 0);
+			differed.put(config, 0);
+		}
+
+		String format = "%-32s";
+		for (int i = 0; i < configs.size(); i++) {
+			format += " %-10s";
+		}
+		out.println(String.format(format, getRow("program", configs.keySet())));
+
+		for (String program: programs.keySet()) {
+			File expected = programs.get(program)[1];
+			String expectedOutput = expected.exists() ? normalize(read(expected)) : null;
+			Run reference = runs.get(REFERENCE).get(program);
+
+			List<String> cells = new ArrayList<String>();
+			for (String config: configs.keySet()) {
+				Run run = runs.get(config).get(program);
+				boolean pass = run != null && expectedOutput != null && expectedOutput.equals(normalize(run.output));
+				if (pass) {
+					passed.put(config, passed.get(config) + 1);
+				}
+
+				String cell = (run == null) ? "no-code" : (expectedOutput == null ? "ran" : (pass ? "pass" : "fail"));
+				if (!config.equals(REFERENCE) && !isSame(reference, run)) {
+					cell = "DIFFERS";
+					differed.put(config, differed.get(config) + 1);
+					success = false;
+				}
+				cells.add(cell);
+			}
+			out.println(String.format(format, getRow(program, cells)));
+		}
+
+		int withOutput = 0;
+		for (File[] files: programs.values()) {
+			if (files[1].exists()) withOutput++;
+		}
+
+		out.println();
+		for (String config: configs.keySet()) {
+			out.println(config + ": " + passed.get(config) + "/" + withOutput + " match the expected output"
+					+ (config.equals(REFERENCE) ? "" : ", " + differed.get(config) + " differ from " + REFERENCE));
+		}
+		return success;
+	}
+
+	private static Object[] getRow(String first, Iterable<String> cells) {
+		List<Object> row = new ArrayList<Object>();
+		row.add(first);
+		for (String cell: cells) {
+			row.add(cell);
+		}
+		return row.toArray();
+	}
+
+	// Same output and exit status, or neither has code
+	private static boolean isSame(Run a, Run b) {
+		if (a == null || b == null) return a == b;
+		return a.exitValue == b.exitValue && a.output.equals(b.output);
+	}
+
+	// The expected outputs stop at the runtime error, the message can go on
+	private static String normalize(String output) {
+		output = output.replace("\r", "");
+		int error = output.toUpperCase().indexOf("RUNTIME ERROR");
+		if (error >= 0) {
+			output = output.substring(0, error);
+		}
+		return output.trim();
+	}
+
+	private static class Run {
+		int exitValue;
+		String output;
+	}
+
+	// Runs the command in dir, its stderr goes with its stdout. It's killed after timeout seconds,
+	// unless timeout is 0
+	private static Run exec(List<String> command, File dir, int timeout) throws Exception {
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.directory(dir);
+		builder.redirectErrorStream(true);
+		final Process process = builder.start();
+
+		Timer timer = null;
+		if (timeout > 0) {
+			timer = new Timer(true);
+			timer.schedule(new TimerTask() {
+				public void run() {
+					process.destroy();
+				}
+			}, timeout * 1000L);
+		}
+
+		Run result = new Run();
+		result.output = new String(readAll(process.getInputStream()));
+		result.exitValue = process.waitFor();
+		if (timer != null) {
+			timer.cancel();
+		}
+		return result;
+	}
+
+	private static void copy(File from, File to) throws IOException {
+		byte[] bytes = readBytes(from);
+		FileOutputStream out = new FileOutputStream(to);
+		out.write(bytes);
+		out.close();
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(readBytes(file));
+	}
+
+	private static byte[] readBytes(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return readAll(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1 << 13];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			bytes.write(buffer, 0, n);
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,86 @@
+package decaf.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The measured iterations of a benchmark on an input set, from every fork
+public class BenchmarkResult {
+	private String name;
+	private String set;
+	private List<Sample> samples;
+
+	public BenchmarkResult(String name, String set) {
+		this.name = name;
+		this.set = set;
+		this.samples = new ArrayList<Sample>();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getSet() {
+		return set;
+	}
+
+	public void add(Sample sample) {
+		samples.add(sample);
+	}
+
+	public List<Sample> getSamples() {
+		return samples;
+	}
+
+	public double getScore() {
+		double total = 0;
+		for (Sample sample: samples) {
+			total += sample.getMillisPerOp();
+		}
+		return total / samples.size();
+	}
+
+	// Standard deviation of the iteration scores
+	public double getError() {
+		if (samples.size() < 2) return 0;
+
+		double mean = getScore();
+		double total = 0;
+		for (Sample sample: samples) {
+			double d = sample.getMillisPerOp() - mean;
+			total += d * d;
+		}
+		return Math.sqrt(total / (samples.size() - 1));
+	}
+
+	public double getBytesPerOp() {
+		double total = 0;
+		for (Sample sample: samples) {
+			total += sample.getBytesPerOp();
+		}
+		return total / samples.size();
+	}
+
+	public double getAllocRate() {
+		double total = 0;
+		for (Sample sample: samples) {
+			total += sample.getAllocRate();
+		}
+		return total / samples.size();
+	}
+
+	public long getGcCount() {
+		long count = 0;
+		for (Sample sample: samples) {
+			count += sample.getGcCount();
+		}
+		return count;
+	}
+
+	public long getGcMillis() {
+		long millis = 0;
+		for (Sample sample: samples) {
+			millis += sample.getGcMillis();
+		}
+		return millis;
+	}
+}
@@ -0,0 +1,277 @@
+package decaf.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// Benchmarks of the compiler phases on the test programs (ant bench)
+// Every phase, and the whole compilation, is run on the programs of each input set: warmup
+// iterations first, then the measured ones. Each fork runs them in a JVM of its own, started
+// with the same JVM options, so the JIT decisions of one don't decide the results. Needs
+// nothing but the JDK
+//
+// Options:
+//   -tests dir          directory with the test programs (tests)
+//   -sets a,b           input sets: codegen, optimizer, dataflow (all)
+//   -phases a,b         parse, check, flatten, cfg, dataflow, postdataflow, resolve, codegen,
+//                       coloring and compile for the whole compilation (all)
+//   -warmup n           warmup iterations (3)
+//   -iterations n       measured iterations (5)
+//   -time ms            length of an iteration (1000)
+//   -forks n            JVMs to run in, 0 to run in this one (1)
+//   -noopt              compile without the optimizations
+//   -json file          also write the results to file
+public class BenchmarkRunner {
+	private static final String[][] SETS = {
+		{ "codegen", "codegen" },
+		{ "optimizer", "optimizer/tests" },
+		{ "dataflow", "dataflow" },
+	};
+
+	private String tests = "tests";
+	private List<String> sets = new ArrayList<String>();
+	private List<String> phases = new ArrayList<String>();
+	private int warmup = 3;
+	private int iterations = 5;
+	private long time = 1000;
+	private int forks = 1;
+	private boolean optimize = true;
+	private String jsonFile;
+	// Started by another runner, sends the samples back instead of printing a report
+	private boolean child;
+	private String[] args;
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkRunner runner = new BenchmarkRunner(args);
+		runner.run();
+	}
+
+	public BenchmarkRunner(String[] args) {
+		this.args = args;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-tests")) {
+				tests = args[++i];
+			} else if (args[i].equals("-sets")) {
+				sets.addAll(Arrays.asList(args[++i].split(",")));
+			} else if (args[i].equals("-phases")) {
+				phases.addAll(Arrays.asList(args[++i].split(",")));
+			} else if (args[i].equals("-warmup")) {
+				warmup = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-iterations")) {
+				iterations = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-time")) {
+				time = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-forks")) {
+				forks = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-noopt")) {
+				optimize = false;
+			} else if (args[i].equals("-json")) {
+				jsonFile = args[++i];
+			} else if (args[i].equals("-child")) {
+				child = true;
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		if (sets.isEmpty()) {
+			for (String[] set: SETS) {
+				sets.add(set[0]);
+			}
+		}
+		if (phases.isEmpty()) {
+			for (Phase phase: Phase.values()) {
+				phases.add(phase.getId());
+			}
+			phases.add("compile");
+		}
+		for (String phase: phases) {
+			if (!phase.equals("compile") && Phase.forId(phase) == null) {
+				throw new IllegalArgumentException("Unknown phase " + phase);
+			}
+		}
+	}
+
+	public void run() throws Exception {
+		LinkedHashMap<String, BenchmarkResult> results = new LinkedHashMap<String, BenchmarkResult>();
+		if (forks > 0 && !child) {
+			for (int i = 0; i < forks; i++) {
+				System.err.println("# Fork " + (i + 1) + " of " + forks);
+				fork(results);
+			}
+		} else {
+			measure(results);
+		}
+
+		if (!child) {
+			printReport(results, System.out);
+			if (jsonFile != null) {
+				writeJSON(results, jsonFile);
+			}
+		}
+	}
+
+	// Runs the benchmarks in this JVM
+	private void measure(LinkedHashMap<String, BenchmarkResult> results) throws Exception {
+		// The passes print the IR to stdout
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+
+		File outfile = File.createTempFile("decaf-bench", ".s");
+		try {
+			boolean[] opts = new boolean[] { optimize, optimize, optimize, optimize, optimize, optimize };
+			for (String set: sets) {
+				List<String> files = getFiles(set, opts, outfile.getPath());
+				for (String name: phases) {
+					PhaseBenchmark benchmark = new PhaseBenchmark(Phase.forId(name), set, files, opts,
+							outfile.getPath());
+					String key = benchmark.getName() + " " + set;
+					System.err.println("# " + key + " (" + files.size() + " programs)");
+
+					for (int i = 0; i < warmup; i++) {
+						Sample sample = benchmark.iterate(time);
+						System.err.println(String.format("# Warmup %d: %.3f ms/op", i + 1,
+								sample.getMillisPerOp()));
+					}
+					for (int i = 0; i < iterations; i++) {
+						Sample sample = benchmark.iterate(time);
+						System.err.println(String.format("Iteration %d: %.3f ms/op", i + 1,
+								sample.getMillisPerOp()));
+						if (child) {
+							out.println("sample " + key + " " + sample.format());
+						} else {
+							add(results, benchmark.getName(), set, sample);
+						}
+					}
+				}
+			}
+		} finally {
+			outfile.delete();
+			System.setOut(out);
+		}
+	}
+
+	// Runs the benchmarks in a new JVM and adds the samples it sends back
+	private void fork(LinkedHashMap<String, BenchmarkResult> results) throws Exception {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(BenchmarkRunner.class.getName());
+		command.addAll(Arrays.asList(args));
+		command.add("-child");
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		Process process = builder.start();
+
+		BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		String line;
+		while ((line = in.readLine()) != null) {
+			String[] fields = line.split(" ");
+			if (fields[0].equals("sample")) {
+				add(results, fields[1], fields[2], Sample.parse(fields, 3));
+			}
+		}
+		if (process.waitFor() != 0) {
+			throw new Exception("Forked benchmark failed");
+		}
+	}
+
+	private static void add(LinkedHashMap<String, BenchmarkResult> results, String name, String set,
+			Sample sample) {
+		String key = name + " " + set;
+		if (!results.containsKey(key)) {
+			results.put(key, new BenchmarkResult(name, set));
+		}
+		results.get(key).add(sample);
+	}
+
+	// Programs of the set which compile, the others can't be benchmarked
+	private List<String> getFiles(String set, boolean[] opts, String outfile) {
+		String dir = null;
+		for (String[] s: SETS) {
+			if (s[0].equals(set)) dir = s[1];
+		}
+		if (dir == null) {
+			throw new IllegalArgumentException("Unknown input set " + set);
+		}
+
+		List<String> files = new ArrayList<String>();
+		String[] names = new File(tests, dir).list();
+		if (names == null) {
+			throw new IllegalArgumentException("No directory " + new File(tests, dir));
+		}
+		Arrays.sort(names);
+		for (String name: names) {
+			if (!name.endsWith(".dcf")) continue;
+
+			String file = new File(new File(tests, dir), name).getPath();
+			try {
+				ProgramState state = new ProgramState(file, outfile, opts);
+				state.runBefore(Phase.CODEGEN);
+				state.run(Phase.CODEGEN);
+				files.add(file);
+			} catch (Exception e) {
+				System.err.println("# Skipping " + file + ": " + e);
+			}
+		}
+		return files;
+	}
+
+	private static void printReport(LinkedHashMap<String, BenchmarkResult> results, PrintStream out) {
+		out.println(String.format("%-14s %-10s %4s %12s %10s %14s %11s %6s %8s", "Benchmark", "Set",
+				"Cnt", "Score ms/op", "Stdev", "Alloc B/op", "Alloc MB/s", "GCs", "GC ms"));
+		for (BenchmarkResult result: results.values()) {
+			out.println(String.format("%-14s %-10s %4d %12.3f %10.3f %14.0f %11.1f %6d %8d",
+					result.getName(), result.getSet(), result.getSamples().size(), result.getScore(),
+					result.getError(), result.getBytesPerOp(), result.getAllocRate(),
+					result.getGcCount(), result.getGcMillis()));
+		}
+	}
+
+	private static void writeJSON(LinkedHashMap<String, BenchmarkResult> results, String filename)
+			throws FileNotFoundException {
+		PrintStream out = new PrintStream(filename);
+
+		out.println("[");
+		int i = 0;
+		for (BenchmarkResult result: results.values()) {
+			out.println("  {");
+			out.println("    \"benchmark\": \"" + result.getName() + "\",");
+			out.println("    \"set\": \"" + result.getSet() + "\",");
+			out.println("    \"scoreMillisPerOp\": " + result.getScore() + ",");
+			out.println("    \"stdev\": " + result.getError() + ",");
+			out.println("    \"allocBytesPerOp\": " + result.getBytesPerOp() + ",");
+			out.println("    \"allocMBPerSecond\": " + result.getAllocRate() + ",");
+			out.println("    \"gcCount\": " + result.getGcCount() + ",");
+			out.println("    \"gcMillis\": " + result.getGcMillis() + ",");
+			out.print("    \"iterations\": [");
+			List<Sample> samples = result.getSamples();
+			for (int j = 0; j < samples.size(); j++) {
+				out.print(samples.get(j).getMillisPerOp());
+				out.print((j < samples.size() - 1) ? ", " : "");
+			}
+			out.println("]");
+			out.println((++i < results.size()) ? "  }," : "  }");
+		}
+		out.println("]");
+
+		out.close();
+	}
+}
@@ -0,0 +1,47 @@
+package decaf.bench;
+
+// Phases of the compiler which can be benchmarked on their own, in the order Main.compile runs
+// them. Each one needs the program compiled up to the phase it comes after
+public enum Phase {
+	PARSE("parse", "scan+parse", null),
+	CHECK("check", "semantic check", PARSE),
+	FLATTEN("flatten", "flatten", CHECK),
+	CFG("cfg", "cfg", FLATTEN),
+	DATAFLOW("dataflow", "dataflow", CFG),
+	POST_DATAFLOW("postdataflow", "post dataflow", DATAFLOW),
+	RESOLVE("resolve", "resolve locations", POST_DATAFLOW),
+	CODEGEN("codegen", "codegen", RESOLVE),
+	// Not part of the compilation yet, the webs of the optimized program are colored
+	COLORING("coloring", "web coloring", POST_DATAFLOW);
+
+	// Name on the command line
+	private String id;
+	// Name of the phase in the -time report
+	private String name;
+	private Phase previous;
+
+	private Phase(String id, String name, Phase previous) {
+		this.id = id;
+		this.name = name;
+		this.previous = previous;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Phase getPrevious() {
+		return previous;
+	}
+
+	public static Phase forId(String id) {
+		for (Phase phase: values()) {
+			if (phase.id.equals(id)) return phase;
+		}
+		return null;
+	}
+}
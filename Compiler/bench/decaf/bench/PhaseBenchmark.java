@@ -0,0 +1,122 @@
+package decaf.bench;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+import decaf.CompilationContext;
+import decaf.Main;
+
+// A phase of the compiler, or the whole compilation, run on every program of an input set
+// One op compiles each program up to the phase and then runs the phase on it. Only the phase
+// is timed and only what it allocates is counted, like a JMH benchmark with a setup per
+// invocation. An iteration runs ops until its time is up
+public class PhaseBenchmark {
+	// Null for the whole compilation
+	private Phase phase;
+	private String set;
+	private List<String> files;
+	private boolean[] opts;
+	private String outfile;
+	private com.sun.management.ThreadMXBean threadBean;
+
+	public PhaseBenchmark(Phase phase, String set, List<String> files, boolean[] opts, String outfile) {
+		this.phase = phase;
+		this.set = set;
+		this.files = files;
+		this.opts = opts;
+		this.outfile = outfile;
+
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			this.threadBean = (com.sun.management.ThreadMXBean) bean;
+			if (threadBean.isThreadAllocatedMemorySupported()) {
+				threadBean.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+	}
+
+	public String getName() {
+		if (phase == null) return "compile";
+		return phase.getId();
+	}
+
+	public String getSet() {
+		return set;
+	}
+
+	public Sample iterate(long millis) throws Exception {
+		long gcCount = getGcCount();
+		long gcMillis = getGcMillis();
+		long deadline = System.nanoTime() + millis * 1000000;
+
+		int ops = 0;
+		long nanos = 0;
+		long bytes = 0;
+		do {
+			for (String file: files) {
+				ProgramState state = null;
+				if (phase != null) {
+					state = new ProgramState(file, outfile, opts);
+					state.runBefore(phase);
+				}
+
+				long startBytes = getAllocatedBytes();
+				long start = System.nanoTime();
+				if (phase != null) {
+					state.run(phase);
+				} else {
+					compile(file);
+				}
+				nanos += System.nanoTime() - start;
+				bytes += getAllocatedBytes() - startBytes;
+			}
+			ops++;
+		} while (System.nanoTime() < deadline);
+
+		return new Sample(ops, nanos, bytes, getGcCount() - gcCount, getGcMillis() - gcMillis);
+	}
+
+	private void compile(String file) throws Exception {
+		CompilationContext context = new CompilationContext(opts, false, file, outfile);
+		InputStream in = new FileInputStream(file);
+		try {
+			if (!Main.compile(context, in)) {
+				throw new Exception(file + " has semantic errors");
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	// Bytes allocated so far by all live threads, the dataflow generators run on threads of
+	// their own. 0 if the JVM doesn't count them
+	private long getAllocatedBytes() {
+		if (threadBean == null || !threadBean.isThreadAllocatedMemoryEnabled()) return 0;
+
+		long total = 0;
+		for (long bytes: threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+			if (bytes > 0) total += bytes;
+		}
+		return total;
+	}
+
+	private static long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean bean: ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, bean.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long getGcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean bean: ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, bean.getCollectionTime());
+		}
+		return millis;
+	}
+}
@@ -0,0 +1,251 @@
+package decaf.bench;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Writes valid Decaf programs of any size, to see how the passes scale (ScalingReport)
+// The methods are made of assignments to locals, globals and array elements, ifs, nested
+// for loops, callouts and calls to the methods before them, with expressions which repeat
+// now and then so the optimizers have something to do. The same seed gives the same program
+//
+// java decaf.bench.ProgramGenerator [-methods n] [-statements n] [-depth n] [-globals n]
+//   [-arrays n] [-seed n] [-o file]
+public class ProgramGenerator {
+	private static final int LOCALS = 6;
+	private static final int PARAMS = 2;
+	// Every loop counts up to it and the arrays are this big, so indexes are always in bounds
+	private static final int ARRAY_SIZE = 16;
+
+	private int methods = 4;
+	private int statements = 50;
+	private int depth = 2;
+	private int globals = 8;
+	private int arrays = 2;
+	private Random random;
+
+	// Names an expression can use in the method being written
+	private List<String> operands;
+	private List<String> loopVars;
+	private List<String> recent;
+	private int method;
+	private int loopCount;
+
+	public ProgramGenerator(long seed) {
+		this.random = new Random(seed);
+	}
+
+	public static void main(String[] args) throws FileNotFoundException {
+		long seed = 6035;
+		String outfile = null;
+		ProgramGenerator generator = new ProgramGenerator(seed);
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-methods")) {
+				generator.setMethods(Integer.parseInt(args[++i]));
+			} else if (args[i].equals("-statements")) {
+				generator.setStatements(Integer.parseInt(args[++i]));
+			} else if (args[i].equals("-depth")) {
+				generator.setDepth(Integer.parseInt(args[++i]));
+			} else if (args[i].equals("-globals")) {
+				generator.setGlobals(Integer.parseInt(args[++i]));
+			} else if (args[i].equals("-arrays")) {
+				generator.setArrays(Integer.parseInt(args[++i]));
+			} else if (args[i].equals("-seed")) {
+				generator.random = new Random(Long.parseLong(args[++i]));
+			} else if (args[i].equals("-o")) {
+				outfile = args[++i];
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		PrintStream out = (outfile == null) ? System.out : new PrintStream(outfile);
+		generator.generate(out);
+		out.close();
+	}
+
+	public void setMethods(int methods) {
+		this.methods = Math.max(1, methods);
+	}
+
+	public void setStatements(int statements) {
+		this.statements = Math.max(1, statements);
+	}
+
+	// Deepest loop nesting
+	public void setDepth(int depth) {
+		this.depth = Math.max(0, depth);
+	}
+
+	public void setGlobals(int globals) {
+		this.globals = Math.max(0, globals);
+	}
+
+	public void setArrays(int arrays) {
+		this.arrays = Math.max(0, arrays);
+	}
+
+	public void generate(PrintStream out) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("class Program {\n");
+		for (int i = 0; i < globals; i++) {
+			sb.append("  int g").append(i).append(";\n");
+		}
+		for (int i = 0; i < arrays; i++) {
+			sb.append("  int a").append(i).append("[").append(ARRAY_SIZE).append("];\n");
+		}
+		sb.append("\n");
+
+		for (method = 0; method < methods; method++) {
+			generateMethod(sb);
+		}
+
+		sb.append("  void main() {\n");
+		sb.append("    int r;\n");
+		sb.append("    r = 0;\n");
+		for (int i = 0; i < methods; i++) {
+			sb.append("    r = r + m").append(i).append("(").append(i).append(", r);\n");
+		}
+		sb.append("    callout(\"printf\", \"%d\\n\", r);\n");
+		sb.append("  }\n");
+		sb.append("}\n");
+		out.print(sb);
+	}
+
+	private void generateMethod(StringBuilder sb) {
+		operands = new ArrayList<String>();
+		loopVars = new ArrayList<String>();
+		recent = new ArrayList<String>();
+		loopCount = 0;
+
+		sb.append("  int m").append(method).append("(");
+		for (int i = 0; i < PARAMS; i++) {
+			sb.append((i > 0) ? ", " : "").append("int p").append(i);
+			operands.add("p" + i);
+		}
+		sb.append(") {\n");
+
+		sb.append("    int");
+		for (int i = 0; i < LOCALS; i++) {
+			sb.append((i > 0) ? ", " : " ").append("x").append(i);
+			operands.add("x" + i);
+		}
+		sb.append(";\n");
+		for (int i = 0; i < globals; i++) {
+			operands.add("g" + i);
+		}
+
+		// Locals have to be set before they are read
+		for (int i = 0; i < LOCALS; i++) {
+			sb.append("    x").append(i).append(" = p").append(i % PARAMS).append(" + ")
+					.append(i).append(";\n");
+		}
+
+		generateStatements(sb, statements, 0, "    ");
+		sb.append("    return x0 + x1;\n");
+		sb.append("  }\n\n");
+	}
+
+	// Writes count statements, the ones inside ifs and loops included
+	private void generateStatements(StringBuilder sb, int count, int loopDepth, String indent) {
+		while (count > 0) {
+			int kind = random.nextInt(10);
+			if (kind == 0 && count >= 3) {
+				// If with an else
+				int inner = Math.min(count - 1, 1 + random.nextInt(4));
+				int thenCount = (inner + 1) / 2;
+				sb.append(indent).append("if (").append(condition()).append(") {\n");
+				generateStatements(sb, thenCount, loopDepth, indent + "  ");
+				sb.append(indent).append("} else {\n");
+				generateStatements(sb, Math.max(1, inner - thenCount), loopDepth, indent + "  ");
+				sb.append(indent).append("}\n");
+				count -= 1 + inner;
+			} else if (kind == 1 && loopDepth < depth && count >= 2) {
+				int inner = Math.min(count - 1, 1 + random.nextInt(6));
+				String var = "l" + loopCount++;
+				sb.append(indent).append("for ").append(var).append(" = 0, ").append(ARRAY_SIZE)
+						.append(" {\n");
+				// The expressions with the loop variable can't be used after the loop
+				List<String> outside = new ArrayList<String>(recent);
+				loopVars.add(var);
+				generateStatements(sb, inner, loopDepth + 1, indent + "  ");
+				loopVars.remove(loopVars.size() - 1);
+				recent = outside;
+				sb.append(indent).append("}\n");
+				count -= 1 + inner;
+			} else if (kind == 2 && arrays > 0) {
+				sb.append(indent).append(arrayElement()).append(" = ").append(expression(2))
+						.append(";\n");
+				count--;
+			} else if (kind == 3) {
+				sb.append(indent).append("callout(\"printf\", \"%d\\n\", ").append(expression(1))
+						.append(");\n");
+				count--;
+			} else if (kind == 4 && globals > 0) {
+				sb.append(indent).append("g").append(random.nextInt(globals)).append(" += ")
+						.append(expression(1)).append(";\n");
+				count--;
+			} else {
+				sb.append(indent).append("x").append(random.nextInt(LOCALS)).append(" = ")
+						.append(expression(2)).append(";\n");
+				count--;
+			}
+		}
+	}
+
+	private String condition() {
+		String[] ops = { "<", "<=", ">", ">=", "==", "!=" };
+		String cond = expression(1) + " " + ops[random.nextInt(ops.length)] + " " + expression(1);
+		if (random.nextInt(4) == 0) {
+			cond = "(" + cond + ") && (" + operand() + " < " + random.nextInt(100) + ")";
+		}
+		return cond;
+	}
+
+	private String expression(int height) {
+		// Same expression as a while ago, for common subexpression elimination
+		if (!recent.isEmpty() && random.nextInt(4) == 0) {
+			return recent.get(random.nextInt(recent.size()));
+		}
+		if (height == 0 || random.nextInt(3) == 0) {
+			return operand();
+		}
+
+		String[] ops = { "+", "-", "*", "+", "-" };
+		String expr = "(" + expression(height - 1) + " " + ops[random.nextInt(ops.length)] + " "
+				+ expression(height - 1) + ")";
+		recent.add(expr);
+		if (recent.size() > 8) {
+			recent.remove(0);
+		}
+		return expr;
+	}
+
+	private String operand() {
+		int kind = random.nextInt(12);
+		if (kind == 0) {
+			return Integer.toString(random.nextInt(100));
+		} else if (kind == 1 && arrays > 0) {
+			return arrayElement();
+		} else if (kind == 2 && method > 0) {
+			// Only methods before this one, so there is no recursion
+			return "m" + random.nextInt(method) + "(" + operands.get(random.nextInt(operands.size()))
+					+ ", " + random.nextInt(10) + ")";
+		} else if (kind == 3 && !loopVars.isEmpty()) {
+			return loopVars.get(random.nextInt(loopVars.size()));
+		}
+		return operands.get(random.nextInt(operands.size()));
+	}
+
+	private String arrayElement() {
+		String index;
+		if (!loopVars.isEmpty() && random.nextInt(3) > 0) {
+			index = loopVars.get(random.nextInt(loopVars.size()));
+		} else {
+			index = Integer.toString(random.nextInt(ARRAY_SIZE));
+		}
+		return "a" + random.nextInt(arrays) + "[" + index + "]";
+	}
+}
@@ -0,0 +1,119 @@
+package decaf.bench;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+
+import decaf.CompilationContext;
+import decaf.DecafParser;
+import decaf.DecafScanner;
+import decaf.codegen.flattener.CodeGenerator;
+import decaf.codegen.flattener.LocationResolver;
+import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.block.BlockOptimizer;
+import decaf.dataflow.cfg.CFGBuilder;
+import decaf.dataflow.cfg.CFGDataflowOptimizer;
+import decaf.dataflow.cfg.MethodIR;
+import decaf.dataflow.global.GlobalOptimizer;
+import decaf.ir.ast.ClassDecl;
+import decaf.ir.semcheck.SemanticChecker;
+import decaf.optimize.PostDataFlowOptimizer;
+import decaf.profile.CompileProfiler;
+import decaf.ralloc.WebColorer;
+
+// One program compiled one phase at a time, with a CompilationContext of its own, so a
+// benchmark can compile it up to a phase and then time the phase alone
+// The phases do what Main.compile does, without the IR dumps
+public class ProgramState {
+	private CompilationContext context;
+	private ClassDecl cd;
+	private ProgramFlattener pf;
+	private CFGBuilder cb;
+	private HashMap<String, MethodIR> mMap;
+
+	public ProgramState(String infile, String outfile, boolean[] opts) {
+		this.context = new CompilationContext(opts, false, infile, outfile);
+		this.context.setFileName(new File(infile).getName());
+	}
+
+	// Disabled unless enabled, records the phases run and the passes in them
+	public CompileProfiler getProfiler() {
+		return context.getProfiler();
+	}
+
+	// Runs every phase phase needs
+	public void runBefore(Phase phase) throws Exception {
+		Phase previous = phase.getPrevious();
+		if (previous != null) {
+			runBefore(previous);
+			run(previous);
+		}
+	}
+
+	public void run(Phase phase) throws Exception {
+		CompilationContext previous = CompilationContext.enter(context);
+		CompileProfiler profiler = context.getProfiler();
+		try {
+			profiler.begin(phase.getName());
+			switch (phase) {
+				case PARSE:
+					InputStream in = new FileInputStream(context.getInfile());
+					try {
+						DecafParser parser = new DecafParser(new DecafScanner(new DataInputStream(in)));
+						cd = parser.program();
+					} finally {
+						in.close();
+					}
+					if (cd == null) {
+						throw new Exception("Class name must be 'Program'");
+					}
+					break;
+				case CHECK:
+					if (!SemanticChecker.performSemanticChecks(context, cd, context.getErrorStream(), true)) {
+						throw new Exception(context.getInfile() + " has semantic errors");
+					}
+					break;
+				case FLATTEN:
+					pf = new ProgramFlattener(context, cd);
+					profiler.setProgram(pf, null);
+					pf.flatten();
+					break;
+				case CFG:
+					cb = new CFGBuilder(pf);
+					cb.generateCFGs();
+					profiler.setProgram(pf, cb);
+					mMap = MethodIR.generateMethodIRs(pf, cb);
+					break;
+				case DATAFLOW:
+					if (context.isOptimizing()) {
+						BlockOptimizer bo = new BlockOptimizer(mMap);
+						GlobalOptimizer go = new GlobalOptimizer(mMap);
+						new CFGDataflowOptimizer(mMap, pf, bo, go, context.getOpts()).optimizeCFGDataflow();
+					}
+					break;
+				case POST_DATAFLOW:
+					if (context.isOptimizing()) {
+						new PostDataFlowOptimizer(pf, cb).optimize();
+					}
+					break;
+				case RESOLVE:
+					new LocationResolver(pf, cd).resolveLocations();
+					break;
+				case CODEGEN:
+					new CodeGenerator(pf, cd, context.getOutfile()).generateCode();
+					break;
+				case COLORING:
+					// The optimizers changed the statements, the webs are found on new CFGs
+					cb.generateCFGs();
+					mMap = MethodIR.generateMethodIRs(pf, cb);
+					new WebColorer(mMap).colorWebs();
+					break;
+			}
+			profiler.end();
+		} finally {
+			CompilationContext.exit(previous);
+		}
+	}
+}
@@ -0,0 +1,414 @@
+package decaf.bench;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Speed of the code the compiler generates for the image kernels of tests/optimizer/tests
+// (ant runtime-bench). Every kernel is compiled with every combination of the -opt passes,
+// with all of them and each register allocator (ralloc, ralloc-linear), and with the
+// configurations given with -config, linked with lib6035.a and run -runs times
+// in a scratch directory. The image it writes must be the reference image next to it, and
+// its time is what it prints between start_caliper and end_caliper ("Timer: N usecs")
+// The median time of every kernel and configuration is compared with the baseline file, the
+// exit status is 1 if an image is wrong or missing or a kernel got slower than -threshold percent
+// The baseline depends on the machine, so it isn't kept in the repository: make it on the
+// machine the benchmark runs on with ant runtime-bench -Druntime.args="-save", which writes
+// runtime-baseline.txt (every time is "new" until then)
+//
+// java decaf.bench.RuntimeBenchmark [-tests dir] [-lib lib6035.a] [-kernels a,b]
+//   [-configs a,b] [-config name=flags] [-runs n] [-threshold percent]
+//   [-baseline file] [-save] [-cc gcc] [-work dir]
+public class RuntimeBenchmark {
+	private static final String[] OPTS = { "cse", "cp", "const", "dc", "peephole" };
+	private static final Pattern TIMER = Pattern.compile("Timer: (\\d+) usecs");
+	private static final Pattern READ = Pattern.compile("\"pgm_open_for_read\",\\s*\"([^\"]+)\"");
+	private static final Pattern WRITE = Pattern.compile("\"pgm_open_for_write\",\\s*\"([^\"]+)\"");
+
+	private String tests = "tests/optimizer/tests";
+	private String lib = "tests/optimizer/lib/lib6035.a";
+	private List<String> kernels = new ArrayList<String>();
+	private List<String> only = new ArrayList<String>();
+	// Name of the configuration -> flags of the compiler
+	private LinkedHashMap<String, String> configs = new LinkedHashMap<String, String>();
+	private int runs = 5;
+	private double threshold = 10;
+	private String baseline = "runtime-baseline.txt";
+	// Writes the times to the baseline instead of comparing with it
+	private boolean save;
+	private String cc = "gcc";
+	private File work;
+
+	public static void main(String[] args) throws Exception {
+		RuntimeBenchmark benchmark = new RuntimeBenchmark(args);
+		if (!benchmark.run()) {
+			System.exit(1);
+		}
+	}
+
+	public RuntimeBenchmark(String[] args) {
+		// Every combination of the optimizations, none to all of them
+		for (int mask = 0; mask < (1 << OPTS.length); mask++) {
+			String name = "";
+			String flags = "";
+			for (int i = 0; i < OPTS.length; i++) {
+				if ((mask & (1 << i)) != 0) {
+					name += (name.length() > 0 ? "+" : "") + OPTS[i];
+					flags += " " + OPTS[i];
+				}
+			}
+			configs.put(mask == 0 ? "none" : name, mask == 0 ? "" : "-opt" + flags);
+		}
+		// The register allocators, against the stack code of the same passes
+		configs.put("ralloc", "-ralloc -opt all");
+		configs.put("ralloc-linear", "-ralloc=linear -opt all");
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-tests")) {
+				tests = args[++i];
+			} else if (args[i].equals("-lib")) {
+				lib = args[++i];
+			} else if (args[i].equals("-kernels")) {
+				kernels.addAll(Arrays.asList(args[++i].split(",")));
+			} else if (args[i].equals("-configs")) {
+				only.addAll(Arrays.asList(args[++i].split(",")));
+			} else if (args[i].equals("-config")) {
+				String config = args[++i];
+				int eq = config.indexOf('=');
+				if (eq < 0) {
+					throw new IllegalArgumentException("Configuration must be name=flags: " + config);
+				}
+				configs.put(config.substring(0, eq), config.substring(eq + 1));
+			} else if (args[i].equals("-runs")) {
+				runs = Math.max(1, Integer.parseInt(args[++i]));
+			} else if (args[i].equals("-threshold")) {
+				threshold = Double.parseDouble(args[++i]);
+			} else if (args[i].equals("-baseline")) {
+				baseline = args[++i];
+			} else if (args[i].equals("-save")) {
+				save = true;
+			} else if (args[i].equals("-cc")) {
+				cc = args[++i];
+			} else if (args[i].equals("-work")) {
+				work = new File(args[++i]);
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		if (kernels.isEmpty()) {
+			String[] names = new File(tests).list();
+			if (names == null) {
+				throw new IllegalArgumentException("No directory " + tests);
+			}
+			Arrays.sort(names);
+			for (String name: names) {
+				if (name.endsWith(".dcf")) {
+					kernels.add(name.substring(0, name.length() - 4));
+				}
+			}
+		}
+		if (!only.isEmpty()) {
+			configs.keySet().retainAll(only);
+		}
+	}
+
+	// False if an image was wrong or a kernel got slower
+	public boolean run() throws Exception {
+		if (work == null) {
+			work = File.createTempFile("decaf-runtime", "");
+			work.delete();
+		}
+		// The commands run in the scratch directories
+		work = work.getAbsoluteFile();
+		tests = new File(tests).getAbsolutePath();
+		lib = new File(lib).getAbsolutePath();
+
+		// Kernel -> configuration -> times, null if it didn't compile or gave a wrong image
+		LinkedHashMap<String, HashMap<String, List<Long>>> times = new LinkedHashMap<String, HashMap<String, List<Long>>>();
+		HashMap<String, String> failures = new HashMap<String, String>();
+		for (String kernel: kernels) {
+			times.put(kernel, new HashMap<String, List<Long>>());
+		}
+
+		for (String config: configs.keySet()) {
+			File dir = new File(work, config);
+			dir.mkdirs();
+			compile(dir, configs.get(config));
+
+			for (String kernel: kernels) {
+				System.err.println("# " + kernel + " " + config);
+				try {
+					times.get(kernel).put(config, measure(dir, kernel));
+				} catch (Exception e) {
+					failures.put(kernel + " " + config, e.getMessage());
+					System.err.println("# " + e.getMessage());
+				}
+			}
+		}
+
+		HashMap<String, Long> base = readBaseline();
+		if (base.isEmpty() && !save) {
+			System.err.println("# No times in " + baseline + ", -save makes it");
+		}
+		boolean success = printReport(times, failures, base, System.out);
+		if (save) {
+			writeBaseline(times);
+		}
+		return success;
+	}
+
+	// Compiles every kernel with the flags in one JVM (-batch), to dir
+	private void compile(File dir, String flags) throws Exception {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-cp");
+		command.add(getClassPath());
+		command.add("decaf.Main");
+		command.add("-batch");
+		command.add("-target");
+		command.add("codegen");
+		for (String kernel: kernels) {
+			File dcf = new File(dir, kernel + ".dcf");
+			copy(new File(tests, kernel + ".dcf"), dcf);
+			new File(dir, kernel + ".s").delete();
+			command.add(dcf.getPath());
+		}
+		// -opt takes the arguments after it
+		if (flags.trim().length() > 0) {
+			command.addAll(Arrays.asList(flags.trim().split("\\s+")));
+		}
+		Result result = exec(command, dir);
+		if (result.exitValue != 0) {
+			System.err.print(result.output);
+		}
+	}
+
+	// The compiler runs in the scratch directory
+	private static String getClassPath() {
+		String path = "";
+		for (String entry: System.getProperty("java.class.path").split(File.pathSeparator)) {
+			path += (path.length() > 0 ? File.pathSeparator : "") + new File(entry).getAbsolutePath();
+		}
+		return path;
+	}
+
+	private List<Long> measure(File dir, String kernel) throws Exception {
+		File asm = new File(dir, kernel + ".s");
+		if (!asm.exists()) {
+			throw new Exception(kernel + " didn't compile");
+		}
+
+		File binary = new File(dir, kernel);
+		List<String> link = new ArrayList<String>();
+		link.add(cc);
+		link.add("-no-pie");
+		link.add("-o");
+		link.add(binary.getPath());
+		link.add(asm.getPath());
+		link.add(lib);
+		link.add("-lpthread");
+		if (exec(link, dir).exitValue != 0) {
+			throw new Exception(kernel + " didn't link");
+		}
+
+		String source = read(new File(tests, kernel + ".dcf"));
+		Matcher input = READ.matcher(source);
+		Matcher output = WRITE.matcher(source);
+		String outputName = output.find() ? output.group(1) : null;
+		if (input.find()) {
+			copy(new File(tests, input.group(1)), new File(dir, input.group(1)));
+		}
+
+		List<Long> usecs = new ArrayList<Long>();
+		for (int i = 0; i < runs; i++) {
+			if (outputName != null) {
+				new File(dir, outputName).delete();
+			}
+
+			List<String> command = new ArrayList<String>();
+			command.add(binary.getAbsolutePath());
+			Result result = exec(command, dir);
+			if (result.exitValue != 0) {
+				throw new Exception(kernel + " exited with " + result.exitValue);
+			}
+
+			Matcher timer = TIMER.matcher(result.output);
+			if (!timer.find()) {
+				throw new Exception(kernel + " printed no timer");
+			}
+			usecs.add(Long.parseLong(timer.group(1)));
+
+			if (outputName != null) {
+				// Two missing images would compare equal
+				File written = new File(dir, outputName);
+				File reference = new File(tests, outputName);
+				if (!written.exists()) {
+					throw new Exception(kernel + " wrote no " + outputName);
+				}
+				if (!reference.exists()) {
+					throw new Exception("No reference image " + reference);
+				}
+				if (!Arrays.equals(readBytes(written), readBytes(reference))) {
+					throw new Exception(kernel + " wrote a wrong " + outputName);
+				}
+			}
+		}
+		return usecs;
+	}
+
+	private boolean printReport(LinkedHashMap<String, HashMap<String, List<Long>>> times,
+			HashMap<String, String> failures, HashMap<String, Long> base, PrintStream out) {
+		boolean success = true;
+
+		out.println(String.format("%-12s %-22s %10s %10s %10s %9s %9s  %s", "kernel", "config",
+				"median us", "min us", "base us", "change", "speedup", "status"));
+		for (String kernel: times.keySet()) {
+			Long none = null;
+			if (times.get(kernel).containsKey("none")) {
+				none = median(times.get(kernel).get("none"));
+			}
+
+			for (String config: configs.keySet()) {
+				String key = kernel + " " + config;
+				List<Long> usecs = times.get(kernel).get(config);
+				if (usecs == null) {
+					out.println(String.format("%-12s %-22s %10s %10s %10s %9s %9s  %s", kernel, config,
+							"-", "-", "-", "-", "-", "FAILED: " + failures.get(key)));
+					success = false;
+					continue;
+				}
+
+				long median = median(usecs);
+				String status = "ok";
+				String change = "-";
+				Long was = base.get(key);
+				if (was != null && was > 0) {
+					double percent = 100.0 * (median - was) / was;
+					change = String.format("%+.1f%%", percent);
+					if (percent > threshold) {
+						status = "REGRESSED";
+						success = false;
+					} else if (percent < -threshold) {
+						status = "improved";
+					}
+				} else {
+					status = "new";
+				}
+				String speedup = (none == null || median == 0) ? "-"
+						: String.format("%.2fx", (double) none / median);
+
+				out.println(String.format("%-12s %-22s %10d %10d %10s %9s %9s  %s", kernel, config,
+						median, Collections.min(usecs), (was == null) ? "-" : was.toString(), change,
+						speedup, status));
+			}
+		}
+		return success;
+	}
+
+	// Lines of "kernel config usecs"
+	private HashMap<String, Long> readBaseline() throws IOException {
+		HashMap<String, Long> base = new HashMap<String, Long>();
+		File file = new File(baseline);
+		if (!file.exists()) return base;
+
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		String line;
+		while ((line = in.readLine()) != null) {
+			String[] fields = line.trim().split("\\s+");
+			if (fields.length != 3 || line.startsWith("#")) continue;
+			base.put(fields[0] + " " + fields[1], Long.parseLong(fields[2]));
+		}
+		in.close();
+		return base;
+	}
+
+	private void writeBaseline(LinkedHashMap<String, HashMap<String, List<Long>>> times)
+			throws IOException {
+		// Keeps the times of the kernels and configurations which weren't run
+		HashMap<String, Long> base = readBaseline();
+		for (String kernel: times.keySet()) {
+			for (String config: times.get(kernel).keySet()) {
+				base.put(kernel + " " + config, median(times.get(kernel).get(config)));
+			}
+		}
+
+		List<String> keys = new ArrayList<String>(base.keySet());
+		Collections.sort(keys);
+		PrintStream out = new PrintStream(baseline);
+		out.println("# kernel config median-usecs");
+		for (String key: keys) {
+			out.println(key + " " + base.get(key));
+		}
+		out.close();
+	}
+
+	private static long median(List<Long> values) {
+		List<Long> sorted = new ArrayList<Long>(values);
+		Collections.sort(sorted);
+		return sorted.get(sorted.size() / 2);
+	}
+
+	private static class Result {
+		int exitValue;
+		String output;
+	}
+
+	// Runs the command in dir, its stderr goes with its stdout
+	private static Result exec(List<String> command, File dir) throws Exception {
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.directory(dir);
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+
+		Result result = new Result();
+		result.output = new String(readAll(process.getInputStream()));
+		result.exitValue = process.waitFor();
+		return result;
+	}
+
+	private static void copy(File from, File to) throws IOException {
+		byte[] bytes = readBytes(from);
+		FileOutputStream out = new FileOutputStream(to);
+		out.write(bytes);
+		out.close();
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(readBytes(file));
+	}
+
+	// A missing file is an error (FileNotFoundException), not an empty file
+	private static byte[] readBytes(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return readAll(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1 << 13];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			bytes.write(buffer, 0, n);
+		}
+		return bytes.toByteArray();
+	}
+}
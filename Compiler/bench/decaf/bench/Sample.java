@@ -0,0 +1,57 @@
+package decaf.bench;
+
+// What one iteration of a benchmark measured
+// Collections are counted for the whole iteration, the programs compiled up to the phase
+// before every op make garbage too
+public class Sample {
+	private int ops;
+	private long nanos;
+	private long bytes;
+	private long gcCount;
+	private long gcMillis;
+
+	public Sample(int ops, long nanos, long bytes, long gcCount, long gcMillis) {
+		this.ops = ops;
+		this.nanos = nanos;
+		this.bytes = bytes;
+		this.gcCount = gcCount;
+		this.gcMillis = gcMillis;
+	}
+
+	// Line a forked runner sends the samples back in
+	public static Sample parse(String[] fields, int offset) {
+		return new Sample(Integer.parseInt(fields[offset]), Long.parseLong(fields[offset + 1]),
+				Long.parseLong(fields[offset + 2]), Long.parseLong(fields[offset + 3]),
+				Long.parseLong(fields[offset + 4]));
+	}
+
+	public String format() {
+		return ops + " " + nanos + " " + bytes + " " + gcCount + " " + gcMillis;
+	}
+
+	public int getOps() {
+		return ops;
+	}
+
+	public double getMillisPerOp() {
+		return nanos / 1000000.0 / ops;
+	}
+
+	public double getBytesPerOp() {
+		return (double) bytes / ops;
+	}
+
+	// MB allocated per second of the phase (gc.alloc.rate of JMH)
+	public double getAllocRate() {
+		if (nanos == 0) return 0;
+		return bytes / (nanos / 1000000000.0) / (1024 * 1024);
+	}
+
+	public long getGcCount() {
+		return gcCount;
+	}
+
+	public long getGcMillis() {
+		return gcMillis;
+	}
+}
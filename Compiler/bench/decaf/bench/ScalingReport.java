@@ -0,0 +1,294 @@
+package decaf.bench;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import decaf.profile.PhaseRecord;
+
+// Compiles generated programs (ProgramGenerator) of growing size and fits how the time and the
+// memory of every phase, and of every pass of the -time report inside it, grow with the size:
+// the exponent b of time = a * size^b, from a least squares fit of the logs. Phases growing
+// faster than -max-exponent are flagged and the exit status is 1, the test programs are too
+// small to show quadratic passes but the programs people write are not
+// Memory is what the phase allocates. Each size is compiled -repeat times and the fastest run
+// is kept. Sizes stop growing once compiling one takes more than -limit seconds
+//
+// java decaf.bench.ScalingReport [-scale statements|methods|depth|globals|arrays]
+//   [-sizes 25,50,100,200,400] [-methods n] [-statements n] [-depth n] [-globals n]
+//   [-arrays n] [-repeat n] [-warmup n] [-max-exponent e] [-min-ms ms] [-limit s]
+//   [-seed n] [-noopt] [-nocoloring]
+public class ScalingReport {
+	private String scale = "statements";
+	private int[] sizes = { 25, 50, 100, 200, 400 };
+	private int methods = 4;
+	private int statements = 50;
+	private int depth = 2;
+	private int globals = 8;
+	private int arrays = 2;
+	private int repeat = 3;
+	private int warmup = 2;
+	private double maxExponent = 1.5;
+	// Phases faster than this at the biggest size are left out of the fit, they are noise
+	private double minMillis = 5;
+	private double limit = 60;
+	private long seed = 6035;
+	private boolean optimize = true;
+	private boolean coloring = true;
+
+	// Path of the phase -> time and bytes at every size compiled so far
+	private LinkedHashMap<String, List<long[]>> points;
+	private LinkedHashMap<String, PhaseRecord> phases;
+	private List<Integer> measured;
+
+	public static void main(String[] args) throws Exception {
+		ScalingReport report = new ScalingReport(args);
+		if (!report.run()) {
+			System.exit(1);
+		}
+	}
+
+	public ScalingReport(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-scale")) {
+				scale = args[++i];
+			} else if (args[i].equals("-sizes")) {
+				String[] values = args[++i].split(",");
+				sizes = new int[values.length];
+				for (int j = 0; j < values.length; j++) {
+					sizes[j] = Integer.parseInt(values[j]);
+				}
+			} else if (args[i].equals("-methods")) {
+				methods = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-statements")) {
+				statements = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-depth")) {
+				depth = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-globals")) {
+				globals = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-arrays")) {
+				arrays = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-repeat")) {
+				repeat = Math.max(1, Integer.parseInt(args[++i]));
+			} else if (args[i].equals("-warmup")) {
+				warmup = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-max-exponent")) {
+				maxExponent = Double.parseDouble(args[++i]);
+			} else if (args[i].equals("-min-ms")) {
+				minMillis = Double.parseDouble(args[++i]);
+			} else if (args[i].equals("-limit")) {
+				limit = Double.parseDouble(args[++i]);
+			} else if (args[i].equals("-seed")) {
+				seed = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-noopt")) {
+				optimize = false;
+			} else if (args[i].equals("-nocoloring")) {
+				coloring = false;
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		if (!scale.equals("statements") && !scale.equals("methods") && !scale.equals("depth")
+				&& !scale.equals("globals") && !scale.equals("arrays")) {
+			throw new IllegalArgumentException("Can't scale " + scale);
+		}
+	}
+
+	// False if a phase grows too fast
+	public boolean run() throws Exception {
+		// The passes print the IR to stdout
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+
+		points = new LinkedHashMap<String, List<long[]>>();
+		phases = new LinkedHashMap<String, PhaseRecord>();
+		measured = new ArrayList<Integer>();
+		File infile = File.createTempFile("decaf-scaling", ".dcf");
+		File outfile = File.createTempFile("decaf-scaling", ".s");
+		try {
+			for (int i = 0; i < warmup; i++) {
+				for (int j = 0; j < Math.min(2, sizes.length); j++) {
+					generate(sizes[j], infile);
+					compile(infile, outfile);
+				}
+			}
+
+			for (int size: sizes) {
+				generate(size, infile);
+				System.err.println("# " + scale + " = " + size);
+
+				LinkedHashMap<String, long[]> best = null;
+				long start = System.nanoTime();
+				for (int i = 0; i < repeat; i++) {
+					LinkedHashMap<String, long[]> run = compile(infile, outfile);
+					if (best == null) {
+						best = run;
+						continue;
+					}
+					for (String path: run.keySet()) {
+						long[] b = best.get(path);
+						long[] r = run.get(path);
+						if (b == null) {
+							best.put(path, r);
+						} else {
+							b[0] = Math.min(b[0], r[0]);
+							b[1] = Math.min(b[1], r[1]);
+						}
+					}
+				}
+
+				measured.add(size);
+				for (String path: best.keySet()) {
+					if (!points.containsKey(path)) {
+						points.put(path, new ArrayList<long[]>());
+					}
+					points.get(path).add(new long[] { size, best.get(path)[0], best.get(path)[1] });
+				}
+
+				if ((System.nanoTime() - start) / 1e9 / repeat > limit) {
+					System.err.println("# Stopping, compiling took more than " + limit + " s");
+					break;
+				}
+			}
+		} finally {
+			infile.delete();
+			outfile.delete();
+			System.setOut(out);
+		}
+
+		return printReport(out);
+	}
+
+	private void generate(int size, File file) throws Exception {
+		ProgramGenerator generator = new ProgramGenerator(seed);
+		generator.setMethods(scale.equals("methods") ? size : methods);
+		generator.setStatements(scale.equals("statements") ? size : statements);
+		generator.setDepth(scale.equals("depth") ? size : depth);
+		generator.setGlobals(scale.equals("globals") ? size : globals);
+		generator.setArrays(scale.equals("arrays") ? size : arrays);
+
+		PrintStream out = new PrintStream(file);
+		generator.generate(out);
+		out.close();
+	}
+
+	// Time and bytes of every phase, runs of the same pass added up
+	private LinkedHashMap<String, long[]> compile(File infile, File outfile) throws Exception {
+		boolean[] opts = new boolean[] { optimize, optimize, optimize, optimize, optimize, optimize };
+		List<PhaseRecord> records = new ArrayList<PhaseRecord>();
+
+		ProgramState state = new ProgramState(infile.getPath(), outfile.getPath(), opts);
+		state.getProfiler().enable();
+		state.runBefore(Phase.CODEGEN);
+		state.run(Phase.CODEGEN);
+		records.addAll(state.getProfiler().getRecords());
+
+		if (coloring) {
+			// The webs are colored on the optimized program, before it gets its locations
+			state = new ProgramState(infile.getPath(), outfile.getPath(), opts);
+			state.runBefore(Phase.COLORING);
+			state.getProfiler().enable();
+			state.run(Phase.COLORING);
+			records.addAll(state.getProfiler().getRecords());
+		}
+
+		LinkedHashMap<String, long[]> run = new LinkedHashMap<String, long[]>();
+		for (PhaseRecord record: records) {
+			if (!phases.containsKey(record.getPath())) {
+				phases.put(record.getPath(), record);
+			}
+			long[] total = run.get(record.getPath());
+			if (total == null) {
+				total = new long[2];
+				run.put(record.getPath(), total);
+			}
+			total[0] += record.getWallNanos();
+			total[1] += Math.max(0, record.getAllocatedBytes());
+		}
+		return run;
+	}
+
+	private boolean printReport(PrintStream out) {
+		List<String> flagged = new ArrayList<String>();
+
+		out.println("SCALING REPORT (" + scale + ", max exponent " + maxExponent + ")");
+		String header = String.format("%-50s", "phase");
+		for (int size: measured) {
+			header += String.format(" %9s", "ms@" + size);
+		}
+		out.println(header + String.format(" %9s %9s", "time exp", "alloc exp"));
+
+		for (String path: points.keySet()) {
+			List<long[]> p = points.get(path);
+			PhaseRecord record = phases.get(path);
+
+			String name = "";
+			for (int i = 0; i < record.getDepth(); i++) {
+				name += "  ";
+			}
+			name += record.getName();
+
+			String line = String.format("%-50s", name);
+			for (int size: measured) {
+				long[] point = null;
+				for (long[] q: p) {
+					if (q[0] == size) point = q;
+				}
+				line += (point == null) ? String.format(" %9s", "-")
+						: String.format(" %9.2f", point[1] / 1e6);
+			}
+
+			// Too fast or too few sizes to say how it grows
+			boolean fit = p.size() >= 3 && p.get(p.size() - 1)[1] / 1e6 >= minMillis;
+			double timeExponent = fit ? getExponent(p, 1) : Double.NaN;
+			double allocExponent = fit ? getExponent(p, 2) : Double.NaN;
+			line += Double.isNaN(timeExponent) ? String.format(" %9s", "-")
+					: String.format(" %9.2f", timeExponent);
+			line += Double.isNaN(allocExponent) ? String.format(" %9s", "-")
+					: String.format(" %9.2f", allocExponent);
+
+			if (timeExponent > maxExponent || allocExponent > maxExponent) {
+				line += " !!";
+				flagged.add(String.format("%s grows as %s^%.2f in time and %s^%.2f in memory",
+						path, scale, timeExponent, scale, allocExponent));
+			}
+			out.println(line);
+		}
+
+		for (String f: flagged) {
+			out.println("FLAGGED: " + f);
+		}
+		return flagged.isEmpty();
+	}
+
+	// Slope of the least squares line through (log size, log value), NaN without enough
+	// points above zero
+	private static double getExponent(List<long[]> points, int value) {
+		double n = 0, sx = 0, sy = 0, sxx = 0, sxy = 0;
+		for (long[] point: points) {
+			if (point[value] <= 0) continue;
+
+			double x = Math.log(point[0]);
+			double y = Math.log(point[value]);
+			n++;
+			sx += x;
+			sy += y;
+			sxx += x * x;
+			sxy += x * y;
+		}
+
+		double d = n * sxx - sx * sx;
+		if (n < 2 || d == 0) return Double.NaN;
+		return (n * sxy - sx * sy) / d;
+	}
+}
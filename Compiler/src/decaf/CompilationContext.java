@@ -0,0 +1,356 @@
+package decaf;
+
+import java.io.PrintStream;
+
+import decaf.codegen.flatir.NameTable;
+import decaf.profile.CompileProfiler;
+
+// State of one compilation: the options it was started with and every counter the passes use
+// to make unique ids and labels. Each compilation has its own, so several programs can be
+// compiled at the same time in one JVM
+// Main makes the context and passes it through the pipeline (ProgramFlattener, ParallelPipeline,
+// the semantic checker, the code generators through the flattener). Statements and Names are
+// made deep inside the passes, they find the context of the compilation through the thread
+// running it (get()), so threads working for a compilation have to run with its context
+// (enter/exit)
+public class CompilationContext {
+	private static ThreadLocal<CompilationContext> current = new ThreadLocal<CompilationContext>();
+
+	// Options
+	private boolean[] opts;
+	private boolean debug;
+	private String infile;
+	private String outfile;
+	// Name of the file being compiled, for error messages
+	private String fileName;
+	// Semantic errors are printed to it, stdout if not set
+	private PrintStream errorStream;
+	// Methods optimized and generated at the same time by ParallelPipeline, 0 to compile the
+	// whole program at once
+	private int methodThreads;
+	// The source is read by FastScanner instead of DecafScanner
+	private boolean fastScanner;
+	// Variables are kept in the registers given by this allocator ("color" or "linear") and
+	// the code is made by ASMGenerator, null to keep them on the stack (CodeGenerator)
+	private String registerAllocator;
+
+	// Context of the whole compilation: this one, or the one forMethod was called on
+	private CompilationContext compilation = this;
+	private NameTable nameTable;
+	private CompileProfiler profiler;
+	private String exceptionHandlerLabel;
+
+	// Flattener
+	private int depth;
+	private int maxBoundChecks;
+
+	// Ids of statements, Names and dataflow objects
+	private int quadrupletId;
+	private int dynamicVarId;
+	private int variableId;
+	private int availableExpressionId;
+	private int inductionVariableId;
+	private int symbolicValueId;
+	private int edgeId;
+
+	// Register allocation
+	private int webId;
+	// Of the whole compilation, the statements of every method see it change
+	private volatile boolean rigidQuadrupletHash;
+
+	// Loop parallelizer
+	private int baseBlockId;
+	private int baseMethodId;
+	private int baseGlobalId;
+
+	public CompilationContext() {
+		this.opts = new boolean[0];
+		this.nameTable = new NameTable();
+		this.profiler = new CompileProfiler();
+		this.exceptionHandlerLabel = "exception_handler";
+		this.baseBlockId = 1000;
+		this.baseMethodId = 1000;
+		this.baseGlobalId = 1;
+	}
+
+	public CompilationContext(boolean[] opts, boolean debug, String infile, String outfile) {
+		this();
+		this.opts = opts;
+		this.debug = debug;
+		this.infile = infile;
+		this.outfile = outfile;
+	}
+
+	// Context for compiling one method of this compilation on its own (ParallelPipeline)
+	// It starts with the options and counters of this one, so whatever thread runs the method
+	// and whatever the other methods do, the method gets the same ids and labels. The labels
+	// made from counters start with the method name, so they don't clash between methods
+	// The NameTable is the one of the compilation, so Names keep their ids whichever
+	// context they are used in. The method has a profiler of its own (the phases of the methods
+	// run at the same time), enabled with the one of the compilation and merged into it
+	public CompilationContext forMethod() {
+		CompilationContext context = new CompilationContext(opts, debug, infile, outfile);
+		context.compilation = compilation;
+		context.nameTable = nameTable;
+		context.fileName = fileName;
+		context.errorStream = errorStream;
+		context.fastScanner = fastScanner;
+		context.registerAllocator = registerAllocator;
+		context.exceptionHandlerLabel = exceptionHandlerLabel;
+		context.depth = depth;
+		context.maxBoundChecks = maxBoundChecks;
+		if (profiler.isEnabled()) {
+			context.profiler.enable();
+		}
+		synchronized (this) {
+			context.quadrupletId = quadrupletId;
+			context.dynamicVarId = dynamicVarId;
+			context.variableId = variableId;
+			context.availableExpressionId = availableExpressionId;
+			context.inductionVariableId = inductionVariableId;
+			context.symbolicValueId = symbolicValueId;
+			context.edgeId = edgeId;
+			context.webId = webId;
+		}
+		context.baseBlockId = baseBlockId;
+		context.baseMethodId = baseMethodId;
+		context.baseGlobalId = baseGlobalId;
+		return context;
+	}
+
+	// Context of the compilation the thread is working for
+	// A thread which never entered one is a bug (its ids and labels would clash with the
+	// ones of the compilation), so it fails instead of getting a fresh context
+	public static CompilationContext get() {
+		CompilationContext context = current.get();
+		if (context == null) {
+			throw new IllegalStateException("No CompilationContext entered by thread " + Thread.currentThread().getName());
+		}
+		return context;
+	}
+
+	// The thread works for the compilation of context until exit, returns the context it
+	// was working for before
+	public static CompilationContext enter(CompilationContext context) {
+		CompilationContext previous = current.get();
+		current.set(context);
+		return previous;
+	}
+
+	public static void exit(CompilationContext previous) {
+		if (previous == null) {
+			current.remove();
+		} else {
+			current.set(previous);
+		}
+	}
+
+	public boolean[] getOpts() {
+		return opts;
+	}
+
+	// -opt peephole, the instructions of every method go through PeepholeOptimizer
+	public boolean isPeephole() {
+		return opts.length > 5 && opts[5];
+	}
+
+	// One of the dataflow optimizations (all, cse, cp, const, dc) is on, the peephole pass alone
+	// doesn't need them to run
+	public boolean isOptimizing() {
+		for (int i = 0; i < opts.length && i < 5; i++) {
+			if (opts[i]) return true;
+		}
+		return false;
+	}
+
+	public boolean isDebug() {
+		return debug;
+	}
+
+	public String getInfile() {
+		return infile;
+	}
+
+	public String getOutfile() {
+		return outfile;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
+	public PrintStream getErrorStream() {
+		if (errorStream == null) return System.out;
+		return errorStream;
+	}
+
+	public void setErrorStream(PrintStream errorStream) {
+		this.errorStream = errorStream;
+	}
+
+	public int getMethodThreads() {
+		return methodThreads;
+	}
+
+	public void setMethodThreads(int methodThreads) {
+		this.methodThreads = methodThreads;
+	}
+
+	public boolean isFastScanner() {
+		return fastScanner;
+	}
+
+	public void setFastScanner(boolean fastScanner) {
+		this.fastScanner = fastScanner;
+	}
+
+	public String getRegisterAllocator() {
+		return registerAllocator;
+	}
+
+	public void setRegisterAllocator(String registerAllocator) {
+		this.registerAllocator = registerAllocator;
+	}
+
+	public NameTable getNameTable() {
+		return nameTable;
+	}
+
+	public CompileProfiler getProfiler() {
+		return profiler;
+	}
+
+	public String getExceptionHandlerLabel() {
+		return exceptionHandlerLabel;
+	}
+
+	public void setExceptionHandlerLabel(String exceptionHandlerLabel) {
+		this.exceptionHandlerLabel = exceptionHandlerLabel;
+	}
+
+	// Nesting depth of the block being flattened
+	public int getDepth() {
+		return depth;
+	}
+
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	// Highest id given to a bound check
+	public int getMaxBoundChecks() {
+		return maxBoundChecks;
+	}
+
+	public void setMaxBoundChecks(int maxBoundChecks) {
+		this.maxBoundChecks = maxBoundChecks;
+	}
+
+	public int nextBoundCheckId() {
+		return ++maxBoundChecks;
+	}
+
+	// The counters below can be used by the parallel dataflow generators of a compilation
+
+	public synchronized int getQuadrupletId() {
+		return quadrupletId;
+	}
+
+	public synchronized void setQuadrupletId(int quadrupletId) {
+		this.quadrupletId = quadrupletId;
+	}
+
+	public synchronized int nextQuadrupletId() {
+		return quadrupletId++;
+	}
+
+	public synchronized int nextDynamicVarId() {
+		return dynamicVarId++;
+	}
+
+	public synchronized void resetDynamicVarId() {
+		this.dynamicVarId = 0;
+	}
+
+	public synchronized int getVariableId() {
+		return variableId;
+	}
+
+	public synchronized void setVariableId(int variableId) {
+		this.variableId = variableId;
+	}
+
+	public synchronized int nextVariableId() {
+		return variableId++;
+	}
+
+	public synchronized int getAvailableExpressionId() {
+		return availableExpressionId;
+	}
+
+	public synchronized void setAvailableExpressionId(int availableExpressionId) {
+		this.availableExpressionId = availableExpressionId;
+	}
+
+	public synchronized int nextAvailableExpressionId() {
+		return availableExpressionId++;
+	}
+
+	public synchronized int nextInductionVariableId() {
+		return inductionVariableId++;
+	}
+
+	public synchronized int nextSymbolicValueId() {
+		return symbolicValueId++;
+	}
+
+	public synchronized void resetSymbolicValueId() {
+		this.symbolicValueId = 0;
+	}
+
+	// For the labels of blocks made when splitting edges
+	public synchronized int nextEdgeId() {
+		return edgeId++;
+	}
+
+	public synchronized int nextWebId() {
+		return webId++;
+	}
+
+	public synchronized void resetWebId() {
+		this.webId = 0;
+	}
+
+	// Quadruplets hash on their id instead of their contents (webs)
+	public boolean isRigidQuadrupletHash() {
+		return compilation.rigidQuadrupletHash;
+	}
+
+	public void setRigidQuadrupletHash(boolean rigidQuadrupletHash) {
+		compilation.rigidQuadrupletHash = rigidQuadrupletHash;
+	}
+
+	public int getBaseBlockId() {
+		return baseBlockId;
+	}
+
+	public int nextBaseBlockId() {
+		return baseBlockId++;
+	}
+
+	public int getBaseMethodId() {
+		return baseMethodId;
+	}
+
+	public int nextBaseMethodId() {
+		return baseMethodId++;
+	}
+
+	public int nextBaseGlobalId() {
+		return baseGlobalId++;
+	}
+}
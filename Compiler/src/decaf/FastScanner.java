@@ -0,0 +1,471 @@
+package decaf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import antlr.CommonToken;
+import antlr.MismatchedCharException;
+import antlr.NoViableAltForCharException;
+import antlr.RecognitionException;
+import antlr.Token;
+import antlr.TokenStream;
+import antlr.TokenStreamException;
+import antlr.TokenStreamRecognitionException;
+
+// Hand-written scanner for the tokens of Lexer.g (-fastscan)
+// DecafScanner reads the source one byte at a time through the stream and copies every char
+// into its text buffer, this one maps the file into memory (or reads a stream which isn't a
+// file at once) and scans the bytes where they are. Identifiers are interned, so a name used
+// many times is one String, and keywords are found in the same table
+// The tokens, their positions and the errors are the same as the ones of DecafScanner, so
+// DecafParser and the scan target can read from either
+public class FastScanner implements TokenStream, DecafScannerTokenTypes {
+	// What LA returns past the end, same as ANTLR
+	private static final int EOF_CHAR = 0xFFFF;
+	private static final int TAB_SIZE = 8;
+
+	private static final String[] KEYWORDS = { "class", "if", "else", "for", "return", "break",
+			"continue", "callout", "true", "false", "int", "boolean", "void" };
+	private static final int[] KEYWORD_TYPES = { TK_class, TK_if, TK_else, TK_for, TK_return,
+			TK_break, TK_continue, TK_callout, TK_true, TK_false, TK_int, TK_boolean, TK_void };
+
+	private ByteBuffer source;
+	private int pos;
+	private int end;
+	private int line;
+	private int column;
+
+	// Interned identifiers and keywords with their token types, open addressing
+	private String[] names;
+	private int[] nameTypes;
+	private int nameCount;
+
+	public FastScanner(InputStream in) throws IOException {
+		if (in instanceof FileInputStream) {
+			FileChannel channel = ((FileInputStream) in).getChannel();
+			long start = channel.position();
+			this.source = channel.map(FileChannel.MapMode.READ_ONLY, start, channel.size() - start);
+		} else {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1 << 13];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				bytes.write(buffer, 0, n);
+			}
+			this.source = ByteBuffer.wrap(bytes.toByteArray());
+		}
+		this.pos = 0;
+		this.end = source.limit();
+		this.line = 1;
+		this.column = 1;
+
+		this.names = new String[256];
+		this.nameTypes = new int[256];
+		for (int i = 0; i < KEYWORDS.length; i++) {
+			intern(KEYWORDS[i], KEYWORD_TYPES[i]);
+		}
+	}
+
+	public Token nextToken() throws TokenStreamException {
+		for (;;) {
+			int c = LA(1);
+			int startLine = line;
+			int startColumn = column;
+			int start = pos;
+			int type;
+			String text;
+
+			switch (c) {
+				case ' ':
+				case '\t':
+					consume();
+					continue;
+				case '\n':
+					consume();
+					newline();
+					continue;
+				case '{':
+					consume();
+					type = LCURLY;
+					text = "{";
+					break;
+				case '}':
+					consume();
+					type = RCURLY;
+					text = "}";
+					break;
+				case '(':
+					consume();
+					type = LPAREN;
+					text = "(";
+					break;
+				case ')':
+					consume();
+					type = RPAREN;
+					text = ")";
+					break;
+				case '[':
+					consume();
+					type = LSQUARE;
+					text = "[";
+					break;
+				case ']':
+					consume();
+					type = RSQUARE;
+					text = "]";
+					break;
+				case ',':
+					consume();
+					type = COMMA;
+					text = ",";
+					break;
+				case ';':
+					consume();
+					type = SEMI;
+					text = ";";
+					break;
+				case '%':
+					consume();
+					type = MOD;
+					text = "%";
+					break;
+				case '*':
+					consume();
+					type = MULDIV;
+					text = "*";
+					break;
+				case '/':
+					if (LA(2) == '/') {
+						skipComment();
+						continue;
+					}
+					consume();
+					type = MULDIV;
+					text = "/";
+					break;
+				case '&':
+					match('&');
+					match('&');
+					type = AND;
+					text = "&&";
+					break;
+				case '|':
+					match('|');
+					match('|');
+					type = OR;
+					text = "||";
+					break;
+				case '+':
+					consume();
+					if (LA(1) == '=') {
+						consume();
+						type = ASSIGNPLUSEQ;
+						text = "+=";
+					} else {
+						type = PLUS;
+						text = "+";
+					}
+					break;
+				case '-':
+					consume();
+					if (LA(1) == '=') {
+						consume();
+						type = ASSIGNMINUSEQ;
+						text = "-=";
+					} else {
+						type = MINUS;
+						text = "-";
+					}
+					break;
+				case '=':
+					consume();
+					if (LA(1) == '=') {
+						consume();
+						type = CEQ;
+						text = "==";
+					} else {
+						type = ASSIGNEQ;
+						text = "=";
+					}
+					break;
+				case '<':
+					consume();
+					if (LA(1) == '=') {
+						consume();
+						type = LEQ;
+						text = "<=";
+					} else {
+						type = LESS;
+						text = "<";
+					}
+					break;
+				case '>':
+					consume();
+					if (LA(1) == '=') {
+						consume();
+						type = GEQ;
+						text = ">=";
+					} else {
+						type = MORE;
+						text = ">";
+					}
+					break;
+				case '!':
+					consume();
+					if (LA(1) == '=') {
+						consume();
+						type = NEQ;
+						text = "!=";
+					} else {
+						type = NOT;
+						text = "!";
+					}
+					break;
+				case '"':
+					matchString();
+					type = STRING;
+					text = getText(start);
+					break;
+				case '\'':
+					matchChar();
+					type = CHAR;
+					text = getText(start);
+					break;
+				default:
+					if (isAlpha(c)) {
+						// Hashed like String.hashCode while scanning, to find it in the table
+						int hash = 0;
+						do {
+							hash = 31 * hash + c;
+							consume();
+							c = LA(1);
+						} while (isAlpha(c) || isDigit(c));
+
+						int index = find(start, hash);
+						if (names[index] == null) {
+							intern(getText(start), ID);
+							index = find(start, hash);
+						}
+						type = nameTypes[index];
+						text = names[index];
+					} else if (isDigit(c)) {
+						matchIntLiteral();
+						type = INTLIT;
+						text = getText(start);
+					} else if (c == EOF_CHAR) {
+						type = Token.EOF_TYPE;
+						text = null;
+					} else {
+						throw unexpected(c);
+					}
+			}
+
+			Token token = new CommonToken(type, text);
+			token.setLine(startLine);
+			token.setColumn(startColumn);
+			return token;
+		}
+	}
+
+	// Skips the char the scanner stopped at, what DecafScanner.consume does after an error
+	// The line isn't counted even if the char is a newline, like there
+	public void consume() {
+		if (pos < end && source.get(pos) == '\t') {
+			column = ((column - 1) / TAB_SIZE + 1) * TAB_SIZE + 1;
+		} else {
+			column++;
+		}
+		if (pos < end) {
+			pos++;
+		}
+	}
+
+	private void newline() {
+		line++;
+		column = 1;
+	}
+
+	private int LA(int i) {
+		int at = pos + i - 1;
+		if (at >= end) return EOF_CHAR;
+		return source.get(at) & 0xff;
+	}
+
+	private void match(char c) throws TokenStreamRecognitionException {
+		if (LA(1) != c) {
+			throw mismatch(LA(1), c);
+		}
+		consume();
+	}
+
+	// "//" up to the end of the line, the newline is required
+	private void skipComment() throws TokenStreamRecognitionException {
+		consume();
+		consume();
+		int c = LA(1);
+		while (c != '\n' && c < 0x80) {
+			consume();
+			c = LA(1);
+		}
+		match('\n');
+		newline();
+	}
+
+	private void matchString() throws TokenStreamRecognitionException {
+		consume();
+		for (;;) {
+			int c = LA(1);
+			if (c == '\\') {
+				matchEscape();
+			} else if (isValidChar(c)) {
+				consume();
+			} else {
+				break;
+			}
+		}
+		match('"');
+	}
+
+	private void matchChar() throws TokenStreamRecognitionException {
+		consume();
+		int c = LA(1);
+		if (c == '\\') {
+			matchEscape();
+		} else if (isValidChar(c)) {
+			consume();
+		} else {
+			throw unexpected(c);
+		}
+		match('\'');
+	}
+
+	private void matchEscape() throws TokenStreamRecognitionException {
+		consume();
+		switch (LA(1)) {
+			case 'n':
+			case '"':
+			case 't':
+			case 'r':
+			case '\'':
+			case '\\':
+				consume();
+				break;
+			default:
+				throw unexpected(LA(1));
+		}
+	}
+
+	private void matchIntLiteral() throws TokenStreamRecognitionException {
+		if (LA(1) == '0' && LA(2) == 'x') {
+			consume();
+			consume();
+			if (!isHexDigit(LA(1))) {
+				throw unexpected(LA(1));
+			}
+			do {
+				consume();
+			} while (isHexDigit(LA(1)));
+		} else {
+			do {
+				consume();
+			} while (isDigit(LA(1)));
+		}
+	}
+
+	private static boolean isAlpha(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+	}
+
+	private static boolean isDigit(int c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isHexDigit(int c) {
+		return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+	}
+
+	// Printable ASCII but the quotes and backslash
+	private static boolean isValidChar(int c) {
+		return c >= ' ' && c <= '~' && c != '"' && c != '\'' && c != '\\';
+	}
+
+	private String getText(int start) {
+		char[] chars = new char[pos - start];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char) (source.get(start + i) & 0xff);
+		}
+		return new String(chars);
+	}
+
+	// Slot of the name made of the bytes from start to pos, or the empty slot it would go in
+	private int find(int start, int hash) {
+		int mask = names.length - 1;
+		int length = pos - start;
+		int index = (hash ^ (hash >>> 16)) & mask;
+		for (;;) {
+			String name = names[index];
+			if (name == null || (name.hashCode() == hash && isName(name, start, length))) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	private boolean isName(String name, int start, int length) {
+		if (name.length() != length) return false;
+		for (int i = 0; i < length; i++) {
+			if (name.charAt(i) != (source.get(start + i) & 0xff)) return false;
+		}
+		return true;
+	}
+
+	private void intern(String name, int type) {
+		if (2 * (nameCount + 1) > names.length) {
+			String[] oldNames = names;
+			int[] oldTypes = nameTypes;
+			names = new String[2 * oldNames.length];
+			nameTypes = new int[2 * oldNames.length];
+			for (int i = 0; i < oldNames.length; i++) {
+				if (oldNames[i] != null) {
+					put(oldNames[i], oldTypes[i]);
+				}
+			}
+		}
+		put(name, type);
+		nameCount++;
+	}
+
+	private void put(String name, int type) {
+		int mask = names.length - 1;
+		int hash = name.hashCode();
+		int index = (hash ^ (hash >>> 16)) & mask;
+		while (names[index] != null) {
+			index = (index + 1) & mask;
+		}
+		names[index] = name;
+		nameTypes[index] = type;
+	}
+
+	// The exceptions DecafScanner throws, so the messages are the same
+	private TokenStreamRecognitionException unexpected(int c) {
+		return error(new NoViableAltForCharException((char) c, null, line, column));
+	}
+
+	private TokenStreamRecognitionException mismatch(int c, char expecting) {
+		MismatchedCharException e = new MismatchedCharException();
+		e.mismatchType = MismatchedCharException.CHAR;
+		e.foundChar = c;
+		e.expecting = expecting;
+		e.line = line;
+		e.column = column;
+		return error(e);
+	}
+
+	private TokenStreamRecognitionException error(RecognitionException e) {
+		return new TokenStreamRecognitionException(e);
+	}
+}
@@ -1,8 +1,15 @@
 package decaf;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
+import decaf.batch.BatchCompiler;
+import decaf.batch.BatchReport;
+import decaf.batch.CompileResult;
+import decaf.batch.CompileServer;
+import decaf.codegen.flatir.AsmEmitter;
 import decaf.codegen.flatir.LIRStatement;
 import decaf.codegen.flattener.CodeGenerator;
 import decaf.codegen.flattener.LocationResolver;
@@ -22,30 +29,54 @@ import decaf.memory.NaiveLoadAdder;
 import decaf.optimize.ArrayAccessOptimizer;
 import decaf.optimize.PostDataFlowOptimizer;
 import decaf.optimize.StaticJumpEvaluator;
+import decaf.pipeline.ParallelPipeline;
+import decaf.profile.CompileProfiler;
 import decaf.ralloc.ASMGenerator;
+import decaf.ralloc.LinearScanAllocator;
 import decaf.ralloc.LivenessAnalysis;
 import decaf.ralloc.LocalLoadStoreDC;
+import decaf.ralloc.RegisterAllocator;
 import decaf.ralloc.Web;
 import decaf.ralloc.WebColorer;
 import decaf.ralloc.WebGenerator;
-import decaf.test.Error;
 import antlr.Token;
+import antlr.TokenStream;
 import java6035.tools.CLI.*;
 
 ;
 
-class Main {
+public class Main {
 	public static void main(String[] args) {
 		try {
-			String[] optnames = {"all", "cse", "cp", "const", "dc" };
+			String[] optnames = {"all", "cse", "cp", "const", "dc", "peephole" };
 			CLI.parse(args, optnames);
+			CompilationContext context = new CompilationContext(CLI.opts, CLI.debug, CLI.infile, CLI.outfile);
+			if (CLI.parallel) {
+				context.setMethodThreads(CLI.threads);
+			}
+			context.setFastScanner(CLI.fastscan);
+			if (CLI.ralloc != null && !CLI.ralloc.equals("color") && !CLI.ralloc.equals("linear")) {
+				throw new IllegalArgumentException("Unknown register allocator " + CLI.ralloc);
+			}
+			// The registers are allocated for the whole program at once, not per method
+			if (CLI.parallel && CLI.ralloc != null) {
+				throw new IllegalArgumentException("-parallel can't be used with -ralloc");
+			}
+			context.setRegisterAllocator(CLI.ralloc);
+			CompilationContext.enter(context);
+			
+			if (CLI.batch || CLI.serve) {
+				if (!compileBatch()) {
+					System.exit(-1);
+				}
+				return;
+			}
 
 			InputStream inputStream = args.length == 0 ? System.in
 					: new java.io.FileInputStream(CLI.infile);
 
 			if (CLI.target == CLI.SCAN) {
-				DecafScanner lexer = new DecafScanner(new DataInputStream(
-						inputStream));
+				TokenStream lexer = newScanner(context, inputStream);
 				Token token;
 				boolean done = false;
 				while (!done) {
@@ -79,12 +110,15 @@ class Main {
 					} catch (Exception e) {
 						// print the error:
 						System.out.println(CLI.infile + " " + e);
-						lexer.consume();
+						if (lexer instanceof FastScanner) {
+							((FastScanner) lexer).consume();
+						} else {
+							((DecafScanner) lexer).consume();
+						}
 					}
 				}
 			} else if (CLI.target == CLI.PARSE) {
-				DecafScanner lexer = new DecafScanner(new DataInputStream(
-						inputStream));
+				TokenStream lexer = newScanner(context, inputStream);
 				DecafParser parser = new DecafParser(lexer);
 
 				// Check if parse was successful
@@ -92,8 +126,7 @@ class Main {
 					throw new Exception("Class name must be 'Program'");
 				}
 			} else if (CLI.target == CLI.INTER) {
-				DecafScanner lexer = new DecafScanner(new DataInputStream(
-						inputStream));
+				TokenStream lexer = newScanner(context, inputStream);
 				DecafParser parser = new DecafParser(lexer);
 
 				// Parse and generate AST
@@ -105,132 +138,257 @@ class Main {
 				}
 
 				// Set file name
-				Error.fileName = getFileName(CLI.infile); 
+				context.setFileName(getFileName(CLI.infile));
 
 				// Check for semantic errors
-				if (!SemanticChecker.performSemanticChecks(cd, System.out, false)) {
+				if (!SemanticChecker.performSemanticChecks(context, cd, System.out, false)) {
 					System.exit(-1);
 				}
 			}
 			else if (CLI.target == CLI.ASSEMBLY || CLI.target == CLI.DEFAULT) {
-				DecafScanner lexer = new DecafScanner(new DataInputStream(
-						inputStream));
-				DecafParser parser = new DecafParser(lexer);
+				if (CLI.time) {
+					context.getProfiler().enable();
+				}
+				
+				if (!compile(context, inputStream)) {
+					System.exit(-1);
+				}
+				
+				if (CLI.time) {
+					if (CLI.timefile != null) {
+						context.getProfiler().writeJSON(CLI.timefile);
+					} else {
+						context.getProfiler().printReport(System.err);
+					}
+				}
+			}
+		} catch (Exception e) {
+			// print the error:
+			System.out.println(CLI.infile + " " + e);
+			e.printStackTrace();
+			System.exit(-1);
+		}
+	}
 
-				// Parse and generate AST
-				ClassDecl cd = parser.program();
+	// Compiles a program to assembly, false if it has semantic errors
+	// The thread works for the compilation of context until it returns, so compilations
+	// with different contexts can run at the same time on different threads
+	public static boolean compile(CompilationContext context, InputStream inputStream) throws Exception {
+		CompilationContext previous = CompilationContext.enter(context);
+		try {
+			CompileProfiler profiler = context.getProfiler();
+			
+			// The parser pulls tokens from the scanner, so both are timed together
+			profiler.begin("scan+parse");
+			TokenStream lexer = newScanner(context, inputStream);
+			DecafParser parser = new DecafParser(lexer);
 
-				// Check if parse was successful
-				if (cd == null) {
-					throw new Exception("Class name must be 'Program'");
-				}
+			// Parse and generate AST
+			ClassDecl cd = parser.program();
+			profiler.end();
 
-				// Set file name
-				Error.fileName = getFileName(CLI.infile);
+			// Check if parse was successful
+			if (cd == null) {
+				throw new Exception("Class name must be 'Program'");
+			}
 
-				// Check for semantic errors
-				if (!SemanticChecker.performSemanticChecks(cd, System.out, true)) { // Figure out opt flag
-					System.exit(-1);
+			// Set file name
+			context.setFileName(getFileName(context.getInfile()));
+
+			// Check for semantic errors
+			profiler.begin("semantic check");
+			try {
+				if (!SemanticChecker.performSemanticChecks(context, cd, context.getErrorStream(), true)) { // Figure out opt flag
+					return false;
 				}
+			} finally {
+				profiler.end();
+			}
 
-				// Generate low-level ir
-				ProgramFlattener pf = new ProgramFlattener(cd);
-				pf.flatten();
-				
-				if (CLI.debug) {
-					System.out.println("Low-level IR:");
-					pf.printLIR(System.out);
-					System.out.println();
+			// Generate low-level ir
+			profiler.begin("flatten");
+			ProgramFlattener pf = new ProgramFlattener(context, cd);
+			profiler.setProgram(pf, null);
+			pf.flatten();
+			profiler.end();
+			
+			if (context.isDebug()) {
+				System.out.println("Low-level IR:");
+				pf.printLIR(System.out);
+				System.out.println();
+			}
+			
+			// Every method from its CFG to its code on its own, at the same time (only with the
+			// stack code, the registers are given to the whole program at once)
+			if (context.getMethodThreads() > 0) {
+				if (context.getRegisterAllocator() != null) {
+					throw new IllegalArgumentException("Methods can't be compiled in parallel with a register allocator");
 				}
-				
-				// Generate CFGs for methods
-				CFGBuilder cb = new CFGBuilder(pf);
-				cb.generateCFGs();
 
-				
-				HashMap<String, MethodIR> mMap = MethodIR.generateMethodIRs(pf, cb);
-				
-				if (CLI.opts[0] || CLI.opts[1] || CLI.opts[2] || CLI.opts[3] || CLI.opts[4]) {
-					if (CLI.debug) {
-						cb.printCFG(System.out);
-					}
-					
+				profiler.begin("parallel methods");
+				AsmEmitter out = new AsmEmitter(context.getOutfile());
+				ParallelPipeline pp = new ParallelPipeline(context, pf, cd, context.getMethodThreads());
+				pp.compile(out);
+				out.close();
+				profiler.end();
+				return true;
+			}
+			
+			// Generate CFGs for methods
+			profiler.begin("cfg");
+			CFGBuilder cb = new CFGBuilder(pf);
+			cb.generateCFGs();
+			profiler.setProgram(pf, cb);
+
+			
+			HashMap<String, MethodIR> mMap = MethodIR.generateMethodIRs(pf, cb);
+			profiler.end();
+			
+			if (context.isOptimizing()) {
+				if (context.isDebug()) {
 					System.out.println("BEFORE CFG DATAFLOW OPTIMIZATIONS");
 					pf.printLIR(System.out);
 					System.out.println();
 					cb.printCFG(System.out);
 					System.out.println();
-					
-					BlockOptimizer bo = new BlockOptimizer(mMap);
-					GlobalOptimizer go = new GlobalOptimizer(mMap);
-					CFGDataflowOptimizer cfgdo = new CFGDataflowOptimizer(mMap, pf, bo, go, CLI.opts);
-					cfgdo.optimizeCFGDataflow();
-					
+				}
+				
+				BlockOptimizer bo = new BlockOptimizer(mMap);
+				GlobalOptimizer go = new GlobalOptimizer(mMap);
+				CFGDataflowOptimizer cfgdo = new CFGDataflowOptimizer(mMap, pf, bo, go, context.getOpts());
+				profiler.begin("dataflow");
+				cfgdo.optimizeCFGDataflow();
+				profiler.end();
+				
+				if (context.isDebug()) {
 					System.out.println("AFTER CFG DATAFLOW OPTIMIZATIONS");
 					pf.printLIR(System.out);
-					
-					PostDataFlowOptimizer pdfo = new PostDataFlowOptimizer(pf, cb);
-					pdfo.optimize();
-					
+				}
+				
+				profiler.begin("post dataflow");
+				PostDataFlowOptimizer pdfo = new PostDataFlowOptimizer(pf, cb);
+				pdfo.optimize();
+				profiler.end();
+				
+				if (context.isDebug()) {
 					System.out.println("AFTER POST DATAFLOW OPTIMIZATIONS");
 					pf.printLIR(System.out);
 					System.out.println();
 					cb.printCFG(System.out);
-				} 
-				
+				}
+			} 
+			
+			// Keep the variables in registers (-ralloc)
+			RegisterAllocator ra = null;
+			if (context.getRegisterAllocator() != null) {
+				profiler.begin("register allocation");
 				// Must gen after static jump eval
-//				cb.setMergeBoundChecks(true);
-//				pf.printLIR(System.out);
-//				
-//				
-//				cb.generateCFGs();
-//				mMap = MethodIR.generateMethodIRs(pf, cb);
-//				
-//				BlockConsPropagationOptimizer bco = new BlockConsPropagationOptimizer(mMap);
-//				bco.performConsPropagation();
-////				
-//				System.out.println("INITIALIZING WEB COLORER");
-//				WebColorer wc = new WebColorer(mMap);
-//				wc.colorWebs();
-//				
-//				pf.printLIR(System.out);
-//				
-//				for (Web w: wc.getWebGen().getWebMap().get("foo")) {
-//					System.out.println(w.getIdentifier() + " ==> " + w.getRegister());
-//					System.out.println(w);
-//				}
-//				
-				// Resolve names to locations (and sets stack size)
-				LocationResolver lr = new LocationResolver(pf, cd);
-				lr.resolveLocations();
-				
-				pf.printLIR(System.out);
+				cb.setMergeBoundChecks(true);
+				cb.generateCFGs();
+				mMap = MethodIR.generateMethodIRs(pf, cb);
+				profiler.setProgram(pf, cb);
 				
-//				lr.printLocations(System.out);
+				BlockConsPropagationOptimizer bco = new BlockConsPropagationOptimizer(mMap);
+				bco.performConsPropagation();
 				
-				if (CLI.debug) {
-					System.out.println("Name -> Locations Mapping:");
-					lr.printLocations(System.out);
+				if (context.getRegisterAllocator().equals("linear")) {
+					ra = new LinearScanAllocator(mMap);
+				} else {
+					ra = new WebColorer(mMap);
 				}
-				
-//				 Generate code to file
-				CodeGenerator cg = new CodeGenerator(pf, cd, CLI.outfile);
+				ra.allocate();
+				profiler.end();
+			}
+			
+			// Resolve names to locations (and sets stack size)
+			profiler.begin("resolve locations");
+			LocationResolver lr = new LocationResolver(pf, cd);
+			lr.resolveLocations();
+			profiler.end();
+			
+//			lr.printLocations(System.out);
+			
+			if (context.isDebug()) {
+				pf.printLIR(System.out);
+				System.out.println("Name -> Locations Mapping:");
+				lr.printLocations(System.out);
+			}
+			
+//			 Generate code to file
+			profiler.begin("codegen");
+			if (ra != null) {
+				ASMGenerator asm = new ASMGenerator(pf, cd, ra, context.getOutfile());
+				asm.generateCode();
+			} else {
+				CodeGenerator cg = new CodeGenerator(pf, cd, context.getOutfile());
 				cg.generateCode();
-//				
-//				ConstReachingDef crd = new ConstReachingDef(mMap);
-//				crd.analyze();
-				
-				//System.out.println("RALLOC ASM: \n");
-//				
-//				ASMGenerator asm = new ASMGenerator(pf, wc, CLI.outfile);
-//				asm.generateAssembly();
 			}
-		} catch (Exception e) {
-			// print the error:
-			System.out.println(CLI.infile + " " + e);
-			e.printStackTrace();
-			System.exit(-1);
+			profiler.end();
+			
+//			
+//			ConstReachingDef crd = new ConstReachingDef(mMap);
+//			crd.analyze();
+			
+			return true;
+		} finally {
+			CompilationContext.exit(previous);
+		}
+	}
+
+	// Compiles all the files on the command line (-batch) or the ones named in requests (-serve)
+	// in this JVM, false if a file of the batch didn't compile
+	private static boolean compileBatch() throws Exception {
+		// With -debug the passes print the IR to stdout, which only gets the report here
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+			
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+		
+		BatchCompiler compiler = new BatchCompiler(CLI.opts, CLI.threads);
+		compiler.setFastScanner(CLI.fastscan);
+		compiler.setRegisterAllocator(CLI.ralloc);
+		boolean success = true;
+		if (CLI.serve) {
+			CompileServer server = new CompileServer(compiler);
+			if (CLI.port < 0) {
+				server.serve(System.in, out);
+			} else {
+				server.listen(CLI.port);
+			}
+		} else {
+			List<String> outfiles = new ArrayList<String>();
+			for (String infile: CLI.infiles) {
+				outfiles.add(CLI.getOutfile(infile));
+			}
+			
+			if (CLI.warmup > 0) {
+				compiler.warmUp(CLI.infiles, CLI.warmup);
+			}
+			
+			BatchReport report = new BatchReport();
+			for (CompileResult result: compiler.compileAll(CLI.infiles, outfiles)) {
+				report.add(result);
+			}
+			report.print(out);
+			success = (report.getFailed() == 0);
+		}
+		compiler.shutdown();
+		
+		System.setOut(out);
+		return success;
+	}
+
+	// The scanner the parser reads the tokens of the program from
+	private static TokenStream newScanner(CompilationContext context, InputStream inputStream) 
+			throws IOException {
+		if (context.isFastScanner()) {
+			return new FastScanner(inputStream);
 		}
+		return new DecafScanner(new DataInputStream(inputStream));
 	}
 
 	private static String getFileName(String name) {
@@ -0,0 +1,138 @@
+package decaf.batch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import decaf.CompilationContext;
+import decaf.Main;
+
+// Compiles many programs in one JVM, a few at a time on a pool of threads. The JVM starts once
+// and the JIT compiles the parser and the passes during the first programs, so the following
+// ones don't pay for startup and interpreted code like they do with one process per program
+// Every program is compiled with a CompilationContext of its own
+public class BatchCompiler {
+	private boolean[] opts;
+	private ExecutorService pool;
+	private boolean fastScanner;
+	private String registerAllocator;
+	
+	public BatchCompiler(boolean[] opts, int threads) {
+		this.opts = opts;
+		this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count = 0;
+			
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "decaf-batch-" + count++);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	// The programs are read by FastScanner
+	public void setFastScanner(boolean fastScanner) {
+		this.fastScanner = fastScanner;
+	}
+	
+	// The variables are kept in registers given by this allocator (-ralloc)
+	public void setRegisterAllocator(String registerAllocator) {
+		this.registerAllocator = registerAllocator;
+	}
+	
+	public Future<CompileResult> submit(final String infile, final String outfile) {
+		return pool.submit(new Callable<CompileResult>() {
+			public CompileResult call() {
+				return compile(infile, outfile);
+			}
+		});
+	}
+	
+	// Compiles every file to its outfile and waits for all of them, the results are in the
+	// order of the files
+	public List<CompileResult> compileAll(List<String> infiles, List<String> outfiles) 
+			throws InterruptedException {
+		List<Future<CompileResult>> futures = new ArrayList<Future<CompileResult>>();
+		for (int i = 0; i < infiles.size(); i++) {
+			futures.add(submit(infiles.get(i), outfiles.get(i)));
+		}
+		
+		List<CompileResult> results = new ArrayList<CompileResult>();
+		for (int i = 0; i < futures.size(); i++) {
+			results.add(getResult(futures.get(i), infiles.get(i), outfiles.get(i)));
+		}
+		return results;
+	}
+	
+	// Compiles the files count times to scratch files, so the JIT has compiled the compiler
+	// before the files are timed
+	public void warmUp(List<String> infiles, int count) throws InterruptedException, IOException {
+		List<String> outfiles = new ArrayList<String>();
+		for (int i = 0; i < infiles.size(); i++) {
+			outfiles.add(File.createTempFile("decaf-warmup", ".s").getPath());
+		}
+		
+		for (int i = 0; i < count; i++) {
+			compileAll(infiles, outfiles);
+		}
+		
+		for (String outfile: outfiles) {
+			new File(outfile).delete();
+		}
+	}
+	
+	// Result of a submitted compilation, an error thrown by the compiler (stack overflow)
+	// fails that file only
+	public static CompileResult getResult(Future<CompileResult> future, String infile, String outfile) 
+			throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			long now = System.nanoTime();
+			return new CompileResult(infile, outfile, false, now, now, e.getCause().toString());
+		}
+	}
+	
+	// Compiles on the calling thread
+	public CompileResult compile(String infile, String outfile) {
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		CompilationContext context = new CompilationContext(opts, false, infile, outfile);
+		context.setErrorStream(new PrintStream(errors));
+		context.setFastScanner(fastScanner);
+		context.setRegisterAllocator(registerAllocator);
+		
+		long start = System.nanoTime();
+		boolean success = false;
+		String message = null;
+		try {
+			InputStream in = new FileInputStream(infile);
+			try {
+				success = Main.compile(context, in);
+			} finally {
+				in.close();
+			}
+			if (!success) {
+				message = errors.toString().trim();
+			}
+		} catch (Exception e) {
+			message = e.toString();
+		}
+		
+		return new CompileResult(infile, outfile, success, start, System.nanoTime(), message);
+	}
+	
+	public void shutdown() {
+		pool.shutdown();
+	}
+}
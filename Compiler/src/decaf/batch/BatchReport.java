@@ -0,0 +1,93 @@
+package decaf.batch;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Latency of every file compiled in a batch and the throughput of the batch
+// Throughput is measured over the wall time from the start of the first compilation to the end
+// of the last one, so it counts the files compiled at the same time
+public class BatchReport {
+	private List<CompileResult> results = new ArrayList<CompileResult>();
+	
+	public synchronized void add(CompileResult result) {
+		results.add(result);
+	}
+	
+	public synchronized int getFiles() {
+		return results.size();
+	}
+	
+	public synchronized int getFailed() {
+		int failed = 0;
+		for (CompileResult result: results) {
+			if (!result.isSuccess()) failed++;
+		}
+		return failed;
+	}
+	
+	public synchronized long getWallNanos() {
+		if (results.isEmpty()) return 0;
+		
+		long start = Long.MAX_VALUE, end = Long.MIN_VALUE;
+		for (CompileResult result: results) {
+			start = Math.min(start, result.getStartNanos());
+			end = Math.max(end, result.getEndNanos());
+		}
+		return end - start;
+	}
+	
+	public synchronized double getFilesPerSecond() {
+		long wall = getWallNanos();
+		if (wall == 0) return 0;
+		return results.size() / (wall / 1000000000.0);
+	}
+	
+	// Latency in ms of the given percentile (0-100) of the files
+	public synchronized double getLatencyPercentile(double percentile) {
+		if (results.isEmpty()) return 0;
+		
+		List<Long> latencies = new ArrayList<Long>();
+		for (CompileResult result: results) {
+			latencies.add(result.getLatencyNanos());
+		}
+		Collections.sort(latencies);
+		
+		int index = (int) Math.ceil(percentile / 100 * latencies.size()) - 1;
+		index = Math.max(0, Math.min(latencies.size() - 1, index));
+		return latencies.get(index) / 1000000.0;
+	}
+	
+	public synchronized double getMeanLatency() {
+		if (results.isEmpty()) return 0;
+		
+		long total = 0;
+		for (CompileResult result: results) {
+			total += result.getLatencyNanos();
+		}
+		return total / 1000000.0 / results.size();
+	}
+	
+	// One line with the totals
+	public synchronized String getSummary() {
+		return String.format("files=%d failed=%d wall_ms=%.2f files_per_s=%.2f mean_ms=%.2f " + 
+				"p50_ms=%.2f p95_ms=%.2f max_ms=%.2f", getFiles(), getFailed(), getWallNanos() / 1000000.0, 
+				getFilesPerSecond(), getMeanLatency(), getLatencyPercentile(50), 
+				getLatencyPercentile(95), getLatencyPercentile(100));
+	}
+	
+	// Prints one line per file and the totals
+	public synchronized void print(PrintStream out) {
+		out.println("BATCH COMPILE REPORT");
+		out.println(String.format("%-60s %6s %10s", "file", "status", "ms"));
+		for (CompileResult result: results) {
+			out.println(String.format("%-60s %6s %10.2f", result.getInfile(), 
+					result.isSuccess() ? "ok" : "error", result.getLatencyMillis()));
+			if (!result.isSuccess()) {
+				out.println("    " + result.getMessage().replace("\n", "\n    "));
+			}
+		}
+		out.println(getSummary());
+	}
+}
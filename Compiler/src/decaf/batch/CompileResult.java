@@ -0,0 +1,55 @@
+package decaf.batch;
+
+// Outcome of compiling one file in a batch
+public class CompileResult {
+	private String infile;
+	private String outfile;
+	private boolean success;
+	// System.nanoTime() when the compilation started and ended
+	private long startNanos;
+	private long endNanos;
+	// Semantic errors or the exception, null if it compiled
+	private String message;
+	
+	public CompileResult(String infile, String outfile, boolean success, long startNanos, 
+			long endNanos, String message) {
+		this.infile = infile;
+		this.outfile = outfile;
+		this.success = success;
+		this.startNanos = startNanos;
+		this.endNanos = endNanos;
+		this.message = message;
+	}
+	
+	public String getInfile() {
+		return infile;
+	}
+	
+	public String getOutfile() {
+		return outfile;
+	}
+	
+	public boolean isSuccess() {
+		return success;
+	}
+	
+	public long getStartNanos() {
+		return startNanos;
+	}
+	
+	public long getEndNanos() {
+		return endNanos;
+	}
+	
+	public long getLatencyNanos() {
+		return endNanos - startNanos;
+	}
+	
+	public double getLatencyMillis() {
+		return getLatencyNanos() / 1000000.0;
+	}
+	
+	public String getMessage() {
+		return message;
+	}
+}
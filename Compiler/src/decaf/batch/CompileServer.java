@@ -0,0 +1,133 @@
+package decaf.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import java6035.tools.CLI.CLI;
+
+// Keeps a JVM with a warm JIT around and compiles the files named in requests, one per line:
+//   <infile> [<outfile>]   compiles infile, to its name with the target extension if no outfile
+//   stats                  latency and throughput of every file compiled so far
+//   quit                   ends the session
+// Requests are answered in order with one line each, but the files of a session are compiled at
+// the same time on the pool of the BatchCompiler:
+//   ok <infile> <ms>
+//   error <infile> <ms> <message>
+//   stats <summary of the BatchReport>
+// Sessions are read from stdin (-serve) or from connections to a local port (-port), one session
+// per connection
+public class CompileServer {
+	private BatchCompiler compiler;
+	private BatchReport report;
+	
+	// Marks the end of the responses of a session
+	private static final Callable<String> END = new Callable<String>() {
+		public String call() {
+			return null;
+		}
+	};
+	
+	public CompileServer(BatchCompiler compiler) {
+		this.compiler = compiler;
+		this.report = new BatchReport();
+	}
+	
+	public BatchReport getReport() {
+		return report;
+	}
+	
+	// Accepts connections from this machine until the process is killed
+	public void listen(int port) throws IOException {
+		ServerSocket server = new ServerSocket(port, 50, InetAddress.getByName(null));
+		while (true) {
+			final Socket socket = server.accept();
+			Thread session = new Thread(new Runnable() {
+				public void run() {
+					try {
+						serve(socket.getInputStream(), new PrintStream(socket.getOutputStream(), true));
+					} catch (Exception e) {
+						// The client went away
+					} finally {
+						try {
+							socket.close();
+						} catch (IOException e) {
+						}
+					}
+				}
+			}, "decaf-session");
+			session.setDaemon(true);
+			session.start();
+		}
+	}
+	
+	// Answers the requests read from in until quit or the end of in
+	public void serve(InputStream in, final PrintStream out) throws IOException, InterruptedException {
+		final BlockingQueue<Callable<String>> responses = new LinkedBlockingQueue<Callable<String>>();
+		Thread responder = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while (true) {
+						Callable<String> response = responses.take();
+						if (response == END) break;
+						out.println(response.call());
+						out.flush();
+					}
+				} catch (Exception e) {
+					// The session is over
+				}
+			}
+		}, "decaf-responder");
+		responder.start();
+		
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.length() == 0) continue;
+			if (line.equals("quit")) break;
+			
+			if (line.equals("stats")) {
+				responses.put(new Callable<String>() {
+					public String call() {
+						return "stats " + report.getSummary();
+					}
+				});
+				continue;
+			}
+			
+			String[] words = line.split("\\s+");
+			final String infile = words[0];
+			final String outfile = (words.length > 1) ? words[1] : CLI.getOutfile(infile);
+			final Future<CompileResult> future = compiler.submit(infile, outfile);
+			responses.put(new Callable<String>() {
+				public String call() throws InterruptedException {
+					CompileResult result = BatchCompiler.getResult(future, infile, outfile);
+					report.add(result);
+					return getResponse(result);
+				}
+			});
+		}
+		
+		responses.put(END);
+		responder.join();
+	}
+	
+	private static String getResponse(CompileResult result) {
+		String latency = String.format("%.2f", result.getLatencyMillis());
+		if (result.isSuccess()) {
+			return "ok " + result.getInfile() + " " + latency;
+		}
+		return "error " + result.getInfile() + " " + latency + " " + 
+				result.getMessage().replaceAll("\\s*\n\\s*", " | ");
+	}
+}
@@ -3,6 +3,9 @@ package decaf.codegen.flatir;
 public class ArrayName extends Name {
 	private Name index;
 	private String id;
+	// Id of the index when the id of this was interned. The index can be changed in place, its
+	// own id changes with its key
+	private int indexNameId = -1;
 	
 	public ArrayName(String id, Name index) {
 		this.setIndex(index);
@@ -11,6 +14,7 @@ public class ArrayName extends Name {
 
 	public void setIndex(Name index) {
 		this.index = index;
+		resetNameId();
 	}
 
 	public Name getIndex() {
@@ -19,6 +23,7 @@ public class ArrayName extends Name {
 
 	public void setId(String id) {
 		this.id = id;
+		resetNameId();
 	}
 
 	public String getId() {
@@ -42,7 +47,18 @@ public class ArrayName extends Name {
 	
 	@Override
 	public int hashCode() {
-		return hashString().hashCode() + 13 * this.index.hashCode(); // Using forbidden chars
+		return this.id.hashCode() + 13 * this.index.hashCode();
+	}
+	
+	// Kept like for the other Names, until the index changes
+	@Override
+	public int getNameId() {
+		int current = index.getNameId();
+		if (current != indexNameId) {
+			resetNameId();
+			indexNameId = current;
+		}
+		return super.getNameId();
 	}
 	
 	public String hashString() {
@@ -67,6 +83,8 @@ public class ArrayName extends Name {
 	public Object clone() {
 		ArrayName a = new ArrayName(this.id, (Name)this.index.clone());
 		a.setLocation(this.getLocation());
+		a.copyNameId(this);
+		a.indexNameId = this.indexNameId;
 		return a;
 	}
 	
@@ -0,0 +1,196 @@
+package decaf.codegen.flatir;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// Where the statements write their assembly
+// The text goes into one big byte buffer which is written out when it fills up, operands
+// (numbers, registers) are written straight into it instead of being concatenated
+// into Strings first. Without a file or stream to write to, the buffer grows and keeps all the
+// text, so the code of a method can be generated on its own and added to the program later
+// The assembly is ASCII, other chars are written as UTF-8
+public class AsmEmitter {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private byte[] buffer;
+	private int length;
+	private FileOutputStream file;
+	private FileChannel channel;
+	private OutputStream stream;
+
+	// Keeps the text in memory
+	public AsmEmitter() {
+		this(BUFFER_SIZE);
+	}
+
+	public AsmEmitter(String filename) throws FileNotFoundException {
+		this(BUFFER_SIZE);
+		this.file = new FileOutputStream(filename);
+		this.channel = file.getChannel();
+	}
+
+	// The stream usually has a buffer of its own
+	public AsmEmitter(OutputStream stream) {
+		this(1 << 10);
+		this.stream = stream;
+	}
+
+	private AsmEmitter(int size) {
+		this.buffer = new byte[size];
+		this.length = 0;
+	}
+
+	public AsmEmitter print(String s) {
+		int n = s.length();
+		if (length + n > buffer.length) {
+			makeRoom(n);
+		}
+		for (int i = 0; i < n; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80) {
+				// Rare, the rest of the string goes the slow way
+				return print(s.substring(i).getBytes(StandardCharsets.UTF_8));
+			}
+			buffer[length++] = (byte) c;
+		}
+		return this;
+	}
+
+	public AsmEmitter print(char c) {
+		if (c >= 0x80) {
+			return print(String.valueOf(c));
+		}
+		if (length == buffer.length) {
+			makeRoom(1);
+		}
+		buffer[length++] = (byte) c;
+		return this;
+	}
+
+	public AsmEmitter print(long n) {
+		// 20 digits and a sign at most
+		if (length + 21 > buffer.length) {
+			makeRoom(21);
+		}
+		if (n == Long.MIN_VALUE) {
+			return print(Long.toString(n));
+		}
+		if (n < 0) {
+			buffer[length++] = '-';
+			n = -n;
+		}
+
+		int start = length;
+		do {
+			buffer[length++] = (byte) ('0' + (n % 10));
+			n /= 10;
+		} while (n != 0);
+
+		// Digits were written backwards
+		for (int i = start, j = length - 1; i < j; i++, j--) {
+			byte b = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = b;
+		}
+		return this;
+	}
+
+	public AsmEmitter print(Register register) {
+		return print(register.toString());
+	}
+
+	// Adds the text kept by an emitter without a file or stream
+	public AsmEmitter print(AsmEmitter code) {
+		return print(code.buffer, 0, code.length);
+	}
+
+	private AsmEmitter print(byte[] bytes) {
+		return print(bytes, 0, bytes.length);
+	}
+
+	private AsmEmitter print(byte[] bytes, int offset, int n) {
+		if (length + n > buffer.length) {
+			makeRoom(n);
+		}
+		if (n > buffer.length - length) {
+			// Bigger than the whole buffer, only if it keeps its text
+			grow(n);
+		}
+		System.arraycopy(bytes, offset, buffer, length, n);
+		length += n;
+		return this;
+	}
+
+	public AsmEmitter println() {
+		return print('\n');
+	}
+
+	public AsmEmitter println(String s) {
+		return print(s).print('\n');
+	}
+
+	// Room for n more bytes: writes the buffer out, or makes it bigger if it keeps the text
+	private void makeRoom(int n) {
+		if (channel == null && stream == null) {
+			grow(n);
+			return;
+		}
+
+		flush();
+		if (n > buffer.length) {
+			buffer = new byte[n];
+		}
+	}
+
+	private void grow(int n) {
+		int size = buffer.length;
+		while (size - length < n) {
+			size *= 2;
+		}
+		byte[] bigger = new byte[size];
+		System.arraycopy(buffer, 0, bigger, 0, length);
+		buffer = bigger;
+	}
+
+	// Writes the buffer to the file or stream, if there is one
+	public void flush() {
+		if (channel == null && stream == null) return;
+
+		try {
+			if (channel != null) {
+				ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, length);
+				while (bytes.hasRemaining()) {
+					channel.write(bytes);
+				}
+			} else {
+				stream.write(buffer, 0, length);
+				stream.flush();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		length = 0;
+	}
+
+	public void close() {
+		flush();
+		if (file != null) {
+			try {
+				file.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	// The text kept so far, for emitters without a file or stream
+	@Override
+	public String toString() {
+		return new String(buffer, 0, length, StandardCharsets.UTF_8);
+	}
+}
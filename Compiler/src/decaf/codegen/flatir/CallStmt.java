@@ -1,9 +1,11 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
 import java.util.List;
 
 import decaf.ralloc.Web;
+import decaf.codegen.x86.InstructionList;
+import decaf.codegen.x86.Opcode;
+import decaf.codegen.x86.Operand;
 
 public class CallStmt extends LIRStatement {
 	private String methodLabel;
@@ -52,16 +54,11 @@ public class CallStmt extends LIRStatement {
 	}
 
 	@Override
-	public void generateAssembly(PrintStream out) {
+	public void generateInstructions(InstructionList out) {
 		if (methodLabel.charAt(0) == '"')
-			out.println("\tcall\t" + methodLabel.substring(1,methodLabel.length()-1));		
+			out.add(Opcode.CALL, Operand.symbol(methodLabel.substring(1,methodLabel.length()-1)));
 		else
-			out.println("\tcall\t" + methodLabel);
-	}
-
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		this.generateAssembly(out);
+			out.add(Opcode.CALL, Operand.symbol(methodLabel));
 	}
 
 	public void setWebsLive(List<Web> websLive) {
@@ -1,8 +1,8 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
-
-import decaf.ralloc.ASMGenerator;
+import decaf.codegen.x86.InstructionList;
+import decaf.codegen.x86.Opcode;
+import decaf.codegen.x86.Operand;
 
 public class CmpStmt extends LIRStatement {
 	private Name arg1;
@@ -35,14 +35,14 @@ public class CmpStmt extends LIRStatement {
 		return "cmp " + arg1 + ", " + arg2;
 	}
 	
-	private void processStmt(PrintStream out) {
+	private void processStmt(InstructionList out) {
 		moveToRegister(out, this.getArg1(), Register.R10);
 		moveToRegister(out, this.getArg2(), Register.R11);
 		
-		out.println("\tcmp\t" + Register.R11 + ", " + Register.R10);
+		out.add(Opcode.CMP, Register.R11, Register.R10);
 	}
 	
-	private void moveToRegister(PrintStream out, Name name, Register register) {
+	private void moveToRegister(InstructionList out, Name name, Register register) {
 		if (name.isArray()) {
 			ArrayName arrayName = (ArrayName) name;
 			moveToRegister(out, arrayName.getIndex(), register);
@@ -51,12 +51,12 @@ public class CmpStmt extends LIRStatement {
 			arrayName.setOffsetRegister(register);
 		}
 		
-		out.println("\tmov\t" + name.getLocation().getASMRepresentation() + ", " + register);
+		out.add(Opcode.MOV, name.getLocation().getOperand(), Operand.register(register));
 	}
 
 	@Override
-	public void generateAssembly(PrintStream out) {
-		processStmt(out);		
+	public void generateInstructions(InstructionList out) {
+		processStmt(out);
 	}
 	
 	@Override
@@ -90,35 +90,4 @@ public class CmpStmt extends LIRStatement {
 	public boolean isUseStatement() {
 		return true;
 	}
-
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		out.println("\t// " + this.toString());
-		genCmp(this.arg1, this.arg2, out);
-		
-		out.println("\t// ");
-	}
-	
-	public static void genCmp(Name a1, Name a2, PrintStream out) {
-		String arg1;
-		String arg2;
-		
-		if (a1.getClass().equals(ConstantName.class) || a1 == null) {
-			out.println("\tmov\t" + ASMGenerator.getLocationForName(a1, out, false) + ", " + Register.R10);
-			arg1 = Register.R10.toString();
-		}
-		else {
-			arg1 = a1.getRegister();
-		}
-		
-		if (a2.getClass().equals(ConstantName.class) || a2.getRegister() == null) {
-			out.println("\tmov\t" + ASMGenerator.getLocationForName(a2, out, false) + ", " + Register.R11);
-			arg2 = Register.R11.toString();
-		}
-		else {
-			arg2 = a2.getRegister();
-		}
-		
-		out.println("\tcmp\t" + arg2 + ", " + arg1);
-	}
 }
@@ -1,5 +1,7 @@
 package decaf.codegen.flatir;
 
+import decaf.codegen.x86.Operand;
+
 public class ConstantLocation extends Location {
 	String value;
 	
@@ -24,4 +26,9 @@ public class ConstantLocation extends Location {
 	public String getASMRepresentation() {
 		return this.toString();
 	}
+	
+	@Override
+	public Operand getOperand() {
+		return Operand.immediate(this.value);
+	}
 }
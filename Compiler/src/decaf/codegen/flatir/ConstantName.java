@@ -13,10 +13,12 @@ public class ConstantName extends Name { // Hack for array index
 
 	public void setValue(int value) {
 		this.value = Integer.toString(value);
+		resetNameId();
 	}
 	
 	public void setValue(String value) {
 		this.value = value;
+		resetNameId();
 	}
 
 	public String getValue() {
@@ -35,7 +37,7 @@ public class ConstantName extends Name { // Hack for array index
 	
 	@Override
 	public int hashCode() {
-		return hashString().hashCode(); // Using forbidden chars
+		return getKeyHash();
 	}
 	
 	public String hashString() {
@@ -49,18 +51,14 @@ public class ConstantName extends Name { // Hack for array index
 		
 		ConstantName cName = (ConstantName)name;
 		
-		return this.hashString().equals(cName.hashString());
+		return hasSameKey(cName);
 	}
 
 	@Override
 	public Object clone() {
 		ConstantName c = new ConstantName(this.value);
 		c.setLocation(this.getLocation());
+		c.copyNameId(this);
 		return c;
 	}
-	
-	@Override
-	public String getRegister() {
-		return "$" + this.value;
-	}
 }
@@ -1,6 +1,8 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
+import decaf.codegen.x86.InstructionList;
+import decaf.codegen.x86.Opcode;
+import decaf.codegen.x86.Operand;
 
 public class DataStmt extends LIRStatement {
 	private String label;
@@ -83,21 +85,47 @@ public class DataStmt extends LIRStatement {
 	}
 
 	@Override
-	public void generateAssembly(PrintStream out) {
+	public void generateInstructions(InstructionList out) {
 		switch(this.type) {
 			case VARIABLE:
-				out.println("\t.comm\t" + this.label + ", 8"); // Size 8 bytes (64 bit)
+				out.add(Opcode.COMM, Operand.symbol(this.label), Operand.symbol("8")); // Size 8 bytes (64 bit)
 				break;
 			case ARRAY:
-				out.println("\t.comm\t" + this.label + ", " + (this.arrLength * 8)); // Size (8*len) bytes (64 bit)
+				out.add(Opcode.COMM, Operand.symbol(this.label), Operand.symbol(Integer.toString(this.arrLength * 8))); // Size (8*len) bytes (64 bit)
 				break;
 			case STRING:
-				out.println("." + this.label + ":");
-				out.println("\t.string\t" + this.stringVal);
+				out.addLabel("." + this.label);
+				out.add(Opcode.STRING, Operand.symbol(this.stringVal));
 				break;
 		}
 	}
 
+	// Equal when they generate the same assembly, the flattener adds a string once per use
+	@Override
+	public int hashCode() {
+		int hash = label.hashCode() + 13 * type.hashCode() + 31 * arrLength;
+		if (stringVal != null) {
+			hash += 17 * stringVal.hashCode();
+		}
+		return hash;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (o == null) return false;
+		if (this == o) return true;
+		if (!o.getClass().equals(DataStmt.class)) return false;
+		
+		DataStmt ds = (DataStmt) o;
+		if (this.type != ds.type || this.arrLength != ds.arrLength || !this.label.equals(ds.label)) {
+			return false;
+		}
+		if (this.stringVal == null) {
+			return ds.stringVal == null;
+		}
+		return this.stringVal.equals(ds.stringVal);
+	}
+
 	@Override
 	public Object clone() {
 		DataStmt d = new DataStmt(this.label);
@@ -106,9 +134,4 @@ public class DataStmt extends LIRStatement {
 		d.setType(this.type);
 		return d;
 	}
-
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		this.generateAssembly(out);
-	}
 }
@@ -1,5 +1,7 @@
 package decaf.codegen.flatir;
 
+import decaf.CompilationContext;
+
 /**
  * Used for optimizations. Not reused; a name is declared at instantiation time.
  * @author usmanm
@@ -7,28 +9,25 @@ package decaf.codegen.flatir;
  */
 
 public class DynamicVarName extends Name {
-	public static int ID = 0;
 	public static String NAME = "tmp";
 	
 	private boolean forGlobal;
 	private int myId;
 	
 	public DynamicVarName() {
-		this.myId = ID;
+		this.myId = CompilationContext.get().nextDynamicVarId();
 		this.forGlobal = false;
-		ID++;
 	}
 	
 	public DynamicVarName(boolean forGlobal) {
-		this.myId = ID;
+		this.myId = CompilationContext.get().nextDynamicVarId();
 		this.forGlobal = forGlobal;
-		ID++;
 	}
 	
 	public DynamicVarName(Object o) { }
 	
 	public static void reset() {
-		ID = 0;
+		CompilationContext.get().resetDynamicVarId();
 	}
 
 	public boolean isForGlobal() {
@@ -37,6 +36,7 @@ public class DynamicVarName extends Name {
 
 	public void setForGlobal(boolean forGlobal) {
 		this.forGlobal = forGlobal;
+		resetNameId();
 	}
 	
 	public int getMyId() {
@@ -45,6 +45,7 @@ public class DynamicVarName extends Name {
 
 	public void setMyId(int myId) {
 		this.myId = myId;
+		resetNameId();
 	}
 
 	@Override
@@ -59,7 +60,7 @@ public class DynamicVarName extends Name {
 	
 	@Override
 	public int hashCode() {
-		return hashString().hashCode(); // Using forbidden chars
+		return getKeyHash();
 	}
 	
 	public String hashString() {
@@ -74,7 +75,7 @@ public class DynamicVarName extends Name {
 		
 		DynamicVarName vName = (DynamicVarName)name;
 		
-		return this.hashString().equals(vName.hashString());
+		return hasSameKey(vName);
 	}
 
 	@Override
@@ -83,6 +84,7 @@ public class DynamicVarName extends Name {
 		d.setForGlobal(this.forGlobal);
 		d.myId = this.myId;
 		d.setLocation(this.getLocation());
+		d.copyNameId(this);
 		return d;
 	}
 
@@ -1,6 +1,8 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
+import decaf.codegen.x86.InstructionList;
+import decaf.codegen.x86.Opcode;
+import decaf.codegen.x86.Operand;
 
 public class EnterStmt extends LIRStatement {
 	private int stackSize;
@@ -36,8 +38,8 @@ public class EnterStmt extends LIRStatement {
 	}
 
 	@Override
-	public void generateAssembly(PrintStream out) {
-		out.println("\tenter\t" + "$" + (this.stackSize * 8) + ", $0");		
+	public void generateInstructions(InstructionList out) {
+		out.add(Opcode.ENTER, Operand.immediate(this.stackSize * 8), Operand.immediate(0));
 	}
 	
 	@Override
@@ -62,9 +64,4 @@ public class EnterStmt extends LIRStatement {
 	public Object clone() {
 		return new EnterStmt(this.stackSize);
 	}
-
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		this.generateAssembly(out);
-	}
 }
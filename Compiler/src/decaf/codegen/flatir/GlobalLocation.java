@@ -1,5 +1,7 @@
 package decaf.codegen.flatir;
 
+import decaf.codegen.x86.Operand;
+
 public class GlobalLocation extends Location {
 	private String name;
 	private Location offset; // For arrays
@@ -82,6 +84,19 @@ public class GlobalLocation extends Location {
 		}
 	}
 
+	@Override
+	public Operand getOperand() {
+		if (this.isString) {
+			return Operand.immediate("." + this.name);
+		}
+		else if (this.offset == null) {
+			return Operand.memory(this.name);
+		}
+		else {
+			return Operand.memory(this.name, this.offsetRegister.getRegister(), 8);
+		}
+	}
+
 	public void setOffsetRegister(RegisterLocation offsetRegister) {
 		this.offsetRegister = offsetRegister;
 	}
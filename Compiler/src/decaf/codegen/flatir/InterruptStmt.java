@@ -1,6 +1,8 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
+import decaf.codegen.x86.InstructionList;
+import decaf.codegen.x86.Opcode;
+import decaf.codegen.x86.Operand;
 
 public class InterruptStmt extends LIRStatement {
 	private String interruptId;
@@ -21,8 +23,8 @@ public class InterruptStmt extends LIRStatement {
 	}
 
 	@Override
-	public void generateAssembly(PrintStream out) {
-		out.println("\tint\t" + interruptId);		
+	public void generateInstructions(InstructionList out) {
+		out.add(Opcode.INT, Operand.symbol(interruptId));
 	}
 	
 	@Override
@@ -47,9 +49,4 @@ public class InterruptStmt extends LIRStatement {
 	public Object clone() {
 		return new InterruptStmt(this.interruptId);
 	}
-
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		this.generateAssembly(out);
-	}
 }
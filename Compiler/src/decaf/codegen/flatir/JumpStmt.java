@@ -1,6 +1,8 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
+import decaf.codegen.x86.InstructionList;
+import decaf.codegen.x86.Opcode;
+import decaf.codegen.x86.Operand;
 
 public class JumpStmt extends LIRStatement {
 	private JumpCondOp condition;
@@ -61,43 +63,36 @@ public class JumpStmt extends LIRStatement {
 	}
 
 	@Override
-	public void generateAssembly(PrintStream out) {
-		String s = "\t";
+	public void generateInstructions(InstructionList out) {
+		Opcode op = null;
 		switch(this.condition) {
 			case EQ:
-				s += "je\t";
+				op = Opcode.JE;
 				break;
 			case NEQ:
-				s += "jne\t";
+				op = Opcode.JNE;
 				break;
 			case ZERO:
-				s += "jz \t";
+				op = Opcode.JZ;
 				break;
 			case GT:
-				s += "jg \t";
+				op = Opcode.JG;
 				break;
 			case GTE:
-				s += "jge\t";
+				op = Opcode.JGE;
 				break;
 			case LT:
-				s += "jl \t";
+				op = Opcode.JL;
 				break;
 			case LTE:
-				s += "jle\t";
+				op = Opcode.JLE;
 				break;
 			case NONE:
-				s += "jmp\t";
+				op = Opcode.JMP;
 				break;
 		}
 		
-		if (this.label.isMethodLabel()) {
-			s += this.label.getLabelString();
-		}
-		else {
-			s += "." + this.label.getLabelString();
-		}
-		
-		out.println(s);
+		out.add(op, Operand.symbol(this.label.getAsmLabel()));
 	}
 	
 	@Override
@@ -122,9 +117,4 @@ public class JumpStmt extends LIRStatement {
 	public Object clone() {
 		return new JumpStmt(this.condition, this.label);
 	}
-
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		this.generateAssembly(out);		
-	}
 }
@@ -1,31 +1,35 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
 import java.util.BitSet;
 
-import decaf.codegen.flattener.MethodFlattenerVisitor;
+import decaf.CompilationContext;
+import decaf.codegen.x86.InstructionList;
 
 public abstract class LIRStatement {
 	protected boolean isLeader;
 	protected int depth;
 	protected boolean isDead;
-	protected BitSet liveInSet;
-	protected BitSet reachingDefInSet;
+	// Live variables and reaching definitions at the statement, computed from the facts of its
+	// block when asked for (a BitSet per statement is too much for big methods)
+	protected StatementFacts liveIn;
+	protected StatementFacts reachingDefIn;
 	
 	public BitSet getReachingDefInSet() {
-		return reachingDefInSet;
+		if (reachingDefIn == null) return null;
+		return reachingDefIn.getFacts(this);
 	}
 
-	public void setReachingDefInSet(BitSet reachingDefInSet) {
-		this.reachingDefInSet = reachingDefInSet;
+	public void setReachingDefIn(StatementFacts reachingDefIn) {
+		this.reachingDefIn = reachingDefIn;
 	}
 
 	public BitSet getLiveInSet() {
-		return liveInSet;
+		if (liveIn == null) return null;
+		return liveIn.getFacts(this);
 	}
 
-	public void setLiveInSet(BitSet inSet) {
-		this.liveInSet = inSet;
+	public void setLiveIn(StatementFacts liveIn) {
+		this.liveIn = liveIn;
 	}
 
 	public boolean isDead() {
@@ -45,12 +49,11 @@ public abstract class LIRStatement {
 	}
 	
 	protected void setDepth() {
-		this.depth = MethodFlattenerVisitor.DEPTH;
+		this.depth = CompilationContext.get().getDepth();
 	}
 
-	public abstract void generateAssembly(PrintStream out);
-	
-	public abstract void generateRegAllocAssembly(PrintStream out);
+	// Lowers the statement into the machine instructions of its code
+	public abstract void generateInstructions(InstructionList out);
 	
 	public boolean isLeader() {
 		return isLeader;
@@ -1,6 +1,6 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
+import decaf.codegen.x86.InstructionList;
 
 public class LabelStmt extends LIRStatement {
 	private String label;
@@ -34,13 +34,16 @@ public class LabelStmt extends LIRStatement {
 	}
 
 	@Override
-	public void generateAssembly(PrintStream out) {
-		if (this.isMethodLabel) {
-			out.println(this.label + ":");
-		}
-		else {
-			out.println("." + this.label + ":");
+	public void generateInstructions(InstructionList out) {
+		out.addLabel(getAsmLabel());
+	}
+	
+	// The label in the assembly, the ones of the code of a method start with a '.'
+	public String getAsmLabel() {
+		if (!this.isMethodLabel) {
+			return "." + this.label;
 		}
+		return this.label;
 	}
 	
 	@Override
@@ -65,9 +68,4 @@ public class LabelStmt extends LIRStatement {
 	public Object clone() {
 		return new LabelStmt(this.label);
 	}
-
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		this.generateAssembly(out);
-	}
 }
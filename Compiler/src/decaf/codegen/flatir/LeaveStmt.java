@@ -1,6 +1,7 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
+import decaf.codegen.x86.InstructionList;
+import decaf.codegen.x86.Opcode;
 
 public class LeaveStmt extends LIRStatement {
 	public LeaveStmt() { 
@@ -16,9 +17,9 @@ public class LeaveStmt extends LIRStatement {
 	}
 
 	@Override
-	public void generateAssembly(PrintStream out) {
-		out.println("\tleave");
-		out.println("\tret");
+	public void generateInstructions(InstructionList out) {
+		out.add(Opcode.LEAVE);
+		out.add(Opcode.RET);
 	}
 	
 	@Override
@@ -38,9 +39,4 @@ public class LeaveStmt extends LIRStatement {
 	public Object clone() {
 		return new LeaveStmt();
 	}
-
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		this.generateAssembly(out);
-	}
 }
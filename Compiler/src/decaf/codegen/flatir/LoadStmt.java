@@ -1,9 +1,9 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
 import java.util.List;
 
-import decaf.ralloc.ASMGenerator;
+import decaf.CompilationContext;
+import decaf.codegen.x86.InstructionList;
 
 public class LoadStmt extends LIRStatement {
 	private Name variable;
@@ -59,7 +59,7 @@ public class LoadStmt extends LIRStatement {
 	}
 	
 	@Override
-	public void generateAssembly(PrintStream out) {
+	public void generateInstructions(InstructionList out) {
 //		if (variable.isArray()) {
 //			ArrayName arrayName = (ArrayName) variable;
 //			String indexLocation = arrayName.getIndex().getLocation().getASMRepresentation();
@@ -80,8 +80,7 @@ public class LoadStmt extends LIRStatement {
 	}
 
 	public void setMyId() {
-		this.myId = QuadrupletStmt.getID();
-		QuadrupletStmt.setID(this.myId+1);
+		this.myId = CompilationContext.get().nextQuadrupletId();
 	}
 
 	public void setBoundCheck(List<LIRStatement> boundCheck) {
@@ -92,16 +91,6 @@ public class LoadStmt extends LIRStatement {
 		return boundCheck;
 	}
 
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		out.println("\t//" + this.toString());
-		
-		if (this.variable.getMyRegister() == null) return; // spilled values have no notion of load
-		
-		out.println("\tmov\t" + ASMGenerator.getLocationForName(this.variable, out, true) + ", " + this.variable.getRegister());
-		out.println("\t//");
-	}
-
 	public void setExplicitLoadRegister(Register explicitLoad) {
 		this.explicitLoad = explicitLoad;
 	}
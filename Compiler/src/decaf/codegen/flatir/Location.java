@@ -1,5 +1,10 @@
 package decaf.codegen.flatir;
 
+import decaf.codegen.x86.Operand;
+
 public abstract class Location {
 	public abstract String getASMRepresentation();
+	
+	// Operand of the machine instructions for the location, as it is now
+	public abstract Operand getOperand();
 }
@@ -3,6 +3,12 @@ package decaf.codegen.flatir;
 public abstract class Name {
 	private Location location;
 	private Register register = null;
+	// Table of the compilation the Name was made in, one for the whole compilation (the
+	// contexts of its methods share it), so the id of a Name never changes
+	private final NameTable table = NameTable.getCurrent();
+	// Interned id, -1 until asked for, and the hash of the key it was interned with
+	private volatile int nameId = -1;
+	private int keyHash;
 
 	public void setLocation(Location location) {
 		this.location = location;
@@ -14,6 +20,49 @@ public abstract class Name {
 	
 	public abstract boolean isArray();
 	
+	// Key of the Name, equal Names have equal keys
+	public abstract String hashString();
+	
+	// Dense id of the Name in the NameTable of the compilation, equal Names have the same id
+	public int getNameId() {
+		int id = nameId;
+		if (id < 0) {
+			String key = hashString();
+			id = table.intern(key, this);
+			keyHash = key.hashCode();
+			nameId = id;
+		}
+		return id;
+	}
+	
+	// Hash of the key, for hashCode. The ids depend on the order the Names were interned in
+	// (which threads of the compilation interned them first), the key doesn't
+	protected int getKeyHash() {
+		getNameId();
+		return keyHash;
+	}
+	
+	// Same key, by id when both Names are of the same compilation
+	protected boolean hasSameKey(Name name) {
+		if (this.table != name.table) {
+			return hashString().equals(name.hashString());
+		}
+		return getNameId() == name.getNameId();
+	}
+	
+	// Has to be called when a field of the key changes
+	protected void resetNameId() {
+		nameId = -1;
+	}
+	
+	// For clones, which have the same key
+	protected void copyNameId(Name name) {
+		if (this.table == name.table && name.nameId >= 0) {
+			this.keyHash = name.keyHash;
+			this.nameId = name.nameId;
+		}
+	}
+	
 	public abstract Object clone(); // Don't copy register!
 
 	public void setRegister(Register register) {
@@ -24,15 +73,6 @@ public abstract class Name {
 		return this.register;
 	}
 
-	public String getRegister() {
-		if (register != null) {
-			return register.toString();
-		}
-		else {
-			return "f*ck";
-		}
-	}
-	
 	public boolean isGlobal() {
 		return false;
 	}
@@ -0,0 +1,53 @@
+package decaf.codegen.flatir;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import decaf.CompilationContext;
+
+// Interns the Names of a compilation: Names which are equal (same hashString) get the same
+// dense id (0, 1, 2, ...), so they can be compared as ints, and the ids can be
+// used as indices of arrays and BitSets
+// A Name asks for its id the first time it is hashed and keeps it, so the key string is
+// built once per Name instance instead of on every lookup
+// Every compilation has one table (in its CompilationContext), made with the context and
+// shared by the contexts of its methods. A Name keeps the table it was made with
+public class NameTable {
+	private HashMap<String, Integer> ids;
+	// Id -> first Name interned with that id
+	private List<Name> names;
+
+	public NameTable() {
+		this.ids = new HashMap<String, Integer>();
+		this.names = new ArrayList<Name>();
+	}
+
+	public static NameTable getCurrent() {
+		return CompilationContext.get().getNameTable();
+	}
+
+	// The dataflow generators of a compilation, and the methods compiled by ParallelPipeline,
+	// run in parallel and can intern new Names
+	public int intern(Name name) {
+		return intern(name.hashString(), name);
+	}
+
+	public synchronized int intern(String key, Name name) {
+		Integer id = ids.get(key);
+		if (id == null) {
+			id = names.size();
+			ids.put(key, id);
+			names.add(name);
+		}
+		return id;
+	}
+
+	public synchronized Name getName(int id) {
+		return names.get(id);
+	}
+
+	public synchronized int size() {
+		return names.size();
+	}
+}
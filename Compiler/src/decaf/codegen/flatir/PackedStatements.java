@@ -0,0 +1,151 @@
+package decaf.codegen.flatir;
+
+import java.util.List;
+
+// Compact form of a list of statements (usually a block): one slot per statement in a few int
+// arrays instead of a graph of statement and Name objects. A slot has the kind of the statement,
+// its operator and the NameTable ids of its operands. Only the liveness of the register allocator
+// uses it (for its transfer function), the other passes work on the statement objects
+// There is no copy of the statements, getStatement(i) reads slot i of the list it was packed from,
+// so it has to be packed again once that list changes (see isPackingOf)
+//
+// Operands of each kind (-1 when missing):
+//   QUADRUPLET  dest, arg1, arg2; op is the QuadrupletOp ordinal
+//   CMP         arg1, arg2
+//   LOAD        dest is the variable loaded, arg1 its index if it's an array
+//   STORE       arg1 is the variable stored, arg2 its index if it's an array
+//   PUSH        arg1 is the Name pushed
+//   POP         dest is the Name popped
+//   JUMP        op is the JumpCondOp ordinal
+//   CALL, LABEL, OTHER  no operands
+public class PackedStatements {
+	public static final int QUADRUPLET = 0;
+	public static final int CMP = 1;
+	public static final int LOAD = 2;
+	public static final int STORE = 3;
+	public static final int PUSH = 4;
+	public static final int POP = 5;
+	public static final int JUMP = 6;
+	public static final int CALL = 7;
+	public static final int LABEL = 8;
+	public static final int OTHER = 9;
+
+	private int size;
+	private byte[] kinds;
+	private byte[] ops;
+	private int[] dests;
+	private int[] args1;
+	private int[] args2;
+	private List<LIRStatement> statements;
+
+	public PackedStatements(List<LIRStatement> statements) {
+		this.size = statements.size();
+		this.kinds = new byte[size];
+		this.ops = new byte[size];
+		this.dests = new int[size];
+		this.args1 = new int[size];
+		this.args2 = new int[size];
+		this.statements = statements;
+
+		for (int i = 0; i < size; i++) {
+			pack(i, statements.get(i));
+		}
+	}
+
+	private void pack(int i, LIRStatement stmt) {
+		int kind = OTHER;
+		int op = -1;
+		Name dest = null, arg1 = null, arg2 = null;
+
+		if (stmt.getClass().equals(QuadrupletStmt.class)) {
+			QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
+			kind = QUADRUPLET;
+			op = qStmt.getOperator().ordinal();
+			dest = qStmt.getDestination();
+			arg1 = qStmt.getArg1();
+			arg2 = qStmt.getArg2();
+		}
+		else if (stmt.getClass().equals(CmpStmt.class)) {
+			CmpStmt cStmt = (CmpStmt) stmt;
+			kind = CMP;
+			arg1 = cStmt.getArg1();
+			arg2 = cStmt.getArg2();
+		}
+		else if (stmt.getClass().equals(LoadStmt.class)) {
+			kind = LOAD;
+			dest = ((LoadStmt) stmt).getVariable();
+			if (dest.isArray()) {
+				arg1 = ((ArrayName) dest).getIndex();
+			}
+		}
+		else if (stmt.getClass().equals(StoreStmt.class)) {
+			kind = STORE;
+			arg1 = ((StoreStmt) stmt).getVariable();
+			if (arg1.isArray()) {
+				arg2 = ((ArrayName) arg1).getIndex();
+			}
+		}
+		else if (stmt.getClass().equals(PushStmt.class)) {
+			kind = PUSH;
+			arg1 = ((PushStmt) stmt).getName();
+		}
+		else if (stmt.getClass().equals(PopStmt.class)) {
+			kind = POP;
+			dest = ((PopStmt) stmt).getName();
+		}
+		else if (stmt.getClass().equals(JumpStmt.class)) {
+			kind = JUMP;
+			op = ((JumpStmt) stmt).getCondition().ordinal();
+		}
+		else if (stmt.getClass().equals(CallStmt.class)) {
+			kind = CALL;
+		}
+		else if (stmt.getClass().equals(LabelStmt.class)) {
+			kind = LABEL;
+		}
+
+		this.kinds[i] = (byte) kind;
+		this.ops[i] = (byte) op;
+		this.dests[i] = getId(dest);
+		this.args1[i] = getId(arg1);
+		this.args2[i] = getId(arg2);
+	}
+
+	private static int getId(Name name) {
+		if (name == null) return -1;
+		return name.getNameId();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getKind(int i) {
+		return kinds[i];
+	}
+
+	public int getOp(int i) {
+		return ops[i];
+	}
+
+	public int getDest(int i) {
+		return dests[i];
+	}
+
+	public int getArg1(int i) {
+		return args1[i];
+	}
+
+	public int getArg2(int i) {
+		return args2[i];
+	}
+
+	public LIRStatement getStatement(int i) {
+		return statements.get(i);
+	}
+	
+	// Statements are only ever inserted or the list replaced, so the list and its size are enough
+	public boolean isPackingOf(List<LIRStatement> statements) {
+		return this.statements == statements && this.size == statements.size();
+	}
+}
@@ -1,8 +1,7 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
-
-import decaf.ralloc.ASMGenerator;
+import decaf.codegen.x86.InstructionList;
+import decaf.codegen.x86.Opcode;
 
 public class PopStmt extends LIRStatement {
 	private Name name; // Can be register or memory
@@ -27,8 +26,8 @@ public class PopStmt extends LIRStatement {
 	}
 
 	@Override
-	public void generateAssembly(PrintStream out) {
-		out.println("\tpop\t" + this.name.getLocation().getASMRepresentation());
+	public void generateInstructions(InstructionList out) {
+		out.add(Opcode.POP, this.name.getLocation().getOperand());
 	}
 	
 	@Override
@@ -58,11 +57,4 @@ public class PopStmt extends LIRStatement {
 	public Object clone() {
 		return new PopStmt(this.name);
 	}
-
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		out.println("\t// " + this.toString());
-		
-		out.println("\tpop\t" + ASMGenerator.getLocationForName(this.name, out, false));
-	}
 }
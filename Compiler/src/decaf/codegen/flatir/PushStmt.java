@@ -1,8 +1,7 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
-
-import decaf.ralloc.ASMGenerator;
+import decaf.codegen.x86.InstructionList;
+import decaf.codegen.x86.Opcode;
 
 public class PushStmt extends LIRStatement {
 	private Name name; // Can be register, memory or immediate
@@ -27,8 +26,8 @@ public class PushStmt extends LIRStatement {
 	}
 	
 	@Override
-	public void generateAssembly(PrintStream out) {
-		out.println("\tpush\t" + this.name.getLocation().getASMRepresentation());
+	public void generateInstructions(InstructionList out) {
+		out.add(Opcode.PUSH, this.name.getLocation().getOperand());
 	}
 	
 	@Override
@@ -58,10 +57,4 @@ public class PushStmt extends LIRStatement {
 	public Object clone() {
 		return new PushStmt(this.name);
 	}
-
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		out.println("\t// " + this.toString());
-		out.println("\tpush\t" + ASMGenerator.getLocationForName(this.name, out, false));
-	}
 }
@@ -1,18 +1,18 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
-
-import decaf.ralloc.ASMGenerator;
+import decaf.CompilationContext;
+import decaf.codegen.x86.InstructionList;
+import decaf.codegen.x86.Opcode;
+import decaf.codegen.x86.Operand;
 
 public class QuadrupletStmt extends LIRStatement {
-	public static boolean USERIGIDHASH = false;
-	public static boolean NOREGS = false;
-	private static int ID = 0;
 	private QuadrupletOp operator;
 	private int myId;
 	private Name dest;
 	private Name arg1;
 	private Name arg2;
+	// Compilation the statement was made in, hashing reads its flag without looking it up
+	private final CompilationContext context = CompilationContext.get();
 	
 	public QuadrupletStmt(QuadrupletOp operator, Name dest, Name arg1, Name arg2) {
 		this.operator = operator;
@@ -91,7 +91,7 @@ public class QuadrupletStmt extends LIRStatement {
 	}
 
 	@Override
-	public void generateAssembly(PrintStream out) {
+	public void generateInstructions(InstructionList out) {
 		switch(this.operator) {
 			case MOVE:
 				processMoveQuadruplet(out);
@@ -117,77 +117,64 @@ public class QuadrupletStmt extends LIRStatement {
 				break;
 		}
 	}
-
-	private void processUnaryQuadruplet(PrintStream out, QuadrupletOp operator) {
-		ConstantName falseLiteral = new ConstantName(0);
-		falseLiteral.setLocation(new ConstantLocation(falseLiteral.getValue()));
-		ConstantName trueLiteral = new ConstantName(1);
-		trueLiteral.setLocation(new ConstantLocation(trueLiteral.getValue()));
-		
+	
+	private void processUnaryQuadruplet(InstructionList out, QuadrupletOp operator) {
 		moveToRegister(out, this.getArg1(), Register.R10);
 		if (operator == QuadrupletOp.MINUS) {
-			out.println("\tneg\t" + Register.R10);
+			out.add(Opcode.NEG, Operand.register(Register.R10));
 		} 
 		else if (operator == QuadrupletOp.NOT) {
-			out.println("\tcmp\t" + falseLiteral.getLocation() + ", " + Register.R10);
-			moveToRegister(out, falseLiteral, Register.R11);
-			out.println("\tcmovne\t" + Register.R11 + ", " + Register.R10);
-			moveToRegister(out, trueLiteral, Register.R11);
-			out.println("\tcmove\t" + Register.R11 + ", " + Register.R10);
+			out.add(Opcode.CMP, Operand.immediate(0), Operand.register(Register.R10));
+			moveConstantToRegister(out, 0, Register.R11);
+			out.add(Opcode.CMOVNE, Register.R11, Register.R10);
+			moveConstantToRegister(out, 1, Register.R11);
+			out.add(Opcode.CMOVE, Register.R11, Register.R10);
 		}
 		
 		moveFromRegister(out, Register.R10, this.getDestination(), Register.R11);
 	}
 
-	private void processConditionalQuadruplet(PrintStream out,
+	private void processConditionalQuadruplet(InstructionList out,
 			QuadrupletOp op) {
 		moveToRegister(out, this.getArg1(), Register.R10);
 		moveToRegister(out, this.getArg2(), Register.R11);
 		
-		out.println("\tcmp\t" + Register.R11 + ", " + Register.R10);
+		out.add(Opcode.CMP, Register.R11, Register.R10);
 		
-		ConstantName falseLiteral = new ConstantName(0);
-		falseLiteral.setLocation(new ConstantLocation(falseLiteral.getValue()));
-		ConstantName trueLiteral = new ConstantName(1);
-		trueLiteral.setLocation(new ConstantLocation(trueLiteral.getValue()));
+		moveConstantToRegister(out, 0, Register.R10);
+		moveConstantToRegister(out, 1, Register.R11);
 		
-		moveToRegister(out, falseLiteral, Register.R10);
-		moveToRegister(out, trueLiteral, Register.R11);
-		
-		String instr = "\tcmov";
+		Opcode instr = null;
 		switch (op) {
 			case LT:
-				instr += "l\t";
+				instr = Opcode.CMOVL;
 				break;
 			case LTE:
-				instr += "le\t";
+				instr = Opcode.CMOVLE;
 				break;
 			case GT:
-				instr += "g\t";
+				instr = Opcode.CMOVG;
 				break;
 			case GTE:
-				instr += "ge\t";
+				instr = Opcode.CMOVGE;
 				break;
 			case EQ:
-				instr += "e\t";
+				instr = Opcode.CMOVE;
 				break;
 			case NEQ:
-				instr += "ne\t";
+				instr = Opcode.CMOVNE;
 				break;
 		}
 		
-		out.println(instr + Register.R11 + ", " + Register.R10);
+		out.add(instr, Register.R11, Register.R10);
 		moveFromRegister(out, Register.R10, this.getDestination(), Register.R11);
 	}
 
-	private void processDivModQuadruplet(PrintStream out, QuadrupletOp op) {
-		ConstantName falseLiteral = new ConstantName(0);
-		falseLiteral.setLocation(new ConstantLocation(falseLiteral.getValue()));
-		
-		moveToRegister(out, falseLiteral, Register.RDX);
+	private void processDivModQuadruplet(InstructionList out, QuadrupletOp op) {
+		moveConstantToRegister(out, 0, Register.RDX);
 		moveToRegister(out, this.getArg1(), Register.RAX);
 		moveToRegister(out, this.getArg2(), Register.R10);
-		out.println("\tdiv\t" + Register.R10);
+		out.add(Opcode.DIV, Operand.register(Register.R10));
 		
 		if(op == QuadrupletOp.DIV) {
 			moveFromRegister(out, Register.RAX, this.getDestination(), Register.R10);
@@ -197,72 +184,66 @@ public class QuadrupletStmt extends LIRStatement {
 		}
 	}
 
-	private void processMoveQuadruplet(PrintStream out) {
+	private void processMoveQuadruplet(InstructionList out) {
 		moveToRegister(out, this.getArg1(), Register.R10);
-		//if(!this.getDestination().isArray()) {
-			//out.println("\tmov\t" + Register.R10 + ", " + this.getDestination().getLocation().getASMRepresentation());
-		//} else {
-			moveFromRegister(out, Register.R10, this.getDestination(), Register.R11);
-		//}
+		moveFromRegister(out, Register.R10, this.getDestination(), Register.R11);
 	}
 
-	private void processArithmeticQuadruplet(PrintStream out, QuadrupletOp op) {
-		String instr = "\t";
-		
-//		if(this.getArg2().getClass().equals(ConstantName.class)) {
-//			argConst((ConstantName) this.getArg2(), this.getArg1(), out, op, instr);
-//		} else if(this.getArg1().getClass().equals(ConstantName.class)){
-//			argConst((ConstantName) this.getArg1(), this.getArg2(), out, op, instr);
-//		} else {
+	private void processArithmeticQuadruplet(InstructionList out, QuadrupletOp op) {
+		Opcode instr = null;
 		switch(op) {
 			case ADD:
-				instr += "add\t";
+				instr = Opcode.ADD;
 				break;
 			case SUB:
-				instr += "sub\t";
+				instr = Opcode.SUB;
 				break;
 			case MUL:
-				instr += "imul\t";
+				instr = Opcode.IMUL;
 				break;
 		}
 		moveToRegister(out, this.getArg1(), Register.R10);
 		moveToRegister(out, this.getArg2(), Register.R11);
-		out.println(instr + Register.R11 + ", " + Register.R10);
+		out.add(instr, Register.R11, Register.R10);
 		moveFromRegister(out, Register.R10, this.getDestination(), Register.R11);
-			//out.println("\tmov\t" + Register.R10 + ", " + this.getDestination().getLocation().getASMRepresentation());
-		
 	}
 	
-	private void moveToRegister(PrintStream out, Name name, Register register) {
+	private void moveConstantToRegister(InstructionList out, int value, Register register) {
+		out.add(Opcode.MOV, Operand.immediate(value), Operand.register(register));
+	}
+	
+	private void moveToRegister(InstructionList out, Name name, Register register) {
 		if (name.isArray()) {
 			ArrayName arrayName = (ArrayName) name;
 			moveToRegister(out, arrayName.getIndex(), register);
-//			String indexLocation = arrayName.getIndex().getLocation().getASMRepresentation();
-//			out.println("\tmov\t" + indexLocation + ", " + register);
 			arrayName.setOffsetRegister(register);
 		}
 		
-		out.println("\tmov\t" + name.getLocation().getASMRepresentation() + ", " + register);
+		out.add(Opcode.MOV, name.getLocation().getOperand(), Operand.register(register));
 	}
 	
-	private void moveFromRegister(PrintStream out, Register from, Name name, Register temp) {
+	private void moveFromRegister(InstructionList out, Register from, Name name, Register temp) {
 		if (name.isArray()) {
 			ArrayName arrayName = (ArrayName) name;
 			moveToRegister(out, arrayName.getIndex(), temp);
-//			String indexLocation = arrayName.getIndex().getLocation().getASMRepresentation();
-//			out.println("\tmov\t" + indexLocation + ", " + temp);
 			arrayName.setOffsetRegister(temp);
 		}
 		
-		out.println("\tmov\t" + from + ", " + name.getLocation().getASMRepresentation());		
+		out.add(Opcode.MOV, Operand.register(from), name.getLocation().getOperand());
 	}
 	
+	// On the hashes the Names keep (of their interned keys), not on the ids, which depend on
+	// the order the threads of the compilation interned them in
 	@Override
 	public int hashCode() {
-		if (USERIGIDHASH) {
-			return toString().hashCode() + 13 * this.myId;
+		int hash = this.operator.ordinal();
+		hash = 31 * hash + ((this.dest != null) ? this.dest.hashCode() : 0);
+		hash = 31 * hash + ((this.arg1 != null) ? this.arg1.hashCode() : 0);
+		hash = 31 * hash + ((this.arg2 != null) ? this.arg2.hashCode() : 0);
+		if (this.context.isRigidQuadrupletHash()) {
+			return hash + 13 * this.myId;
 		}
-		return toString().hashCode();
+		return hash;
 	}
 	
 	@Override
@@ -308,7 +289,7 @@ public class QuadrupletStmt extends LIRStatement {
 			}
 		}
 		
-		if (USERIGIDHASH) {
+		if (this.context.isRigidQuadrupletHash()) {
 			if (stmt.myId != this.myId) {
 				return false;
 			}
@@ -341,17 +322,22 @@ public class QuadrupletStmt extends LIRStatement {
 	}
 
 	public void setMyId() {
-		this.myId = ID;
-		QuadrupletStmt.ID++;
+		this.myId = CompilationContext.get().nextQuadrupletId();
+	}
+	
+	// Sets the id without touching the global counter, for analyses which number
+	// the statements of each method on their own
+	public void setMyId(int myId) {
+		this.myId = myId;
 	}
 	
 
 	public static int getID() {
-		return ID;
+		return CompilationContext.get().getQuadrupletId();
 	}
 
 	public static void setID(int iD) {
-		ID = iD;
+		CompilationContext.get().setQuadrupletId(iD);
 	}
 	
 	@Override
@@ -362,184 +348,4 @@ public class QuadrupletStmt extends LIRStatement {
 	public boolean hasTwoArgs() {
 		return this.operator != QuadrupletOp.MOVE && this.operator != QuadrupletOp.NOT && this.operator != QuadrupletOp.MINUS;
 	}
-	
-	/**
-	 * REGISTER ALLOCATOR ASM
-	 */
-
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		out.println("\t// " + this.toString());
-		switch(this.operator) {
-			case MOVE:
-				asmMoveQuadruplet(out);
-				break;
-			case MINUS:
-			case NOT:
-				asmUnaryQuadruplet(out, this.operator);
-				break;
-			case MOD:
-			case DIV:
-				asmDivModQuadruplet(out, this.operator);
-				break;
-			case LT:
-			case LTE:
-			case GT:
-			case GTE:
-			case EQ:
-			case NEQ:
-				asmConditionalQuadruplet(out, this.operator);
-				break;
-			default:
-				asmArithmeticQuadruplet(out, this.operator);
-				break;
-		}
-		out.println("\t//");
-	}
-	
-	private void asmDivModQuadruplet(PrintStream out, QuadrupletOp op) {
-		// TODO : Just doing naive shit right now
-		
-		out.println("\tpush\t" + Register.RDX);
-		out.println("\tpush\t" + Register.RAX);
-		
-		out.println("\tmov\t" + "$0" + ", " + Register.RDX);
-		out.println("\tmov\t" + ASMGenerator.getLocationForName(this.arg1, out, false) + ", " + Register.RAX);
-		out.println("\tdiv\t" + ASMGenerator.getLocationForName(this.arg2, out, false));
-		
-		if(op == QuadrupletOp.DIV) {
-			out.println("\tmov\t" + Register.RAX + ", " + ASMGenerator.getLocationForName(this.dest, out, false));
-		} 
-		else {
-			out.println("\tmov\t" + Register.RDX + ", " + ASMGenerator.getLocationForName(this.dest, out, false));
-		}
-		
-		out.println("\tpop\t" + Register.RAX);
-		out.println("\tpop\t" + Register.RDX);
-	}
-
-	private void asmArithmeticQuadruplet(PrintStream out, QuadrupletOp op) {
-		String instr = "\t";
-		
-		switch(op) {
-			case ADD:
-				instr += "add\t";
-				break;
-			case SUB:
-				instr += "sub\t";
-				break;
-			case MUL:
-				instr += "imul\t";
-				break;
-		}
-		String dest;
-		boolean rcx = false;
-		if (this.dest.getMyRegister() == null) {
-			dest = Register.R10.toString();
-			rcx = true;
-		}
-		else {
-			dest = this.dest.getRegister();
-		}
-		
-		out.println("\tmov\t" + ASMGenerator.getLocationForName(this.arg1, out, false) + ", " + dest);
-		out.println(instr + ASMGenerator.getLocationForName(this.arg2, out, false) + ", " + dest);
-		if (rcx) { // Store back in rcx
-			out.println("\tmov\t" + Register.R10 + ", " + ASMGenerator.getLocationForName(this.dest, out, false));
-		}
-	}
-
-	private void asmConditionalQuadruplet(PrintStream out, QuadrupletOp op) {
-		// DO CMP
-//		if (this.arg1.getMyRegister() == null && this.arg2.getMyRegister() == null) {
-//			out.println("\tmov\t" + ASMGenerator.getLocationForName(this.arg2, out, false) + ", " + Register.RCX);
-//			out.println("\tcmp\t" + ASMGenerator.getLocationForName(this.arg1, out, false) + ", " + Register.RCX);
-//		}
-//		else {
-//			out.println("\tcmp\t" + ASMGenerator.getLocationForName(this.arg1, out, false) + ", " + ASMGenerator.getLocationForName(this.arg2, out, false));
-//		}	
-		
-		CmpStmt.genCmp(arg1, arg2, out);
-		
-		out.println("\tmov\t" + "$0" + ", " + Register.R10);
-		
-		String instr = "\tcmov";
-		switch (op) {
-			case LT:
-				instr += "l\t";
-				break;
-			case LTE:
-				instr += "le\t";
-				break;
-			case GT:
-				instr += "g\t";
-				break;
-			case GTE:
-				instr += "ge\t";
-				break;
-			case EQ:
-				instr += "e\t";
-				break;
-			case NEQ:
-				instr += "ne\t";
-				break;
-		}
-		
-		out.println("\tmov\t" + "$1" + ", " + Register.R11);
-		out.println(instr + Register.R11 + ", " + Register.R10);		
-		out.println("\tmov\t" + Register.R10 + ", " + ASMGenerator.getLocationForName(this.dest, out, false));
-	}
-
-	private void asmMove(Name from, Name dest, PrintStream out) {
-		System.out.println("MOVE: "+ from + " to " + dest);
-		if (this.dest.getMyRegister() != null) {
-			System.out.println("woot");
-			out.println("\tmov\t" + ASMGenerator.getLocationForName(this.arg1, out, false) + ", " + ASMGenerator.getLocationForName(this.dest, out, false));
-		}
-		else if (this.arg1.getMyRegister() == null) {
-			out.println("\tmov\t" + ASMGenerator.getLocationForName(this.arg1, out, false) + ", " + Register.R10);
-			out.println("\tmov\t" + Register.R10 + ", " + ASMGenerator.getLocationForName(this.dest, out, false));
-		}
-		else {
-			out.println("\tmov\t" + ASMGenerator.getLocationForName(this.arg1, out, false) + ", " + ASMGenerator.getLocationForName(this.dest, out, false));
-		}
-	}
-
-	private void asmUnaryQuadruplet(PrintStream out, QuadrupletOp operator2) {
-		if (operator == QuadrupletOp.MINUS) {
-			if (this.dest.getMyRegister() != null) {
-				out.println("\tmov\t" + ASMGenerator.getLocationForName(this.arg1, out, false) + ", " + ASMGenerator.getLocationForName(this.dest, out, false));
-				out.println("\tneg\t" + ASMGenerator.getLocationForName(this.dest, out, false) );
-			}
-			else if (this.arg1.getMyRegister() == null) {
-				out.println("\tmov\t" + ASMGenerator.getLocationForName(this.arg1, out, false) + ", " + Register.R10);
-				out.println("\tneg\t" + Register.R10);
-				out.println("\tmov\t" + Register.R10 + ", " + ASMGenerator.getLocationForName(this.dest, out, false));
-			}
-
-		} 
-		else if (operator == QuadrupletOp.NOT) {
-			out.println("\tcmp\t" + "$0" + ", " + ASMGenerator.getLocationForName(this.arg1, out, false));
-			out.println("\tmov\t" + "$0" + ", " + ASMGenerator.getLocationForName(this.dest, out, false));
-			out.println("\tcmove\t" + "$1" + ", " + ASMGenerator.getLocationForName(this.dest, out, false));
-		}		
-	}
-
-	private void asmMoveQuadruplet(PrintStream out) {
-		if (QuadrupletStmt.NOREGS) {
-			if (this.dest.getMyRegister() != null) {
-				out.println("\tmov\t" + ASMGenerator.getLocationForName(this.arg1, out, true) + ", " + ASMGenerator.getLocationForName(this.dest, out, true));
-			}
-			else if (this.arg1.getMyRegister() == null) {
-				out.println("\tmov\t" + ASMGenerator.getLocationForName(this.arg1, out, true) + ", " + Register.R10);
-				out.println("\tmov\t" + Register.RCX + ", " + ASMGenerator.getLocationForName(this.dest, out, true));
-			}
-			else {
-				out.println("\tmov\t" + ASMGenerator.getLocationForName(this.arg1, out, true) + ", " + ASMGenerator.getLocationForName(this.dest, out, true));
-			}
-		}
-		else {
-			this.asmMove(arg1, dest, out);
-		}
-	}
 }
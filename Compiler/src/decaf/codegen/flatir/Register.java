@@ -18,10 +18,15 @@ public enum Register {
 	R14, // callee-saved register
 	R15; // callee-saved register
 	
+	// Made once, it's written for most operands
+	private String asm;
+	
 	@Override 
 	public String toString() {
-		String s = super.toString();
-		return "%" + s.toLowerCase();
+		if (asm == null) {
+			asm = "%" + super.toString().toLowerCase();
+		}
+		return asm;
 	}
 	
 	public static Register[] argumentRegs = { RDI, RSI, RDX, RCX, R8, R9 };
@@ -1,5 +1,7 @@
 package decaf.codegen.flatir;
 
+import decaf.codegen.x86.Operand;
+
 public class RegisterLocation extends Location {
 	private Register register;
 	
@@ -28,4 +30,9 @@ public class RegisterLocation extends Location {
 	public String getASMRepresentation() {
 		return this.toString();
 	}
+	
+	@Override
+	public Operand getOperand() {
+		return Operand.register(register);
+	}
 }
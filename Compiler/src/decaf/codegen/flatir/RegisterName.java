@@ -9,11 +9,7 @@ public class RegisterName extends Name {
 
 	public void setRegister(Register register) {
 		this.register = register;
-	}
-
-	@Override
-	public String getRegister() {
-		return register.toString();
+		resetNameId();
 	}
 	
 	public Register getMyRegister() {
@@ -32,7 +28,7 @@ public class RegisterName extends Name {
 	
 	@Override
 	public int hashCode() {
-		return hashString().hashCode(); // Using forbidden chars
+		return getKeyHash();
 	}
 	
 	public String hashString() {
@@ -46,13 +42,14 @@ public class RegisterName extends Name {
 		
 		RegisterName rName = (RegisterName)name;
 		
-		return this.hashString().equals(rName.hashString());
+		return hasSameKey(rName);
 	}
 
 	@Override
 	public Object clone() {
 		RegisterName r = new RegisterName(this.register);
 		r.setLocation(this.getLocation());
+		r.copyNameId(this);
 		return r;
 	}
 }
@@ -1,5 +1,7 @@
 package decaf.codegen.flatir;
 
+import decaf.codegen.x86.Operand;
+
 public class StackLocation extends Location {
 	private int offset;
 	
@@ -24,4 +26,9 @@ public class StackLocation extends Location {
 	public String getASMRepresentation() {
 		return (offset * 8) + "(%rbp)";
 	}
+	
+	@Override
+	public Operand getOperand() {
+		return Operand.memory(Register.RBP, offset * 8);
+	}
 }
@@ -0,0 +1,11 @@
+package decaf.codegen.flatir;
+
+import java.util.BitSet;
+
+// Dataflow facts at single statements (live variables, reaching definitions)
+// They aren't stored with every statement, the analysis which computed them keeps the facts of
+// each block and gives the ones of a statement when asked for them
+public interface StatementFacts {
+	// Null if the statement wasn't analyzed
+	public BitSet getFacts(LIRStatement stmt);
+}
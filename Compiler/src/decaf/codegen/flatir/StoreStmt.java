@@ -1,8 +1,7 @@
 package decaf.codegen.flatir;
 
-import java.io.PrintStream;
-
-import decaf.ralloc.ASMGenerator;
+import decaf.CompilationContext;
+import decaf.codegen.x86.InstructionList;
 
 public class StoreStmt extends LIRStatement {
 	private Name variable;
@@ -49,7 +48,7 @@ public class StoreStmt extends LIRStatement {
 	}
 	
 	@Override
-	public void generateAssembly(PrintStream out) {
+	public void generateInstructions(InstructionList out) {
 //		if (variable.isArray()) {
 //			ArrayName arrayName = (ArrayName) variable;
 //			String indexLocation = arrayName.getIndex().getLocation().getASMRepresentation();
@@ -66,20 +65,10 @@ public class StoreStmt extends LIRStatement {
 	}
 
 	public void setMyId() {
-		this.myId = QuadrupletStmt.getID();
-		QuadrupletStmt.setID(this.myId+1);
+		this.myId = CompilationContext.get().nextQuadrupletId();
 	}
 
 	public int getMyId() {
 		return myId;
 	}
-
-	@Override
-	public void generateRegAllocAssembly(PrintStream out) {
-		out.println("\t// " + this.toString());
-		
-		if (this.variable.getMyRegister() == null) return; // // spilled values have no notion of store
-		
-		out.println("\tmov\t" + this.variable.getRegister() + ", " + ASMGenerator.getLocationForName(this.variable, out, true));
-	}
 }
@@ -13,6 +13,7 @@ public class TempName extends Name {
 
 	public void setId(int id) {
 		this.id = id;
+		resetNameId();
 	}
 
 	public int getId() {
@@ -26,7 +27,7 @@ public class TempName extends Name {
 	
 	@Override
 	public int hashCode() {
-		return hashString().hashCode(); // Using forbidden chars
+		return getKeyHash();
 	}
 	
 	public String hashString() {
@@ -41,7 +42,7 @@ public class TempName extends Name {
 		
 		TempName vName = (TempName)name;
 		
-		return this.hashString().equals(vName.hashString());
+		return hasSameKey(vName);
 	}
 
 	@Override
@@ -54,6 +55,7 @@ public class TempName extends Name {
 		TempName t = new TempName();
 		t.setId(this.id);
 		t.setLocation(this.getLocation());
+		t.copyNameId(this);
 		return t;
 	}
 }
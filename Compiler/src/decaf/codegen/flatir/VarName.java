@@ -33,6 +33,7 @@ public class VarName extends Name {
 
 	public void setId(String id) {
 		this.id = id;
+		resetNameId();
 	}
 
 	public String getId() {
@@ -46,6 +47,7 @@ public class VarName extends Name {
 
 	public void setBlockId(int blockId) {
 		this.blockId = blockId;
+		resetNameId();
 	}
 
 	public int getBlockId() {
@@ -70,7 +72,7 @@ public class VarName extends Name {
 	
 	@Override
 	public int hashCode() {
-		return hashString().hashCode();
+		return getKeyHash();
 	}
 	
 	public String hashString() {
@@ -85,7 +87,7 @@ public class VarName extends Name {
 		
 		VarName vName = (VarName)name;
 		
-		return this.hashString().equals(vName.hashString());
+		return hasSameKey(vName);
 	}
 
 	@Override
@@ -100,6 +102,7 @@ public class VarName extends Name {
 		v.stringValue = this.stringValue;
 		v.blockId = this.blockId;
 		v.setLocation(this.getLocation());
+		v.copyNameId(this);
 		return v;
 	}
 	
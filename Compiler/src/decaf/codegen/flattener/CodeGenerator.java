@@ -1,67 +1,118 @@
 package decaf.codegen.flattener;
 
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.PrintStream;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
+import decaf.codegen.flatir.AsmEmitter;
 import decaf.codegen.flatir.DataStmt;
 import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.x86.InstructionList;
+import decaf.codegen.x86.PeepholeOptimizer;
 import decaf.ir.ast.ClassDecl;
 import decaf.ir.ast.MethodDecl;
 
 public class CodeGenerator {
 	private ProgramFlattener pf;
-	private PrintStream out;
+	private AsmEmitter out;
 	private ClassDecl cd;
-	private List<String> dataStmtsSeen;
+	private HashSet<DataStmt> dataStmtsSeen;
+	// The file was opened here, so it's closed here too
+	private boolean closeOut;
 	
 	public CodeGenerator(ProgramFlattener pf, ClassDecl cd, String filename) throws FileNotFoundException {
-		File f = new File(filename);
-		this.out = new PrintStream(f);
-		this.pf = pf;
-		this.cd = cd;
-		this.dataStmtsSeen = new ArrayList<String>();
+		this(pf, cd, new AsmEmitter(filename));
+		this.closeOut = true;
 	}
 	
-	public CodeGenerator(ProgramFlattener pf, ClassDecl cd, PrintStream out) {
+	public CodeGenerator(ProgramFlattener pf, ClassDecl cd, AsmEmitter out) {
 		this.out = out;
 		this.pf = pf;
 		this.cd = cd;
+		this.dataStmtsSeen = new HashSet<DataStmt>();
+		this.closeOut = false;
 	}
 
 	public void generateCode() {
+		generateData();
+		
+		out.println();
+		out.println(".text");
+		for (MethodDecl md: cd.getMethodDeclarations()) {
+			generateMethod(md);
+		}
+		
+		generateExceptionHanlder();
+		finish();
+	}
+	
+	// Same output as generateCode, with the code of every method already generated on its own
+	// (methodCode has the output of generateMethod for each method name)
+	public void generateCode(HashMap<String, AsmEmitter> methodCode) {
+		generateData();
+		
+		out.println();
+		out.println(".text");
+		for (MethodDecl md: cd.getMethodDeclarations()) {
+			out.print(methodCode.get(md.getId()));
+		}
+		
+		generateExceptionHanlder();
+		finish();
+	}
+	
+	private void generateData() {
 		out.println(".data");
+		InstructionList data = new InstructionList();
 		for (DataStmt s: pf.getDataStmtList()) {
-			if (this.dataStmtsSeen.contains(s.toString())) {
+			if (!this.dataStmtsSeen.add(s)) {
 				continue;
 			}
 			
-			this.dataStmtsSeen.add(s.toString());
-			s.generateAssembly(out);
+			s.generateInstructions(data);
 		}
-		
+		data.emitASM(out);
+	}
+	
+	public void generateMethod(MethodDecl md) {
 		out.println();
-		out.println(".text");
-		for (MethodDecl md: cd.getMethodDeclarations()) {
-			out.println();
-			List<LIRStatement> lirList = pf.getLirMap().get(md.getId());
-			if (md.getId().equals("main")) {
-				out.println("\t.globl main");
-			}
-			for (LIRStatement s: lirList) {
-				s.generateAssembly(out);
-			}
+		List<LIRStatement> lirList = pf.getLirMap().get(md.getId());
+		if (md.getId().equals("main")) {
+			out.println("\t.globl main");
 		}
 		
-		generateExceptionHanlder();
+		// The statements are lowered into the instructions of the method, which are then written
+		InstructionList code = new InstructionList();
+		for (LIRStatement s: lirList) {
+			generateStatement(code, s);
+		}
+		if (pf.getContext().isPeephole()) {
+			new PeepholeOptimizer(code).optimize();
+		}
+		code.emitASM(out);
+	}
+	
+	// Code of a statement of a method, the ASMGenerator of the registers adds to some of them
+	protected void generateStatement(InstructionList code, LIRStatement s) {
+		s.generateInstructions(code);
 	}
 
 	private void generateExceptionHanlder() {
-		List<LIRStatement> interruptHandler = pf.getLirMap().get(ProgramFlattener.exceptionHandlerLabel);
+		List<LIRStatement> interruptHandler = pf.getLirMap().get(ProgramFlattener.getExceptionHandlerLabel());
+		InstructionList code = new InstructionList();
 		for (LIRStatement s: interruptHandler) {
-			s.generateAssembly(out);
+			s.generateInstructions(code);
+		}
+		code.emitASM(out);
+	}
+	
+	private void finish() {
+		if (closeOut) {
+			out.close();
+		}
+		else {
+			out.flush();
 		}
 	}
 }
@@ -3,6 +3,7 @@ package decaf.codegen.flattener;
 import java.util.ArrayList;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.ArrayName;
 import decaf.codegen.flatir.CallStmt;
 import decaf.codegen.flatir.CmpStmt;
@@ -49,7 +50,6 @@ import decaf.ir.ast.VarDecl;
 import decaf.ir.ast.VarLocation;
 
 public class ExpressionFlattenerVisitor implements ASTVisitor<Name> {	
-	public static int MAXBOUNDCHECKS = 0;
 	private List<LIRStatement> statements;
 	private String methodName;
 	private int andCount;
@@ -61,9 +61,10 @@ public class ExpressionFlattenerVisitor implements ASTVisitor<Name> {
 	private int arrayBoundId;
 	private int callCount;
 	private ClassDecl classDecl;
+	private CompilationContext context;
 
 	public ExpressionFlattenerVisitor(List<LIRStatement> statements,
-			String methodName, ClassDecl cd) {
+			String methodName, ClassDecl cd, CompilationContext context) {
 		this.statements = statements;
 		this.methodName = methodName;
 		this.andCount = 0;
@@ -74,6 +75,7 @@ public class ExpressionFlattenerVisitor implements ASTVisitor<Name> {
 		this.inArrayLocation = 0;
 		this.callCount = 0;
 		this.classDecl = cd;
+		this.context = context;
 	}
 
 	@Override
@@ -506,8 +508,8 @@ public class ExpressionFlattenerVisitor implements ASTVisitor<Name> {
 		LabelStmt arrayCheckPass = new LabelStmt(getArrayBoundPass(loc.getId()));
 		LabelStmt arrayCheckFail = new LabelStmt(getArrayBoundFail(loc.getId()));
 		arrayBoundId++;
-		if (ExpressionFlattenerVisitor.MAXBOUNDCHECKS < arrayBoundId) {
-			ExpressionFlattenerVisitor.MAXBOUNDCHECKS = arrayBoundId;
+		if (context.getMaxBoundChecks() < arrayBoundId) {
+			context.setMaxBoundChecks(arrayBoundId);
 		}
 		
 		this.statements.add(arrayCheckStart);
@@ -536,7 +538,7 @@ public class ExpressionFlattenerVisitor implements ASTVisitor<Name> {
 				new RegisterName(Register.argumentRegs[2]), new ConstantName(loc.getColumnNumber()), null));
 		
 		// Call exception handler
-		this.statements.add(new CallStmt(ProgramFlattener.exceptionHandlerLabel));
+		this.statements.add(new CallStmt(ProgramFlattener.getExceptionHandlerLabel()));
 		
 		this.statements.add(arrayCheckPass); // Array check passed label
 		
@@ -105,6 +105,12 @@ public class LocationResolver {
 	public void resolveName(Name name) {
 		if (name == null) return;
 		
+		// Web of the name given a register by the allocator (-ralloc), it has no stack slot
+		if (name.getMyRegister() != null) {
+			name.setLocation(new RegisterLocation(name.getMyRegister()));
+			return;
+		}
+		
 		if (name.getClass().equals(TempName.class)) {
 			resolveTempName(name);
 		}
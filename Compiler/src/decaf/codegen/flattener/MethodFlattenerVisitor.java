@@ -3,6 +3,7 @@ package decaf.codegen.flattener;
 import java.util.ArrayList;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.CallStmt;
 import decaf.codegen.flatir.CmpStmt;
 import decaf.codegen.flatir.ConstantName;
@@ -49,8 +50,6 @@ import decaf.ir.ast.VarDecl;
 import decaf.ir.ast.VarLocation;
 
 public class MethodFlattenerVisitor implements ASTVisitor<Integer> {
-	public static int DEPTH = 0;
-	
 	private List<LIRStatement> statements;
 	private ExpressionFlattenerVisitor exprFlatenner;
 	private String methodName;
@@ -60,12 +59,14 @@ public class MethodFlattenerVisitor implements ASTVisitor<Integer> {
 	private int currentForId;
 	private int totalLocalVars;
 	private ClassDecl classDecl;
+	private CompilationContext context;
 
-	public MethodFlattenerVisitor(String methodName, ClassDecl cd) {
+	public MethodFlattenerVisitor(String methodName, ClassDecl cd, CompilationContext context) {
 		this.classDecl = cd;
+		this.context = context;
 		this.statements = new ArrayList<LIRStatement>();
 		this.exprFlatenner = new ExpressionFlattenerVisitor(statements,
-				methodName, this.classDecl);
+				methodName, this.classDecl, context);
 		this.methodName = methodName;
 		this.reset();
 	}
@@ -210,7 +211,7 @@ public class MethodFlattenerVisitor implements ASTVisitor<Integer> {
 		this.statements.add(new QuadrupletStmt(QuadrupletOp.MOVE, loopId,
 				initValue, null));
 
-		MethodFlattenerVisitor.DEPTH++;
+		context.setDepth(context.getDepth() + 1);
 		
 		// Test block		
 		this.statements.add(new LabelStmt(getForTest()));
@@ -233,7 +234,7 @@ public class MethodFlattenerVisitor implements ASTVisitor<Integer> {
 		this.statements.add(new JumpStmt(JumpCondOp.NONE, new LabelStmt(
 				getForTest())));
 		
-		MethodFlattenerVisitor.DEPTH--;
+		context.setDepth(context.getDepth() - 1);
 
 		// End block
 		this.statements.add(new LabelStmt(getForEnd()));
@@ -382,7 +383,7 @@ public class MethodFlattenerVisitor implements ASTVisitor<Integer> {
 					new RegisterName(Register.argumentRegs[2]), new ConstantName(md.getColumnNumber()), null));
 			
 			// Call exception handler
-			this.statements.add(new CallStmt(ProgramFlattener.exceptionHandlerLabel));
+			this.statements.add(new CallStmt(ProgramFlattener.getExceptionHandlerLabel()));
 		}
 		
 		this.statements.add(new LabelStmt(getMethodEnd()));
@@ -436,8 +437,8 @@ public class MethodFlattenerVisitor implements ASTVisitor<Integer> {
 		this.totalLocalVars = 0;
 		this.statements = new ArrayList<LIRStatement>();
 		this.exprFlatenner = new ExpressionFlattenerVisitor(statements,
-				methodName, this.classDecl);
-		MethodFlattenerVisitor.DEPTH = 0;
+				methodName, this.classDecl, context);
+		context.setDepth(0);
 	}
 
 	private String getIfTest() {
@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.CallStmt;
 import decaf.codegen.flatir.ConstantName;
 import decaf.codegen.flatir.DataStmt;
@@ -27,21 +28,35 @@ public class ProgramFlattener {
 	public static String arrayExceptionMessage = "\"RUNTIME ERROR: Array index out of bounds (%d, %d)\\n\"";
 	public static String methodExceptionErrorLabel = "methodcfend";
 	public static String methodExceptionMessage = "\"RUNTIME ERROR: Method at (%d, %d) reached end of control flow without returning\\n\"";
-	public static String exceptionHandlerLabel = "exception_handler";
 	
+	// Compilation the program belongs to
+	private CompilationContext context;
 	private ClassDecl classDecl;
 	private MethodFlattenerVisitor mfv;
 	private HashMap<String, List<LIRStatement>> lirMap;
+	// Methods whose statements changed in their owner but were not linearized yet
+	private HashMap<String, StatementSource> pendingMethods;
 	private List<DataStmt> dataStmtList;
 	private TempNameIndexer tni;
 
-	public ProgramFlattener(ClassDecl cd) {
+	public ProgramFlattener(CompilationContext context, ClassDecl cd) {
+		this.context = context;
 		this.classDecl = cd;
-		this.mfv = new MethodFlattenerVisitor(null, this.classDecl);
+		this.mfv = new MethodFlattenerVisitor(null, this.classDecl, context);
 		this.lirMap = new HashMap<String, List<LIRStatement>>();
+		this.pendingMethods = new HashMap<String, StatementSource>();
 		this.dataStmtList = new ArrayList<DataStmt>();
 		this.tni = new TempNameIndexer();
 	}
+	
+	public CompilationContext getContext() {
+		return context;
+	}
+	
+	// Made unique (not the name of a method) for each compilation, see addExceptionHandlers
+	public static String getExceptionHandlerLabel() {
+		return CompilationContext.get().getExceptionHandlerLabel();
+	}
 
 	public void flatten() throws Exception {
 		addExceptionHandlers();
@@ -67,15 +82,15 @@ public class ProgramFlattener {
 				ProgramFlattener.methodExceptionMessage));
 
 		// Add handler method
-		while (isMethodName(ProgramFlattener.exceptionHandlerLabel)) {
-			ProgramFlattener.exceptionHandlerLabel += "_"; // Add '_' to make
+		while (isMethodName(context.getExceptionHandlerLabel())) {
+			context.setExceptionHandlerLabel(context.getExceptionHandlerLabel() + "_"); // Add '_' to make
 			// unique
 		}
 
 		List<LIRStatement> instructions = new ArrayList<LIRStatement>();
 
 		// Add label
-		LabelStmt l = new LabelStmt(ProgramFlattener.exceptionHandlerLabel);
+		LabelStmt l = new LabelStmt(context.getExceptionHandlerLabel());
 		l.setMethodLabel(true);
 		instructions.add(l);
 
@@ -98,7 +113,7 @@ public class ProgramFlattener {
 		instructions.add(new InterruptStmt("$0x80"));
 
 		this.lirMap
-				.put(ProgramFlattener.exceptionHandlerLabel, instructions);
+				.put(context.getExceptionHandlerLabel(), instructions);
 	}
 
 	private boolean isMethodName(String label) {
@@ -134,15 +149,44 @@ public class ProgramFlattener {
 		}
 	}
 
+	// Linearizes the pending methods first, so the map is always up to date
 	public HashMap<String, List<LIRStatement>> getLirMap() {
+		if (!pendingMethods.isEmpty()) {
+			List<StatementSource> sources = new ArrayList<StatementSource>(pendingMethods.values());
+			for (StatementSource source: sources) {
+				// The source puts its statements back through setStatements
+				source.getStatements();
+			}
+			pendingMethods.clear();
+		}
 		return lirMap;
 	}
+	
+	// The statements of the method changed in source, they are linearized the next
+	// time the map is read
+	public void addPendingMethod(String methodName, StatementSource source) {
+		pendingMethods.put(methodName, source);
+	}
+	
+	public void setStatements(String methodName, List<LIRStatement> stmts) {
+		lirMap.put(methodName, stmts);
+		pendingMethods.remove(methodName);
+	}
+
+	// Program made of the statements of one method only, passes which run on it see nothing
+	// else. Its data statements start empty, strings the method uses are added to them
+	// context is the one the method is compiled with
+	public ProgramFlattener getMethodSlice(String methodName, CompilationContext context) {
+		ProgramFlattener slice = new ProgramFlattener(context, classDecl);
+		slice.lirMap.put(methodName, getLirMap().get(methodName));
+		return slice;
+	}
 
 	public void printLIR(PrintStream out) {
 		for (DataStmt ds : dataStmtList) {
 			out.println(ds);
 		}
-		for (Entry<String, List<LIRStatement>> entry : lirMap.entrySet()) {
+		for (Entry<String, List<LIRStatement>> entry : getLirMap().entrySet()) {
 			for (LIRStatement s : entry.getValue()) {
 				if (!s.getClass().equals(LabelStmt.class)) {
 					out.println("\t" + s);
@@ -0,0 +1,11 @@
+package decaf.codegen.flattener;
+
+import java.util.List;
+
+import decaf.codegen.flatir.LIRStatement;
+
+// Owner of the statements of a method which only linearizes them when asked to
+// (e.g. the CFG of the method)
+public interface StatementSource {
+	public List<LIRStatement> getStatements();
+}
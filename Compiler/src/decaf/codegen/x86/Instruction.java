@@ -0,0 +1,143 @@
+package decaf.codegen.x86;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import decaf.codegen.flatir.AsmEmitter;
+import decaf.codegen.flatir.Register;
+
+// One x86-64 instruction, label or directive of the code, operands in AT&T order
+public class Instruction {
+	private static final Operand[] NO_OPERANDS = new Operand[0];
+
+	private Opcode opcode;
+	private Operand[] operands;
+
+	public Instruction(Opcode opcode, Operand... operands) {
+		this.opcode = opcode;
+		this.operands = (operands == null) ? NO_OPERANDS : operands;
+	}
+
+	public static Instruction label(String label) {
+		return new Instruction(Opcode.LABEL, Operand.symbol(label));
+	}
+
+	public Opcode getOpcode() {
+		return opcode;
+	}
+
+	public int getOperandCount() {
+		return operands.length;
+	}
+
+	public Operand getOperand(int i) {
+		return operands[i];
+	}
+
+	// The same instruction with operand i replaced
+	public Instruction withOperand(int i, Operand op) {
+		Operand[] ops = operands.clone();
+		ops[i] = op;
+		return new Instruction(opcode, ops);
+	}
+
+	// First operand of a two operand instruction
+	public Operand getSource() {
+		return operands.length < 2 ? null : operands[0];
+	}
+
+	// Last operand, also the target of a jump or call
+	public Operand getDestination() {
+		return operands.length == 0 ? null : operands[operands.length - 1];
+	}
+
+	public boolean isLabel() {
+		return opcode == Opcode.LABEL;
+	}
+
+	// The label of a LABEL, or jumped to by a jump
+	public String getLabel() {
+		if (opcode != Opcode.LABEL && !opcode.isJump()) return null;
+		return operands[0].getSymbol();
+	}
+
+	// Registers read, the ones of the operands and the ones the opcode reads on its own
+	public List<Register> getUses() {
+		List<Register> uses = new ArrayList<Register>();
+		for (int i = 0; i < operands.length; i++) {
+			Operand op = operands[i];
+			if (op.isMemory()) {
+				if (op.getBase() != null) uses.add(op.getBase());
+				if (op.getIndex() != null) uses.add(op.getIndex());
+			}
+			else if (op.isRegister()) {
+				if (i < operands.length - 1 || opcode.getDestination() != Opcode.Destination.DEF) {
+					uses.add(op.getRegister());
+				}
+			}
+		}
+		for (Register r: opcode.getImplicitUses()) {
+			uses.add(r);
+		}
+		return uses;
+	}
+
+	// Registers written
+	public List<Register> getDefs() {
+		List<Register> defs = new ArrayList<Register>();
+		Operand dest = getDestination();
+		if (dest != null && dest.isRegister() && opcode.getDestination() != Opcode.Destination.USE) {
+			defs.add(dest.getRegister());
+		}
+		for (Register r: opcode.getImplicitDefs()) {
+			defs.add(r);
+		}
+		return defs;
+	}
+
+	public boolean uses(Register register) {
+		return getUses().contains(register);
+	}
+
+	public boolean defines(Register register) {
+		return getDefs().contains(register);
+	}
+
+	// Memory the instruction writes, null if none (pushes and calls write the stack below RSP,
+	// which no operand names)
+	public Operand getMemoryDef() {
+		Operand dest = getDestination();
+		if (dest == null || !dest.isMemory() || opcode.getDestination() == Opcode.Destination.USE) return null;
+		return dest;
+	}
+
+	public void emitASM(AsmEmitter out) {
+		if (opcode == Opcode.LABEL) {
+			out.print(operands[0].getSymbol()).println(":");
+			return;
+		}
+
+		out.print('\t').print(opcode.getMnemonic());
+		if (needsSuffix()) {
+			out.print('q');
+		}
+		for (int i = 0; i < operands.length; i++) {
+			out.print(i == 0 ? "\t" : ", ");
+			operands[i].emitASM(out);
+		}
+		out.println();
+	}
+
+	// Without a register the assembler can't tell the size of "mov $1, -8(%rbp)"
+	private boolean needsSuffix() {
+		if (operands.length != 2) return false;
+		return !operands[0].isRegister() && !operands[1].isRegister() && (operands[0].isMemory() || operands[1].isMemory());
+	}
+
+	@Override
+	public String toString() {
+		AsmEmitter out = new AsmEmitter();
+		emitASM(out);
+		return out.toString().trim();
+	}
+}
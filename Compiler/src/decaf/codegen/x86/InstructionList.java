@@ -0,0 +1,65 @@
+package decaf.codegen.x86;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import decaf.codegen.flatir.AsmEmitter;
+import decaf.codegen.flatir.Register;
+
+// The machine code the LIR statements are lowered into (LIRStatement.generateInstructions),
+// usually the code of one method. Passes over the instructions work on it before it's written
+// out as AT&T assembly by emitASM
+public class InstructionList {
+	private List<Instruction> instructions;
+
+	public InstructionList() {
+		this.instructions = new ArrayList<Instruction>();
+	}
+
+	public InstructionList add(Instruction instruction) {
+		this.instructions.add(instruction);
+		return this;
+	}
+
+	public InstructionList add(Opcode opcode, Operand... operands) {
+		return add(new Instruction(opcode, operands));
+	}
+
+	// "mov <from>, <to>" between registers, the most common one
+	public InstructionList add(Opcode opcode, Register from, Register to) {
+		return add(new Instruction(opcode, Operand.register(from), Operand.register(to)));
+	}
+
+	public InstructionList addLabel(String label) {
+		return add(Instruction.label(label));
+	}
+
+	public List<Instruction> getInstructions() {
+		return instructions;
+	}
+
+	public void setInstructions(List<Instruction> instructions) {
+		this.instructions = instructions;
+	}
+
+	public int size() {
+		return instructions.size();
+	}
+
+	public Instruction get(int i) {
+		return instructions.get(i);
+	}
+
+	public void emitASM(AsmEmitter out) {
+		for (Instruction instruction: instructions) {
+			instruction.emitASM(out);
+		}
+	}
+
+	@Override
+	public String toString() {
+		AsmEmitter out = new AsmEmitter();
+		emitASM(out);
+		return out.toString();
+	}
+}
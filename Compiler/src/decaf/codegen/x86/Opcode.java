@@ -0,0 +1,137 @@
+package decaf.codegen.x86;
+
+import decaf.codegen.flatir.Register;
+
+// The x86-64 instructions (and assembler directives) the code generator uses, with what they do
+// to their operands besides reading them and the registers and flags they use without naming them
+// The last operand is the destination (AT&T order), the others are only read
+public enum Opcode {
+	MOV("mov", Destination.DEF),
+	ADD("add", Destination.USE_DEF, Flags.WRITE),
+	SUB("sub", Destination.USE_DEF, Flags.WRITE),
+	IMUL("imul", Destination.USE_DEF, Flags.WRITE),
+	NEG("neg", Destination.USE_DEF, Flags.WRITE),
+	// Unsigned division of RDX:RAX, quotient in RAX and remainder in RDX
+	DIV("div", Destination.USE, Flags.WRITE,
+			new Register[] { Register.RAX, Register.RDX }, new Register[] { Register.RAX, Register.RDX }),
+	CMP("cmp", Destination.USE, Flags.WRITE),
+	// A conditional move keeps the destination when it doesn't move, so it reads it too
+	CMOVE("cmove", Destination.USE_DEF, Flags.READ),
+	CMOVNE("cmovne", Destination.USE_DEF, Flags.READ),
+	CMOVL("cmovl", Destination.USE_DEF, Flags.READ),
+	CMOVLE("cmovle", Destination.USE_DEF, Flags.READ),
+	CMOVG("cmovg", Destination.USE_DEF, Flags.READ),
+	CMOVGE("cmovge", Destination.USE_DEF, Flags.READ),
+	// Most jumps have always been written lined up to 3 chars
+	JMP("jmp", Destination.USE),
+	JE("je", Destination.USE, Flags.READ),
+	JNE("jne", Destination.USE, Flags.READ),
+	JZ("jz ", Destination.USE, Flags.READ),
+	JG("jg ", Destination.USE, Flags.READ),
+	JGE("jge", Destination.USE, Flags.READ),
+	JL("jl ", Destination.USE, Flags.READ),
+	JLE("jle", Destination.USE, Flags.READ),
+	// The callee may read every argument register (and RAX, the vector registers of printf) and
+	// write every register it doesn't save
+	CALL("call", Destination.USE, Flags.WRITE, new Register[] { Register.RDI, Register.RSI, Register.RDX,
+			Register.RCX, Register.R8, Register.R9, Register.RAX, Register.RSP }, Register.callerSaved),
+	PUSH("push", Destination.USE, Flags.NONE,
+			new Register[] { Register.RSP }, new Register[] { Register.RSP }),
+	POP("pop", Destination.DEF, Flags.NONE,
+			new Register[] { Register.RSP }, new Register[] { Register.RSP }),
+	ENTER("enter", Destination.USE, Flags.NONE,
+			new Register[] { Register.RSP, Register.RBP }, new Register[] { Register.RSP, Register.RBP }),
+	LEAVE("leave", Destination.USE, Flags.NONE,
+			new Register[] { Register.RBP }, new Register[] { Register.RSP, Register.RBP }),
+	// The return value goes back in RAX, the caller gets back the registers it saves
+	RET("ret", Destination.USE, Flags.NONE, new Register[] { Register.RSP, Register.RAX, Register.RBX, Register.RBP,
+			Register.R12, Register.R13, Register.R14, Register.R15 }, new Register[] { Register.RSP }),
+	// Only the exit system call of the exception handler, number in RAX and status in RBX
+	INT("int", Destination.USE, Flags.NONE,
+			new Register[] { Register.RAX, Register.RBX }, new Register[0]),
+
+	// Not instructions, they only print
+	LABEL(null, Destination.USE),
+	COMM(".comm", Destination.USE),
+	STRING(".string", Destination.USE);
+
+	// What the instruction does to its last operand
+	public enum Destination {
+		USE,
+		DEF,
+		USE_DEF
+	}
+
+	public enum Flags {
+		NONE,
+		READ,
+		WRITE
+	}
+
+	private String mnemonic;
+	private Destination destination;
+	private Flags flags;
+	private Register[] implicitUses;
+	private Register[] implicitDefs;
+
+	private Opcode(String mnemonic, Destination destination) {
+		this(mnemonic, destination, Flags.NONE);
+	}
+
+	private Opcode(String mnemonic, Destination destination, Flags flags) {
+		this(mnemonic, destination, flags, new Register[0], new Register[0]);
+	}
+
+	private Opcode(String mnemonic, Destination destination, Flags flags, Register[] implicitUses, Register[] implicitDefs) {
+		this.mnemonic = mnemonic;
+		this.destination = destination;
+		this.flags = flags;
+		this.implicitUses = implicitUses;
+		this.implicitDefs = implicitDefs;
+	}
+
+	public String getMnemonic() {
+		return mnemonic;
+	}
+
+	public Destination getDestination() {
+		return destination;
+	}
+
+	public boolean readsFlags() {
+		return flags == Flags.READ;
+	}
+
+	public boolean writesFlags() {
+		return flags == Flags.WRITE;
+	}
+
+	public Register[] getImplicitUses() {
+		return implicitUses;
+	}
+
+	public Register[] getImplicitDefs() {
+		return implicitDefs;
+	}
+
+	public boolean isJump() {
+		return this == JMP || isConditionalJump();
+	}
+
+	public boolean isConditionalJump() {
+		return this.ordinal() >= JE.ordinal() && this.ordinal() <= JLE.ordinal();
+	}
+
+	public boolean isConditionalMove() {
+		return this.ordinal() >= CMOVE.ordinal() && this.ordinal() <= CMOVGE.ordinal();
+	}
+
+	// Nothing runs after it in a straight line
+	public boolean endsBlock() {
+		return this == JMP || this == RET || this == INT;
+	}
+
+	public boolean isDirective() {
+		return this == LABEL || this == COMM || this == STRING;
+	}
+}
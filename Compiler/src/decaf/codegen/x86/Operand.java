@@ -0,0 +1,198 @@
+package decaf.codegen.x86;
+
+import decaf.codegen.flatir.AsmEmitter;
+import decaf.codegen.flatir.Register;
+
+// Operand of an Instruction, it never changes once made (the Locations of the names do, the
+// offset register of an array is set right before it's used)
+// A memory operand is symbol+displacement(base, index, scale), as AT&T writes it
+public class Operand {
+	private static final Operand[] registers = new Operand[Register.values().length];
+	static {
+		for (Register r: Register.values()) {
+			registers[r.ordinal()] = new Operand(OperandType.REGISTER, r, null, 0, 0, null);
+		}
+	}
+
+	private OperandType type;
+	private Register base; // The register of a REGISTER operand
+	private Register index;
+	private int scale;
+	private long displacement; // The value of a numeric IMMEDIATE
+	private String symbol; // The text of a SYMBOL or IMMEDIATE
+	private boolean isNumber;
+
+	private Operand(OperandType type, Register base, Register index, int scale, long displacement, String symbol) {
+		this.type = type;
+		this.base = base;
+		this.index = index;
+		this.scale = scale;
+		this.displacement = displacement;
+		this.symbol = symbol;
+	}
+
+	public static Operand register(Register register) {
+		return registers[register.ordinal()];
+	}
+
+	public static Operand immediate(long value) {
+		Operand op = new Operand(OperandType.IMMEDIATE, null, null, 0, value, Long.toString(value));
+		op.isNumber = true;
+		return op;
+	}
+
+	// The text of a constant, or of the address of a label
+	public static Operand immediate(String text) {
+		Operand op = new Operand(OperandType.IMMEDIATE, null, null, 0, 0, text);
+		char c = text.length() > 0 ? text.charAt(0) : ' ';
+		if (c == '-' || (c >= '0' && c <= '9')) {
+			try {
+				op.displacement = Long.parseLong(text);
+				op.isNumber = true;
+			} catch (NumberFormatException e) {
+				// Hex or too big, it's still written as it is
+			}
+		}
+		return op;
+	}
+
+	public static Operand memory(Register base, long displacement) {
+		return new Operand(OperandType.MEMORY, base, null, 0, displacement, null);
+	}
+
+	public static Operand memory(String symbol) {
+		return new Operand(OperandType.MEMORY, null, null, 0, 0, symbol);
+	}
+
+	public static Operand memory(String symbol, Register index, int scale) {
+		return new Operand(OperandType.MEMORY, null, index, scale, 0, symbol);
+	}
+
+	public static Operand symbol(String text) {
+		return new Operand(OperandType.SYMBOL, null, null, 0, 0, text);
+	}
+
+	public OperandType getType() {
+		return type;
+	}
+
+	public boolean isRegister() {
+		return type == OperandType.REGISTER;
+	}
+
+	public boolean isRegister(Register register) {
+		return type == OperandType.REGISTER && base == register;
+	}
+
+	public boolean isImmediate() {
+		return type == OperandType.IMMEDIATE;
+	}
+
+	// An immediate whose value is known, not the address of a label
+	public boolean isNumber() {
+		return isNumber;
+	}
+
+	public boolean isMemory() {
+		return type == OperandType.MEMORY;
+	}
+
+	public Register getRegister() {
+		return type == OperandType.REGISTER ? base : null;
+	}
+
+	public long getValue() {
+		return displacement;
+	}
+
+	public Register getBase() {
+		return type == OperandType.MEMORY ? base : null;
+	}
+
+	public Register getIndex() {
+		return index;
+	}
+
+	public int getScale() {
+		return scale;
+	}
+
+	public long getDisplacement() {
+		return displacement;
+	}
+
+	public String getSymbol() {
+		return symbol;
+	}
+
+	// Registers read to find the address of a memory operand
+	public boolean usesRegister(Register register) {
+		if (type != OperandType.MEMORY) return false;
+		return base == register || index == register;
+	}
+
+	public void emitASM(AsmEmitter out) {
+		switch (type) {
+			case REGISTER:
+				out.print(base);
+				break;
+			case IMMEDIATE:
+				out.print('$').print(symbol);
+				break;
+			case SYMBOL:
+				out.print(symbol);
+				break;
+			case MEMORY:
+				if (symbol != null) {
+					out.print(symbol);
+					if (displacement != 0) {
+						out.print('+').print(displacement);
+					}
+				}
+				else {
+					out.print(displacement);
+				}
+				if (base != null || index != null) {
+					out.print('(');
+					if (base != null) {
+						out.print(base);
+					}
+					if (index != null) {
+						out.print(", ").print(index).print(", ").print(scale);
+					}
+					out.print(')');
+				}
+				break;
+		}
+	}
+
+	@Override
+	public String toString() {
+		AsmEmitter out = new AsmEmitter();
+		emitASM(out);
+		return out.toString();
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = type.hashCode() + 31 * (int) displacement + 13 * scale;
+		if (base != null) hash += 17 * base.hashCode();
+		if (index != null) hash += 19 * index.hashCode();
+		if (symbol != null) hash += 23 * symbol.hashCode();
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == null) return false;
+		if (!o.getClass().equals(Operand.class)) return false;
+
+		Operand op = (Operand) o;
+		if (op.type != this.type || op.base != this.base || op.index != this.index) return false;
+		if (op.scale != this.scale || op.displacement != this.displacement) return false;
+		if (this.symbol == null) {
+			return op.symbol == null;
+		}
+		return this.symbol.equals(op.symbol);
+	}
+}
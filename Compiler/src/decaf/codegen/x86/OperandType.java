@@ -0,0 +1,8 @@
+package decaf.codegen.x86;
+
+public enum OperandType {
+	REGISTER,
+	IMMEDIATE,
+	MEMORY,
+	SYMBOL // Written as it is: labels, called functions, arguments of directives
+}
@@ -0,0 +1,668 @@
+package decaf.codegen.x86;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import decaf.codegen.flatir.Register;
+
+// Peephole pass over the instructions of a method (-opt peephole). The statements each load their
+// operands into R10 and R11 and store the result back, so most of what they load is already in
+// a register and most registers they load are only read once
+// Going through the code in a straight line, it knows what the registers hold (the immediate,
+// memory or register they were moved from or to) until a label jumped to. With that it:
+// - drops loads of what a register already holds, and stores of a register back where it came from
+// - forwards a register stored to memory to the loads of that memory after it
+// - puts constants and copied registers in place of the registers holding them, and loads into
+//   the instruction right after them when the register dies there
+// - drops moves to dead registers, and stores overwritten before anything could read them
+// - drops jumps to the next label and the code after a jmp, and turns "jcc 1f; jmp 2f; 1:"
+//   around into one jump
+// - jumps on the flags of a comparison instead of testing the 0 or 1 a cmov made from them
+// Whether a register or the flags are live is found on the whole method, over the jumps. It
+// runs again until nothing changes
+public class PeepholeOptimizer {
+	private static final int MAX_PASSES = 8;
+	// Liveness bit of the flags, after the registers
+	private static final int FLAGS = Register.values().length;
+	private static final int ALL = (1 << (FLAGS + 1)) - 1;
+
+	private InstructionList code;
+
+	// Liveness after each instruction of the pass
+	private int[] liveOut;
+	// Labels some jump of the method goes to
+	private Set<String> targets;
+
+	// What each register holds: operands with the same value
+	private List<List<Operand>> values;
+	// Constants stored to memory (without an index register)
+	private HashMap<Operand, Operand> memoryValues;
+	// 0 or 1 made by a cmov from the flags: its opcode, and the flags it was made from
+	private Opcode[] bools;
+	private int[] boolFlags;
+	// Incremented when the flags change
+	private int flags;
+	// Stores (by position in the output) nothing has read yet, memory without an index register
+	private HashMap<Operand, Integer> pendingStores;
+
+	private List<Instruction> out;
+
+	public PeepholeOptimizer(InstructionList code) {
+		this.code = code;
+		this.values = new ArrayList<List<Operand>>();
+		for (int i = 0; i < Register.values().length; i++) {
+			this.values.add(new ArrayList<Operand>());
+		}
+		this.memoryValues = new HashMap<Operand, Operand>();
+		this.bools = new Opcode[Register.values().length];
+		this.boolFlags = new int[Register.values().length];
+		this.pendingStores = new HashMap<Operand, Integer>();
+	}
+
+	public void optimize() {
+		for (int pass = 0; pass < MAX_PASSES; pass++) {
+			if (!optimizePass()) break;
+		}
+	}
+
+	// False if nothing changed
+	private boolean optimizePass() {
+		List<Instruction> in = code.getInstructions();
+		computeLiveness(in);
+		this.out = new ArrayList<Instruction>(in.size());
+		resetFacts();
+
+		boolean changed = false;
+		int i = 0;
+		while (i < in.size()) {
+			int next = processInstruction(in, i);
+			if (next != i + 1) {
+				changed = true;
+			}
+			i = next;
+		}
+
+		// Dead stores were left as nulls
+		List<Instruction> result = new ArrayList<Instruction>(this.out.size());
+		for (Instruction instr: this.out) {
+			if (instr != null) {
+				result.add(instr);
+			}
+		}
+		if (result.size() != in.size()) {
+			changed = true;
+		}
+		else if (!changed) {
+			for (int j = 0; j < in.size(); j++) {
+				if (result.get(j) != in.get(j)) {
+					changed = true;
+					break;
+				}
+			}
+		}
+
+		code.setInstructions(result);
+		return changed;
+	}
+
+	// Adds what instruction i becomes to the output, returns the next instruction to look at
+	private int processInstruction(List<Instruction> in, int i) {
+		Instruction instr = in.get(i);
+		Opcode op = instr.getOpcode();
+
+		if (op == Opcode.LABEL) {
+			// A method label is called, the others are only reached by the jumps to them
+			if (this.targets.contains(instr.getLabel()) || !instr.getLabel().startsWith(".")) {
+				resetFacts();
+			}
+			emit(instr);
+			return i + 1;
+		}
+
+		if (op.isJump()) {
+			return processJump(in, i);
+		}
+
+		instr = propagateSource(instr);
+
+		if (op == Opcode.MOV) {
+			Operand src = instr.getSource();
+			Operand dest = instr.getDestination();
+
+			if (dest.isRegister()) {
+				Register r = dest.getRegister();
+				// Already there, or nobody reads it
+				if (src.isRegister(r) || holds(r, src) || !isLive(i, r)) {
+					return i + 1;
+				}
+
+				if (src.isMemory()) {
+					Operand known = this.memoryValues.get(src);
+					Register copy = findRegister(src, r);
+					if (known != null) {
+						instr = instr.withOperand(0, known);
+					}
+					else if (copy != null) {
+						instr = instr.withOperand(0, Operand.register(copy));
+					}
+				}
+
+				// The register only carries the value to the next instruction
+				if (i + 1 < in.size()) {
+					Instruction folded = fold(instr, in.get(i + 1), i + 1);
+					if (folded != null) {
+						apply(folded);
+						return i + 2;
+					}
+				}
+			}
+			else if (dest.isMemory() && src.isRegister() && holds(src.getRegister(), dest)) {
+				// Stores what is already there
+				return i + 1;
+			}
+		}
+
+		if (op == Opcode.CMP && i + 1 < in.size()) {
+			Instruction fused = fuse(instr, in.get(i + 1), i + 1);
+			if (fused != null) {
+				apply(fused);
+				return i + 2;
+			}
+		}
+
+		apply(instr);
+		return i + 1;
+	}
+
+	private int processJump(List<Instruction> in, int i) {
+		Instruction instr = in.get(i);
+		String target = instr.getLabel();
+
+		// Jump to one of the labels right after it
+		int j = i + 1;
+		while (j < in.size() && in.get(j).isLabel()) {
+			if (in.get(j).getLabel().equals(target)) {
+				return i + 1;
+			}
+			j++;
+		}
+
+		// "jcc 1f; jmp 2f; 1:" is "jncc 2f; 1:"
+		Opcode inverse = getInverse(instr.getOpcode());
+		if (inverse != null && i + 2 < in.size() && in.get(i + 1).getOpcode() == Opcode.JMP) {
+			j = i + 2;
+			while (j < in.size() && in.get(j).isLabel()) {
+				if (in.get(j).getLabel().equals(target)) {
+					apply(new Instruction(inverse, in.get(i + 1).getDestination()));
+					return skipUnreachable(in, i + 2);
+				}
+				j++;
+			}
+		}
+
+		apply(instr);
+		if (instr.getOpcode() == Opcode.JMP) {
+			return skipUnreachable(in, i + 1);
+		}
+		return i + 1;
+	}
+
+	// Nothing before the next label runs
+	private int skipUnreachable(List<Instruction> in, int i) {
+		while (i < in.size() && !in.get(i).isLabel()) {
+			i++;
+		}
+		return i;
+	}
+
+	// "mov s, %t; op ..., %t, ..." is "op ..., s, ..." when t dies in op
+	private Instruction fold(Instruction mov, Instruction next, int nextIndex) {
+		Register t = mov.getDestination().getRegister();
+		Operand src = mov.getSource();
+		if (isLive(nextIndex, t)) return null;
+
+		// t must be one whole operand of next, and only once
+		int position = -1;
+		for (int k = 0; k < next.getOperandCount(); k++) {
+			Operand op = next.getOperand(k);
+			if (op.usesRegister(t)) return null;
+			if (op.isRegister(t)) {
+				if (position >= 0) return null;
+				position = k;
+			}
+		}
+		if (position < 0) return null;
+
+		Opcode op = next.getOpcode();
+		Instruction folded = next.withOperand(position, src);
+		if (op == Opcode.MOV || op == Opcode.ADD || op == Opcode.SUB || op == Opcode.IMUL) {
+			if (position != 0) return null;
+		}
+		else if (op == Opcode.CMP) {
+			if (position == 1 && src.isImmediate()) return null;
+		}
+		else if (op == Opcode.PUSH) {
+			if (src.isImmediate()) return null;
+		}
+		else {
+			return null;
+		}
+
+		return isValid(folded) ? folded : null;
+	}
+
+	// "cmp $0, %r; je l" where r is the 0 or 1 of a cmov is a jump on the flags of the cmov
+	private Instruction fuse(Instruction cmp, Instruction jump, int jumpIndex) {
+		Opcode op = jump.getOpcode();
+		if (op != Opcode.JE && op != Opcode.JZ && op != Opcode.JNE) return null;
+
+		Operand value = cmp.getSource();
+		Operand r = cmp.getDestination();
+		if (!r.isRegister() || !value.isNumber()) return null;
+		if (value.getValue() != 0 && value.getValue() != 1) return null;
+
+		Opcode cmov = this.bools[r.getRegister().ordinal()];
+		if (cmov == null || this.boolFlags[r.getRegister().ordinal()] != this.flags) return null;
+		if ((this.liveOut[jumpIndex] & (1 << FLAGS)) != 0) return null;
+
+		// Jumps when the cmov moved the 1
+		boolean whenTrue = (value.getValue() == 0) == (op == Opcode.JNE);
+		Opcode fused = getJump(cmov);
+		if (!whenTrue) {
+			fused = getInverse(fused);
+		}
+		return new Instruction(fused, jump.getDestination());
+	}
+
+	// Constants in place of the registers holding them, and the register a register was copied from
+	private Instruction propagateSource(Instruction instr) {
+		Opcode op = instr.getOpcode();
+		if (op != Opcode.MOV && op != Opcode.ADD && op != Opcode.SUB && op != Opcode.IMUL && op != Opcode.CMP) {
+			return instr;
+		}
+
+		Operand src = instr.getSource();
+		if (!src.isRegister()) return instr;
+
+		for (Operand value: this.values.get(src.getRegister().ordinal())) {
+			if (value.isImmediate() || value.isRegister()) {
+				Instruction replaced = instr.withOperand(0, value);
+				if (isValid(replaced)) {
+					return replaced;
+				}
+			}
+		}
+		return instr;
+	}
+
+	// Operands x86 can encode
+	private boolean isValid(Instruction instr) {
+		int memory = 0;
+		for (int k = 0; k < instr.getOperandCount(); k++) {
+			Operand op = instr.getOperand(k);
+			if (op.isMemory()) memory++;
+		}
+		if (memory > 1) return false;
+
+		Operand src = instr.getSource();
+		if (src != null && src.isImmediate()) {
+			// A 64 bit constant can only be moved to a register
+			boolean toRegister = instr.getOpcode() == Opcode.MOV && instr.getDestination().isRegister();
+			if (!toRegister && !(src.isNumber() && fitsInt(src.getValue()))) return false;
+		}
+		return true;
+	}
+
+	private static boolean fitsInt(long value) {
+		return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+	}
+
+	// Adds the instruction to the output and updates what's known after it
+	private void apply(Instruction instr) {
+		Opcode op = instr.getOpcode();
+
+		// Memory read by it
+		for (int k = 0; k < instr.getOperandCount(); k++) {
+			Operand operand = instr.getOperand(k);
+			boolean written = (k == instr.getOperandCount() - 1) && op.getDestination() == Opcode.Destination.DEF;
+			if (operand.isMemory() && !written) {
+				readMemory(operand);
+			}
+		}
+
+		if ((op == Opcode.ENTER || op == Opcode.CALL || op.isJump() || op.endsBlock()) && !this.pendingStores.isEmpty()) {
+			this.pendingStores.clear();
+		}
+		if (op == Opcode.LEAVE) {
+			// The variables of the method are gone
+			for (Operand m: this.pendingStores.keySet()) {
+				if (m.getBase() == Register.RBP && m.getDisplacement() < 0) {
+					this.out.set(this.pendingStores.get(m), null);
+				}
+			}
+			this.pendingStores.clear();
+		}
+
+		Opcode cmov = null;
+		if (op.isConditionalMove()) {
+			Register s = instr.getSource().getRegister();
+			Register r = instr.getDestination().getRegister();
+			if (s != null && holdsNumber(s, 1) && holdsNumber(r, 0)) {
+				cmov = op;
+			}
+		}
+
+		if (op.writesFlags()) {
+			this.flags++;
+		}
+
+		for (Register r: instr.getDefs()) {
+			killRegister(r);
+		}
+
+		Operand written = instr.getMemoryDef();
+		if (written != null) {
+			killMemory(written);
+		}
+
+		if (op == Opcode.CALL || op == Opcode.ENTER || op == Opcode.LEAVE) {
+			// The callee may change any global
+			resetMemory();
+		}
+
+		if (op == Opcode.MOV) {
+			Operand src = instr.getSource();
+			Operand dest = instr.getDestination();
+			if (dest.isRegister()) {
+				List<Operand> destValues = this.values.get(dest.getRegister().ordinal());
+				if (!src.usesRegister(dest.getRegister())) {
+					destValues.add(src);
+				}
+				if (src.isRegister()) {
+					for (Operand value: this.values.get(src.getRegister().ordinal())) {
+						if (!value.isRegister(dest.getRegister()) && !value.usesRegister(dest.getRegister())) {
+							destValues.add(value);
+						}
+					}
+				}
+			}
+			else if (dest.isMemory()) {
+				if (src.isRegister()) {
+					this.values.get(src.getRegister().ordinal()).add(dest);
+				}
+				if (dest.getIndex() == null) {
+					if (src.isImmediate()) {
+						this.memoryValues.put(dest, src);
+					}
+					Integer previous = this.pendingStores.get(dest);
+					if (previous != null) {
+						// Overwritten before anything read it
+						this.out.set(previous, null);
+					}
+					this.pendingStores.put(dest, this.out.size());
+				}
+			}
+		}
+
+		if (cmov != null) {
+			Register r = instr.getDestination().getRegister();
+			this.bools[r.ordinal()] = cmov;
+			this.boolFlags[r.ordinal()] = this.flags;
+		}
+
+		emit(instr);
+	}
+
+	private void emit(Instruction instr) {
+		this.out.add(instr);
+	}
+
+	private void readMemory(Operand m) {
+		List<Operand> read = null;
+		for (Operand stored: this.pendingStores.keySet()) {
+			if (mayAlias(stored, m)) {
+				if (read == null) read = new ArrayList<Operand>();
+				read.add(stored);
+			}
+		}
+		if (read != null) {
+			for (Operand stored: read) {
+				this.pendingStores.remove(stored);
+			}
+		}
+	}
+
+	// Forgets what the register holds and whatever was known through it
+	private void killRegister(Register r) {
+		this.values.get(r.ordinal()).clear();
+		this.bools[r.ordinal()] = null;
+		for (List<Operand> list: this.values) {
+			for (int k = list.size() - 1; k >= 0; k--) {
+				Operand value = list.get(k);
+				if (value.isRegister(r) || value.usesRegister(r)) {
+					list.remove(k);
+				}
+			}
+		}
+		// The memory of the other facts has no index register, only RBP is in their address
+		if (r == Register.RBP) {
+			this.memoryValues.clear();
+			this.pendingStores.clear();
+		}
+	}
+
+	private void killMemory(Operand m) {
+		for (List<Operand> list: this.values) {
+			for (int k = list.size() - 1; k >= 0; k--) {
+				if (list.get(k).isMemory() && mayAlias(list.get(k), m)) {
+					list.remove(k);
+				}
+			}
+		}
+		List<Operand> changed = new ArrayList<Operand>();
+		for (Operand stored: this.memoryValues.keySet()) {
+			if (mayAlias(stored, m)) changed.add(stored);
+		}
+		this.memoryValues.keySet().removeAll(changed);
+	}
+
+	private void resetMemory() {
+		for (List<Operand> list: this.values) {
+			for (int k = list.size() - 1; k >= 0; k--) {
+				if (list.get(k).isMemory()) {
+					list.remove(k);
+				}
+			}
+		}
+		if (!this.memoryValues.isEmpty()) {
+			this.memoryValues.clear();
+		}
+	}
+
+	private void resetFacts() {
+		for (List<Operand> list: this.values) {
+			list.clear();
+		}
+		for (int r = 0; r < this.bools.length; r++) {
+			this.bools[r] = null;
+		}
+		if (!this.memoryValues.isEmpty()) {
+			this.memoryValues.clear();
+		}
+		if (!this.pendingStores.isEmpty()) {
+			this.pendingStores.clear();
+		}
+	}
+
+	// The variables of the method are 8 bytes apart from RBP, the globals are their own symbols.
+	// An index register may make a global any element of it
+	private static boolean mayAlias(Operand a, Operand b) {
+		boolean aStack = a.getBase() == Register.RBP && a.getIndex() == null && a.getSymbol() == null;
+		boolean bStack = b.getBase() == Register.RBP && b.getIndex() == null && b.getSymbol() == null;
+		boolean aGlobal = a.getBase() == null && a.getSymbol() != null;
+		boolean bGlobal = b.getBase() == null && b.getSymbol() != null;
+
+		if (aStack && bStack) {
+			return a.getDisplacement() == b.getDisplacement();
+		}
+		if (aGlobal && bGlobal) {
+			return a.getSymbol().equals(b.getSymbol());
+		}
+		if ((aStack && bGlobal) || (aGlobal && bStack)) {
+			return false;
+		}
+		return true;
+	}
+
+	private boolean holds(Register r, Operand value) {
+		return this.values.get(r.ordinal()).contains(value);
+	}
+
+	private boolean holdsNumber(Register r, long n) {
+		for (Operand value: this.values.get(r.ordinal())) {
+			if (value.isNumber() && value.getValue() == n) return true;
+		}
+		return false;
+	}
+
+	// A register other than r holding the value
+	private Register findRegister(Operand value, Register r) {
+		for (Register reg: Register.values()) {
+			if (reg != r && holds(reg, value)) return reg;
+		}
+		return null;
+	}
+
+	private boolean isLive(int i, Register r) {
+		return (this.liveOut[i] & (1 << r.ordinal())) != 0;
+	}
+
+	private void computeLiveness(List<Instruction> in) {
+		int n = in.size();
+		HashMap<String, Integer> labels = new HashMap<String, Integer>();
+		this.targets = new HashSet<String>();
+		for (int i = 0; i < n; i++) {
+			Instruction instr = in.get(i);
+			if (instr.isLabel()) {
+				labels.put(instr.getLabel(), i);
+			}
+			else if (instr.getOpcode().isJump()) {
+				this.targets.add(instr.getLabel());
+			}
+		}
+
+		int[] use = new int[n];
+		int[] def = new int[n];
+		for (int i = 0; i < n; i++) {
+			Instruction instr = in.get(i);
+			for (Register r: instr.getUses()) {
+				use[i] |= 1 << r.ordinal();
+			}
+			for (Register r: instr.getDefs()) {
+				def[i] |= 1 << r.ordinal();
+			}
+			if (instr.getOpcode().readsFlags()) use[i] |= 1 << FLAGS;
+			if (instr.getOpcode().writesFlags()) def[i] |= 1 << FLAGS;
+		}
+
+		// Found for the blocks first, they start at labels and after jumps
+		List<Integer> starts = new ArrayList<Integer>();
+		int[] blockOf = new int[n];
+		for (int i = 0; i < n; i++) {
+			if (i == 0 || in.get(i).isLabel() || in.get(i - 1).getOpcode().isJump() || in.get(i - 1).getOpcode().endsBlock()) {
+				starts.add(i);
+			}
+			blockOf[i] = starts.size() - 1;
+		}
+
+		int blocks = starts.size();
+		int[] blockUse = new int[blocks];
+		int[] blockDef = new int[blocks];
+		for (int b = 0; b < blocks; b++) {
+			for (int i = getBlockEnd(starts, b, n) - 1; i >= starts.get(b); i--) {
+				blockUse[b] = use[i] | (blockUse[b] & ~def[i]);
+				blockDef[b] |= def[i];
+			}
+		}
+
+		int[] blockIn = new int[blocks];
+		int[] blockOut = new int[blocks];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int b = blocks - 1; b >= 0; b--) {
+				int end = getBlockEnd(starts, b, n);
+				Instruction last = in.get(end - 1);
+				int out = 0;
+				if (!last.getOpcode().endsBlock() && end < n) {
+					out |= blockIn[b + 1];
+				}
+				if (last.getOpcode().isJump()) {
+					Integer target = labels.get(last.getLabel());
+					// Out of the method, anything may be read there
+					out |= (target == null) ? ALL : blockIn[blockOf[target]];
+				}
+
+				int newIn = blockUse[b] | (out & ~blockDef[b]);
+				if (out != blockOut[b] || newIn != blockIn[b]) {
+					blockOut[b] = out;
+					blockIn[b] = newIn;
+					changed = true;
+				}
+			}
+		}
+
+		this.liveOut = new int[n];
+		for (int b = 0; b < blocks; b++) {
+			int live = blockOut[b];
+			for (int i = getBlockEnd(starts, b, n) - 1; i >= starts.get(b); i--) {
+				this.liveOut[i] = live;
+				live = use[i] | (live & ~def[i]);
+			}
+		}
+	}
+
+	private static int getBlockEnd(List<Integer> starts, int b, int n) {
+		return (b + 1 < starts.size()) ? starts.get(b + 1) : n;
+	}
+
+	private static Opcode getJump(Opcode cmov) {
+		switch (cmov) {
+			case CMOVE:
+				return Opcode.JE;
+			case CMOVNE:
+				return Opcode.JNE;
+			case CMOVL:
+				return Opcode.JL;
+			case CMOVLE:
+				return Opcode.JLE;
+			case CMOVG:
+				return Opcode.JG;
+			case CMOVGE:
+				return Opcode.JGE;
+		}
+		return null;
+	}
+
+	private static Opcode getInverse(Opcode jump) {
+		switch (jump) {
+			case JE:
+			case JZ:
+				return Opcode.JNE;
+			case JNE:
+				return Opcode.JE;
+			case JL:
+				return Opcode.JGE;
+			case JGE:
+				return Opcode.JL;
+			case JLE:
+				return Opcode.JG;
+			case JG:
+				return Opcode.JLE;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,9 @@
+package decaf.dataflow;
+
+import decaf.dataflow.cfg.MethodIR;
+import decaf.dataflow.global.MethodDataFlowGenerator;
+
+// Creates the (not yet generated) analysis of a single method, registered with the PassManager
+public interface MethodAnalysisFactory<T extends MethodDataFlowGenerator> {
+	public T create(MethodIR methodIR);
+}
@@ -0,0 +1,125 @@
+package decaf.dataflow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.cfg.MethodIR;
+import decaf.dataflow.global.MethodDataFlowGenerator;
+import decaf.dataflow.global.MethodDataFlowRunner;
+import decaf.profile.CompileProfiler;
+
+// Keeps the analyses of every method between passes
+// An analysis result is tied to the version of the MethodIR it was computed on, so it is
+// reused until a transform changes that method. Transforms are run through runTransform,
+// which drops the results of exactly the methods the transform changed
+public class PassManager {
+	private HashMap<String, MethodIR> mMap;
+	private HashMap<Class<?>, MethodAnalysisFactory<?>> factories;
+	// Analysis class -> method name -> cached result
+	private HashMap<Class<?>, HashMap<String, MethodDataFlowGenerator>> cache;
+	// Analysis class -> method name -> version of the method the result was computed on
+	private HashMap<Class<?>, HashMap<String, Integer>> cacheVersions;
+	private int hits;
+	private int misses;
+	
+	public PassManager(HashMap<String, MethodIR> mMap) {
+		this.mMap = mMap;
+		this.factories = new HashMap<Class<?>, MethodAnalysisFactory<?>>();
+		this.cache = new HashMap<Class<?>, HashMap<String, MethodDataFlowGenerator>>();
+		this.cacheVersions = new HashMap<Class<?>, HashMap<String, Integer>>();
+		this.hits = 0;
+		this.misses = 0;
+	}
+	
+	public <T extends MethodDataFlowGenerator> void registerAnalysis(Class<T> analysis, MethodAnalysisFactory<T> factory) {
+		factories.put(analysis, factory);
+		cache.put(analysis, new HashMap<String, MethodDataFlowGenerator>());
+		cacheVersions.put(analysis, new HashMap<String, Integer>());
+	}
+	
+	// Returns the analysis for every method, only the methods which changed since the
+	// analysis was last computed are analyzed again (in parallel)
+	@SuppressWarnings("unchecked")
+	public <T extends MethodDataFlowGenerator> HashMap<String, T> getAnalyses(Class<T> analysis) {
+		MethodAnalysisFactory<T> factory = (MethodAnalysisFactory<T>) factories.get(analysis);
+		if (factory == null) {
+			throw new IllegalArgumentException("Analysis not registered: " + analysis.getName());
+		}
+		HashMap<String, MethodDataFlowGenerator> results = cache.get(analysis);
+		HashMap<String, Integer> versions = cacheVersions.get(analysis);
+		
+		List<MethodDataFlowGenerator> toGenerate = new ArrayList<MethodDataFlowGenerator>();
+		for (String s: this.mMap.keySet()) {
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
+			
+			MethodIR methodIR = this.mMap.get(s);
+			if (results.containsKey(s) && versions.get(s) == methodIR.getVersion()) {
+				hits++;
+				continue;
+			}
+			T generator = factory.create(methodIR);
+			results.put(s, generator);
+			versions.put(s, methodIR.getVersion());
+			toGenerate.add(generator);
+			misses++;
+		}
+		if (!toGenerate.isEmpty()) {
+			CompileProfiler.get().begin("analysis " + analysis.getSimpleName());
+			MethodDataFlowRunner.generateAll(toGenerate);
+			CompileProfiler.get().end();
+		}
+		
+		// A cached result only reads the IR, the analyses keep their own numbering of
+		// the statements, so it can be handed out as it is
+		HashMap<String, T> rtn = new HashMap<String, T>();
+		for (String s: results.keySet()) {
+			rtn.put(s, (T) results.get(s));
+		}
+		
+		return rtn;
+	}
+	
+	// Runs the transform and drops the cached analyses of every method it changed
+	public boolean runTransform(Transform transform) {
+		HashMap<String, Integer> before = new HashMap<String, Integer>();
+		for (String s: this.mMap.keySet()) {
+			before.put(s, this.mMap.get(s).getVersion());
+		}
+		
+		CompileProfiler.get().begin(transform.getClass().getSimpleName());
+		boolean changed = transform.apply();
+		CompileProfiler.get().end();
+		
+		for (String s: this.mMap.keySet()) {
+			if (before.get(s) != this.mMap.get(s).getVersion()) {
+				invalidate(s);
+			}
+		}
+		
+		return changed;
+	}
+	
+	public void invalidate(String methodName) {
+		for (Class<?> analysis: cache.keySet()) {
+			cache.get(analysis).remove(methodName);
+			cacheVersions.get(analysis).remove(methodName);
+		}
+	}
+	
+	public void invalidateAll() {
+		for (Class<?> analysis: cache.keySet()) {
+			cache.get(analysis).clear();
+			cacheVersions.get(analysis).clear();
+		}
+	}
+	
+	public int getHits() {
+		return hits;
+	}
+	
+	public int getMisses() {
+		return misses;
+	}
+}
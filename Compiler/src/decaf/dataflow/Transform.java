@@ -0,0 +1,7 @@
+package decaf.dataflow;
+
+// An optimization run by the PassManager
+// Returns true if it changed any method
+public interface Transform {
+	public boolean apply();
+}
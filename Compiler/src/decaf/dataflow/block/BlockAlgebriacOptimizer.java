@@ -18,18 +18,23 @@ public class BlockAlgebriacOptimizer {
 		this.mMap = mMap;
 	}
 
-	public void performAlgebriacSimplification() {
+	public boolean performAlgebriacSimplification() {
+		boolean changed = false;
+		
 		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
+			int version = this.mMap.get(s).getVersion();
 			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
 				optimize(block);
 				reset();
 			}
 			
 			this.mMap.get(s).regenerateStmts();
+			changed |= (this.mMap.get(s).getVersion() != version);
 		}
 		
+		return changed;
 	}
 	
 	private void reset() {
@@ -43,7 +48,15 @@ public class BlockAlgebriacOptimizer {
 			}
 			
 			QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
+			QuadrupletOp op = qStmt.getOperator();
+			Name arg1 = qStmt.getArg1();
+			Name arg2 = qStmt.getArg2();
+			
 			processStatement(qStmt);
+			
+			if (op != qStmt.getOperator()) block.markChanged();
+			block.trackReplace(arg1, qStmt.getArg1());
+			block.trackReplace(arg2, qStmt.getArg2());
 		}		
 	}
 
@@ -2,6 +2,7 @@ package decaf.dataflow.block;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 import decaf.codegen.flatir.CallStmt;
@@ -21,28 +22,36 @@ public class BlockCSEOptimizer {
 	private HashMap<Name, SymbolicValue> varToVal;
 	private HashMap<ValueExpr, SymbolicValue> expToVal;
 	private HashMap<ValueExpr, DynamicVarName> expToTemp;
+	// Temps which were added for an expression that has not been reused yet
+	private HashSet<DynamicVarName> unusedTemps;
 	private HashMap<String, MethodIR> mMap;
 	
 	public BlockCSEOptimizer(HashMap<String, MethodIR> mMap) {
 		this.varToVal = new HashMap<Name, SymbolicValue>();
 		this.expToVal = new HashMap<ValueExpr, SymbolicValue>();
 		this.expToTemp = new HashMap<ValueExpr, DynamicVarName>();
+		this.unusedTemps = new HashSet<DynamicVarName>();
 		this.mMap = mMap;
 	}
 	
-	public void performCSE() {
+	public boolean performCSE() {
 		//DynamicVarName.reset();
+		boolean changed = false;
 		
 		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
+			int version = this.mMap.get(s).getVersion();
 			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
 				optimize(block);
 				reset();
 			}
 			
 			this.mMap.get(s).regenerateStmts();
+			changed |= (this.mMap.get(s).getVersion() != version);
 		}
+		
+		return changed;
 	}
 	
 	public void optimize(CFGBlock block) {
@@ -56,7 +65,7 @@ public class BlockCSEOptimizer {
 				// TODO: May have to change this after RegisterAllocator is implemented
 				if (stmt.getClass().equals(CallStmt.class)) {			
 					CallStmt callStmt = (CallStmt) stmt;
-					if (callStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+					if (callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 					
 					// Invalidate arg registers
 					for (int i = 0; i < Register.argumentRegs.length; i++) {
@@ -83,13 +92,25 @@ public class BlockCSEOptimizer {
 			processStatement(qStmt, newStmts);
 		}
 		
-		block.setStatements(newStmts);
+		// Drop the temps of expressions which were never reused, otherwise every pass 
+		// would add them again and the block would never stop changing
+		List<LIRStatement> finalStmts = new ArrayList<LIRStatement>();
+		for (LIRStatement stmt: newStmts) {
+			if (stmt.getClass().equals(QuadrupletStmt.class)) {
+				Name dest = ((QuadrupletStmt) stmt).getDestination();
+				if (unusedTemps.contains(dest)) continue;
+			}
+			finalStmts.add(stmt);
+		}
+		
+		block.setStatements(finalStmts);
 	}
 
 	private void reset() {
 		this.expToTemp.clear();
 		this.expToVal.clear();
 		this.varToVal.clear();
+		this.unusedTemps.clear();
 	}
 
 	private void processStatement(QuadrupletStmt qStmt, List<LIRStatement> newStmts) {
@@ -105,11 +126,19 @@ public class BlockCSEOptimizer {
 			// Add new temp for dest
 			DynamicVarName temp = new DynamicVarName();
 			expToTemp.put(expr, temp);
+			unusedTemps.add(temp);
 			newStmts.add(new QuadrupletStmt(QuadrupletOp.MOVE, temp, qStmt.getDestination(), null));
 		}
+		else if (expr.getOp() == ValueExprOp.NONE && !qStmt.getArg1().getClass().equals(RegisterName.class)) {
+			// Plain copies are not replaced, copy propagation would just turn them back
+			dest = expToVal.get(expr);
+			varToVal.put(qStmt.getDestination(), dest);
+			newStmts.add(qStmt);
+		}
 		else {
 			dest = expToVal.get(expr);
 			varToVal.put(qStmt.getDestination(), dest);
+			unusedTemps.remove(expToTemp.get(expr));
 			newStmts.add(new QuadrupletStmt(QuadrupletOp.MOVE, qStmt.getDestination(), expToTemp.get(expr), null));
 		}
 	}
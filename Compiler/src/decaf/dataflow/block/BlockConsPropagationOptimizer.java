@@ -29,18 +29,23 @@ public class BlockConsPropagationOptimizer {
 		this.constantMap = new HashMap<Name, Integer>();
 	}
 
-	public void performConsPropagation() {
+	public boolean performConsPropagation() {
+		boolean changed = false;
+		
 		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
+			int version = this.mMap.get(s).getVersion();
 			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
 				optimize(block);
 				reset();
 			}
 			
 			this.mMap.get(s).regenerateStmts();
+			changed |= (this.mMap.get(s).getVersion() != version);
 		}
 		
+		return changed;
 	}
 	
 	private void reset() {
@@ -53,7 +58,7 @@ public class BlockConsPropagationOptimizer {
 				// TODO: May have to change this after RegisterAllocator is implemented
 				if (stmt.getClass().equals(CallStmt.class)) {		
 					CallStmt callStmt = (CallStmt) stmt;
-					if (callStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+					if (callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 					
 					invalidateFunctionCall();
 				}
@@ -62,21 +67,29 @@ public class BlockConsPropagationOptimizer {
 			
 			if (stmt.getClass().equals(QuadrupletStmt.class)) {
 				QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
+				QuadrupletOp op = qStmt.getOperator();
+				Name arg1 = qStmt.getArg1();
+				Name arg2 = qStmt.getArg2();
+				
 				processStatement(qStmt);
+				
+				if (op != qStmt.getOperator()) block.markChanged();
+				block.trackReplace(arg1, qStmt.getArg1());
+				block.trackReplace(arg2, qStmt.getArg2());
 			}
 			else if (stmt.getClass().equals(CmpStmt.class)) {
 				CmpStmt cStmt = (CmpStmt) stmt;
 				
-				cStmt.setArg1(processName(cStmt.getArg1()));
-				cStmt.setArg2(processName(cStmt.getArg2()));
+				cStmt.setArg1(block.trackReplace(cStmt.getArg1(), processName(cStmt.getArg1())));
+				cStmt.setArg2(block.trackReplace(cStmt.getArg2(), processName(cStmt.getArg2())));
 			}
 			else if (stmt.getClass().equals(PushStmt.class)) {
 				PushStmt pStmt = (PushStmt) stmt;
-				pStmt.setName(processName(pStmt.getName()));
+				pStmt.setName(block.trackReplace(pStmt.getName(), processName(pStmt.getName())));
 			}
 			else if (stmt.getClass().equals(PopStmt.class)) {
 				PopStmt pStmt = (PopStmt) stmt;
-				pStmt.setName(processName(pStmt.getName()));
+				pStmt.setName(block.trackReplace(pStmt.getName(), processName(pStmt.getName())));
 			}
 		}		
 	}
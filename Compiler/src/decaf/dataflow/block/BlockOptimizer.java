@@ -3,6 +3,7 @@ package decaf.dataflow.block;
 import java.util.HashMap;
 
 import decaf.dataflow.cfg.MethodIR;
+import decaf.profile.CompileProfiler;
 
 public class BlockOptimizer {
 	private BlockCSEOptimizer cse;
@@ -34,40 +35,59 @@ public class BlockOptimizer {
 		this.mMap = mMap;
 	}
 	
-	public void optimizeBlocks(boolean[] opts) {
+	// Returns true if any of the optimizations changed the code
+	public boolean optimizeBlocks(boolean[] opts) {
+		boolean changed = false;
+		
 		if(opts[1]) { // CSE
 			cse = new BlockCSEOptimizer(mMap);
-			cse.performCSE();
+			CompileProfiler.get().begin("block cse");
+			changed |= cse.performCSE();
+			CompileProfiler.get().end();
 		}
 		
 		if(opts[2]) { // COPY
 			// CP DynamicVarNames
 			copy = new BlockTempCPOptimizer(mMap);
-			copy.performCopyPropagation();
+			CompileProfiler.get().begin("block temp cp");
+			changed |= copy.performCopyPropagation();
+			CompileProfiler.get().end();
 			
 			// CP VarNames and TempNames
 			copyVar = new BlockVarCPOptimizer(mMap);
-			copyVar.performCopyPropagation();
+			CompileProfiler.get().begin("block var cp");
+			changed |= copyVar.performCopyPropagation();
+			CompileProfiler.get().end();
 		} 
 		
 		if(opts[3]) { // CONST
 			// Do Const Propagation
 			cons = new BlockConsPropagationOptimizer(mMap);
-			cons.performConsPropagation();
+			CompileProfiler.get().begin("block const prop");
+			changed |= cons.performConsPropagation();
+			CompileProfiler.get().end();
 			
 			// Do algebriac simplification
 			alg = new BlockAlgebriacOptimizer(mMap);
-			alg.performAlgebriacSimplification();
+			CompileProfiler.get().begin("block algebraic");
+			changed |= alg.performAlgebriacSimplification();
+			CompileProfiler.get().end();
 		} 
 		
 		if(opts[4]) { // DC
 			// DC VarNames and TempNames
 			dcVar = new BlockVarDCOptimizer(mMap);
-			dcVar.performDeadCodeElimination();
+			CompileProfiler.get().begin("block var dc");
+			changed |= dcVar.performDeadCodeElimination();
+			CompileProfiler.get().end();
 			
 			// DC DynamicVarName
 			dc = new BlockTempDCOptimizer(mMap);
-			dc.performDeadCodeElimination();
+			CompileProfiler.get().begin("block temp dc");
+			changed |= dc.performDeadCodeElimination();
+			CompileProfiler.get().end();
 		}
+		
+		return changed;
 	}
 }
@@ -29,19 +29,24 @@ public class BlockTempCPOptimizer {
 		this.mMap = mMap;
 	}
 	
-	public void performCopyPropagation() {
+	public boolean performCopyPropagation() {
+		boolean changed = false;
 		reset();
 		
 		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
+			int version = this.mMap.get(s).getVersion();
 			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
 				optimize(block);
 				reset();
 			}
 
 			this.mMap.get(s).regenerateStmts();
+			changed |= (this.mMap.get(s).getVersion() != version);
 		}
+		
+		return changed;
 	}
 	
 	public void optimize(CFGBlock block) {
@@ -50,7 +55,7 @@ public class BlockTempCPOptimizer {
 				// TODO: May have to change this after RegisterAllocator is implemented
 				if (stmt.getClass().equals(CallStmt.class)) {
 					CallStmt callStmt = (CallStmt) stmt;
-					if (callStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+					if (callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 					
 					RegisterName reg;
 					
@@ -78,7 +83,7 @@ public class BlockTempCPOptimizer {
 			}
 			
 			QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
-			processStatement(qStmt);
+			processStatement(qStmt, block);
 		}
 	}
 
@@ -95,7 +100,7 @@ public class BlockTempCPOptimizer {
 		}
 	}
 	
-	public void processStatement(QuadrupletStmt qStmt) {
+	public void processStatement(QuadrupletStmt qStmt, CFGBlock block) {
 		Name dest = qStmt.getDestination();
 		
 		// If the Name being assigned is a DynamicVarName
@@ -115,8 +120,8 @@ public class BlockTempCPOptimizer {
 			// Check the operands, if any of them are DynamicVarName, replace with Name from the tempToName map
 			Name newArg1 = processArgument(qStmt.getArg1());
 			Name newArg2 = processArgument(qStmt.getArg2());
-			qStmt.setArg1(newArg1);
-			qStmt.setArg2(newArg2);
+			qStmt.setArg1(block.trackReplace(qStmt.getArg1(), newArg1));
+			qStmt.setArg2(block.trackReplace(qStmt.getArg2(), newArg2));
 			
 			// Clear varToTemps for the Name that was assigned, make the temps point to themselves
 			resetVariable(dest);
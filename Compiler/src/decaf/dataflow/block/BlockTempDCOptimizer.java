@@ -23,17 +23,22 @@ public class BlockTempDCOptimizer {
 		this.mMap = mMap;
 	}
 
-	public void performDeadCodeElimination() {
+	public boolean performDeadCodeElimination() {
+		boolean changed = false;
 		reset();
 		
 		for (String s: this.mMap.keySet()) {
+			int version = this.mMap.get(s).getVersion();
 			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
 				optimize(block);
 				reset();
 			}
 			
 			this.mMap.get(s).regenerateStmts();
+			changed |= (this.mMap.get(s).getVersion() != version);
 		}
+		
+		return changed;
 	}
 	
 	private void optimize(CFGBlock block) {
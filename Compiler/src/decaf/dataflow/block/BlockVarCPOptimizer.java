@@ -30,19 +30,24 @@ public class BlockVarCPOptimizer {
 		this.mMap = mMap;
 	}
 	
-	public void performCopyPropagation() {
+	public boolean performCopyPropagation() {
+		boolean changed = false;
 		reset();
 		
 		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
+			int version = this.mMap.get(s).getVersion();
 			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
 				optimize(block);
 				reset();
 			}
 
 			this.mMap.get(s).regenerateStmts();
+			changed |= (this.mMap.get(s).getVersion() != version);
 		}
+		
+		return changed;
 	}
 
 	public void optimize(CFGBlock block) {
@@ -50,7 +55,7 @@ public class BlockVarCPOptimizer {
 			if (!stmt.isUseStatement()) {
 				if (stmt.getClass().equals(CallStmt.class)) {
 					CallStmt callStmt = (CallStmt) stmt;
-					if (callStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+					if (callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 					
 					RegisterName reg;
 					
@@ -93,32 +98,32 @@ public class BlockVarCPOptimizer {
 			
 			if (stmt.getClass().equals(QuadrupletStmt.class)) {
 				QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
-				processStatement(qStmt);
+				processStatement(qStmt, block);
 			}
 			else if (stmt.getClass().equals(CmpStmt.class)) {
 				CmpStmt cStmt = (CmpStmt) stmt;
-				cStmt.setArg1(processArgument(cStmt.getArg1()));
-				cStmt.setArg2(processArgument(cStmt.getArg2()));
+				cStmt.setArg1(block.trackReplace(cStmt.getArg1(), processArgument(cStmt.getArg1())));
+				cStmt.setArg2(block.trackReplace(cStmt.getArg2(), processArgument(cStmt.getArg2())));
 			}
 			else if (stmt.getClass().equals(PushStmt.class)) {
 				PushStmt pStmt = (PushStmt) stmt;
-				pStmt.setName(processArgument(pStmt.getName()));
+				pStmt.setName(block.trackReplace(pStmt.getName(), processArgument(pStmt.getName())));
 			}
 			else if (stmt.getClass().equals(PopStmt.class)) {
 				PopStmt pStmt = (PopStmt) stmt;
-				pStmt.setName(processArgument(pStmt.getName()));
+				pStmt.setName(block.trackReplace(pStmt.getName(), processArgument(pStmt.getName())));
 			}
 		}
 	}
 
-	private void processStatement(QuadrupletStmt qStmt) {
+	private void processStatement(QuadrupletStmt qStmt, CFGBlock block) {
 		Name dest = qStmt.getDestination();
 		
 		// If the Name being assigned is a not a DynamicVarName
 		if (qStmt.getOperator().equals(QuadrupletOp.MOVE)) {
 			// Invariant: This statement has to be of the form [DynamicVarName = Name]
 			Name newArg1 = processArgument(qStmt.getArg1());
-			qStmt.setArg1(newArg1);
+			qStmt.setArg1(block.trackReplace(qStmt.getArg1(), newArg1));
 			
 			resetVariable(dest);
 			if (!newArg1.getClass().equals(RegisterName.class)) { // Dont CP RegisterName!
@@ -128,8 +133,8 @@ public class BlockVarCPOptimizer {
 			// Check the operands, if any of them are DynamicVarName, replace with Name from the tempToName map
 			Name newArg1 = processArgument(qStmt.getArg1());
 			Name newArg2 = processArgument(qStmt.getArg2());
-			qStmt.setArg1(newArg1);
-			qStmt.setArg2(newArg2);
+			qStmt.setArg1(block.trackReplace(qStmt.getArg1(), newArg1));
+			qStmt.setArg2(block.trackReplace(qStmt.getArg2(), newArg2));
 			
 			// Clear varToVar for the Name that was assigned, make the temps point to themselves
 			resetVariable(dest);
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 
 import decaf.codegen.flatir.ArrayName;
+import decaf.codegen.flatir.CallStmt;
 import decaf.codegen.flatir.CmpStmt;
 import decaf.codegen.flatir.ConstantName;
 import decaf.codegen.flatir.LIRStatement;
@@ -13,6 +14,7 @@ import decaf.codegen.flatir.PopStmt;
 import decaf.codegen.flatir.PushStmt;
 import decaf.codegen.flatir.QuadrupletStmt;
 import decaf.codegen.flatir.RegisterName;
+import decaf.codegen.flattener.ProgramFlattener;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 
@@ -27,17 +29,22 @@ public class BlockVarDCOptimizer {
 		this.lastDefUsed = new HashMap<Name, Boolean>();
 	}
 	
-	public void performDeadCodeElimination() {
+	public boolean performDeadCodeElimination() {
+		boolean changed = false;
 		reset();
 		
 		for (String s: this.mMap.keySet()) {
+			int version = this.mMap.get(s).getVersion();
 			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
 				optimize(block);
 				reset();
 			}
 			
 			this.mMap.get(s).regenerateStmts();
+			changed |= (this.mMap.get(s).getVersion() != version);
 		}
+		
+		return changed;
 	}
 	
 	private void optimize(CFGBlock block) {
@@ -70,7 +77,7 @@ public class BlockVarDCOptimizer {
 							!this.lastDefUsed.containsKey(qStmt.getDestination())) {
 						// Last definition was not used (Registers assignments will not be removed as they're for calls)
 						if (!qStmt.getDestination().getClass().equals(RegisterName.class)) {
-							newStmts.remove(this.definitionMap.get(qStmt.getDestination()));
+							removeStatement(newStmts, this.definitionMap.get(qStmt.getDestination()));
 						}
 						
 						// Reset state for Dest Name
@@ -108,11 +115,34 @@ public class BlockVarDCOptimizer {
 					markUsed(pStmt.getName());
 				}
 			}
+			else if (stmt.getClass().equals(CallStmt.class)) {
+				CallStmt callStmt = (CallStmt) stmt;
+				
+				// The callee may read any global
+				if (!callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) {
+					for (Name n: this.lastDefUsed.keySet()) {
+						if (n.isGlobal()) {
+							this.lastDefUsed.put(n, true);
+						}
+					}
+				}
+			}
 			
 //			System.out.println("END: " + stmt + "  ==>  " + this.lastDefUsed);
 		}
 	}
 	
+	// List.remove goes by equals, which would remove the first statement that looks
+	// the same (e.g. an earlier $t0 = %rax) instead of the dead definition
+	private void removeStatement(List<LIRStatement> stmts, LIRStatement stmt) {
+		for (int i = stmts.size() - 1; i >= 0; i--) {
+			if (stmts.get(i) == stmt) {
+				stmts.remove(i);
+				return;
+			}
+		}
+	}
+	
 	private void markUsed(Name name) {
 		this.lastDefUsed.put(name, true);
 		
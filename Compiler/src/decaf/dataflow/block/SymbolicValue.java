@@ -1,16 +1,16 @@
 package decaf.dataflow.block;
 
+import decaf.CompilationContext;
+
 public class SymbolicValue {
-	public static int ID = 0;
 	public int myId;
 	
 	public SymbolicValue() {
-		myId = ID;
-		ID++;
+		myId = CompilationContext.get().nextSymbolicValueId();
 	}
 	
 	public static void reset() {
-		ID = 0;
+		CompilationContext.get().resetSymbolicValueId();
 	}
 	
 	public int getMyId() {
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.Name;
 
 public class CFGBlock {
 	private LIRStatement leader;
@@ -12,6 +13,10 @@ public class CFGBlock {
 	private List<CFGBlock> successors;
 	private int index;
 	private String methodName;
+	// Version of the method the block belongs to, bumped every time the statements of
+	// the block change, so optimizers can tell if they did anything without comparing
+	// the statements
+	private MethodVersion methodVersion;
 	
 	public CFGBlock(String methodName) {
 		this.methodName = methodName;
@@ -19,6 +24,7 @@ public class CFGBlock {
 		this.statements = new ArrayList<LIRStatement>();
 		this.predecessors = new ArrayList<CFGBlock>();
 		this.successors = new ArrayList<CFGBlock>();
+		this.methodVersion = new MethodVersion();
 	}
 
 	public LIRStatement getLeader() {
@@ -34,11 +40,55 @@ public class CFGBlock {
 	}
 
 	public void setStatements(List<LIRStatement> statements) {
+		if (!hasSameStatements(statements)) {
+			this.methodVersion.bump();
+		}
 		this.statements = statements;
 	}
 	
+	// Optimizers rebuild the statement list even if they keep every statement,
+	// so only count it as a change if some statement was added, removed or moved
+	private boolean hasSameStatements(List<LIRStatement> stmts) {
+		if (stmts == this.statements) return true;
+		if (stmts.size() != this.statements.size()) return false;
+		
+		for (int i = 0; i < stmts.size(); i++) {
+			if (stmts.get(i) != this.statements.get(i)) return false;
+		}
+		
+		return true;
+	}
+	
 	public void addStatement(LIRStatement stmt) {
 		this.statements.add(stmt);
+		this.methodVersion.bump();
+	}
+	
+	public MethodVersion getMethodVersion() {
+		return methodVersion;
+	}
+
+	// The MethodIR hands its version to all its blocks, new blocks take the one of the
+	// block they are split from
+	public void setMethodVersion(MethodVersion methodVersion) {
+		this.methodVersion = methodVersion;
+	}
+	
+	// Statements which are changed in place (e.g. setArg1) don't go through 
+	// setStatements, so whoever changes them has to mark the block
+	// Also used by IndexedCFG when the edges change
+	public void markChanged() {
+		this.methodVersion.bump();
+	}
+	
+	// Marks the block as changed if oldName is being replaced by a different Name
+	// Returns newName so it can be passed straight to the setter
+	public Name trackReplace(Name oldName, Name newName) {
+		if (oldName == newName) return newName;
+		if (oldName == null || newName == null || !oldName.equals(newName)) {
+			this.methodVersion.bump();
+		}
+		return newName;
 	}
 
 	public List<CFGBlock> getPredecessors() {
@@ -2,20 +2,19 @@ package decaf.dataflow.cfg;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
 import decaf.codegen.flatir.JumpCondOp;
 import decaf.codegen.flatir.JumpStmt;
 import decaf.codegen.flatir.LIRStatement;
-import decaf.codegen.flatir.LabelStmt;
 import decaf.codegen.flatir.LeaveStmt;
 import decaf.codegen.flattener.ProgramFlattener;
 
 public class CFGBuilder {
 	private ProgramFlattener pf;
 	private HashMap<String, List<CFGBlock>> cfgMap;
+	private HashMap<String, IndexedCFG> indexedCfgMap;
 	private LeaderElector le;
 	private boolean mergeBoundChecks;
 	private boolean regenerate;
@@ -23,6 +22,7 @@ public class CFGBuilder {
 	public CFGBuilder(ProgramFlattener pf) {
 		this.pf = pf;
 		this.cfgMap = new HashMap<String, List<CFGBlock>>();
+		this.indexedCfgMap = new HashMap<String, IndexedCFG>();
 		le = new LeaderElector(pf);
 		this.setMergeBoundChecks(false);
 		this.regenerate = true;
@@ -42,42 +42,46 @@ public class CFGBuilder {
 		le.electLeaders();
 		
 		cfgMap.clear();
+		indexedCfgMap.clear();
 		
+		List<String> changedMethods = new ArrayList<String>();
 		for (String methodName: pf.getLirMap().keySet()) {
-			List<CFGBlock> cfgList = generateCFGBlocks(methodName);
-			generateCFG(cfgList);			
-			cfgMap.put(methodName, cfgList);
+			if (buildMethodCFG(methodName)) {
+				changedMethods.add(methodName);
+			}
 		}
 		
-		fixForReturn();
-		regeneratePf();
-		
+		// Removing unreachable blocks can change which statements are leaders, so
+		// build the methods which lost blocks once more
 		if (regenerate) {
 			regenerate = false;
-			this.generateCFGs();
-		}
-	}
-
-	private void regeneratePf() {
-		for (String methodName: this.cfgMap.keySet()) {
-			List<Integer> indices = new ArrayList<Integer>();
-			for (CFGBlock block: this.cfgMap.get(methodName)) {
-				indices.add(block.getIndex());
-			}
-			
-			Collections.sort(indices);
-			
-			List<LIRStatement> newStmts = new ArrayList<LIRStatement>();
-			for (Integer i: indices) {
-				for (CFGBlock block: this.cfgMap.get(methodName)) {
-					if (block.getIndex() == i) {
-						newStmts.addAll(block.getStatements());
-					}
-				}
+			for (String methodName: changedMethods) {
+				le.electLeaders(methodName);
+				buildMethodCFG(methodName);
 			}
-			this.pf.getLirMap().put(methodName, newStmts);
 		}
 	}
+	
+	// Rebuilds the CFG of a single method from its LIR, for passes which only
+	// changed the statements of that method
+	public void generateCFG(String methodName) {
+		le.setMergeBoundChecks(this.mergeBoundChecks);
+		le.electLeaders(methodName);
+		buildMethodCFG(methodName);
+	}
+	
+	// Returns true if unreachable blocks were removed
+	private boolean buildMethodCFG(String methodName) {
+		IndexedCFG cfg = new IndexedCFG(methodName, generateCFGBlocks(methodName));
+		generateCFG(cfg);
+		cfgMap.put(methodName, cfg.getBlocks());
+		indexedCfgMap.put(methodName, cfg);
+		
+		boolean removed = fixForReturn(cfg);
+		this.pf.getLirMap().put(methodName, cfg.linearize());
+		
+		return removed;
+	}
 
 	private List<CFGBlock> generateCFGBlocks(String methodName) {
 		List<CFGBlock> cfgList = new ArrayList<CFGBlock>();
@@ -102,93 +106,57 @@ public class CFGBuilder {
 		return cfgList;
 	}
 	
-	private void generateCFG(List<CFGBlock> list) {
-		for (CFGBlock cfg: list) {
+	private void generateCFG(IndexedCFG indexedCfg) {
+		for (CFGBlock cfg: indexedCfg.getBlocks()) {
 			LIRStatement stmt = cfg.getStatements().get(cfg.getStatements().size() - 1);
 			CFGBlock blk;
 			if (stmt.getClass().equals(JumpStmt.class)) {
 				JumpStmt jmp = (JumpStmt) stmt;
 				if (jmp.getCondition() != JumpCondOp.NONE) {
-					blk = getCFGWithIndex(list, cfg.getIndex() + 1);
+					blk = indexedCfg.getBlock(cfg.getIndex() + 1);
 					if (blk != null) {
-						cfg.addSuccessor(blk);
-						blk.addPredecessor(cfg);
+						indexedCfg.addEdge(cfg, blk);
 					}
 				}
 				
-				blk = getCFGWithLeaderLabel(list, jmp.getLabel().getLabelString());
-				cfg.addSuccessor(blk);
-				blk.addPredecessor(cfg);
+				blk = indexedCfg.getBlockWithLabel(jmp.getLabel().getLabelString());
+				indexedCfg.addEdge(cfg, blk);
 			}
 			else {
-				blk = getCFGWithIndex(list, cfg.getIndex() + 1);
+				blk = indexedCfg.getBlock(cfg.getIndex() + 1);
 				if (blk != null) {
-					cfg.addSuccessor(blk);
-					blk.addPredecessor(cfg);
+					indexedCfg.addEdge(cfg, blk);
 				}
 			}
 		}
 	}
 	
-	private CFGBlock getCFGWithIndex(List<CFGBlock> list, int i) {
-		for (CFGBlock cfg: list) {
-			if (cfg.getIndex() == i) { 
-				return cfg;
-			}
+	public void fixForReturn() {
+		for (String methodName: this.indexedCfgMap.keySet()) {
+			fixForReturn(this.indexedCfgMap.get(methodName));
 		}
-		
-		return null;
 	}
 	
-	private CFGBlock getCFGWithLeaderLabel(List<CFGBlock> list, String label) {
-		for (CFGBlock cfg: list) {
-			if (cfg.getLeader().getClass().equals(LabelStmt.class)) {
-				LabelStmt stmt = (LabelStmt) cfg.getLeader();
-				if (stmt.getLabelString().equals(label)) {
-					return cfg;
+	// Returns true if unreachable blocks were removed
+	private boolean fixForReturn(IndexedCFG cfg) {
+		for (CFGBlock block: cfg.getBlocks()) {
+			if (!block.getStatements().isEmpty()) {
+				LIRStatement stmt = block.getStatements().get(block.getStatements().size() - 1);
+				if (stmt.getClass().equals(LeaveStmt.class)) {
+					if (!block.getSuccessors().isEmpty()) {
+						CFGBlock succ = block.getSuccessors().get(0);
+						block.setSuccessors(new ArrayList<CFGBlock>());
+						succ.removePredecessor(block);
+					}
 				}
 			}
 		}
 		
-		return null;
+		return cfg.removeUnreachableBlocks();
 	}
 	
-	public void fixForReturn() {
-		for (String methodName: this.cfgMap.keySet()) {
-			for (CFGBlock block: this.cfgMap.get(methodName)) {
-				if (!block.getStatements().isEmpty()) {
-					LIRStatement stmt = block.getStatements().get(block.getStatements().size() - 1);
-					if (stmt.getClass().equals(LeaveStmt.class)) {
-						if (!block.getSuccessors().isEmpty()) {
-							CFGBlock succ = block.getSuccessors().get(0);
-							block.setSuccessors(new ArrayList<CFGBlock>());
-							succ.removePredecessor(block);
-						}
-					}
-				}
-			}
-			
-			int oldSize = 0;
-			while (this.cfgMap.get(methodName).size() != oldSize) {
-				oldSize = this.cfgMap.get(methodName).size();
-				CFGBlock toRemove = null;
-				for (CFGBlock block: this.cfgMap.get(methodName)) {
-					if (block.getPredecessors().isEmpty() && block.getIndex() != 0) {
-						for (CFGBlock succ: block.getSuccessors()) {
-							succ.removePredecessor(block);
-						}
-						
-						toRemove = block; 
-						break;
-					}
-				}
-				
-				if (toRemove != null) {
-//					System.out.println("REMOVING: " + toRemove.getIndex());
-					this.cfgMap.get(methodName).remove(toRemove);
-				}
-			}
-		}
+	public IndexedCFG getIndexedCFG(String methodName) {
+		return indexedCfgMap.get(methodName);
 	}
 	
 	public void printCFG(PrintStream out) {
@@ -8,8 +8,6 @@ import decaf.dataflow.global.GlobalOptimizer;
 
 public class CFGDataflowOptimizer {
 	private HashMap<String, MethodIR> mMap;
-	private HashMap<CFGBlock, String> blockState;
-	private HashMap<CFGBlock, String> globalBlockState;
 	private BlockOptimizer bo;
 	private ProgramFlattener pf;
 	private GlobalOptimizer go;
@@ -21,46 +19,25 @@ public class CFGDataflowOptimizer {
 		this.bo = bo;
 		this.go = go;
 		this.pf = pf;
-		this.blockState = new HashMap<CFGBlock, String>();
-		this.globalBlockState = new HashMap<CFGBlock, String>();
 		this.opts = opts;
 	}
 	
 	public void optimizeCFGDataflow() {
 		int i = 0;
 		while (i < 25) {
-			updateGlobalBlockState();
+			// Every optimizer reports if it changed anything, so stop as soon as
+			// a whole pass leaves the code as it was
+			boolean changed = bo.optimizeBlocks(opts);
 			
-			bo.optimizeBlocks(opts);
-			
-			go.optimizeBlocks(opts);			
+			changed |= go.optimizeBlocks(opts);			
 			
 //			System.out.println("GLOBAL PASS " + i);
 //			pf.printLIR(System.out);
 			
-			if (!isGlobalChanged()) {
+			if (!changed) {
 				break;
 			}
 			i++;
 		}
 	}
-	
-	private void updateGlobalBlockState() {
-		for (String s : this.mMap.keySet()) {
-			for (CFGBlock block : this.mMap.get(s).getCfgBlocks()) {
-				this.blockState.put(block, block.toString());
-			}
-		}
-	}
-	
-	private boolean isGlobalChanged() {
-		for (String s : this.mMap.keySet()) {
-			for (CFGBlock block : this.mMap.get(s).getCfgBlocks()) {
-				if (!block.toString().equals(this.globalBlockState.get(block))) {
-					return true;
-				}
-			}
-		}
-		return false;
-	}
 }
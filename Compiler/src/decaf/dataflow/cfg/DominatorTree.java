@@ -0,0 +1,266 @@
+package decaf.dataflow.cfg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// Dominator tree of the CFG of a single method, computed with the iterative algorithm
+// of Cooper, Harvey and Kennedy over the blocks reachable from the entry
+// The entry is the block with index 0 (the first block of the method)
+// Blocks which can't be reached from the entry are not in the tree, they have no
+// immediate dominator and don't dominate anything
+public class DominatorTree {
+	private CFGBlock entry;
+	// Reachable blocks in reverse postorder, the entry is first
+	private List<CFGBlock> rpo;
+	private HashMap<CFGBlock, Integer> rpoNumber;
+	// Indexed by reverse postorder number, -1 if not computed yet
+	private int[] idom;
+	private HashMap<CFGBlock, List<CFGBlock>> children;
+	// Preorder / postorder numbers of the blocks in the dominator tree, a dominates b
+	// iff a's interval contains b's, so dominates() is O(1)
+	private int[] treePre;
+	private int[] treePost;
+	// Computed the first time a frontier is asked for
+	private HashMap<CFGBlock, List<CFGBlock>> frontiers;
+
+	public DominatorTree(List<CFGBlock> blocks) {
+		this.rpo = new ArrayList<CFGBlock>();
+		this.rpoNumber = new HashMap<CFGBlock, Integer>();
+		this.children = new HashMap<CFGBlock, List<CFGBlock>>();
+
+		for (CFGBlock block: blocks) {
+			if (block.getIndex() == 0) {
+				this.entry = block;
+				break;
+			}
+		}
+		if (this.entry == null && !blocks.isEmpty()) {
+			this.entry = blocks.get(0);
+		}
+
+		if (this.entry == null) {
+			this.idom = new int[0];
+			this.treePre = new int[0];
+			this.treePost = new int[0];
+			return;
+		}
+
+		computeReversePostOrder();
+		computeIdoms();
+		buildTree();
+	}
+
+	private void computeReversePostOrder() {
+		List<CFGBlock> postOrder = new ArrayList<CFGBlock>();
+		HashMap<CFGBlock, Boolean> visited = new HashMap<CFGBlock, Boolean>();
+
+		// Iterative DFS, since recursion can overflow on very large methods
+		List<CFGBlock> stack = new ArrayList<CFGBlock>();
+		List<Integer> nextSucc = new ArrayList<Integer>();
+		visited.put(entry, true);
+		stack.add(entry);
+		nextSucc.add(0);
+		while (!stack.isEmpty()) {
+			int top = stack.size() - 1;
+			CFGBlock block = stack.get(top);
+			int i = nextSucc.get(top);
+			if (i < block.getSuccessors().size()) {
+				nextSucc.set(top, i + 1);
+				CFGBlock succ = block.getSuccessors().get(i);
+				if (!visited.containsKey(succ)) {
+					visited.put(succ, true);
+					stack.add(succ);
+					nextSucc.add(0);
+				}
+			} else {
+				postOrder.add(block);
+				stack.remove(top);
+				nextSucc.remove(top);
+			}
+		}
+
+		for (int i = postOrder.size() - 1; i >= 0; i--) {
+			rpoNumber.put(postOrder.get(i), rpo.size());
+			rpo.add(postOrder.get(i));
+		}
+	}
+
+	private void computeIdoms() {
+		idom = new int[rpo.size()];
+		for (int i = 0; i < idom.length; i++) {
+			idom[i] = -1;
+		}
+		idom[0] = 0;
+
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int b = 1; b < rpo.size(); b++) {
+				int newIdom = -1;
+				for (CFGBlock pred: rpo.get(b).getPredecessors()) {
+					Integer p = rpoNumber.get(pred);
+					// Unreachable predecessors and the ones not processed yet are skipped
+					if (p == null || idom[p] == -1) continue;
+
+					if (newIdom == -1) {
+						newIdom = p;
+					} else {
+						newIdom = intersect(p, newIdom);
+					}
+				}
+				if (newIdom != -1 && idom[b] != newIdom) {
+					idom[b] = newIdom;
+					changed = true;
+				}
+			}
+		}
+	}
+
+	// Walks up from both blocks until the paths meet, using the rpo numbers as the
+	// postorder comparison (a bigger rpo number means further from the entry)
+	private int intersect(int b1, int b2) {
+		while (b1 != b2) {
+			while (b1 > b2) {
+				b1 = idom[b1];
+			}
+			while (b2 > b1) {
+				b2 = idom[b2];
+			}
+		}
+		return b1;
+	}
+
+	private void buildTree() {
+		for (CFGBlock block: rpo) {
+			children.put(block, new ArrayList<CFGBlock>());
+		}
+		for (int b = 1; b < rpo.size(); b++) {
+			children.get(rpo.get(idom[b])).add(rpo.get(b));
+		}
+
+		treePre = new int[rpo.size()];
+		treePost = new int[rpo.size()];
+		int counter = 0;
+
+		List<CFGBlock> stack = new ArrayList<CFGBlock>();
+		List<Integer> nextChild = new ArrayList<Integer>();
+		stack.add(entry);
+		nextChild.add(0);
+		treePre[0] = counter++;
+		while (!stack.isEmpty()) {
+			int top = stack.size() - 1;
+			CFGBlock block = stack.get(top);
+			int i = nextChild.get(top);
+			List<CFGBlock> kids = children.get(block);
+			if (i < kids.size()) {
+				nextChild.set(top, i + 1);
+				CFGBlock child = kids.get(i);
+				treePre[rpoNumber.get(child)] = counter++;
+				stack.add(child);
+				nextChild.add(0);
+			} else {
+				treePost[rpoNumber.get(block)] = counter++;
+				stack.remove(top);
+				nextChild.remove(top);
+			}
+		}
+	}
+
+	public CFGBlock getEntry() {
+		return entry;
+	}
+
+	public boolean isReachable(CFGBlock block) {
+		return rpoNumber.containsKey(block);
+	}
+
+	// Null for the entry and for unreachable blocks
+	public CFGBlock getIdom(CFGBlock block) {
+		Integer b = rpoNumber.get(block);
+		if (b == null || b == 0) return null;
+
+		return rpo.get(idom[b]);
+	}
+
+	public List<CFGBlock> getChildren(CFGBlock block) {
+		List<CFGBlock> kids = children.get(block);
+		if (kids == null) return new ArrayList<CFGBlock>();
+
+		return kids;
+	}
+
+	// True if every path from the entry to b goes through a (a block dominates itself)
+	public boolean dominates(CFGBlock a, CFGBlock b) {
+		Integer na = rpoNumber.get(a);
+		Integer nb = rpoNumber.get(b);
+		if (na == null || nb == null) return false;
+
+		return treePre[na] <= treePre[nb] && treePost[nb] <= treePost[na];
+	}
+
+	public boolean strictlyDominates(CFGBlock a, CFGBlock b) {
+		return a != b && dominates(a, b);
+	}
+
+	// The blocks where the dominance of the block ends: blocks with a predecessor the
+	// block dominates, which the block doesn't strictly dominate itself
+	public List<CFGBlock> getDominanceFrontier(CFGBlock block) {
+		if (frontiers == null) {
+			computeFrontiers();
+		}
+		List<CFGBlock> frontier = frontiers.get(block);
+		if (frontier == null) return new ArrayList<CFGBlock>();
+
+		return frontier;
+	}
+
+	// For every join point, walk up the dominator tree from each predecessor until the
+	// immediate dominator of the join point, the join point is in the frontier of every
+	// block on the way (Cooper, Harvey and Kennedy)
+	private void computeFrontiers() {
+		frontiers = new HashMap<CFGBlock, List<CFGBlock>>();
+		for (CFGBlock block: rpo) {
+			frontiers.put(block, new ArrayList<CFGBlock>());
+		}
+
+		for (int b = 0; b < rpo.size(); b++) {
+			CFGBlock block = rpo.get(b);
+			if (block.getPredecessors().size() < 2) continue;
+
+			for (CFGBlock pred: block.getPredecessors()) {
+				Integer runner = rpoNumber.get(pred);
+				if (runner == null) continue;
+
+				while (runner != idom[b]) {
+					List<CFGBlock> frontier = frontiers.get(rpo.get(runner));
+					if (frontier.isEmpty() || frontier.get(frontier.size() - 1) != block) {
+						frontier.add(block);
+					}
+					if (runner == 0) break;
+					runner = idom[runner];
+				}
+			}
+		}
+	}
+
+	public List<CFGBlock> getReversePostOrder() {
+		return rpo;
+	}
+
+	public int getReversePostOrderNumber(CFGBlock block) {
+		Integer b = rpoNumber.get(block);
+		if (b == null) return -1;
+
+		return b;
+	}
+
+	@Override
+	public String toString() {
+		String rtn = "";
+		for (int b = 0; b < rpo.size(); b++) {
+			rtn += rpo.get(b).getIndex() + " <- " + (b == 0 ? "-" : Integer.toString(rpo.get(idom[b]).getIndex())) + "\n";
+		}
+		return rtn;
+	}
+}
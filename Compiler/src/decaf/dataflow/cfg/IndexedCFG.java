@@ -0,0 +1,341 @@
+package decaf.dataflow.cfg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import decaf.codegen.flatir.JumpCondOp;
+import decaf.codegen.flatir.JumpStmt;
+import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.LabelStmt;
+import decaf.codegen.flatir.LeaveStmt;
+
+// The CFG of a single method, with the blocks indexed by their index and by the
+// label they start with, so jumps are resolved in O(1)
+// The block list is the one the CFGBuilder hands out in its cfgMap, in layout order
+// (the order the statements are emitted in), which is also the order of the indices.
+// Edges and blocks can be changed in place, so a pass which changes the shape of the
+// graph doesn't need to rebuild the CFGs of the whole program
+public class IndexedCFG {
+	private String methodName;
+	private List<CFGBlock> blocks;
+	// Block index -> block, null if the block was removed
+	private List<CFGBlock> blocksByIndex;
+	// Label of the leader -> block
+	private HashMap<String, CFGBlock> labelToBlock;
+
+	public IndexedCFG(String methodName, List<CFGBlock> blocks) {
+		this.methodName = methodName;
+		this.blocks = blocks;
+		this.blocksByIndex = new ArrayList<CFGBlock>();
+		this.labelToBlock = new HashMap<String, CFGBlock>();
+
+		for (CFGBlock block: blocks) {
+			while (blocksByIndex.size() <= block.getIndex()) {
+				blocksByIndex.add(null);
+			}
+			blocksByIndex.set(block.getIndex(), block);
+			addLabel(block);
+		}
+	}
+
+	private void addLabel(CFGBlock block) {
+		if (block.getLeader() != null && block.getLeader().getClass().equals(LabelStmt.class)) {
+			String label = ((LabelStmt) block.getLeader()).getLabelString();
+			// Same as a scan of the list, the first block with the label wins
+			if (!labelToBlock.containsKey(label)) {
+				labelToBlock.put(label, block);
+			}
+		}
+	}
+
+	private void removeLabel(CFGBlock block) {
+		if (block.getLeader() != null && block.getLeader().getClass().equals(LabelStmt.class)) {
+			String label = ((LabelStmt) block.getLeader()).getLabelString();
+			if (labelToBlock.get(label) == block) {
+				labelToBlock.remove(label);
+			}
+		}
+	}
+
+	public CFGBlock getBlock(int index) {
+		if (index < 0 || index >= blocksByIndex.size()) return null;
+
+		return blocksByIndex.get(index);
+	}
+
+	public CFGBlock getBlockWithLabel(String label) {
+		return labelToBlock.get(label);
+	}
+
+	public List<CFGBlock> getBlocks() {
+		return blocks;
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+
+	// Every change of the edges or blocks marks the method as changed (through a block of
+	// it, the blocks of a method share its version)
+	public void addEdge(CFGBlock from, CFGBlock to) {
+		from.addSuccessor(to);
+		to.addPredecessor(from);
+		from.markChanged();
+	}
+
+	public void removeEdge(CFGBlock from, CFGBlock to) {
+		from.getSuccessors().remove(to);
+		to.removePredecessor(from);
+		from.markChanged();
+	}
+
+	// Makes the edge from -> oldTo go to newTo, keeping its position among the successors
+	// If from ends with a jump to oldTo, the jump is changed to go to newTo as well
+	public void redirectEdge(CFGBlock from, CFGBlock oldTo, CFGBlock newTo) {
+		int i = from.getSuccessors().indexOf(oldTo);
+		if (i < 0) return;
+
+		from.getSuccessors().set(i, newTo);
+		oldTo.removePredecessor(from);
+		newTo.addPredecessor(from);
+		from.markChanged();
+
+		if (from.getStatements().isEmpty()) return;
+
+		LIRStatement last = from.getStatements().get(from.getStatements().size() - 1);
+		if (last.getClass().equals(JumpStmt.class) && newTo.getLeader().getClass().equals(LabelStmt.class)) {
+			JumpStmt jStmt = (JumpStmt) last;
+			if (jStmt.getLabel().equals(oldTo.getLeader())) {
+				jStmt.setLabel((LabelStmt) newTo.getLeader());
+			}
+		}
+	}
+
+	// Removes the block and all its edges, the indices of the other blocks stay the same
+	public void removeBlock(CFGBlock block) {
+		for (CFGBlock succ: block.getSuccessors()) {
+			succ.removePredecessor(block);
+		}
+		for (CFGBlock pred: block.getPredecessors()) {
+			pred.getSuccessors().remove(block);
+		}
+		block.setSuccessors(new ArrayList<CFGBlock>());
+		block.setPredecessors(new ArrayList<CFGBlock>());
+
+		removeFromList(block);
+		blocksByIndex.set(block.getIndex(), null);
+		removeLabel(block);
+		block.markChanged();
+	}
+
+	private void removeFromList(CFGBlock block) {
+		for (int i = 0; i < blocks.size(); i++) {
+			if (blocks.get(i) == block) {
+				blocks.remove(i);
+				return;
+			}
+		}
+	}
+
+	// Removes every block (except the entry) without predecessors, and then the blocks
+	// which lost all their predecessors because of that
+	// Returns true if any block was removed
+	public boolean removeUnreachableBlocks() {
+		List<CFGBlock> worklist = new ArrayList<CFGBlock>();
+		for (CFGBlock block: blocks) {
+			if (block.getPredecessors().isEmpty() && block.getIndex() != 0) {
+				worklist.add(block);
+			}
+		}
+		if (worklist.isEmpty()) return false;
+
+		List<CFGBlock> removed = new ArrayList<CFGBlock>();
+		while (!worklist.isEmpty()) {
+			CFGBlock block = worklist.remove(worklist.size() - 1);
+			if (blocksByIndex.get(block.getIndex()) != block) continue;
+
+			blocksByIndex.set(block.getIndex(), null);
+			removeLabel(block);
+			block.markChanged();
+			removed.add(block);
+			for (CFGBlock succ: block.getSuccessors()) {
+				succ.removePredecessor(block);
+				if (succ.getPredecessors().isEmpty() && succ.getIndex() != 0) {
+					worklist.add(succ);
+				}
+			}
+		}
+
+		// Filter the list once instead of removing the blocks one by one
+		List<CFGBlock> remaining = new ArrayList<CFGBlock>();
+		for (CFGBlock block: blocks) {
+			if (blocksByIndex.get(block.getIndex()) == block) {
+				remaining.add(block);
+			}
+		}
+		blocks.clear();
+		blocks.addAll(remaining);
+
+		return true;
+	}
+
+	// Splits the block before the statement at stmtIndex. The statements from stmtIndex on
+	// and all the successors are moved to a new block, which is placed right after the
+	// block in the layout and is its only successor
+	// The blocks after it are renumbered, so maps keyed by CFGBlock have to be rebuilt
+	public CFGBlock splitBlock(CFGBlock block, int stmtIndex) {
+		List<LIRStatement> stmts = block.getStatements();
+		if (stmtIndex <= 0 || stmtIndex >= stmts.size()) return null;
+
+		CFGBlock newBlock = new CFGBlock(methodName);
+		newBlock.setMethodVersion(block.getMethodVersion());
+		newBlock.setLeader(stmts.get(stmtIndex));
+		stmts.get(stmtIndex).setIsLeader(true);
+		newBlock.setStatements(new ArrayList<LIRStatement>(stmts.subList(stmtIndex, stmts.size())));
+		block.setStatements(new ArrayList<LIRStatement>(stmts.subList(0, stmtIndex)));
+
+		for (CFGBlock succ: block.getSuccessors()) {
+			// Replace the old block with the new one, keeping the position
+			for (int i = 0; i < succ.getPredecessors().size(); i++) {
+				if (succ.getPredecessors().get(i) == block) {
+					succ.getPredecessors().set(i, newBlock);
+					break;
+				}
+			}
+			newBlock.addSuccessor(succ);
+		}
+		block.setSuccessors(new ArrayList<CFGBlock>());
+		addEdge(block, newBlock);
+
+		blocks.add(blocks.indexOf(block) + 1, newBlock);
+		renumber();
+
+		return newBlock;
+	}
+
+	// Puts a new block with only the given label on the edge from -> to, so statements can
+	// be added to that edge alone. The new block is placed right before 'to' in the layout
+	// and falls through into it. A jump of 'from' to 'to' is changed to go to the new
+	// block, and if the block before it in the layout fell through into 'to', it is given
+	// a jump to 'to' (jumping over the new block)
+	// The blocks after it are renumbered, so maps keyed by CFGBlock have to be rebuilt
+	public CFGBlock splitEdge(CFGBlock from, CFGBlock to, LabelStmt label) {
+		int i = blocks.indexOf(to);
+		if (i < 0 || !from.getSuccessors().contains(to)) return null;
+		CFGBlock before = (i > 0) ? blocks.get(i - 1) : null;
+		
+		CFGBlock newBlock = new CFGBlock(methodName);
+		newBlock.setMethodVersion(from.getMethodVersion());
+		label.setIsLeader(true);
+		newBlock.setLeader(label);
+		newBlock.setStatements(new ArrayList<LIRStatement>());
+		newBlock.addStatement(label);
+		
+		boolean fromJumps = false;
+		LIRStatement last = getLastStatement(from);
+		if (last != null && last.getClass().equals(JumpStmt.class) && to.getLeader().getClass().equals(LabelStmt.class)) {
+			JumpStmt jStmt = (JumpStmt) last;
+			if (jStmt.getLabel().getLabelString().equals(((LabelStmt) to.getLeader()).getLabelString())) {
+				jStmt.setLabel(label);
+				from.markChanged();
+				fromJumps = true;
+			}
+		}
+		if (!fromJumps && before != from) return null; // from doesn't reach 'to' by a jump or by falling through
+		
+		// The block before can only fall through into the new block if the split edge is
+		// its fall through edge
+		if (fromJumps && before != null && fallsThrough(before) && before.getSuccessors().contains(to)) {
+			before.addStatement(new JumpStmt(JumpCondOp.NONE, (LabelStmt) to.getLeader()));
+		}
+		
+		int j = from.getSuccessors().indexOf(to);
+		from.getSuccessors().set(j, newBlock);
+		for (int k = 0; k < to.getPredecessors().size(); k++) {
+			if (to.getPredecessors().get(k) == from) {
+				to.getPredecessors().set(k, newBlock);
+				break;
+			}
+		}
+		newBlock.addPredecessor(from);
+		newBlock.addSuccessor(to);
+		
+		blocks.add(i, newBlock);
+		renumber();
+		addLabel(newBlock);
+		
+		return newBlock;
+	}
+	
+	private LIRStatement getLastStatement(CFGBlock block) {
+		if (block.getStatements().isEmpty()) return null;
+		
+		return block.getStatements().get(block.getStatements().size() - 1);
+	}
+	
+	// True if control can go from the end of the block to the next block in the layout
+	private boolean fallsThrough(CFGBlock block) {
+		LIRStatement last = getLastStatement(block);
+		if (last == null) return true;
+		if (last.getClass().equals(LeaveStmt.class)) return false;
+		if (last.getClass().equals(JumpStmt.class)) {
+			return ((JumpStmt) last).getCondition() != JumpCondOp.NONE;
+		}
+		
+		return true;
+	}
+
+	// Appends second to first if second directly follows first in the layout, first
+	// falls through only into second and second is only reached from first
+	// The blocks after it are renumbered, so maps keyed by CFGBlock have to be rebuilt
+	// Returns true if the blocks were merged
+	public boolean mergeBlocks(CFGBlock first, CFGBlock second) {
+		int i = blocks.indexOf(first);
+		if (i < 0 || i + 1 >= blocks.size() || blocks.get(i + 1) != second) return false;
+		if (first.getSuccessors().size() != 1 || first.getSuccessors().get(0) != second) return false;
+		if (second.getPredecessors().size() != 1) return false;
+
+		List<LIRStatement> stmts = new ArrayList<LIRStatement>(first.getStatements());
+		stmts.addAll(second.getStatements());
+		second.getLeader().setIsLeader(false);
+		first.setStatements(stmts);
+
+		first.setSuccessors(new ArrayList<CFGBlock>());
+		for (CFGBlock succ: second.getSuccessors()) {
+			for (int j = 0; j < succ.getPredecessors().size(); j++) {
+				if (succ.getPredecessors().get(j) == second) {
+					succ.getPredecessors().set(j, first);
+					break;
+				}
+			}
+			first.addSuccessor(succ);
+		}
+
+		removeLabel(second);
+		blocks.remove(i + 1);
+		renumber();
+		first.markChanged();
+
+		return true;
+	}
+
+	// Gives the blocks consecutive indices in layout order
+	private void renumber() {
+		blocksByIndex.clear();
+		for (int i = 0; i < blocks.size(); i++) {
+			blocks.get(i).setIndex(i);
+			blocksByIndex.add(blocks.get(i));
+		}
+	}
+
+	// The statements of the method, in layout order
+	public List<LIRStatement> linearize() {
+		List<LIRStatement> stmts = new ArrayList<LIRStatement>();
+		for (CFGBlock block: blocks) {
+			stmts.addAll(block.getStatements());
+		}
+
+		return stmts;
+	}
+}
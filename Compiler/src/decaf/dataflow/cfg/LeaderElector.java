@@ -29,6 +29,11 @@ public class LeaderElector {
 		}
 	}
 
+	public void electLeaders(String methodName) {
+		processMethod(pf.getLirMap().get(methodName));
+		labelsToMakeLeaders.clear();
+	}
+
 	private void processMethod(List<LIRStatement> list) {
 		boolean isFirst = true;
 		boolean justSawJump = false;
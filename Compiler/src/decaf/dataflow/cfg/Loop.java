@@ -0,0 +1,139 @@
+package decaf.dataflow.cfg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+// A natural loop: the header and every block which can reach one of the back edges
+// into the header without going through it. Loops with the same header are one loop
+public class Loop {
+	private CFGBlock header;
+	// Sources of the back edges into the header
+	private List<CFGBlock> latches;
+	// All the blocks of the loop, including the ones of the nested loops
+	private HashSet<CFGBlock> blocks;
+	private Loop parent;
+	private List<Loop> children;
+	private int depth;
+
+	public Loop(CFGBlock header) {
+		this.header = header;
+		this.latches = new ArrayList<CFGBlock>();
+		this.blocks = new HashSet<CFGBlock>();
+		this.blocks.add(header);
+		this.children = new ArrayList<Loop>();
+		this.depth = 1;
+	}
+
+	public CFGBlock getHeader() {
+		return header;
+	}
+
+	public List<CFGBlock> getLatches() {
+		return latches;
+	}
+
+	public void addLatch(CFGBlock latch) {
+		latches.add(latch);
+	}
+
+	public HashSet<CFGBlock> getBlocks() {
+		return blocks;
+	}
+
+	public void addBlock(CFGBlock block) {
+		blocks.add(block);
+	}
+
+	public boolean contains(CFGBlock block) {
+		return blocks.contains(block);
+	}
+
+	public boolean contains(Loop loop) {
+		while (loop != null) {
+			if (loop == this) return true;
+			loop = loop.getParent();
+		}
+		return false;
+	}
+
+	public Loop getParent() {
+		return parent;
+	}
+
+	public void setParent(Loop parent) {
+		this.parent = parent;
+	}
+
+	public List<Loop> getChildren() {
+		return children;
+	}
+
+	// 1 for outermost loops
+	public int getDepth() {
+		return depth;
+	}
+
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	// Blocks outside the loop which are successors of a block of the loop, in layout order
+	public List<CFGBlock> getExitBlocks() {
+		List<CFGBlock> exits = new ArrayList<CFGBlock>();
+		for (CFGBlock block: blocks) {
+			for (CFGBlock succ: block.getSuccessors()) {
+				if (!blocks.contains(succ) && !exits.contains(succ)) {
+					exits.add(succ);
+				}
+			}
+		}
+		sortByIndex(exits);
+
+		return exits;
+	}
+
+	// The only predecessor of the header from outside the loop, if it has the header as
+	// its only successor. Null if the loop has no such block
+	public CFGBlock getPreheader() {
+		CFGBlock preheader = null;
+		for (CFGBlock pred: header.getPredecessors()) {
+			if (blocks.contains(pred)) continue;
+			if (preheader != null && preheader != pred) return null;
+			preheader = pred;
+		}
+		if (preheader == null || preheader.getSuccessors().size() != 1) return null;
+
+		return preheader;
+	}
+
+	// The blocks of the loop in layout order
+	public List<CFGBlock> getBlocksInOrder() {
+		List<CFGBlock> rtn = new ArrayList<CFGBlock>(blocks);
+		sortByIndex(rtn);
+
+		return rtn;
+	}
+
+	private static void sortByIndex(List<CFGBlock> list) {
+		Collections.sort(list, new Comparator<CFGBlock>() {
+			@Override
+			public int compare(CFGBlock b1, CFGBlock b2) {
+				return b1.getIndex() - b2.getIndex();
+			}
+		});
+	}
+
+	@Override
+	public String toString() {
+		String rtn = "Loop(header: " + header.getIndex() + ", depth: " + depth + ", blocks: [";
+		List<CFGBlock> ordered = getBlocksInOrder();
+		for (int i = 0; i < ordered.size(); i++) {
+			if (i > 0) rtn += ", ";
+			rtn += ordered.get(i).getIndex();
+		}
+		return rtn + "])";
+	}
+}
@@ -0,0 +1,176 @@
+package decaf.dataflow.cfg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+// The natural loops of a method and how they nest, found from the back edges of the
+// dominator tree (an edge b -> h where h dominates b)
+// Headers are visited in postorder of the dominator tree, so inner loops are found
+// before the loops around them. The walk back from the latches stops at loops that
+// were already found and jumps to their header, so only the blocks of the outer loop
+// itself are walked again
+public class LoopNestForest {
+	private DominatorTree domTree;
+	// Outermost loops, in layout order of their headers
+	private List<Loop> roots;
+	// All the loops, inner loops before the loops around them
+	private List<Loop> loops;
+	// Block -> innermost loop containing it, blocks in no loop aren't in the map
+	private HashMap<CFGBlock, Loop> innermost;
+	// Header -> loop
+	private HashMap<CFGBlock, Loop> headers;
+
+	public LoopNestForest(DominatorTree domTree) {
+		this.domTree = domTree;
+		this.roots = new ArrayList<Loop>();
+		this.loops = new ArrayList<Loop>();
+		this.innermost = new HashMap<CFGBlock, Loop>();
+		this.headers = new HashMap<CFGBlock, Loop>();
+
+		if (domTree.getEntry() == null) return;
+
+		for (CFGBlock header: domTreePostOrder()) {
+			findLoop(header);
+		}
+
+		for (Loop loop: loops) {
+			if (loop.getParent() == null) {
+				roots.add(loop);
+			}
+		}
+		Collections.sort(roots, new Comparator<Loop>() {
+			@Override
+			public int compare(Loop l1, Loop l2) {
+				return l1.getHeader().getIndex() - l2.getHeader().getIndex();
+			}
+		});
+		// Parents come after their children in the list
+		for (int i = loops.size() - 1; i >= 0; i--) {
+			Loop loop = loops.get(i);
+			if (loop.getParent() != null) {
+				loop.setDepth(loop.getParent().getDepth() + 1);
+			}
+		}
+	}
+
+	private List<CFGBlock> domTreePostOrder() {
+		List<CFGBlock> postOrder = new ArrayList<CFGBlock>();
+		List<CFGBlock> stack = new ArrayList<CFGBlock>();
+		List<Integer> nextChild = new ArrayList<Integer>();
+		stack.add(domTree.getEntry());
+		nextChild.add(0);
+		while (!stack.isEmpty()) {
+			int top = stack.size() - 1;
+			CFGBlock block = stack.get(top);
+			int i = nextChild.get(top);
+			List<CFGBlock> kids = domTree.getChildren(block);
+			if (i < kids.size()) {
+				nextChild.set(top, i + 1);
+				stack.add(kids.get(i));
+				nextChild.add(0);
+			} else {
+				postOrder.add(block);
+				stack.remove(top);
+				nextChild.remove(top);
+			}
+		}
+
+		return postOrder;
+	}
+
+	private void findLoop(CFGBlock header) {
+		List<CFGBlock> worklist = new ArrayList<CFGBlock>();
+		for (CFGBlock pred: header.getPredecessors()) {
+			if (domTree.dominates(header, pred)) {
+				worklist.add(pred);
+			}
+		}
+		if (worklist.isEmpty()) return;
+
+		Loop loop = new Loop(header);
+		for (CFGBlock latch: worklist) {
+			loop.addLatch(latch);
+		}
+		innermost.put(header, loop);
+		headers.put(header, loop);
+
+		while (!worklist.isEmpty()) {
+			CFGBlock block = worklist.remove(worklist.size() - 1);
+			Loop sub = innermost.get(block);
+
+			if (sub == null) {
+				innermost.put(block, loop);
+				loop.addBlock(block);
+				for (CFGBlock pred: block.getPredecessors()) {
+					if (domTree.isReachable(pred)) {
+						worklist.add(pred);
+					}
+				}
+			} else {
+				// Already in a loop, go to the outermost loop found so far around it
+				while (sub.getParent() != null) {
+					sub = sub.getParent();
+				}
+				if (sub == loop) continue;
+
+				sub.setParent(loop);
+				loop.getChildren().add(sub);
+				loop.getBlocks().addAll(sub.getBlocks());
+				// Continue from the entries of the inner loop
+				for (CFGBlock pred: sub.getHeader().getPredecessors()) {
+					if (!sub.contains(pred) && domTree.isReachable(pred)) {
+						worklist.add(pred);
+					}
+				}
+			}
+		}
+
+		loops.add(loop);
+	}
+
+	public DominatorTree getDominatorTree() {
+		return domTree;
+	}
+
+	public List<Loop> getRoots() {
+		return roots;
+	}
+
+	public List<Loop> getLoops() {
+		return loops;
+	}
+
+	// Null if the block is in no loop
+	public Loop getLoopFor(CFGBlock block) {
+		return innermost.get(block);
+	}
+
+	// Null if the block isn't a loop header
+	public Loop getLoopWithHeader(CFGBlock block) {
+		return headers.get(block);
+	}
+
+	public boolean isLoopHeader(CFGBlock block) {
+		return headers.containsKey(block);
+	}
+
+	// Number of loops around the block, 0 if it is in no loop
+	public int getLoopDepth(CFGBlock block) {
+		Loop loop = innermost.get(block);
+		if (loop == null) return 0;
+
+		return loop.getDepth();
+	}
+
+	@Override
+	public String toString() {
+		String rtn = "";
+		for (Loop loop: loops) {
+			rtn += loop + "\n";
+		}
+		return rtn;
+	}
+}
@@ -6,25 +6,55 @@ import java.util.List;
 
 import decaf.codegen.flatir.LIRStatement;
 import decaf.codegen.flattener.ProgramFlattener;
+import decaf.codegen.flattener.StatementSource;
 
-public class MethodIR {
-	private static ProgramFlattener pf;
+// The CFG blocks are the statements of the method, the flat statement list is only
+// produced from them when someone asks for it
+public class MethodIR implements StatementSource {
+	// Program the statements of the method belong to
+	private ProgramFlattener pf;
 	private String id;
 	private List<LIRStatement> statements;
 	private List<CFGBlock> cfgBlocks;
+	// True if the blocks changed since the statements were last linearized
+	private boolean statementsStale;
+	// Shared with every block, bumped by any change to the statements, edges or blocks
+	private MethodVersion version;
+	// Cached loop forest (which holds the dominator tree) and the version it was computed for
+	private LoopNestForest loops;
+	private int loopsVersion;
 	
-	public MethodIR(String id, List<LIRStatement> statements, List<CFGBlock> cfgBlocks) {
+	public MethodIR(ProgramFlattener pf, String id, List<LIRStatement> statements, List<CFGBlock> cfgBlocks) {
+		this.pf = pf;
 		this.id = id;
 		this.statements = statements;
-		this.cfgBlocks = cfgBlocks;
+		this.statementsStale = false;
+		this.version = new MethodVersion();
+		setCfgBlocks(cfgBlocks);
 	}
 	
+	// Called after the blocks were changed. Doesn't linearize anything, that happens
+	// when the statements of the method are read (here or through the LIR map)
 	public void regenerateStmts() {
-		// Change statements
-		List<LIRStatement> stmts = new ArrayList<LIRStatement>();
+		this.statementsStale = true;
+		pf.addPendingMethod(id, this);
+	}
+	
+	private void linearize() {
+		// Place the blocks by index in one pass, removed blocks leave gaps in the indices
+		int maxIndex = -1;
+		for (CFGBlock block: this.cfgBlocks) {
+			maxIndex = Math.max(maxIndex, block.getIndex());
+		}
+		CFGBlock[] blocks = new CFGBlock[maxIndex + 1];
+		for (CFGBlock block: this.cfgBlocks) {
+			blocks[block.getIndex()] = block;
+		}
 		
-		for (int i = 0; i < this.cfgBlocks.size(); i++) {
-			for (LIRStatement stmt : getBlockWithIndex(i).getStatements()) {
+		List<LIRStatement> stmts = new ArrayList<LIRStatement>();
+		for (CFGBlock block: blocks) {
+			if (block == null) continue;
+			for (LIRStatement stmt : block.getStatements()) {
 				if (stmt != null) {
 					stmts.add(stmt);
 				}
@@ -32,17 +62,8 @@ public class MethodIR {
 		}
 		
 		this.statements = stmts;
-		pf.getLirMap().put(id, stmts);
-	}
-	
-	private CFGBlock getBlockWithIndex(int i) {
-		for (CFGBlock block: this.cfgBlocks) {
-			if (block.getIndex() == i) {
-				return block;
-			}
-		}
-		
-		return null;
+		this.statementsStale = false;
+		pf.setStatements(id, stmts);
 	}
 
 	public List<CFGBlock> getCfgBlocks() {
@@ -51,14 +72,49 @@ public class MethodIR {
 
 	public void setCfgBlocks(List<CFGBlock> cfgBlocks) {
 		this.cfgBlocks = cfgBlocks;
+		for (CFGBlock block: cfgBlocks) {
+			block.setMethodVersion(this.version);
+		}
+		this.version.bump();
+	}
+	
+	// Goes up whenever the method changes (statements, edges, blocks removed or added) and
+	// never comes back to an older value, so comparing the value before and after a pass
+	// tells if the pass changed the method
+	public int getVersion() {
+		return version.get();
+	}
+	
+	public LoopNestForest getLoopNestForest() {
+		int version = getVersion();
+		if (loops == null || loopsVersion != version) {
+			loops = new LoopNestForest(new DominatorTree(this.cfgBlocks));
+			loopsVersion = version;
+		}
+		
+		return loops;
+	}
+	
+	public DominatorTree getDominatorTree() {
+		return getLoopNestForest().getDominatorTree();
+	}
+	
+	// For passes which move edges around without changing the blocks
+	public void invalidateLoops() {
+		loops = null;
 	}
 
 	public void setStatements(List<LIRStatement> statements) {
 		this.statements = statements;
-		pf.getLirMap().put(id, this.statements);
+		this.statementsStale = false;
+		this.version.bump();
+		pf.setStatements(id, this.statements);
 	}
 
 	public List<LIRStatement> getStatements() {
+		if (statementsStale) {
+			linearize();
+		}
 		return statements;
 	}
 
@@ -71,11 +127,10 @@ public class MethodIR {
 	}
 	
 	public static HashMap<String, MethodIR> generateMethodIRs(ProgramFlattener pf, CFGBuilder cb) {
-		MethodIR.pf = pf;
 		HashMap<String, MethodIR> rtn = new HashMap<String, MethodIR>();
 		
 		for (String id: pf.getLirMap().keySet()) {
-			rtn.put(id, new MethodIR(id, pf.getLirMap().get(id), cb.getCfgMap().get(id)));
+			rtn.put(id, new MethodIR(pf, id, pf.getLirMap().get(id), cb.getCfgMap().get(id)));
 		}
 		
 		return rtn;
@@ -0,0 +1,20 @@
+package decaf.dataflow.cfg;
+
+// Counts the changes made to one method, shared by all the blocks of the method
+// It only goes up, so a version seen before a pass is never seen again once the pass
+// changed the method, whatever it changed (statements, edges or blocks)
+public class MethodVersion {
+	private int version;
+
+	public MethodVersion() {
+		this.version = 0;
+	}
+
+	public void bump() {
+		this.version++;
+	}
+
+	public int get() {
+		return version;
+	}
+}
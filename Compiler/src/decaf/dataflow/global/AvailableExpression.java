@@ -1,5 +1,6 @@
 package decaf.dataflow.global;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.Name;
 import decaf.codegen.flatir.QuadrupletOp;
 
@@ -8,22 +9,27 @@ public class AvailableExpression {
 	private Name arg2;
 	private QuadrupletOp operator;
 	private int myId;
-	private static int ID = 0;
 
 	public AvailableExpression(Name a1, Name a2, QuadrupletOp op) {
 		arg1 = a1;
 		arg2 = a2;
 		operator = op;
-		myId = ID;
-		ID++;
+		myId = CompilationContext.get().nextAvailableExpressionId();
+	}
+	
+	public AvailableExpression(Name a1, Name a2, QuadrupletOp op, int id) {
+		arg1 = a1;
+		arg2 = a2;
+		operator = op;
+		myId = id;
 	}
 	
 	public static int getID() {
-		return ID;
+		return CompilationContext.get().getAvailableExpressionId();
 	}
 
 	public static void setID(int iD) {
-		ID = iD;
+		CompilationContext.get().setAvailableExpressionId(iD);
 	}
 	
 	public int getMyId() {
@@ -32,7 +38,7 @@ public class AvailableExpression {
 
 	public void setMyId(int myId) {
 		this.myId = myId;
-		ID++;
+		CompilationContext.get().nextAvailableExpressionId();
 	}
 	
 	public Name getArg1() {
@@ -1,8 +1,10 @@
 package decaf.dataflow.global;
 
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 
@@ -27,51 +29,63 @@ import decaf.dataflow.cfg.MethodIR;
 // If 'a' is used in some definition, and if there exists only ONE reaching assignment 
 // definition that assigns to 'a', replace 'a' with definition's LHS
 
-public class BlockAssignmentDefinitionGenerator {
-	private HashMap<String, MethodIR> mMap;
+public class BlockAssignmentDefinitionGenerator implements BlockTransferFunction, MethodDataFlowGenerator {
+	private MethodIR methodIR;
 	private HashMap<CFGBlock, BlockDataFlowState> blockAssignReachingDefs;
-	private HashSet<CFGBlock> cfgBlocksToProcess;
+	private List<CFGBlock> cfgBlocks;
 	private HashMap<QuadrupletStmt, Integer> uniqueAssignmentStmts;
 	// Map from Name to set of QuadrupletStmts which assign to that Name
 	private HashMap<Name, HashSet<QuadrupletStmt>> nameToQStmtsThatAssignIt;
 	// Map from Name to set of QuadrupletStmts which use that Name to assign something
 	private HashMap<Name, HashSet<QuadrupletStmt>> nameToQStmtsWhichItAssigns;
 	private int totalAssignmentDefinitions;
+	// ID of every assignment statement, kept here and not in the statements so
+	// other analyses of the method can't change it
+	private IdentityHashMap<QuadrupletStmt, Integer> statementIds;
 	
-	public BlockAssignmentDefinitionGenerator(HashMap<String, MethodIR> mMap) {
-		this.mMap = mMap;
+	public BlockAssignmentDefinitionGenerator(MethodIR methodIR) {
+		this.methodIR = methodIR;
 		nameToQStmtsThatAssignIt = new HashMap<Name, HashSet<QuadrupletStmt>>();
 		nameToQStmtsWhichItAssigns = new HashMap<Name, HashSet<QuadrupletStmt>>();
 		uniqueAssignmentStmts = new HashMap<QuadrupletStmt, Integer>();
 		blockAssignReachingDefs = new HashMap<CFGBlock, BlockDataFlowState>();
-		cfgBlocksToProcess = new HashSet<CFGBlock>();
+		cfgBlocks = new ArrayList<CFGBlock>();
+		statementIds = new IdentityHashMap<QuadrupletStmt, Integer>();
 		totalAssignmentDefinitions = 0;
 	}
 	
+	// Generates assignment definitions for every method, each method numbers its own statements
+	public static HashMap<String, BlockAssignmentDefinitionGenerator> generateForMethods(HashMap<String, MethodIR> mMap) {
+		HashMap<String, BlockAssignmentDefinitionGenerator> generators = 
+			new HashMap<String, BlockAssignmentDefinitionGenerator>();
+		for (String s: mMap.keySet()) {
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
+			
+			generators.put(s, new BlockAssignmentDefinitionGenerator(mMap.get(s)));
+		}
+		MethodDataFlowRunner.generateAll(generators.values());
+		return generators;
+	}
+	
 	public void generate() {
 		initialize();
-		if (totalAssignmentDefinitions == 0) 
-			return;
-		// Get the first block in the main function - TODO: is there a better way?
-		CFGBlock entry = this.getBlockById("main", 0);
-		BlockDataFlowState entryBlockFlow = new BlockDataFlowState(totalAssignmentDefinitions);
-		calculateGenKillSets(entry, entryBlockFlow);
-		entryBlockFlow.setOut(entryBlockFlow.getGen());
-		cfgBlocksToProcess.remove(entry);
-		blockAssignReachingDefs.put(entry, entryBlockFlow);
-		
-		while (cfgBlocksToProcess.size() != 0) {
-			CFGBlock block = (CFGBlock)(cfgBlocksToProcess.toArray())[0];
-			BlockDataFlowState bFlow = generateForBlock(block);
-			blockAssignReachingDefs.put(block, bFlow);
-		}
+		// The first block of the method is the entry
+		CFGBlock entry = this.getBlockById(0);
+		List<CFGBlock> entries = new ArrayList<CFGBlock>();
+		entries.add(entry);
+		BlockDataFlowSolver solver = new BlockDataFlowSolver(this, DataFlowDirection.FORWARD,
+				ConfluenceOperator.AND, totalAssignmentDefinitions, blockAssignReachingDefs);
+		solver.solve(cfgBlocks, entries, new BitSet(totalAssignmentDefinitions));
 	}
 	
-	private CFGBlock getBlockById(String name, int i) {
-		if (this.mMap.containsKey(name)) {
-			for (CFGBlock b: this.mMap.get(name).getCfgBlocks()) {
-				if (b.getIndex() == i) return b;
-			}
+	// Index of the assignment statement in the BitSets of this analysis
+	public int getStatementId(QuadrupletStmt qStmt) {
+		return statementIds.get(qStmt);
+	}
+	
+	private CFGBlock getBlockById(int i) {
+		for (CFGBlock b: this.methodIR.getCfgBlocks()) {
+			if (b.getIndex() == i) return b;
 		}
 		
 		return null;
@@ -81,113 +95,64 @@ public class BlockAssignmentDefinitionGenerator {
 	private void initialize() {
 		// QuadrupletStmt IDs that we assign should start from 0, so they can
 		// correspond to the appropriate index in the BitSet
-		QuadrupletStmt.setID(0);
-		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
-			
-			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
-				List<LIRStatement> blockStmts = block.getStatements();
-				for (int i = 0; i < blockStmts.size(); i++) {
-					LIRStatement stmt = blockStmts.get(i);
-					if (stmt.getClass().equals(QuadrupletStmt.class)) {
-						QuadrupletStmt qStmt = (QuadrupletStmt)stmt;
-						if (uniqueAssignmentStmts.containsKey(qStmt)) {
-							// We have seen this assignment statement before, assign it the same ID
-							// as we did before so all unique statements of the form 'a = b' have the same ID
-							int origId = QuadrupletStmt.getID();
-							QuadrupletStmt.setID(uniqueAssignmentStmts.get(qStmt));
-							qStmt.setMyId();
-							// Restore the original ID count for QuadrupletStmt
-							QuadrupletStmt.setID(origId);
-						} else {
-							if (qStmt.isAssignmentStatement()) {
-								// First time seeing this assignment statement
-								qStmt.setMyId();
-								Name dest = qStmt.getDestination();
-								Name arg1 = qStmt.getArg1();
-								// If argument is Register Name, ignore - this indirectly prevents copy propagation
-								// in the following scenario:
-								// a = %reg
-								// b = a
-								// We will not change the above to b = %reg since the register allocator will take care of this
-								if (arg1.getClass().equals(RegisterName.class))
-									continue;
-								
-								if (!nameToQStmtsThatAssignIt.containsKey(dest)) {
-									nameToQStmtsThatAssignIt.put(dest, new HashSet<QuadrupletStmt>());
-								}
-								if (!nameToQStmtsWhichItAssigns.containsKey(arg1)) {
-									nameToQStmtsWhichItAssigns.put(arg1, new HashSet<QuadrupletStmt>());
-								}
-								// Update map: name -> qStmts which assign to that name
-								nameToQStmtsThatAssignIt.get(dest).add(qStmt);
-								// Update map: name -> qStmts in which it is used to assign
-								nameToQStmtsWhichItAssigns.get(arg1).add(qStmt);
-								// Update map: unique qStmt -> id
-								uniqueAssignmentStmts.put(qStmt, qStmt.getMyId());
-								totalAssignmentDefinitions++;
+		int nextId = 0;
+		for (CFGBlock block: this.methodIR.getCfgBlocks()) {
+			List<LIRStatement> blockStmts = block.getStatements();
+			for (int i = 0; i < blockStmts.size(); i++) {
+				LIRStatement stmt = blockStmts.get(i);
+				if (stmt.getClass().equals(QuadrupletStmt.class)) {
+					QuadrupletStmt qStmt = (QuadrupletStmt)stmt;
+					if (uniqueAssignmentStmts.containsKey(qStmt)) {
+						// We have seen this assignment statement before, assign it the same ID
+						// as we did before so all unique statements of the form 'a = b' have the same ID
+						statementIds.put(qStmt, uniqueAssignmentStmts.get(qStmt));
+					} else {
+						if (qStmt.isAssignmentStatement()) {
+							// First time seeing this assignment statement
+							statementIds.put(qStmt, nextId++);
+							Name dest = qStmt.getDestination();
+							Name arg1 = qStmt.getArg1();
+							// If argument is Register Name, ignore - this indirectly prevents copy propagation
+							// in the following scenario:
+							// a = %reg
+							// b = a
+							// We will not change the above to b = %reg since the register allocator will take care of this
+							if (arg1.getClass().equals(RegisterName.class))
+								continue;
+							
+							if (!nameToQStmtsThatAssignIt.containsKey(dest)) {
+								nameToQStmtsThatAssignIt.put(dest, new HashSet<QuadrupletStmt>());
 							}
+							if (!nameToQStmtsWhichItAssigns.containsKey(arg1)) {
+								nameToQStmtsWhichItAssigns.put(arg1, new HashSet<QuadrupletStmt>());
+							}
+							// Update map: name -> qStmts which assign to that name
+							nameToQStmtsThatAssignIt.get(dest).add(qStmt);
+							// Update map: name -> qStmts in which it is used to assign
+							nameToQStmtsWhichItAssigns.get(arg1).add(qStmt);
+							// Update map: unique qStmt -> id
+							uniqueAssignmentStmts.put(qStmt, getStatementId(qStmt));
+							totalAssignmentDefinitions++;
 						}
 					}
 				}
-				cfgBlocksToProcess.add(block);
-			}
-		}
-	}
-	
-	private BlockDataFlowState generateForBlock(CFGBlock block) {
-		// Get the original out BitSet for this block
-		BitSet origOut;
-		if (blockAssignReachingDefs.containsKey(block)) {
-			origOut = blockAssignReachingDefs.get(block).getOut();
-		} else {
-			origOut = new BitSet(totalAssignmentDefinitions);
-			// Confluence operator is AND, so initialize out set to all 1s
-			origOut.set(0, totalAssignmentDefinitions, true);
-		}
-		// Calculate the in BitSet by taking union of predecessors
-		BlockDataFlowState bFlow = new BlockDataFlowState(totalAssignmentDefinitions);
-		// If there exists at least one predecessor, set In to all True
-		if (block.getPredecessors().size() > 0) {
-			bFlow.getIn().set(0, totalAssignmentDefinitions);
-		}
-		BitSet in = bFlow.getIn();
-		for (CFGBlock pred : block.getPredecessors()) {
-			if (blockAssignReachingDefs.containsKey(pred)) {
-				in.and(blockAssignReachingDefs.get(pred).getOut());
-			}
-		}
-		calculateGenKillSets(block, bFlow);
-		// Calculate Out
-		BitSet out = bFlow.getOut();
-		out.or(in);
-		out.xor(bFlow.getKill()); // Invariant: kill is a subset of in
-		out.or(bFlow.getGen());
-		if (!out.equals(origOut)) {
-			// Add successors to cfgBlocks list
-			for (CFGBlock succ : block.getSuccessors()) {
-				if (!cfgBlocksToProcess.contains(succ)) {
-					cfgBlocksToProcess.add(succ);
-				}
 			}
+			cfgBlocks.add(block);
 		}
-		// Remove this block, since it has been processed
-		cfgBlocksToProcess.remove(block);
-		return bFlow;
 	}
 	
 	// Need to take two things into account after some a = b:
 	// 	1. If 'a' is re-assigned (e.g a = x + y) 
 	//		2. If 'b' is re-assigned (e.g b = x + y)
 	// Both cases should invalidate the a = b statement
-	private void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow) {
+	public void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow) {
 		List<LIRStatement> blockStmts = block.getStatements();
 		QuadrupletStmt qStmt;
 		
 		for (LIRStatement stmt : blockStmts) {
 			if (stmt.getClass().equals(CallStmt.class)) {
 				CallStmt callStmt = (CallStmt) stmt;
-				if (callStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+				if (callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 				
 				invalidateFunctionCall(bFlow);
 			}
@@ -195,7 +160,7 @@ public class BlockAssignmentDefinitionGenerator {
 				qStmt = (QuadrupletStmt)stmt;
 				updateKillGenSet(qStmt.getDestination(), bFlow);
 				if (qStmt.isAssignmentStatement()) {
-					bFlow.getGen().set(qStmt.getMyId(), true);
+					bFlow.getGen().set(getStatementId(qStmt), true);
 				}
 			}
 		}
@@ -249,20 +214,20 @@ public class BlockAssignmentDefinitionGenerator {
 		HashSet<QuadrupletStmt> stmtsItAssigns = nameToQStmtsWhichItAssigns.get(dest);
 		if (stmtsItAssigns != null) {
 			for (QuadrupletStmt qStmt : stmtsItAssigns) {
-				if (in.get(qStmt.getMyId())) {
-					kill.set(qStmt.getMyId(), true);
+				if (in.get(getStatementId(qStmt))) {
+					kill.set(getStatementId(qStmt), true);
 				}
-				gen.set(qStmt.getMyId(), false);
+				gen.set(getStatementId(qStmt), false);
 			}
 		}
 		// Invalidate reaching or previous generated assign statements of form dest = x
 		HashSet<QuadrupletStmt> stmtsThatAssignIt = nameToQStmtsThatAssignIt.get(dest);
 		if (stmtsThatAssignIt != null) {
 			for (QuadrupletStmt qStmt : stmtsThatAssignIt) {
-				if (bFlow.getIn().get(qStmt.getMyId())) {
-					kill.set(qStmt.getMyId(), true);
+				if (bFlow.getIn().get(getStatementId(qStmt))) {
+					kill.set(getStatementId(qStmt), true);
 				}
-				gen.set(qStmt.getMyId(), false);
+				gen.set(getStatementId(qStmt), false);
 			}
 		}
 		// The dest could be an index of some ArrayName used in an assignment statement
@@ -270,10 +235,10 @@ public class BlockAssignmentDefinitionGenerator {
 		if (allStmts != null) {
 			for (QuadrupletStmt q : allStmts) {
 				if (isAssignStmtUsingArrayIndex(q, dest)) {
-					if (bFlow.getIn().get(q.getMyId())) {
-						kill.set(q.getMyId(), true);
+					if (bFlow.getIn().get(getStatementId(q))) {
+						kill.set(getStatementId(q), true);
 					}
-					gen.set(q.getMyId(), false);
+					gen.set(getStatementId(q), false);
 				}
 			}
 		}
@@ -291,10 +256,10 @@ public class BlockAssignmentDefinitionGenerator {
 						// Check id and non-constant index
 						if (isArrayNameWithIdAndVariableIndex(qStmt.getArg1(), id) || 
 								isArrayNameWithIdAndVariableIndex(qStmt.getDestination(), id)) {
-							if (bFlow.getIn().get(qStmt.getMyId())) {
-								kill.set(qStmt.getMyId(), true);
+							if (bFlow.getIn().get(getStatementId(qStmt))) {
+								kill.set(getStatementId(qStmt), true);
 							}
-							gen.set(qStmt.getMyId(), false);
+							gen.set(getStatementId(qStmt), false);
 						}
 					}
 				}
@@ -304,10 +269,10 @@ public class BlockAssignmentDefinitionGenerator {
 						// Just check id
 						if (isArrayNameWithId(qStmt.getArg1(), id) || 
 								isArrayNameWithId(qStmt.getDestination(), id)) {
-							if (bFlow.getIn().get(qStmt.getMyId())) {
-								kill.set(qStmt.getMyId(), true);
+							if (bFlow.getIn().get(getStatementId(qStmt))) {
+								kill.set(getStatementId(qStmt), true);
 							}
-							gen.set(qStmt.getMyId(), false);
+							gen.set(getStatementId(qStmt), false);
 						}
 					}
 				}
@@ -362,8 +327,8 @@ public class BlockAssignmentDefinitionGenerator {
 		return blockAssignReachingDefs;
 	}
 
-	public HashSet<CFGBlock> getCfgBlocksToProcess() {
-		return cfgBlocksToProcess;
+	public List<CFGBlock> getCfgBlocks() {
+		return cfgBlocks;
 	}
 	
 	public int getTotalAssignmentDefinitions() {
@@ -21,178 +21,135 @@ import decaf.codegen.flattener.ProgramFlattener;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 
-public class BlockAvailableExpressionGenerator {
-	private HashMap<String, MethodIR> mMap;
+public class BlockAvailableExpressionGenerator implements BlockTransferFunction, MethodDataFlowGenerator {
+	private MethodIR methodIR;
 	private HashMap<CFGBlock, BlockDataFlowState> blockAvailableDefs;
 	private List<AvailableExpression> availableExpressions;
+	// Same expressions, for lookups in O(1) instead of a scan of the list
+	private HashMap<AvailableExpression, AvailableExpression> expressionIndex;
 	private HashMap<CFGBlock, List<AvailableExpression>> blockExpressions;
 	private HashMap<String, List<AvailableExpression>> methodExpressions;
 	private List<CFGBlock> orderProcessed;
-	private HashSet<CFGBlock> cfgBlocksToProcess;
+	private List<CFGBlock> cfgBlocks;
 	// Map from Name to IDs of QuadrupletStmt which use that Name
 	private HashMap<Name, HashSet<Integer>> nameToExprIds;
 	private int totalExpressionStmts;
 
-	public BlockAvailableExpressionGenerator(HashMap<String, MethodIR> mMap) {
-		this.mMap = mMap;
+	public BlockAvailableExpressionGenerator(MethodIR methodIR) {
+		this.methodIR = methodIR;
 		nameToExprIds = new HashMap<Name, HashSet<Integer>>();
 		blockAvailableDefs = new HashMap<CFGBlock, BlockDataFlowState>();
 		availableExpressions = new ArrayList<AvailableExpression>();
+		expressionIndex = new HashMap<AvailableExpression, AvailableExpression>();
 		blockExpressions = new HashMap<CFGBlock, List<AvailableExpression>>();
 		methodExpressions = new HashMap<String, List<AvailableExpression>>();
-		cfgBlocksToProcess = new HashSet<CFGBlock>();
+		cfgBlocks = new ArrayList<CFGBlock>();
 		orderProcessed = new ArrayList<CFGBlock>();
 		totalExpressionStmts = 0;
 	}
 	
+	// Generates available expressions for every method, each method numbers its own expressions
+	public static HashMap<String, BlockAvailableExpressionGenerator> generateForMethods(HashMap<String, MethodIR> mMap) {
+		HashMap<String, BlockAvailableExpressionGenerator> generators = 
+			new HashMap<String, BlockAvailableExpressionGenerator>();
+		for (String s: mMap.keySet()) {
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
+			
+			generators.put(s, new BlockAvailableExpressionGenerator(mMap.get(s)));
+		}
+		MethodDataFlowRunner.generateAll(generators.values());
+		return generators;
+	}
+	
 	public void generate() {
 		initialize();
-		if (totalExpressionStmts == 0)
-			return;
-		// Get the first block in the main function - TODO: is there a better way?
-		CFGBlock entry = this.getBlockById("main", 0);
-		BlockDataFlowState entryBlockFlow = new BlockDataFlowState(totalExpressionStmts);
-		calculateGenKillSets(entry, entryBlockFlow);
-		entryBlockFlow.setOut(entryBlockFlow.getGen());
-		cfgBlocksToProcess.remove(entry);
-		orderProcessed.add(entry);
-		blockAvailableDefs.put(entry, entryBlockFlow);
-		
-		while (cfgBlocksToProcess.size() != 0) {
-			CFGBlock block = (CFGBlock)(cfgBlocksToProcess.toArray())[0];
-			BlockDataFlowState bFlow = generateForBlock(block);
-			blockAvailableDefs.put(block, bFlow);
-		}
+		// The first block of the method is the entry
+		CFGBlock entry = this.getBlockById(0);
+		List<CFGBlock> entries = new ArrayList<CFGBlock>();
+		entries.add(entry);
+		BlockDataFlowSolver solver = new BlockDataFlowSolver(this, DataFlowDirection.FORWARD,
+				ConfluenceOperator.AND, totalExpressionStmts, blockAvailableDefs);
+		solver.solve(cfgBlocks, entries, new BitSet(totalExpressionStmts));
+		orderProcessed = solver.getOrderedBlocks();
 	}
 	
-	private CFGBlock getBlockById(String name, int i) {
-		if (this.mMap.containsKey(name)) {
-			for (CFGBlock b: this.mMap.get(name).getCfgBlocks()) {
-				if (b.getIndex() == i) return b;
-			}
+	private CFGBlock getBlockById(int i) {
+		for (CFGBlock b: this.methodIR.getCfgBlocks()) {
+			if (b.getIndex() == i) return b;
 		}
 		
 		return null;
 	}
 	
 	public void initialize() {
+		String s = methodIR.getId();
 		// AvailableExpression IDs that we assign should start from 0, so they can
 		// correspond to the appropriate index in the BitSet
-		AvailableExpression.setID(0);
-		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
-			
-			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
-				List<LIRStatement> blockStmts = block.getStatements();
-				for (int i = 0; i < blockStmts.size(); i++) {
-					LIRStatement stmt = blockStmts.get(i);
-					if (stmt.isAvailableExpression()) {
-						QuadrupletStmt qStmt = (QuadrupletStmt)stmt;
-						Name arg1 = qStmt.getArg1();
-						Name arg2 = qStmt.getArg2();
-						AvailableExpression expr = new AvailableExpression(arg1, 
-								arg2, qStmt.getOperator());
-						if (availableExpressions.contains(expr)) {
-							expr = availableExpressions.get(availableExpressions.indexOf(expr));
-							// Decrement global AvailableExpression ID
-							AvailableExpression.setID(AvailableExpression.getID()-1);
-						} else {
-							availableExpressions.add(expr);
-							totalExpressionStmts++;
-						}
-						// Update mapping from CFGBlock to AvailableExpression list
-						if (!blockExpressions.containsKey(block)) {
-							blockExpressions.put(block, new ArrayList<AvailableExpression>());
-						}
-						blockExpressions.get(block).add(expr);
-						// Update mapping from method to AvailableExpression list
-						if (!methodExpressions.containsKey(s)) {
-							methodExpressions.put(s, new ArrayList<AvailableExpression>());
-						}
-						methodExpressions.get(s).add(expr);
-						
-						// Update mapping between Name and the AvailableExpressions that 
-						// contain that Name
+		for (CFGBlock block: this.methodIR.getCfgBlocks()) {
+			List<LIRStatement> blockStmts = block.getStatements();
+			for (int i = 0; i < blockStmts.size(); i++) {
+				LIRStatement stmt = blockStmts.get(i);
+				if (stmt.isAvailableExpression()) {
+					QuadrupletStmt qStmt = (QuadrupletStmt)stmt;
+					Name arg1 = qStmt.getArg1();
+					Name arg2 = qStmt.getArg2();
+					AvailableExpression expr = new AvailableExpression(arg1, 
+							arg2, qStmt.getOperator(), totalExpressionStmts);
+					if (availableExpressions.contains(expr)) {
+						expr = availableExpressions.get(availableExpressions.indexOf(expr));
+					} else {
+						availableExpressions.add(expr);
+						totalExpressionStmts++;
+					}
+					// Update mapping from CFGBlock to AvailableExpression list
+					if (!blockExpressions.containsKey(block)) {
+						blockExpressions.put(block, new ArrayList<AvailableExpression>());
+					}
+					blockExpressions.get(block).add(expr);
+					// Update mapping from method to AvailableExpression list
+					if (!methodExpressions.containsKey(s)) {
+						methodExpressions.put(s, new ArrayList<AvailableExpression>());
+					}
+					methodExpressions.get(s).add(expr);
+					
+					// Update mapping between Name and the AvailableExpressions that 
+					// contain that Name
+					if (!nameToExprIds.containsKey(arg1)) {
+						nameToExprIds.put(arg1, new HashSet<Integer>());
+					}
+					nameToExprIds.get(arg1).add(expr.getMyId());
+					// If argument is ArrayName, add the index Name mappings recursively too
+					while (arg1.getClass().equals(ArrayName.class)) {
+						arg1 = ((ArrayName)arg1).getIndex();
 						if (!nameToExprIds.containsKey(arg1)) {
 							nameToExprIds.put(arg1, new HashSet<Integer>());
 						}
 						nameToExprIds.get(arg1).add(expr.getMyId());
-						// If argument is ArrayName, add the index Name mappings recursively too
-						while (arg1.getClass().equals(ArrayName.class)) {
-							arg1 = ((ArrayName)arg1).getIndex();
-							if (!nameToExprIds.containsKey(arg1)) {
-								nameToExprIds.put(arg1, new HashSet<Integer>());
-							}
-							nameToExprIds.get(arg1).add(expr.getMyId());
+					}
+					// Process arg2
+					if (arg2 != null) {
+						// Update mapping between Name and the AvailableExpressions that 
+						// contain that Name
+						if (!nameToExprIds.containsKey(arg2)) {
+							nameToExprIds.put(arg2, new HashSet<Integer>());
 						}
-						// Process arg2
-						if (arg2 != null) {
-							// Update mapping between Name and the AvailableExpressions that 
-							// contain that Name
+						nameToExprIds.get(arg2).add(expr.getMyId());
+						// If argument is ArrayName, add the index Name mappings recursively too
+						while (arg2.getClass().equals(ArrayName.class)) {
+							arg2 = ((ArrayName)arg2).getIndex();
 							if (!nameToExprIds.containsKey(arg2)) {
 								nameToExprIds.put(arg2, new HashSet<Integer>());
 							}
 							nameToExprIds.get(arg2).add(expr.getMyId());
-							// If argument is ArrayName, add the index Name mappings recursively too
-							while (arg2.getClass().equals(ArrayName.class)) {
-								arg2 = ((ArrayName)arg2).getIndex();
-								if (!nameToExprIds.containsKey(arg2)) {
-									nameToExprIds.put(arg2, new HashSet<Integer>());
-								}
-								nameToExprIds.get(arg2).add(expr.getMyId());
-							}
 						}
 					}
 				}
-				cfgBlocksToProcess.add(block);
-			}
-		}
-	}
-	
-	public BlockDataFlowState generateForBlock(CFGBlock block) {
-		BitSet origOut;
-		if (blockAvailableDefs.containsKey(block)) {
-			origOut = blockAvailableDefs.get(block).getOut();
-		} else {
-			origOut = new BitSet(totalExpressionStmts);
-			// Confluence operator is AND, so initialize out set to all 1s
-			origOut.set(0, totalExpressionStmts, true);
-		}
-		BlockDataFlowState bFlow = new BlockDataFlowState(totalExpressionStmts);
-		// If there exists at least one predecessor, set In to all True
-		if (block.getPredecessors().size() > 0) {
-			bFlow.getIn().set(0, totalExpressionStmts);
-		}
-		BitSet in = bFlow.getIn();
-		for (CFGBlock pred : block.getPredecessors()) {
-			if (blockAvailableDefs.containsKey(pred)) {
-				in.and(blockAvailableDefs.get(pred).getOut());
-			}
-		}
-		calculateGenKillSets(block, bFlow);
-		// Calculate Out
-		BitSet out = bFlow.getOut();
-		out.or(in);
-		out.xor(bFlow.getKill()); // Invariant: kill is a subset of in
-		out.or(bFlow.getGen());
-		if (!out.equals(origOut)) {
-			// Add successors to cfgBlocks list
-			for (CFGBlock succ : block.getSuccessors()) {
-				if (!cfgBlocksToProcess.contains(succ)) {
-					cfgBlocksToProcess.add(succ);
-				}
 			}
+			cfgBlocks.add(block);
 		}
-		// Remove this block, since it has been processed
-		cfgBlocksToProcess.remove(block);
-		if (orderProcessed.contains(block)) {
-			orderProcessed.remove(block);
-		}
-		orderProcessed.add(block);
-		return bFlow;
 	}
 	
-	private void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow) {
+	public void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow) {
 		BitSet gen = bFlow.getGen();
 		List<AvailableExpression> blockExprs = blockExpressions.get(block);
 		List<LIRStatement> blockStmts = block.getStatements();
@@ -203,7 +160,7 @@ public class BlockAvailableExpressionGenerator {
 			if (!stmt.isAvailableExpression()) {
 				if (stmt.getClass().equals(CallStmt.class)) {
 					CallStmt callStmt = (CallStmt) stmt;
-					if (callStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+					if (callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 					
 					// Invalidate arg registers
 					for (int i = 0; i < Register.argumentRegs.length; i++) {
@@ -0,0 +1,222 @@
+package decaf.dataflow.global;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+import decaf.dataflow.cfg.CFGBlock;
+
+// Generic iterative solver for the block level bit vector analyses
+// Blocks are processed from a priority worklist ordered by reverse postorder for forward
+// problems and postorder for backward problems, so most blocks see all their inputs
+// before they are processed and the fixed point is reached in few passes
+public class BlockDataFlowSolver {
+	private BlockTransferFunction transfer;
+	private DataFlowDirection direction;
+	private ConfluenceOperator cOp;
+	private int bitSetSize;
+	private HashMap<CFGBlock, BlockDataFlowState> blockStates;
+	// Position of each block in the processing order
+	private HashMap<CFGBlock, Integer> blockOrder;
+	private List<CFGBlock> orderedBlocks;
+	private TreeSet<CFGBlock> cfgBlocksToProcess;
+
+	public BlockDataFlowSolver(BlockTransferFunction transfer, DataFlowDirection direction,
+			ConfluenceOperator op, int bitSetSize, HashMap<CFGBlock, BlockDataFlowState> blockStates) {
+		this.transfer = transfer;
+		this.direction = direction;
+		this.cOp = op;
+		this.bitSetSize = bitSetSize;
+		this.blockStates = blockStates;
+		this.blockOrder = new HashMap<CFGBlock, Integer>();
+		this.orderedBlocks = new ArrayList<CFGBlock>();
+		this.cfgBlocksToProcess = new TreeSet<CFGBlock>(new Comparator<CFGBlock>() {
+			@Override
+			public int compare(CFGBlock b1, CFGBlock b2) {
+				return blockOrder.get(b1) - blockOrder.get(b2);
+			}
+		});
+	}
+
+	// Solves the problem over the given blocks. Boundary blocks are the entry blocks for
+	// forward problems and the exit blocks for backward problems - their In (Out for backward)
+	// is set to the given boundary BitSet and they are processed once before everything else
+	public void solve(List<CFGBlock> blocks, List<CFGBlock> boundaryBlocks, BitSet boundary) {
+		computeOrder(blocks);
+
+		for (CFGBlock block : boundaryBlocks) {
+			BlockDataFlowState bFlow = new BlockDataFlowState(bitSetSize);
+			if (direction == DataFlowDirection.FORWARD) {
+				bFlow.getIn().or(boundary);
+			} else {
+				bFlow.getOut().or(boundary);
+			}
+			applyTransfer(block, bFlow);
+			blockStates.put(block, bFlow);
+		}
+
+		HashSet<CFGBlock> boundarySet = new HashSet<CFGBlock>(boundaryBlocks);
+		for (CFGBlock block : orderedBlocks) {
+			if (!boundarySet.contains(block)) {
+				cfgBlocksToProcess.add(block);
+			}
+		}
+
+		while (!cfgBlocksToProcess.isEmpty()) {
+			CFGBlock block = cfgBlocksToProcess.pollFirst();
+			BlockDataFlowState bFlow = generateForBlock(block);
+			blockStates.put(block, bFlow);
+		}
+	}
+
+	private BlockDataFlowState generateForBlock(CFGBlock block) {
+		// Get the original result for this block - the In set for backward problems,
+		// the Out set for forward problems
+		BitSet origResult;
+		if (blockStates.containsKey(block)) {
+			origResult = getResult(blockStates.get(block));
+		} else {
+			origResult = new BitSet(bitSetSize);
+			if (cOp == ConfluenceOperator.AND) {
+				// Confluence operator is AND, so initialize to all 1s
+				origResult.set(0, bitSetSize, true);
+			}
+		}
+
+		BlockDataFlowState bFlow = new BlockDataFlowState(bitSetSize);
+		List<CFGBlock> inputs = getInputs(block);
+		BitSet confluence = (direction == DataFlowDirection.FORWARD) ? bFlow.getIn() : bFlow.getOut();
+		// If there exists at least one input block, start from all 1s for AND
+		if (cOp == ConfluenceOperator.AND && inputs.size() > 0) {
+			confluence.set(0, bitSetSize);
+		}
+		// Blocks which have not been processed yet are skipped, they act as the identity
+		// of the confluence operator
+		for (CFGBlock input : inputs) {
+			if (blockStates.containsKey(input)) {
+				if (cOp == ConfluenceOperator.AND)
+					confluence.and(getResult(blockStates.get(input)));
+				else
+					confluence.or(getResult(blockStates.get(input)));
+			}
+		}
+		applyTransfer(block, bFlow);
+
+		if (!getResult(bFlow).equals(origResult)) {
+			// Add dependent blocks to the worklist
+			for (CFGBlock dep : getDependents(block)) {
+				if (!blockOrder.containsKey(dep)) {
+					addToOrder(dep);
+				}
+				cfgBlocksToProcess.add(dep);
+			}
+		}
+		return bFlow;
+	}
+
+	private void applyTransfer(CFGBlock block, BlockDataFlowState bFlow) {
+		transfer.calculateGenKillSets(block, bFlow);
+		if (direction == DataFlowDirection.FORWARD) {
+			// Out = (In - Kill) U Gen
+			BitSet out = bFlow.getOut();
+			out.or(bFlow.getIn());
+			out.andNot(bFlow.getKill());
+			out.or(bFlow.getGen());
+		} else {
+			// In = (Out - Kill) U Gen
+			BitSet in = bFlow.getIn();
+			in.or(bFlow.getOut());
+			in.andNot(bFlow.getKill());
+			in.or(bFlow.getGen());
+		}
+	}
+
+	private BitSet getResult(BlockDataFlowState bFlow) {
+		return (direction == DataFlowDirection.FORWARD) ? bFlow.getOut() : bFlow.getIn();
+	}
+
+	private List<CFGBlock> getInputs(CFGBlock block) {
+		return (direction == DataFlowDirection.FORWARD) ? block.getPredecessors() : block.getSuccessors();
+	}
+
+	private List<CFGBlock> getDependents(CFGBlock block) {
+		return (direction == DataFlowDirection.FORWARD) ? block.getSuccessors() : block.getPredecessors();
+	}
+
+	// Orders the blocks by a depth first search over the successors, starting from every
+	// block which has no predecessors in the given list. Reverse postorder is used
+	// for forward problems, postorder for backward problems
+	private void computeOrder(List<CFGBlock> blocks) {
+		HashSet<CFGBlock> inList = new HashSet<CFGBlock>(blocks);
+		HashSet<CFGBlock> visited = new HashSet<CFGBlock>();
+		List<CFGBlock> postOrder = new ArrayList<CFGBlock>();
+
+		List<CFGBlock> roots = new ArrayList<CFGBlock>();
+		for (CFGBlock block : blocks) {
+			boolean hasPred = false;
+			for (CFGBlock pred : block.getPredecessors()) {
+				if (inList.contains(pred)) {
+					hasPred = true;
+					break;
+				}
+			}
+			if (!hasPred) {
+				roots.add(block);
+			}
+		}
+		// Unreachable cycles have no root, so fall back to list order for them
+		roots.addAll(blocks);
+
+		for (CFGBlock root : roots) {
+			if (visited.contains(root)) continue;
+
+			// Iterative DFS, since recursion can overflow on very large methods
+			List<CFGBlock> stack = new ArrayList<CFGBlock>();
+			List<Integer> nextSucc = new ArrayList<Integer>();
+			visited.add(root);
+			stack.add(root);
+			nextSucc.add(0);
+			while (!stack.isEmpty()) {
+				int top = stack.size() - 1;
+				CFGBlock block = stack.get(top);
+				int i = nextSucc.get(top);
+				if (i < block.getSuccessors().size()) {
+					nextSucc.set(top, i + 1);
+					CFGBlock succ = block.getSuccessors().get(i);
+					if (inList.contains(succ) && !visited.contains(succ)) {
+						visited.add(succ);
+						stack.add(succ);
+						nextSucc.add(0);
+					}
+				} else {
+					postOrder.add(block);
+					stack.remove(top);
+					nextSucc.remove(top);
+				}
+			}
+		}
+
+		if (direction == DataFlowDirection.FORWARD) {
+			for (int i = postOrder.size() - 1; i >= 0; i--) {
+				addToOrder(postOrder.get(i));
+			}
+		} else {
+			for (CFGBlock block : postOrder) {
+				addToOrder(block);
+			}
+		}
+	}
+
+	private void addToOrder(CFGBlock block) {
+		blockOrder.put(block, orderedBlocks.size());
+		orderedBlocks.add(block);
+	}
+
+	public List<CFGBlock> getOrderedBlocks() {
+		return orderedBlocks;
+	}
+}
@@ -15,6 +15,14 @@ public class BlockDataFlowState {
 		gen = new BitSet(bitSetSize);
 	}
 	
+	// Copy, for optimizers which update the sets of a cached analysis as they go
+	public BlockDataFlowState(BlockDataFlowState other) {
+		in = (BitSet)other.getIn().clone();
+		out = (BitSet)other.getOut().clone();
+		kill = (BitSet)other.getKill().clone();
+		gen = (BitSet)other.getGen().clone();
+	}
+	
 	public BitSet getIn() {
 		return in;
 	}
@@ -0,0 +1,54 @@
+package decaf.dataflow.global;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.StatementFacts;
+import decaf.dataflow.cfg.CFGBlock;
+
+// Facts at the statements of a block, recomputed from the facts of the block by running the
+// transfer function of the analysis over it again
+// Only the block asked for last is kept, passes ask for the statements of a block in order so
+// each block is replayed once, and memory is the size of one block instead of the method
+public abstract class BlockFactCache implements StatementFacts {
+	private IdentityHashMap<LIRStatement, CFGBlock> stmtBlocks;
+	private CFGBlock cachedBlock;
+	private IdentityHashMap<LIRStatement, BitSet> cachedFacts;
+
+	public BlockFactCache() {
+		this.stmtBlocks = new IdentityHashMap<LIRStatement, CFGBlock>();
+	}
+
+	// Facts of the statements of the block are given by this cache from now on
+	public void register(CFGBlock block) {
+		List<LIRStatement> stmts = block.getStatements();
+		for (int i = 0; i < stmts.size(); i++) {
+			stmtBlocks.put(stmts.get(i), block);
+		}
+		invalidate();
+	}
+
+	// The analysis ran again, the facts of the blocks changed
+	public void invalidate() {
+		this.cachedBlock = null;
+		this.cachedFacts = null;
+	}
+
+	public BitSet getFacts(LIRStatement stmt) {
+		CFGBlock block = stmtBlocks.get(stmt);
+		if (block == null) return null;
+
+		if (block != cachedBlock) {
+			cachedFacts = new IdentityHashMap<LIRStatement, BitSet>();
+			replay(block, cachedFacts);
+			cachedBlock = block;
+		}
+
+		return cachedFacts.get(stmt);
+	}
+
+	// Puts the facts of every statement of the block in facts
+	protected abstract void replay(CFGBlock block, IdentityHashMap<LIRStatement, BitSet> facts);
+}
@@ -1,11 +1,12 @@
 package decaf.dataflow.global;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.ArrayName;
 import decaf.codegen.flatir.CallStmt;
 import decaf.codegen.flatir.CmpStmt;
@@ -20,14 +21,16 @@ import decaf.codegen.flattener.ProgramFlattener;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 
-public class BlockLivenessGenerator {
-	private HashMap<String, MethodIR> mMap;
+public class BlockLivenessGenerator implements BlockTransferFunction, MethodDataFlowGenerator {
+	private MethodIR methodIR;
 	private HashMap<CFGBlock, BlockDataFlowState> blockLiveVars;
-	private HashSet<CFGBlock> cfgBlocksToProcess;
+	private List<CFGBlock> cfgBlocks;
 	// One Variable per Name
 	private HashMap<Name, Variable> nameToVar;
 	// index to List<ArrayName> map where index is used
 	private HashMap<Name, List<ArrayName>> nameToArrNames;
+	// array id to the ArrayNames of that array which have a Variable
+	private HashMap<String, List<ArrayName>> arrayIdToArrNames;
 
 	// List of Variable IDs which correspond to global names
 	private List<Integer> globalVarIDs;
@@ -35,145 +38,152 @@ public class BlockLivenessGenerator {
 	private HashMap<Integer, Variable> intToVar;
 	
 	
-	public BlockLivenessGenerator(HashMap<String, MethodIR> mMap) {
-		this.mMap = mMap;
+	public BlockLivenessGenerator(MethodIR methodIR) {
+		this.methodIR = methodIR;
 		blockLiveVars = new HashMap<CFGBlock, BlockDataFlowState>();
-		cfgBlocksToProcess = new HashSet<CFGBlock>();
+		cfgBlocks = new ArrayList<CFGBlock>();
 		globalVarIDs = new ArrayList<Integer>();
 		nameToVar = new HashMap<Name, Variable>();
 		nameToArrNames = new HashMap<Name, List<ArrayName>>();
+		arrayIdToArrNames = new HashMap<String, List<ArrayName>>();
 		totalVars = 0;
 		setIntToVar(new HashMap<Integer, Variable>());
 	}
 	
+	// Generates liveness for every method, each method gets its own Variable IDs
+	public static HashMap<String, BlockLivenessGenerator> generateForMethods(HashMap<String, MethodIR> mMap) {
+		HashMap<String, BlockLivenessGenerator> generators = new HashMap<String, BlockLivenessGenerator>();
+		for (String s: mMap.keySet()) {
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
+			
+			generators.put(s, new BlockLivenessGenerator(mMap.get(s)));
+		}
+		MethodDataFlowRunner.generateAll(generators.values());
+		
+		// Printed here, once every method is done, the methods run on several threads
+		if (CompilationContext.get().isDebug()) {
+			System.out.println("AFTER LIVENESS");
+			for (String s: generators.keySet()) {
+				System.out.println("METHOD: " + s);
+				generators.get(s).printLiveness(System.out);
+			}
+		}
+		return generators;
+	}
+	
 	public void generate() {
 		initializeLiveVars();
-		initializeOutSets();
 		
-		while (cfgBlocksToProcess.size() != 0) {
-			CFGBlock block = (CFGBlock)(cfgBlocksToProcess.toArray())[0]; 
-			BlockDataFlowState bFlow = generateForBlock(block);
-			blockLiveVars.put(block, bFlow);
+		// Exit blocks start with the global names live on the way out, since they
+		// may be read after the method returns
+		BitSet globalsOut = new BitSet(totalVars);
+		for (Integer globalId : globalVarIDs) {
+			globalsOut.set(globalId);
 		}
-		
-		System.out.println("AFTER LIVENESS");
-		printGlobalVarIds();
-		printNameToVar();
-		printBlockLiveMap();
+		// Kill = Defs
+		// Gen = Use
+		BlockDataFlowSolver solver = new BlockDataFlowSolver(this, DataFlowDirection.BACKWARD,
+				ConfluenceOperator.OR, totalVars, blockLiveVars);
+		solver.solve(cfgBlocks, getExitBlocks(), globalsOut);
 	}
 	
-	// Initialize the out BitSet for each CFG block that has no successors to the BitSet which
-	// has 1s in the locations which correspond to global names, 0s everywhere else
-	private void initializeOutSets() {
-		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
-			
-			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
-				if (!block.getSuccessors().isEmpty())
-					continue;
-				BlockDataFlowState bFlow = new BlockDataFlowState(totalVars);
-				BitSet out = bFlow.getOut();
-				for (Integer globalId : globalVarIDs) {
-					out.set(globalId);
-				}
-				// Kill = Defs
-				// Gen = Use
-				calculateUseDefSets(block, bFlow);
-				BitSet in = bFlow.getIn();
-				in.or(out);
-				// Kill is not a subset of out, so iterate manually
-				for (int i = 0; i < bFlow.getKill().size(); i++) {
-					if (bFlow.getKill().get(i)) {
-						if (bFlow.getIn().get(i)) {
-							bFlow.getIn().set(i, false);
-						}
-					}
-				}			
-				in.or(bFlow.getGen());
-				cfgBlocksToProcess.remove(block);
-				blockLiveVars.put(block, bFlow);
+	// CFG blocks that have no successors
+	private List<CFGBlock> getExitBlocks() {
+		List<CFGBlock> exits = new ArrayList<CFGBlock>();
+		for (CFGBlock block: cfgBlocks) {
+			if (block.getSuccessors().isEmpty()) {
+				exits.add(block);
 			}
 		}
+		return exits;
 	}
 	
 	private void initializeLiveVars() {
 		// LiveVar IDs that we assign should start from 0, so they can
 		// correspond to the appropriate index in the BitSet
-		Variable.setID(0);
+		totalVars = 0;
 		Name dest = null, arg1 = null, arg2 = null;
 		QuadrupletStmt qStmt;
 		PopStmt popStmt;
 		PushStmt pushStmt;
 		CmpStmt cStmt;
-		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
-			
-			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
-				List<LIRStatement> blockStmts = block.getStatements();
-				for (int i = 0; i < blockStmts.size(); i++) {
-					LIRStatement stmt = blockStmts.get(i);
-					if (stmt.getClass().equals(QuadrupletStmt.class)) {
-						qStmt = (QuadrupletStmt)stmt;
-						dest = qStmt.getDestination();
-						arg1 = qStmt.getArg1();
-						arg2 = qStmt.getArg2();
-						
-					} else if (stmt.getClass().equals(PopStmt.class)) {
-						popStmt = (PopStmt)stmt;
-						arg1 = popStmt.getName();
-						
-					} else if (stmt.getClass().equals(PushStmt.class)) {
-						pushStmt = (PushStmt)stmt;
-						arg1 = pushStmt.getName();
-						
-					} else if (stmt.getClass().equals(CmpStmt.class)) {
-						cStmt = (CmpStmt)stmt;
-						arg1 = cStmt.getArg1();
-						arg2 = cStmt.getArg2();
-					}
-					if (dest != null) {
-						// Update the Name to Variable map
-						if (!nameToVar.containsKey(dest)) {
-							Variable destVar = new Variable(dest);
-							getIntToVar().put(destVar.getMyId(), destVar);
-							nameToVar.put(dest, destVar);
-							updateGlobalVarIDs(dest);
-							Name destTemp = (Name)dest.clone();
-							while (destTemp.getClass().equals(ArrayName.class)) {
-								// Update the index to ArrayName map recursively looking at indices
-								Name arrIndex = ((ArrayName)destTemp).getIndex();
-								if (!(nameToArrNames.containsKey(arrIndex))) {
-									nameToArrNames.put(arrIndex, new ArrayList<ArrayName>());
-								}
-								if (!(nameToArrNames.get(arrIndex).contains((ArrayName)dest)))
-									nameToArrNames.get(arrIndex).add((ArrayName)dest);
-								destTemp = arrIndex;
+		for (CFGBlock block: this.methodIR.getCfgBlocks()) {
+			List<LIRStatement> blockStmts = block.getStatements();
+			for (int i = 0; i < blockStmts.size(); i++) {
+				LIRStatement stmt = blockStmts.get(i);
+				if (stmt.getClass().equals(QuadrupletStmt.class)) {
+					qStmt = (QuadrupletStmt)stmt;
+					dest = qStmt.getDestination();
+					arg1 = qStmt.getArg1();
+					arg2 = qStmt.getArg2();
+					
+				} else if (stmt.getClass().equals(PopStmt.class)) {
+					popStmt = (PopStmt)stmt;
+					arg1 = popStmt.getName();
+					
+				} else if (stmt.getClass().equals(PushStmt.class)) {
+					pushStmt = (PushStmt)stmt;
+					arg1 = pushStmt.getName();
+					
+				} else if (stmt.getClass().equals(CmpStmt.class)) {
+					cStmt = (CmpStmt)stmt;
+					arg1 = cStmt.getArg1();
+					arg2 = cStmt.getArg2();
+				}
+				if (dest != null) {
+					// Update the Name to Variable map
+					if (!nameToVar.containsKey(dest)) {
+						Variable destVar = new Variable(dest, totalVars++);
+						getIntToVar().put(destVar.getMyId(), destVar);
+						nameToVar.put(dest, destVar);
+						updateGlobalVarIDs(dest);
+						updateArrayIds(dest);
+						Name destTemp = dest;
+						while (destTemp.getClass().equals(ArrayName.class)) {
+							// Update the index to ArrayName map recursively looking at indices
+							Name arrIndex = ((ArrayName)destTemp).getIndex();
+							if (!(nameToArrNames.containsKey(arrIndex))) {
+								nameToArrNames.put(arrIndex, new ArrayList<ArrayName>());
 							}
+							if (!(nameToArrNames.get(arrIndex).contains((ArrayName)dest)))
+								nameToArrNames.get(arrIndex).add((ArrayName)dest);
+							destTemp = arrIndex;
 						}
 					}
-					if (arg1 != null) {
-						if (!nameToVar.containsKey(arg1)) {
-							Variable arg1Var = new Variable(arg1);
-							getIntToVar().put(arg1Var.getMyId(), arg1Var);
-							nameToVar.put(arg1, arg1Var);
-							updateGlobalVarIDs(arg1);
-						}
+				}
+				if (arg1 != null) {
+					if (!nameToVar.containsKey(arg1)) {
+						Variable arg1Var = new Variable(arg1, totalVars++);
+						getIntToVar().put(arg1Var.getMyId(), arg1Var);
+						nameToVar.put(arg1, arg1Var);
+						updateGlobalVarIDs(arg1);
+						updateArrayIds(arg1);
 					}
-					if (arg2 != null) {
-						if (!nameToVar.containsKey(arg2)) {
-							Variable arg2Var = new Variable(arg2);
-							getIntToVar().put(arg2Var.getMyId(), arg2Var);
-							nameToVar.put(arg2, arg2Var);
-							updateGlobalVarIDs(arg2);
-						}
+				}
+				if (arg2 != null) {
+					if (!nameToVar.containsKey(arg2)) {
+						Variable arg2Var = new Variable(arg2, totalVars++);
+						getIntToVar().put(arg2Var.getMyId(), arg2Var);
+						nameToVar.put(arg2, arg2Var);
+						updateGlobalVarIDs(arg2);
+						updateArrayIds(arg2);
 					}
 				}
-				cfgBlocksToProcess.add(block);
 			}
+			cfgBlocks.add(block);
 		}
-		totalVars = nameToVar.size(); // The number of all variables
 	}
 
+	private void updateArrayIds(Name arg) {
+		if (arg.getClass().equals(ArrayName.class)) {
+			String arrId = ((ArrayName) arg).getId();
+			if (!arrayIdToArrNames.containsKey(arrId)) {
+				arrayIdToArrNames.put(arrId, new ArrayList<ArrayName>());
+			}
+			arrayIdToArrNames.get(arrId).add((ArrayName) arg);
+		}
+	}
+	
 	private void updateGlobalVarIDs(Name arg) {
 		if (arg != null) {
 			if (arg.getClass().equals(VarName.class)) {
@@ -194,47 +204,7 @@ public class BlockLivenessGenerator {
 		}
 	}
 	
-	private BlockDataFlowState generateForBlock(CFGBlock block){
-		BitSet origIn;
-		if (blockLiveVars.containsKey(block)) {
-			origIn = blockLiveVars.get(block).getIn();
-		} else {
-			origIn = new BitSet(totalVars);
-		}
-		BlockDataFlowState bFlow = new BlockDataFlowState(totalVars);
-		BitSet out = bFlow.getOut();
-		for (CFGBlock succ : block.getSuccessors()) {
-			if (blockLiveVars.containsKey(succ)) {
-				out.or(blockLiveVars.get(succ).getIn());
-			}
-		} 
-		calculateUseDefSets(block, bFlow);
-		// Calculate In
-		BitSet in = bFlow.getIn();
-		in.or(out);
-		// Kill (def) is not always a subset of out, so iterate manually
-		for (int i = 0; i < bFlow.getKill().size(); i++) {
-			if (bFlow.getKill().get(i)) {
-				if (bFlow.getIn().get(i)) {
-					bFlow.getIn().set(i, false);
-				}
-			}
-		}
-		in.or(bFlow.getGen());
-		if (!in.equals(origIn)) {
-			// Add predecessors to cfgBlocks list
-			for (CFGBlock pred : block.getPredecessors()) {
-				if (!cfgBlocksToProcess.contains(pred)) {
-					cfgBlocksToProcess.add(pred);
-				}
-			}
-		}
-		// Remove this block, since it has been processed
-		cfgBlocksToProcess.remove(block);
-		return bFlow;
-	}
-	
-	private void calculateUseDefSets(CFGBlock block, BlockDataFlowState bFlow){
+	public void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow) {
 		List<LIRStatement> blockStmts = block.getStatements();
 		PopStmt popStmt;
 		PushStmt pushStmt;
@@ -248,7 +218,7 @@ public class BlockLivenessGenerator {
 			LIRStatement stmt = blockStmts.get(i);
 			if (stmt.getClass().equals(CallStmt.class)) {
 				CallStmt callStmt = (CallStmt) stmt;
-				if (callStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+				if (callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 				
 				// Set all global variable IDs to true in the gen set
 				for (int globalVarId : globalVarIDs) {
@@ -321,7 +291,7 @@ public class BlockLivenessGenerator {
 			if (arg.getClass().equals(ArrayName.class)) {
 				
 				// Recursively process the index Name
-				arrIndex = (Name)arg.clone();
+				arrIndex = arg;
 				do {
 					arrIndex = ((ArrayName)arrIndex).getIndex();
 					argVar = nameToVar.get(arrIndex);
@@ -332,21 +302,19 @@ public class BlockLivenessGenerator {
 				
 				arrIndex = ((ArrayName)arg).getIndex();
 				String arrId = ((ArrayName)arg).getId();
-				// Loop through all the names and find the ArrayNames with
-				// the same ID
-				for (Name n : nameToVar.keySet()) {
-					if (n.getClass().equals(ArrayName.class)) {
-						if (((ArrayName)n).getId().equals(arrId)) {
-							// Note: if the index is a constant, then only set the ArrayNames
-							// that have a non-constant index to true in the Gen set
-							if (arrIndex.getClass().equals(ConstantName.class)) {
-								// Index is not a constant
-								if (!((ArrayName)n).getIndex().getClass().equals(ConstantName.class)) {
-									bFlow.getGen().set(nameToVar.get(n).getMyId());
-								}
-							} else {
+				// All the ArrayNames with the same ID
+				List<ArrayName> sameArray = arrayIdToArrNames.get(arrId);
+				if (sameArray != null) {
+					for (ArrayName n : sameArray) {
+						// Note: if the index is a constant, then only set the ArrayNames
+						// that have a non-constant index to true in the Gen set
+						if (arrIndex.getClass().equals(ConstantName.class)) {
+							// Index is not a constant
+							if (!n.getIndex().getClass().equals(ConstantName.class)) {
 								bFlow.getGen().set(nameToVar.get(n).getMyId());
 							}
+						} else {
+							bFlow.getGen().set(nameToVar.get(n).getMyId());
 						}
 					}
 				}
@@ -354,23 +322,29 @@ public class BlockLivenessGenerator {
 		}
 	}
 	
-	private void printNameToVar() {
+	public void printLiveness(PrintStream out) {
+		printGlobalVarIds(out);
+		printNameToVar(out);
+		printBlockLiveMap(out);
+	}
+	
+	private void printNameToVar(PrintStream out) {
 		for (Name n : nameToVar.keySet()) {
-			System.out.println("NAME: " + n + " --> " + nameToVar.get(n).getMyId());
+			out.println("NAME: " + n + " --> " + nameToVar.get(n).getMyId());
 		}
-		System.out.println("----");
+		out.println("----");
 	}
 	
-	private void printBlockLiveMap() {
+	private void printBlockLiveMap(PrintStream out) {
 		for (CFGBlock block : blockLiveVars.keySet()) {
-			System.out.println("BLOCK # " + block.getIndex());
-			System.out.println(blockLiveVars.get(block));
-			System.out.println("----");
+			out.println("BLOCK # " + block.getIndex());
+			out.println(blockLiveVars.get(block));
+			out.println("----");
 		}
 	}
 	
-	private void printGlobalVarIds() {
-		System.out.println("GLOBAL VAR IDs: " + globalVarIDs);
+	private void printGlobalVarIds(PrintStream out) {
+		out.println("GLOBAL VAR IDs: " + globalVarIDs);
 	}
 	
 	public void setBlockLiveVars(HashMap<CFGBlock, BlockDataFlowState> blockLiveVars) {
@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.ArrayName;
 import decaf.codegen.flatir.CallStmt;
 import decaf.codegen.flatir.ConstantName;
@@ -19,11 +20,11 @@ import decaf.codegen.flattener.ProgramFlattener;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 
-public class BlockReachingDefinitionGenerator {
-	private HashMap<String, MethodIR> mMap;
+public class BlockReachingDefinitionGenerator implements BlockTransferFunction, MethodDataFlowGenerator {
+	private MethodIR methodIR;
 	private ConfluenceOperator cOp;
 	private HashMap<CFGBlock, BlockDataFlowState> blockReachingDefs;
-	private HashSet<CFGBlock> cfgBlocksToProcess;
+	private List<CFGBlock> cfgBlocks;
 	// Map from Name to QuadrupletStmt which assign to that Name
 	private HashMap<Name, ArrayList<QuadrupletStmt>> nameToQStmts;
 	// Unique set of QuadrupletStmts
@@ -31,37 +32,41 @@ public class BlockReachingDefinitionGenerator {
 
 	private int totalDefinitions;
 
-	public BlockReachingDefinitionGenerator(HashMap<String, MethodIR> mMap, ConfluenceOperator op) {
-		this.mMap = mMap;
+	public BlockReachingDefinitionGenerator(MethodIR methodIR, ConfluenceOperator op) {
+		this.methodIR = methodIR;
 		this.cOp = op;
 		this.nameToQStmts = new HashMap<Name, ArrayList<QuadrupletStmt>>();
 		this.uniqueQStmts = new HashSet<QuadrupletStmt>();
 		this.blockReachingDefs = new HashMap<CFGBlock, BlockDataFlowState>();
-		this.cfgBlocksToProcess = new HashSet<CFGBlock>();
+		this.cfgBlocks = new ArrayList<CFGBlock>();
 		this.totalDefinitions = 0;
 	}
 	
+	// Generates reaching definitions for every method, each method numbers its own definitions
+	public static HashMap<String, BlockReachingDefinitionGenerator> generateForMethods(
+			HashMap<String, MethodIR> mMap, ConfluenceOperator op) {
+		HashMap<String, BlockReachingDefinitionGenerator> generators = 
+			new HashMap<String, BlockReachingDefinitionGenerator>();
+		for (String s: mMap.keySet()) {
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
+			
+			generators.put(s, new BlockReachingDefinitionGenerator(mMap.get(s), op));
+		}
+		MethodDataFlowRunner.generateAll(generators.values());
+		return generators;
+	}
+	
 	public void generate() {
 		initialize();
-		if (totalDefinitions == 0)
-			return;
-		// Get the first block in the main function - TODO: is there a better way?
-		CFGBlock entry = this.getBlockById("main", 0);
-		BlockDataFlowState entryBlockFlow = new BlockDataFlowState(totalDefinitions);
-		calculateGenKillSets(entry, entryBlockFlow);
-		entryBlockFlow.setOut(entryBlockFlow.getGen());
-		cfgBlocksToProcess.remove(entry);
-		blockReachingDefs.put(entry, entryBlockFlow);
-		
-		while (cfgBlocksToProcess.size() != 0) {
-			CFGBlock block = (CFGBlock)(cfgBlocksToProcess.toArray())[0];
-			BlockDataFlowState bFlow = generateForBlock(block);
-			blockReachingDefs.put(block, bFlow);
-		}
+		// The first block of the method is the entry
+		CFGBlock entry = this.getBlockById(0);
+		solve(entry);
 		
-		for (CFGBlock cfgBlock : blockReachingDefs.keySet()) {
-			System.out.println(cfgBlock);
-			System.out.println(blockReachingDefs.get(cfgBlock));
+		if (CompilationContext.get().isDebug()) {
+			for (CFGBlock cfgBlock : blockReachingDefs.keySet()) {
+				System.out.println(cfgBlock);
+				System.out.println(blockReachingDefs.get(cfgBlock));
+			}
 		}
 	}
 	
@@ -87,7 +92,7 @@ public class BlockReachingDefinitionGenerator {
 		// Temporary modify the successors of blocks which contain the test block to instead
 		// contain the end block
 		HashMap<CFGBlock, List<CFGBlock>> origSuccessors = new HashMap<CFGBlock, List<CFGBlock>>();
-		for (CFGBlock block : cfgBlocksToProcess) {
+		for (CFGBlock block : cfgBlocks) {
 			List<CFGBlock> successors = block.getSuccessors();
 			if (successors.contains(forLoopTestBlock)) {
 				origSuccessors.put(block, new ArrayList<CFGBlock>(successors));
@@ -96,18 +101,8 @@ public class BlockReachingDefinitionGenerator {
 				forLoopEndBlock.getPredecessors().add(block);
 			}
 		}
-		// Initialize for loop test block
-		BlockDataFlowState entryBlockFlow = new BlockDataFlowState(totalDefinitions);
-		calculateGenKillSets(forLoopTestBlock, entryBlockFlow);
-		entryBlockFlow.setOut(entryBlockFlow.getGen());
-		cfgBlocksToProcess.remove(forLoopTestBlock);
-		blockReachingDefs.put(forLoopTestBlock, entryBlockFlow);
-		
-		while (cfgBlocksToProcess.size() != 0) {
-			CFGBlock block = (CFGBlock)(cfgBlocksToProcess.toArray())[0];
-			BlockDataFlowState bFlow = generateForBlock(block);
-			blockReachingDefs.put(block, bFlow);
-		}
+		// For loop test block acts as the entry
+		solve(forLoopTestBlock);
 		
 		// Restore the predecessors of test block back to original
 		forLoopTestBlock.setPredecessors(testPreds);
@@ -121,17 +116,21 @@ public class BlockReachingDefinitionGenerator {
 		}
 	}
 	
-	// Sets the cfgBlockToProcess to only blocks between the forLoopTestBlock and forLoopEndBlock (inclusive)
+	// Sets the cfgBlocks to only blocks between the forLoopTestBlock and forLoopEndBlock (inclusive)
 	private void generateCFGBlocksToProcess(CFGBlock forLoopTestBlock, CFGBlock forLoopEndBlock) {
-		cfgBlocksToProcess = new HashSet<CFGBlock>();
-		cfgBlocksToProcess.add(forLoopTestBlock);
-		cfgBlocksToProcess.add(forLoopEndBlock);
+		cfgBlocks = new ArrayList<CFGBlock>();
+		HashSet<CFGBlock> added = new HashSet<CFGBlock>();
+		cfgBlocks.add(forLoopTestBlock);
+		added.add(forLoopTestBlock);
+		cfgBlocks.add(forLoopEndBlock);
+		added.add(forLoopEndBlock);
 		List<CFGBlock> blocksNotAdded = new ArrayList<CFGBlock>();
 		blocksNotAdded.addAll(forLoopTestBlock.getSuccessors());
 		while (!blocksNotAdded.isEmpty()) {
 			CFGBlock blockToAdd = blocksNotAdded.get(0);
-			if (!cfgBlocksToProcess.contains(blockToAdd)) {
-				cfgBlocksToProcess.add(blockToAdd);
+			if (!added.contains(blockToAdd)) {
+				cfgBlocks.add(blockToAdd);
+				added.add(blockToAdd);
 				for (CFGBlock succ : blockToAdd.getSuccessors()) {
 					blocksNotAdded.add(succ);
 				}
@@ -140,19 +139,25 @@ public class BlockReachingDefinitionGenerator {
 		}
 	}
 	
+	private void solve(CFGBlock entry) {
+		List<CFGBlock> entries = new ArrayList<CFGBlock>();
+		entries.add(entry);
+		BlockDataFlowSolver solver = new BlockDataFlowSolver(this, DataFlowDirection.FORWARD,
+				cOp, totalDefinitions, blockReachingDefs);
+		solver.solve(cfgBlocks, entries, new BitSet(totalDefinitions));
+	}
+	
 	private void reset() {
 		this.nameToQStmts = new HashMap<Name, ArrayList<QuadrupletStmt>>();
 		this.uniqueQStmts = new HashSet<QuadrupletStmt>();
 		this.blockReachingDefs = new HashMap<CFGBlock, BlockDataFlowState>();
-		this.cfgBlocksToProcess = new HashSet<CFGBlock>();
+		this.cfgBlocks = new ArrayList<CFGBlock>();
 		this.totalDefinitions = 0;
 	}
 	
-	private CFGBlock getBlockById(String name, int i) {
-		if (this.mMap.containsKey(name)) {
-			for (CFGBlock b: this.mMap.get(name).getCfgBlocks()) {
-				if (b.getIndex() == i) return b;
-			}
+	private CFGBlock getBlockById(int i) {
+		for (CFGBlock b: this.methodIR.getCfgBlocks()) {
+			if (b.getIndex() == i) return b;
 		}
 		
 		return null;
@@ -161,92 +166,41 @@ public class BlockReachingDefinitionGenerator {
 	private void initialize() {
 		// QuadrupletStmt IDs that we assign should start from 0, so they can
 		// correspond to the appropriate index in the BitSet
-		QuadrupletStmt.setID(0);
-		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
-			
-			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
-				List<LIRStatement> blockStmts = block.getStatements();
-				for (int i = 0; i < blockStmts.size(); i++) {
-					LIRStatement stmt = blockStmts.get(i);
-					if (stmt.getClass().equals(QuadrupletStmt.class)) {
-						QuadrupletStmt qStmt = (QuadrupletStmt)stmt;
-						Name dest = qStmt.getDestination();
-						if (dest != null) {
-							// Destination has to be non-null for this to be a valid definition
-							// of something
-							qStmt.setMyId();
-							if (!nameToQStmts.containsKey(dest)) {
-								nameToQStmts.put(dest, new ArrayList<QuadrupletStmt>());
-							}
-							nameToQStmts.get(dest).add(qStmt);
-							uniqueQStmts.add(qStmt);
+		for (CFGBlock block: this.methodIR.getCfgBlocks()) {
+			List<LIRStatement> blockStmts = block.getStatements();
+			for (int i = 0; i < blockStmts.size(); i++) {
+				LIRStatement stmt = blockStmts.get(i);
+				if (stmt.getClass().equals(QuadrupletStmt.class)) {
+					QuadrupletStmt qStmt = (QuadrupletStmt)stmt;
+					Name dest = qStmt.getDestination();
+					if (dest != null) {
+						// Destination has to be non-null for this to be a valid definition
+						// of something
+						qStmt.setMyId(totalDefinitions);
+						if (!nameToQStmts.containsKey(dest)) {
+							nameToQStmts.put(dest, new ArrayList<QuadrupletStmt>());
+						}
+						nameToQStmts.get(dest).add(qStmt);
+						uniqueQStmts.add(qStmt);
+						if (CompilationContext.get().isDebug()) {
 							System.out.println(qStmt + " ==>> " + qStmt.getMyId());
-							totalDefinitions++;
 						}
+						totalDefinitions++;
 					}
 				}
-				cfgBlocksToProcess.add(block);
-			}
-		}
-	}
-	
-	private BlockDataFlowState generateForBlock(CFGBlock block) {
-		// Get the original out BitSet for this block
-		BitSet origOut;
-		if (blockReachingDefs.containsKey(block)) {
-			origOut = blockReachingDefs.get(block).getOut();
-		} else {
-			origOut = new BitSet(totalDefinitions);
-			if (cOp == ConfluenceOperator.AND) {
-				// Confluence operator is AND, so initialize out set to all 1s
-				origOut.set(0, totalDefinitions, true);
-			}
-		}
-		// Calculate the in BitSet by taking union/intersection of predecessors depending
-		// on the cOp
-		BlockDataFlowState bFlow = new BlockDataFlowState(totalDefinitions);
-		if (cOp == ConfluenceOperator.AND) {
-			if (block.getPredecessors().size() > 0) {
-				bFlow.getIn().set(0, totalDefinitions);
-			}
-		}
-		BitSet in = bFlow.getIn();
-		for (CFGBlock pred : block.getPredecessors()) {
-			if (blockReachingDefs.containsKey(pred)) {
-				if (cOp == ConfluenceOperator.AND)
-					in.and(blockReachingDefs.get(pred).getOut());
-				else
-					in.or(blockReachingDefs.get(pred).getOut());
-			}
-		} 
-		calculateGenKillSets(block, bFlow);
-		// Calculate Out
-		BitSet out = bFlow.getOut();
-		out.or(in);
-		out.xor(bFlow.getKill()); // Invariant: kill is a subset of in
-		out.or(bFlow.getGen());
-		if (!out.equals(origOut)) {
-			// Add successors to cfgBlocks list
-			for (CFGBlock succ : block.getSuccessors()) {
-				if (!cfgBlocksToProcess.contains(succ)) {
-					cfgBlocksToProcess.add(succ);
-				}
 			}
+			cfgBlocks.add(block);
 		}
-		// Remove this block, since it has been processed
-		cfgBlocksToProcess.remove(block);
-		return bFlow;
 	}
 	
-	private void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow) {
+	public void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow) {
 		BitSet gen = bFlow.getGen();
 		List<LIRStatement> blockStmts = block.getStatements();
 		
 		for (LIRStatement stmt : blockStmts) {
 			if (stmt.getClass().equals(CallStmt.class)) {
 				CallStmt callStmt = (CallStmt) stmt;
-				if (callStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+				if (callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 				
 				invalidateFunctionCall(bFlow);
 				continue;
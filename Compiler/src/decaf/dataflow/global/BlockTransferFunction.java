@@ -0,0 +1,10 @@
+package decaf.dataflow.global;
+
+import decaf.dataflow.cfg.CFGBlock;
+
+public interface BlockTransferFunction {
+	// Fill in the Gen and Kill sets of bFlow for the given block
+	// For forward problems In is already set when this is called (Out for backward problems),
+	// so Kill can be kept a subset of it
+	public void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow);
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import decaf.codegen.flatir.ArrayName;
@@ -18,35 +19,64 @@ import decaf.codegen.flattener.ProgramFlattener;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 
-public class ConstReachingDef {
+public class ConstReachingDef implements MethodDataFlowGenerator {
 	private HashSet<CFGBlock> cfgBlocksToProcess;
 	private HashMap<CFGBlock, BlockDataFlowState> cfgBlocksState;
-	private HashMap<String, MethodIR> mMap;
-	private HashMap<String, List<LIRStatement>> uniqueDefinitions;
+	private MethodIR methodIR;
+	private List<LIRStatement> uniqueDefinitions;
+	// Index of every definition in uniqueDefinitions, the statements aren't numbered
+	// so the other analyses of the method can't change it
+	private IdentityHashMap<QuadrupletStmt, Integer> definitionIds;
+	// Definitions reaching each statement, replayed from the IN of its block
+	private BlockFactCache reachingDefIns;
 	
-	public ConstReachingDef(HashMap<String, MethodIR> mMap) {
-		this.mMap = mMap;
+	public ConstReachingDef(MethodIR methodIR) {
+		this.methodIR = methodIR;
 		this.cfgBlocksToProcess = new HashSet<CFGBlock>();
 		this.cfgBlocksState = new HashMap<CFGBlock, BlockDataFlowState>();
-		this.uniqueDefinitions = new HashMap<String, List<LIRStatement>>();
+		this.uniqueDefinitions = new ArrayList<LIRStatement>();
+		this.definitionIds = new IdentityHashMap<QuadrupletStmt, Integer>();
+		this.reachingDefIns = new BlockFactCache() {
+			protected void replay(CFGBlock block, IdentityHashMap<LIRStatement, BitSet> facts) {
+				replayBlock(block, facts);
+			}
+		};
 	}
 	
-	// Each QuadrupletStmt will have a unique ID
-	public void analyze() {
-		for (String methodName: this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+	// Analyzes every method, each method numbers its own definitions
+	public static HashMap<String, ConstReachingDef> generateForMethods(HashMap<String, MethodIR> mMap) {
+		HashMap<String, ConstReachingDef> generators = new HashMap<String, ConstReachingDef>();
+		for (String methodName: mMap.keySet()) {
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
-			initialize(methodName);
-			runWorkList(methodName);
+			generators.put(methodName, new ConstReachingDef(mMap.get(methodName)));
 		}
+		MethodDataFlowRunner.generateAll(generators.values());
+		return generators;
+	}
+	
+	// Each QuadrupletStmt will have a unique ID
+	public void generate() {
+		initialize();
+		runWorkList();
 	}
 
-	private void runWorkList(String methodName) {
-		int totalDefs = this.uniqueDefinitions.get(methodName).size();
+	// The ID of a definition is its index in uniqueDefinitions
+	public int getStatementId(QuadrupletStmt qStmt) {
+		return this.definitionIds.get(qStmt);
+	}
+	
+	// Definitions reaching the statement, by ID
+	public BitSet getReachingDefs(LIRStatement stmt) {
+		return this.reachingDefIns.getFacts(stmt);
+	}
+
+	private void runWorkList() {
+		int totalDefs = this.uniqueDefinitions.size();
 		
-		CFGBlock entry = this.getBlockById(methodName, 0);
+		CFGBlock entry = this.getBlockById(0);
 		BlockDataFlowState entryBlockFlow = new BlockDataFlowState(totalDefs); // OUT = GEN for entry block
-		calculateGenKillSets(entry, entryBlockFlow);
+		calculateGenKillSets(entry, entryBlockFlow, null);
 		entryBlockFlow.setOut(entryBlockFlow.getGen());
 		cfgBlocksToProcess.remove(entry);
 		
@@ -59,23 +89,19 @@ public class ConstReachingDef {
 		}		
 	}
 	
-	private CFGBlock getBlockById(String name, int i) {
-		if (this.mMap.containsKey(name)) {
-			for (CFGBlock b: this.mMap.get(name).getCfgBlocks()) {
-				if (b.getIndex() == i) return b;
-			}
+	private CFGBlock getBlockById(int i) {
+		for (CFGBlock b: this.methodIR.getCfgBlocks()) {
+			if (b.getIndex() == i) return b;
 		}
 		
 		return null;
 	}
 
 	// Each QuadrupletStmt will have unique ID, as it is a definition
-	private void initialize(String methodName) {
-		QuadrupletStmt.setID(0);
-		this.uniqueDefinitions.put(methodName, new ArrayList<LIRStatement>());
+	private void initialize() {
 		this.cfgBlocksToProcess.clear();
 		
-		for (CFGBlock block: this.mMap.get(methodName).getCfgBlocks()) {
+		for (CFGBlock block: this.methodIR.getCfgBlocks()) {
 			List<LIRStatement> blockStmts = block.getStatements();
 			for (int i = 0; i < blockStmts.size(); i++) {
 				LIRStatement stmt = blockStmts.get(i);
@@ -88,18 +114,22 @@ public class ConstReachingDef {
 					if (!qStmt.getOperator().equals(QuadrupletOp.MOVE)) continue;
 					
 					if (!qStmt.getArg1().getClass().equals(ConstantName.class)) continue;
+					
+					// Locals and temporaries are done by the SSA pass, only globals and arrays are left
+					if (!qStmt.getDestination().isGlobal()) continue;
 
-					this.uniqueDefinitions.get(methodName).add(qStmt);
-					qStmt.setMyId();
+					this.definitionIds.put(qStmt, this.uniqueDefinitions.size());
+					this.uniqueDefinitions.add(qStmt);
 				}
 			}
 			
+			this.reachingDefIns.register(block);
 			this.cfgBlocksToProcess.add(block);
 		}
 	}
 	
 	private BlockDataFlowState generateDFState(CFGBlock block) {
-		int totalDefs = this.uniqueDefinitions.get(block.getMethodName()).size();
+		int totalDefs = this.uniqueDefinitions.size();
 		// Get the original out BitSet for this block
 		BitSet origOut;
 		if (this.cfgBlocksState.containsKey(block)) {
@@ -124,7 +154,7 @@ public class ConstReachingDef {
 			}
 		}
 		
-		calculateGenKillSets(block, bFlow);
+		calculateGenKillSets(block, bFlow, null);
 		
 		// Calculate Out
 		BitSet out = bFlow.getOut(); // OUT = (IN - KILL) U GEN
@@ -147,33 +177,46 @@ public class ConstReachingDef {
 		return bFlow;
 	}
 	
-	private void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow) {
+	// Runs the block again from the IN it got in the worklist, for the sets of its statements
+	private void replayBlock(CFGBlock block, IdentityHashMap<LIRStatement, BitSet> facts) {
+		BlockDataFlowState state = this.cfgBlocksState.get(block);
+		if (state == null) return;
+		
+		BlockDataFlowState bFlow = new BlockDataFlowState(this.uniqueDefinitions.size());
+		bFlow.getIn().or(state.getIn());
+		calculateGenKillSets(block, bFlow, facts);
+	}
+	
+	// If facts isn't null, the definitions reaching each statement are put in it
+	private void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow, IdentityHashMap<LIRStatement, BitSet> facts) {
 		List<LIRStatement> blockStmts = block.getStatements();
 		QuadrupletStmt qStmt;
 		
 		for (LIRStatement stmt : blockStmts) {
-			stmt.setReachingDefInSet(getReachingInSet(bFlow, block.getMethodName()));
+			if (facts != null) {
+				facts.put(stmt, getReachingInSet(bFlow));
+			}
 			
 			if (stmt.getClass().equals(QuadrupletStmt.class)) {
 				qStmt = (QuadrupletStmt)stmt;
 				if (!qStmt.getDestination().getClass().equals(RegisterName.class)) {
-					updateKillGenSet(block.getMethodName(), qStmt, bFlow);
+					updateKillGenSet(qStmt, bFlow);
 				}
 			}
 			else if (stmt.getClass().equals(CallStmt.class)) {
 				CallStmt cStmt = (CallStmt) stmt;
-				if (cStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) {
+				if (cStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) {
 					continue;
 				}
 				
-				invalidateFunctionCall(block, bFlow);
+				invalidateFunctionCall(bFlow);
 			}
 			
 		}
 	}
 
-	private BitSet getReachingInSet(BlockDataFlowState bFlow, String string) {
-		BitSet out = new BitSet(this.uniqueDefinitions.get(string).size()); // OUT = (IN - KILL) U GEN
+	private BitSet getReachingInSet(BlockDataFlowState bFlow) {
+		BitSet out = new BitSet(this.uniqueDefinitions.size()); // OUT = (IN - KILL) U GEN
 		out.or(bFlow.getIn());
 		out.xor(bFlow.getKill());
 		out.or(bFlow.getGen());
@@ -181,22 +224,22 @@ public class ConstReachingDef {
 		return out;
 	}
 
-	private void invalidateFunctionCall(CFGBlock block, BlockDataFlowState bFlow) {
-		for (LIRStatement def: this.uniqueDefinitions.get(block.getMethodName())) {
+	private void invalidateFunctionCall(BlockDataFlowState bFlow) {
+		for (LIRStatement def: this.uniqueDefinitions) {
 			QuadrupletStmt qStmt = (QuadrupletStmt) def;
 			
 			if (!qStmt.getDestination().isGlobal()) continue;
 			
-			if (bFlow.getIn().get(qStmt.getMyId())) {
-				bFlow.getKill().set(qStmt.getMyId(), true);
+			if (bFlow.getIn().get(getStatementId(qStmt))) {
+				bFlow.getKill().set(getStatementId(qStmt), true);
 			}
 			
-			bFlow.getGen().clear(qStmt.getMyId()); // Clear any previous gen bits for same dest var
+			bFlow.getGen().clear(getStatementId(qStmt)); // Clear any previous gen bits for same dest var
 		}
 	}
 	
 	// invalidates defs for quadruplt stmt and loads
-	public void updateKillGenSet(String methodName, LIRStatement stmt, BlockDataFlowState bFlow) {
+	public void updateKillGenSet(LIRStatement stmt, BlockDataFlowState bFlow) {
 		if (stmt == null) return;
 		
 		BitSet in = bFlow.getIn();
@@ -207,17 +250,17 @@ public class ConstReachingDef {
 		Name dest = srcqStmt.getDestination();
 		
 		// Invalidate reaching definitions
-		for (LIRStatement s : this.uniqueDefinitions.get(methodName)) {
+		for (LIRStatement s : this.uniqueDefinitions) {
 			QuadrupletStmt qStmt = (QuadrupletStmt) s;
 			if (qStmt.getDestination().equals(dest)) { // Definitions to same var name
-				if (in.get(qStmt.getMyId())) {
-					kill.set(qStmt.getMyId(), true);
+				if (in.get(getStatementId(qStmt))) {
+					kill.set(getStatementId(qStmt), true);
 				}
 				
-				gen.clear(qStmt.getMyId()); // Clear any previous gen bits for same dest var
+				gen.clear(getStatementId(qStmt)); // Clear any previous gen bits for same dest var
 			}
 			
-			int myIndex = qStmt.getMyId();
+			int myIndex = getStatementId(qStmt);
 			Name name = qStmt.getDestination();
 				
 			boolean resetName = false;
@@ -256,9 +299,9 @@ public class ConstReachingDef {
 			}
 		}
 		
-		if (srcqStmt.getOperator() == QuadrupletOp.MOVE) {
+		if (srcqStmt.getOperator() == QuadrupletOp.MOVE && dest.isGlobal()) {
 			if (srcqStmt.getArg1().getClass().equals(ConstantName.class)) {
-				gen.set(srcqStmt.getMyId()); // Set gen bit on
+				gen.set(getStatementId(srcqStmt)); // Set gen bit on
 			}
 		}
 	}
@@ -272,12 +315,11 @@ public class ConstReachingDef {
 		this.cfgBlocksState = cfgBlocksState;
 	}
 
-	public HashMap<String, List<LIRStatement>> getUniqueDefinitions() {
+	public List<LIRStatement> getUniqueDefinitions() {
 		return uniqueDefinitions;
 	}
 
-	public void setUniqueDefinitions(
-			HashMap<String, List<LIRStatement>> uniqueDefinitions) {
+	public void setUniqueDefinitions(List<LIRStatement> uniqueDefinitions) {
 		this.uniqueDefinitions = uniqueDefinitions;
 	}
 }
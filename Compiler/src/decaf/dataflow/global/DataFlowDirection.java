@@ -0,0 +1,6 @@
+package decaf.dataflow.global;
+
+public enum DataFlowDirection {
+	FORWARD,
+	BACKWARD
+}
@@ -7,52 +7,97 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
 
+import decaf.codegen.flatir.ArrayName;
+import decaf.codegen.flatir.CallStmt;
 import decaf.codegen.flatir.DynamicVarName;
 import decaf.codegen.flatir.LIRStatement;
 import decaf.codegen.flatir.Name;
 import decaf.codegen.flatir.QuadrupletOp;
 import decaf.codegen.flatir.QuadrupletStmt;
+import decaf.codegen.flatir.RegisterName;
+import decaf.codegen.flatir.VarName;
 import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.PassManager;
+import decaf.dataflow.Transform;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 
-public class GlobalCSEOptimizer {
+public class GlobalCSEOptimizer implements Transform {
 	private HashMap<String, MethodIR> mMap;
+	private PassManager pm;
 	private HashMap<AvailableExpression, DynamicVarName> exprToTemp;
+	private HashMap<String, BlockAvailableExpressionGenerator> availableGenerators;
+	// Generator of the method currently being processed
 	private BlockAvailableExpressionGenerator availableGenerator;
 	private HashSet<Integer> exprsClobbered;
+	// Statements which assign an expression to its temporary, and the temporaries
+	// which actually replaced an expression in the method being optimized
+	private HashSet<QuadrupletStmt> tempAssignments;
+	private HashSet<Name> tempsUsed;
 	
-	public GlobalCSEOptimizer(HashMap<String, MethodIR> mMap) {
+	public GlobalCSEOptimizer(HashMap<String, MethodIR> mMap, PassManager pm) {
 		this.mMap = mMap;
-		this.availableGenerator = new BlockAvailableExpressionGenerator(mMap);
+		this.pm = pm;
 		this.exprToTemp = new HashMap<AvailableExpression, DynamicVarName>();
 		this.exprsClobbered = new HashSet<Integer>();
-		// Generate Available Expressions for CFG
-		this.availableGenerator.generate();
+		this.tempAssignments = new HashSet<QuadrupletStmt>();
+		this.tempsUsed = new HashSet<Name>();
 	}
 	
-	public void performGlobalCSE() {
+	public boolean apply() {
+		return performGlobalCSE();
+	}
+	
+	private int getTotalExpressionStmts() {
+		int total = 0;
+		for (BlockAvailableExpressionGenerator generator : availableGenerators.values()) {
+			total += generator.getTotalExpressionStmts();
+		}
+		return total;
+	}
+	
+	public boolean performGlobalCSE() {
 		//DynamicVarName.reset();
+		boolean changed = false;
+		// Available Expressions for CFG, only recomputed for methods which changed
+		this.availableGenerators = pm.getAnalyses(BlockAvailableExpressionGenerator.class);
 		
-		if (availableGenerator.getTotalExpressionStmts() == 0)
-			return;
+		if (getTotalExpressionStmts() == 0)
+			return changed;
 
 		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
+			int version = this.mMap.get(s).getVersion();
+			availableGenerator = availableGenerators.get(s);
 			// Create temporary variables for each unique AvailableExpression
 			initializeTemporaryMap(s);
 			
 			// Optimize blocks
+			HashMap<CFGBlock, List<LIRStatement>> blockStmts = new HashMap<CFGBlock, List<LIRStatement>>();
 			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
-				optimize(block);
+				blockStmts.put(block, optimize(block));
 				resetBlock();
 			}
+			
+			// Only keep the temporaries of expressions which were replaced somewhere in the method
+			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
+				List<LIRStatement> newStmts = new ArrayList<LIRStatement>();
+				for (LIRStatement stmt: blockStmts.get(block)) {
+					if (tempAssignments.contains(stmt) && !tempsUsed.contains(((QuadrupletStmt) stmt).getDestination())) 
+						continue;
+					newStmts.add(stmt);
+				}
+				block.setStatements(newStmts);
+			}
 		
 			this.mMap.get(s).regenerateStmts();
+			changed |= (this.mMap.get(s).getVersion() != version);
 			
 			resetMethod();
 		}
+		
+		return changed;
 	}
 	
 	private void resetBlock() {
@@ -61,9 +106,13 @@ public class GlobalCSEOptimizer {
 	
 	private void resetMethod() {
 		exprToTemp = new HashMap<AvailableExpression, DynamicVarName>();
+		tempAssignments = new HashSet<QuadrupletStmt>();
+		tempsUsed = new HashSet<Name>();
 	}
 	
 	private void initializeTemporaryMap(String method) {
+		if (availableGenerator == null)
+			return;
 		List<AvailableExpression> availExprs = 
 			availableGenerator.getMethodExpressions().get(method);
 		if (availExprs != null) {
@@ -73,7 +122,7 @@ public class GlobalCSEOptimizer {
 		}
 	}
 	
-	private void optimize(CFGBlock block) {
+	private List<LIRStatement> optimize(CFGBlock block) {
 		List<LIRStatement> newStmts = new ArrayList<LIRStatement>();
 		List<AvailableExpression> exprs = availableGenerator.getBlockExpressions().get(block);
 		HashMap<Name, HashSet<Integer>> nameToExprs = availableGenerator.getNameToExprIds();
@@ -82,6 +131,9 @@ public class GlobalCSEOptimizer {
 		int exprIndex = 0;
 		for (LIRStatement stmt: block.getStatements()) {
 			if (!stmt.getClass().equals(QuadrupletStmt.class)) {
+				if (stmt.getClass().equals(CallStmt.class)) {
+					clobberCall((CallStmt) stmt, nameToExprs);
+				}
 				newStmts.add(stmt);
 				continue;
 			}
@@ -90,6 +142,9 @@ public class GlobalCSEOptimizer {
 			Name dest = qStmt.getDestination();
 			
 			if (!stmt.isAvailableExpression()) {
+				// MOVE still assigns its destination
+				if (nameToExprs.containsKey(dest))
+					exprsClobbered.addAll(nameToExprs.get(dest));
 				newStmts.add(stmt);
 				continue;
 			}
@@ -106,11 +161,14 @@ public class GlobalCSEOptimizer {
 					qStmt.setArg2(null);
 					qStmt.setOperator(QuadrupletOp.MOVE);
 					newStmts.add(stmt);
+					block.markChanged();
+					tempsUsed.add(temp);
 				} else {
 					newStmts.add(stmt);
 					// Re-assign temporary to destination
 					QuadrupletStmt newStmt = new QuadrupletStmt(QuadrupletOp.MOVE, temp, dest, null);
 					newStmts.add(newStmt);
+					tempAssignments.add(newStmt);
 					// Remove AvailableExpression from exprsClobbered
 					exprsClobbered.remove(expr.getMyId());
 				}
@@ -121,6 +179,7 @@ public class GlobalCSEOptimizer {
 				if (bFlow.getOut().get(expr.getMyId())) {
 					QuadrupletStmt newStmt = new QuadrupletStmt(QuadrupletOp.MOVE, temp, dest, null);
 					newStmts.add(newStmt);
+					tempAssignments.add(newStmt);
 				}
 			}
 			
@@ -130,13 +189,28 @@ public class GlobalCSEOptimizer {
 			exprIndex++;
 		}
 		
-		block.setStatements(newStmts);
+		return newStmts;
+	}
+	
+	// A call can change the registers, the globals and the arrays (as in BlockAvailableExpressionGenerator)
+	private void clobberCall(CallStmt callStmt, HashMap<Name, HashSet<Integer>> nameToExprs) {
+		if (callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) return;
+		
+		for (Name name: nameToExprs.keySet()) {
+			if (name.getClass().equals(RegisterName.class) || name.getClass().equals(ArrayName.class)) {
+				exprsClobbered.addAll(nameToExprs.get(name));
+			}
+			else if (name.getClass().equals(VarName.class) && ((VarName) name).getBlockId() == -1) { // Global
+				exprsClobbered.addAll(nameToExprs.get(name));
+			}
+		}
 	}
 	
 	public void printExprToTemp(PrintStream out) {
 		out.println("EXPR TO GLOBAL TEMP MAPS: ");
 		for (String s: this.mMap.keySet()) {
 			exprToTemp = new HashMap<AvailableExpression, DynamicVarName>();
+			availableGenerator = availableGenerators.get(s);
 			initializeTemporaryMap(s);
 			System.out.println("METHOD: " + s);
 			for (Entry<AvailableExpression, DynamicVarName> e : exprToTemp.entrySet()) {
@@ -145,12 +219,12 @@ public class GlobalCSEOptimizer {
 		}
 	}
 	
-	public BlockAvailableExpressionGenerator getAvailableGenerator() {
-		return availableGenerator;
+	public HashMap<String, BlockAvailableExpressionGenerator> getAvailableGenerators() {
+		return availableGenerators;
 	}
 
-	public void setAvailableGenerator(
-			BlockAvailableExpressionGenerator availableGenerator) {
-		this.availableGenerator = availableGenerator;
+	public void setAvailableGenerators(
+			HashMap<String, BlockAvailableExpressionGenerator> availableGenerators) {
+		this.availableGenerators = availableGenerators;
 	}
 }
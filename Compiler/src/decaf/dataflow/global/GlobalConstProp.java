@@ -1,5 +1,6 @@
 package decaf.dataflow.global;
 
+import java.util.BitSet;
 import java.util.HashMap;
 
 import decaf.codegen.flatir.ArrayName;
@@ -11,30 +12,48 @@ import decaf.codegen.flatir.PopStmt;
 import decaf.codegen.flatir.PushStmt;
 import decaf.codegen.flatir.QuadrupletStmt;
 import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.PassManager;
+import decaf.dataflow.Transform;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 
-public class GlobalConstProp {
+public class GlobalConstProp implements Transform {
+	private HashMap<String, ConstReachingDef> crds;
+	// Reaching definitions of the method currently being processed
 	private ConstReachingDef crd;
 	private HashMap<String, MethodIR> mMap;
+	private PassManager pm;
 	private String methodName;
+	// Block being optimized, marked as changed when a Name is replaced
+	private CFGBlock block;
 	
-	public GlobalConstProp(HashMap<String, MethodIR> mMap) {
+	public GlobalConstProp(HashMap<String, MethodIR> mMap, PassManager pm) {
 		this.mMap = mMap;
-		this.crd = new ConstReachingDef(mMap);
+		this.pm = pm;
 	}
 	
-	public void performConstProp() {
-		crd.analyze();
+	public boolean apply() {
+		return performConstProp();
+	}
+	
+	public boolean performConstProp() {
+		boolean changed = false;
+		this.crds = pm.getAnalyses(ConstReachingDef.class);
 		
 		for (String methodName: this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
+			int version = this.mMap.get(methodName).getVersion();
 			this.methodName = methodName;
+			this.crd = crds.get(methodName);
 			for (CFGBlock block: this.mMap.get(methodName).getCfgBlocks()) {
+				this.block = block;
 				optimizeBlock(block);
 			}
+			changed |= (this.mMap.get(methodName).getVersion() != version);
 		}
+		
+		return changed;
 	}
 
 	private void optimizeBlock(CFGBlock block) {
@@ -43,23 +62,23 @@ public class GlobalConstProp {
 				QuadrupletStmt qStmt = (QuadrupletStmt)stmt;
 				// For each use of a Name, see all the reaching definitions for that Name
 				// If all reaching definitions assign the Name to the same constant, replace Name with that constant
-				qStmt.setArg1(processArg(qStmt.getArg1(), stmt));
-				qStmt.setArg2(processArg(qStmt.getArg2(), stmt));
+				qStmt.setArg1(block.trackReplace(qStmt.getArg1(), processArg(qStmt.getArg1(), stmt)));
+				qStmt.setArg2(block.trackReplace(qStmt.getArg2(), processArg(qStmt.getArg2(), stmt)));
 			// Optimize PopStmt
 			} else if (stmt.getClass().equals(PopStmt.class)) {
 				PopStmt popStmt = (PopStmt)stmt;
-				popStmt.setName(processArg(popStmt.getName(), stmt));
+				popStmt.setName(block.trackReplace(popStmt.getName(), processArg(popStmt.getName(), stmt)));
 			
 			// Optimize PushStmt
 			} else if (stmt.getClass().equals(PushStmt.class)) {
 				PushStmt pushStmt = (PushStmt)stmt;
-				pushStmt.setName(processArg(pushStmt.getName(), stmt));
+				pushStmt.setName(block.trackReplace(pushStmt.getName(), processArg(pushStmt.getName(), stmt)));
 			// Optimize CmpStmt
 			} 
 			else if (stmt.getClass().equals(CmpStmt.class)) {
 				CmpStmt cStmt = (CmpStmt)stmt;
-				cStmt.setArg1(processArg(cStmt.getArg1(), stmt));
-				cStmt.setArg2(processArg(cStmt.getArg2(), stmt));
+				cStmt.setArg1(block.trackReplace(cStmt.getArg1(), processArg(cStmt.getArg1(), stmt)));
+				cStmt.setArg2(block.trackReplace(cStmt.getArg2(), processArg(cStmt.getArg2(), stmt)));
 			}
 		}
 		
@@ -75,7 +94,7 @@ public class GlobalConstProp {
 		}
 		else {
 			ArrayName arrName = (ArrayName) name;
-			arrName.setIndex(processArg(arrName.getIndex(), stmt));
+			arrName.setIndex(this.block.trackReplace(arrName.getIndex(), processArg(arrName.getIndex(), stmt)));
 			return name;
 		}
 	}
@@ -84,10 +103,11 @@ public class GlobalConstProp {
 		if (name == null) return null;
 		
 		ConstantName assigned = null;
+		BitSet reaching = this.crd.getReachingDefs(stmt);
 		
-		for (int i = 0; i < this.crd.getUniqueDefinitions().get(this.methodName).size(); i++) {
-			if (stmt.getReachingDefInSet().get(i)) {
-				LIRStatement def = this.crd.getUniqueDefinitions().get(this.methodName).get(i);
+		for (int i = 0; i < this.crd.getUniqueDefinitions().size(); i++) {
+			if (reaching.get(i)) {
+				LIRStatement def = this.crd.getUniqueDefinitions().get(i);
 				
 				QuadrupletStmt qStmt = (QuadrupletStmt) def;
 				if (qStmt.getDestination().equals(name)) {
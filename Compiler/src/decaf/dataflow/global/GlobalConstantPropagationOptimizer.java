@@ -5,6 +5,7 @@ import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.ArrayName;
 import decaf.codegen.flatir.CallStmt;
 import decaf.codegen.flatir.CmpStmt;
@@ -23,22 +24,32 @@ public class GlobalConstantPropagationOptimizer {
 	private HashMap<String, MethodIR> mMap;
 	// The reaching definition bitset at the program point of the qstmt
 	private HashMap<LIRStatement, BitSet> reachingDefForStmts;
+	private HashMap<String, BlockReachingDefinitionGenerator> reachingDefGenerators;
+	// Generator of the method currently being processed
 	private BlockReachingDefinitionGenerator reachingDefGenerator;
 	
 	public GlobalConstantPropagationOptimizer(HashMap<String, MethodIR> mMap) {
 		this.mMap = mMap;
 		this.reachingDefForStmts = new HashMap<LIRStatement, BitSet>();
-		this.reachingDefGenerator = new BlockReachingDefinitionGenerator(mMap, ConfluenceOperator.OR);
-		this.reachingDefGenerator.generate();
+		this.reachingDefGenerators = BlockReachingDefinitionGenerator.generateForMethods(mMap, ConfluenceOperator.OR);
+	}
+	
+	private int getTotalDefinitions() {
+		int total = 0;
+		for (BlockReachingDefinitionGenerator generator : reachingDefGenerators.values()) {
+			total += generator.getTotalDefinitions();
+		}
+		return total;
 	}
 	
 	public void performGlobalConstantProp() {
-		if (reachingDefGenerator.getTotalDefinitions() == 0)
+		if (getTotalDefinitions() == 0)
 			return;
 		
 		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
+			reachingDefGenerator = reachingDefGenerators.get(s);
 			// Optimize blocks
 			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
 				optimize(block);
@@ -49,12 +60,13 @@ public class GlobalConstantPropagationOptimizer {
 	}
 	
 	public void generateReachingDefsForQStmts() {
-		if (reachingDefGenerator.getTotalDefinitions() == 0)
+		if (getTotalDefinitions() == 0)
 			return;
 		
 		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
+			reachingDefGenerator = reachingDefGenerators.get(s);
 			// Optimize blocks
 			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
 				generateReachingDefsForQStmtsInBlock(block);
@@ -75,7 +87,7 @@ public class GlobalConstantPropagationOptimizer {
 			
 			if (stmt.getClass().equals(CallStmt.class)) {
 				CallStmt callStmt = (CallStmt) stmt;
-				if (callStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+				if (callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 				
 				// Update BlockDataFlowState kill set
 				reachingDefGenerator.invalidateFunctionCall(bFlow);
@@ -84,7 +96,9 @@ public class GlobalConstantPropagationOptimizer {
 			} else if (stmt.getClass().equals(QuadrupletStmt.class)) {
 				qStmt = (QuadrupletStmt)stmt;
 				
-				System.out.println("reaching defs for qstmt: " + qStmt + " -> " + bFlow.getIn());
+				if (CompilationContext.get().isDebug()) {
+					System.out.println("reaching defs for qstmt: " + qStmt + " -> " + bFlow.getIn());
+				}
 
 				// Update BlockDataFlowState kill set
 				reachingDefGenerator.updateKillSet(qStmt.getDestination(), bFlow);
@@ -110,7 +124,7 @@ public class GlobalConstantPropagationOptimizer {
 			bFlow.getKill().clear();
 			if (stmt.getClass().equals(CallStmt.class)) {
 				CallStmt callStmt = (CallStmt) stmt;
-				if (callStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+				if (callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 				
 				// Update BlockDataFlowState kill set
 				reachingDefGenerator.invalidateFunctionCall(bFlow);
@@ -263,8 +277,9 @@ public class GlobalConstantPropagationOptimizer {
 		return cName;
 	}
 
-	// Returns a list of QuadrupletStmts which define the given Name
-	public List<QuadrupletStmt> getDefinitionsForName(Name arg) {
+	// Returns a list of QuadrupletStmts in the given method which define the given Name
+	public List<QuadrupletStmt> getDefinitionsForName(String methodName, Name arg) {
+		reachingDefGenerator = reachingDefGenerators.get(methodName);
 		HashMap<Name, ArrayList<QuadrupletStmt>> nameToStmts = reachingDefGenerator.getNameToQStmts();
 		ArrayList<QuadrupletStmt> stmtsForName = nameToStmts.get(arg);
 		// If the Name is an Array, add additional QuadrupletStmts
@@ -301,8 +316,8 @@ public class GlobalConstantPropagationOptimizer {
 		return additionalReachingDefs;
 	}
 	
-	public BlockReachingDefinitionGenerator getReachingDefGenerator() {
-		return reachingDefGenerator;
+	public HashMap<String, BlockReachingDefinitionGenerator> getReachingDefGenerators() {
+		return reachingDefGenerators;
 	}
 	
 	public HashMap<LIRStatement, BitSet> getReachingDefForStmts() {
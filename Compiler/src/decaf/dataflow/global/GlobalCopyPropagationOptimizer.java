@@ -13,37 +13,63 @@ import decaf.codegen.flatir.PopStmt;
 import decaf.codegen.flatir.PushStmt;
 import decaf.codegen.flatir.QuadrupletStmt;
 import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.PassManager;
+import decaf.dataflow.Transform;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 
-public class GlobalCopyPropagationOptimizer {
+public class GlobalCopyPropagationOptimizer implements Transform {
 	private HashMap<String, MethodIR> mMap;
+	private PassManager pm;
+	private HashMap<String, BlockAssignmentDefinitionGenerator> assignmentDefGenerators;
+	// Generator of the method currently being processed
 	private BlockAssignmentDefinitionGenerator assignmentDefGenerator;
 	
-	public GlobalCopyPropagationOptimizer(HashMap<String, MethodIR> mMap) {
+	public GlobalCopyPropagationOptimizer(HashMap<String, MethodIR> mMap, PassManager pm) {
 		this.mMap = mMap;
-		this.assignmentDefGenerator = new BlockAssignmentDefinitionGenerator(mMap);
-		this.assignmentDefGenerator.generate();
+		this.pm = pm;
 	}
 	
-	public void performGlobalCopyProp() {
-		if (assignmentDefGenerator.getTotalAssignmentDefinitions() == 0)
-			return;
+	public boolean apply() {
+		return performGlobalCopyProp();
+	}
+	
+	private int getTotalAssignmentDefinitions() {
+		int total = 0;
+		for (BlockAssignmentDefinitionGenerator generator : assignmentDefGenerators.values()) {
+			total += generator.getTotalAssignmentDefinitions();
+		}
+		return total;
+	}
+	
+	public boolean performGlobalCopyProp() {
+		boolean changed = false;
+		this.assignmentDefGenerators = pm.getAnalyses(BlockAssignmentDefinitionGenerator.class);
+		
+		if (getTotalAssignmentDefinitions() == 0)
+			return changed;
 
 		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
+			int version = this.mMap.get(s).getVersion();
+			assignmentDefGenerator = assignmentDefGenerators.get(s);
 			// Optimize blocks
 			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
 				optimize(block);
 			}
 			
 			this.mMap.get(s).regenerateStmts();
+			changed |= (this.mMap.get(s).getVersion() != version);
 		}
+		
+		return changed;
 	}
 
 	private void optimize(CFGBlock block) {
-		BlockDataFlowState bFlow = assignmentDefGenerator.getBlockAssignReachingDefs().get(block);
+		// The In and Kill sets are updated statement by statement, so work on a copy
+		// and leave the cached analysis as it is
+		BlockDataFlowState bFlow = new BlockDataFlowState(assignmentDefGenerator.getBlockAssignReachingDefs().get(block));
 		QuadrupletStmt qStmt;
 		PopStmt popStmt;
 		PushStmt pushStmt;
@@ -55,7 +81,7 @@ public class GlobalCopyPropagationOptimizer {
 			bFlow.getKill().clear();
 			if (stmt.getClass().equals(CallStmt.class)) {
 				CallStmt callStmt = (CallStmt) stmt;
-				if (callStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+				if (callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 				
 				// Update BlockDataFlowState kill set
 				assignmentDefGenerator.invalidateFunctionCall(bFlow);
@@ -64,22 +90,22 @@ public class GlobalCopyPropagationOptimizer {
 				
 			} else if (stmt.getClass().equals(QuadrupletStmt.class)) {
 				qStmt = (QuadrupletStmt)stmt;
-				newArg1 = copyPropagateOnArg(qStmt.getArg1(), bFlow);
+				newArg1 = copyPropagateOnArg(qStmt.getArg1(), bFlow, block);
 				if (newArg1 != null) {
-					qStmt.setArg1(newArg1);
+					qStmt.setArg1(block.trackReplace(qStmt.getArg1(), newArg1));
 				}
-				newArg2 = copyPropagateOnArg(qStmt.getArg2(), bFlow);
+				newArg2 = copyPropagateOnArg(qStmt.getArg2(), bFlow, block);
 				if (newArg2 != null) {
-					qStmt.setArg2(newArg2);
+					qStmt.setArg2(block.trackReplace(qStmt.getArg2(), newArg2));
 				}
 				dest = qStmt.getDestination();
 				if (dest != null) {
 					// Check if dest is ArrayName and try to optimize index
 					if (dest.getClass().equals(ArrayName.class)) {
 						Name arrIndex = ((ArrayName)dest).getIndex();
-						Name propagatedName = copyPropagateOnArg(arrIndex, bFlow);
+						Name propagatedName = copyPropagateOnArg(arrIndex, bFlow, block);
 						if (propagatedName != null)
-							((ArrayName)dest).setIndex(propagatedName);
+							((ArrayName)dest).setIndex(block.trackReplace(arrIndex, propagatedName));
 					}
 				}
 				
@@ -91,29 +117,29 @@ public class GlobalCopyPropagationOptimizer {
 			// Optimize PopStmt
 			} else if (stmt.getClass().equals(PopStmt.class)) {
 				popStmt = (PopStmt)stmt;
-				newArg1 = copyPropagateOnArg(popStmt.getName(), bFlow);
+				newArg1 = copyPropagateOnArg(popStmt.getName(), bFlow, block);
 				if (newArg1 != null) {
-					popStmt.setName(newArg1);
+					popStmt.setName(block.trackReplace(popStmt.getName(), newArg1));
 				}
 			
 			// Optimize PushStmt
 			} else if (stmt.getClass().equals(PushStmt.class)) {
 				pushStmt = (PushStmt)stmt;
-				newArg1 = copyPropagateOnArg(pushStmt.getName(), bFlow);
+				newArg1 = copyPropagateOnArg(pushStmt.getName(), bFlow, block);
 				if (newArg1 != null) {
-					pushStmt.setName(newArg1);
+					pushStmt.setName(block.trackReplace(pushStmt.getName(), newArg1));
 				}
 				
 			// Optimize CmpStmt
 			} else if (stmt.getClass().equals(CmpStmt.class)) {
 				cStmt = (CmpStmt)stmt;
-				newArg1 = copyPropagateOnArg(cStmt.getArg1(), bFlow);
+				newArg1 = copyPropagateOnArg(cStmt.getArg1(), bFlow, block);
 				if (newArg1 != null) {
-					cStmt.setArg1(newArg1);
+					cStmt.setArg1(block.trackReplace(cStmt.getArg1(), newArg1));
 				}
-				newArg2 = copyPropagateOnArg(cStmt.getArg2(), bFlow);
+				newArg2 = copyPropagateOnArg(cStmt.getArg2(), bFlow, block);
 				if (newArg2 != null) {
-					cStmt.setArg2(newArg2);
+					cStmt.setArg2(block.trackReplace(cStmt.getArg2(), newArg2));
 				}
 			}
 		}
@@ -122,7 +148,7 @@ public class GlobalCopyPropagationOptimizer {
 	// For each use of a Name, see all the reaching definitions for that Name
 	// If there exists only ONE reaching assignment definition that assigns to Name, 
 	// replace Name with definition's LHS
-	private Name copyPropagateOnArg(Name arg, BlockDataFlowState bFlow) {
+	private Name copyPropagateOnArg(Name arg, BlockDataFlowState bFlow, CFGBlock block) {
 		if (arg != null) {
 			HashMap<Name, HashSet<QuadrupletStmt>> nameToStmtsThatAssignIt = 
 				assignmentDefGenerator.getNameToQStmtsThatAssignIt();
@@ -135,7 +161,7 @@ public class GlobalCopyPropagationOptimizer {
 			numReachingDefs = 0;
 			if (stmtsAssigningName != null) {
 				for (QuadrupletStmt qs : stmtsAssigningName) {
-					if (in.get(qs.getMyId())) {
+					if (in.get(assignmentDefGenerator.getStatementId(qs))) {
 						numReachingDefs++;
 						reachingAssignmentStmt = qs;
 					}
@@ -150,16 +176,16 @@ public class GlobalCopyPropagationOptimizer {
 			// Check if Name is ArrayName and try to optimize index
 			if (arg.getClass().equals(ArrayName.class)) {
 				Name arrIndex = ((ArrayName)arg).getIndex();
-				Name propagatedName = copyPropagateOnArg(arrIndex, bFlow);
+				Name propagatedName = copyPropagateOnArg(arrIndex, bFlow, block);
 				if (propagatedName != null) {
-					((ArrayName)arg).setIndex(propagatedName);
+					((ArrayName)arg).setIndex(block.trackReplace(arrIndex, propagatedName));
 				}
 			}
 		}
 		return null;
 	}
 
-	public BlockAssignmentDefinitionGenerator getAssignmentDefGenerator() {
-		return assignmentDefGenerator;
+	public HashMap<String, BlockAssignmentDefinitionGenerator> getAssignmentDefGenerators() {
+		return assignmentDefGenerators;
 	}
 }
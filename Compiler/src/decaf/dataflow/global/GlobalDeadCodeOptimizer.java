@@ -16,42 +16,60 @@ import decaf.codegen.flatir.PushStmt;
 import decaf.codegen.flatir.QuadrupletStmt;
 import decaf.codegen.flatir.RegisterName;
 import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.PassManager;
+import decaf.dataflow.Transform;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 
-public class GlobalDeadCodeOptimizer {
+public class GlobalDeadCodeOptimizer implements Transform {
 	private HashMap<String, MethodIR> mMap;
-	private BlockLivenessGenerator livenessGenerator;
+	private PassManager pm;
+	private HashMap<String, BlockLivenessGenerator> livenessGenerators;
 	private HashMap<CFGBlock, BlockDataFlowState> blockLiveVars;
 	private HashMap<Name, Variable> nameToVar;
 	private HashMap<Name, List<ArrayName>> nameToArrNames;
 	private List<Integer> globalVarIDs;
 	
-	public GlobalDeadCodeOptimizer(HashMap<String, MethodIR> mMap) {
+	public GlobalDeadCodeOptimizer(HashMap<String, MethodIR> mMap, PassManager pm) {
 		this.mMap = mMap;
-		this.livenessGenerator = new BlockLivenessGenerator(mMap);
-		this.livenessGenerator.generate();
-		this.blockLiveVars = livenessGenerator.getBlockLiveVars();
-		this.nameToVar = livenessGenerator.getNameToVar();
-		this.nameToArrNames = livenessGenerator.getNameToArrNames();
-		this.globalVarIDs = livenessGenerator.getGlobalVarIDs();
+		this.pm = pm;
 	}
 	
-	public void performDeadCodeElimination(){
+	public boolean apply() {
+		return performDeadCodeElimination();
+	}
+	
+	public boolean performDeadCodeElimination(){
+		boolean changed = false;
+		this.livenessGenerators = pm.getAnalyses(BlockLivenessGenerator.class);
+		
 		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
+			
+			int version = this.mMap.get(s).getVersion();
+			// Variable IDs are per method, so switch to this method's liveness
+			BlockLivenessGenerator livenessGenerator = livenessGenerators.get(s);
+			this.blockLiveVars = livenessGenerator.getBlockLiveVars();
+			this.nameToVar = livenessGenerator.getNameToVar();
+			this.nameToArrNames = livenessGenerator.getNameToArrNames();
+			this.globalVarIDs = livenessGenerator.getGlobalVarIDs();
 			
 			for (CFGBlock block: this.mMap.get(s).getCfgBlocks()) {
 				optimize(block);
 			}
 			
 			this.mMap.get(s).regenerateStmts();
+			changed |= (this.mMap.get(s).getVersion() != version);
 		}
+		
+		return changed;
 	}
 	
 	private void optimize(CFGBlock block) {
 		List<LIRStatement> newStmts = new ArrayList<LIRStatement>();
-		BlockDataFlowState bFlow = blockLiveVars.get(block);
+		// The Out set is updated while walking up the block, so work on a copy
+		// and leave the cached liveness as it is
+		BlockDataFlowState bFlow = new BlockDataFlowState(blockLiveVars.get(block));
 		Integer varId; 
 		LIRStatement stmt;
 		PopStmt popStmt;
@@ -66,7 +84,7 @@ public class GlobalDeadCodeOptimizer {
 			stmt = block.getStatements().get(i);
 			if (stmt.getClass().equals(CallStmt.class)) {
 				CallStmt callStmt = (CallStmt) stmt;
-				if (!callStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) {
+				if (!callStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) {
 					// Set all global variable IDs to true in the out set, so
 					// above statements have a more accurate view of the out set
 					// because it includes things that happen within the block
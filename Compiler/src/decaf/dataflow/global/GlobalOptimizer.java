@@ -2,39 +2,94 @@ package decaf.dataflow.global;
 
 import java.util.HashMap;
 
+import decaf.dataflow.MethodAnalysisFactory;
+import decaf.dataflow.PassManager;
 import decaf.dataflow.cfg.MethodIR;
 
 public class GlobalOptimizer {
 	private GlobalCSEOptimizer cse;
+	private GlobalValueNumberingOptimizer gvn;
+	private PartialRedundancyEliminationOptimizer pre;
 	private GlobalConstantPropagationOptimizer constant;
 	private GlobalCopyPropagationOptimizer copy;
 	private GlobalDeadCodeOptimizer dc;
 	private GlobalConstProp newConst;
+	private SparseConstantPropagationOptimizer sccp;
 	private HashMap<String, MethodIR> mMap;
+	// Kept across rounds, so methods a pass did not change reuse their analyses
+	private PassManager pm;
 
 	public GlobalOptimizer(HashMap<String, MethodIR> mMap) {
 		this.mMap = mMap;
+		this.pm = new PassManager(mMap);
+		this.gvn = new GlobalValueNumberingOptimizer(mMap, pm);
+		this.pre = new PartialRedundancyEliminationOptimizer(mMap, pm);
+		this.cse = new GlobalCSEOptimizer(mMap, pm);
+		this.copy = new GlobalCopyPropagationOptimizer(mMap, pm);
+		this.newConst = new GlobalConstProp(mMap, pm);
+		this.sccp = new SparseConstantPropagationOptimizer(mMap, pm);
+		this.dc = new GlobalDeadCodeOptimizer(mMap, pm);
+		registerAnalyses();
 	}
 	
-	public void optimizeBlocks(boolean[] opts) {
+	private void registerAnalyses() {
+		pm.registerAnalysis(BlockAvailableExpressionGenerator.class, 
+				new MethodAnalysisFactory<BlockAvailableExpressionGenerator>() {
+			@Override
+			public BlockAvailableExpressionGenerator create(MethodIR methodIR) {
+				return new BlockAvailableExpressionGenerator(methodIR);
+			}
+		});
+		pm.registerAnalysis(BlockAssignmentDefinitionGenerator.class, 
+				new MethodAnalysisFactory<BlockAssignmentDefinitionGenerator>() {
+			@Override
+			public BlockAssignmentDefinitionGenerator create(MethodIR methodIR) {
+				return new BlockAssignmentDefinitionGenerator(methodIR);
+			}
+		});
+		pm.registerAnalysis(ConstReachingDef.class, 
+				new MethodAnalysisFactory<ConstReachingDef>() {
+			@Override
+			public ConstReachingDef create(MethodIR methodIR) {
+				return new ConstReachingDef(methodIR);
+			}
+		});
+		pm.registerAnalysis(BlockLivenessGenerator.class, 
+				new MethodAnalysisFactory<BlockLivenessGenerator>() {
+			@Override
+			public BlockLivenessGenerator create(MethodIR methodIR) {
+				return new BlockLivenessGenerator(methodIR);
+			}
+		});
+	}
+	
+	// Returns true if any of the optimizations changed the code
+	public boolean optimizeBlocks(boolean[] opts) {
+		boolean changed = false;
+		
 		if(opts[1]) { // CSE
-			cse = new GlobalCSEOptimizer(mMap);
-			cse.performGlobalCSE();
+			changed |= pm.runTransform(gvn); // Locals and temporaries, dominating computations
+			changed |= pm.runTransform(pre); // Locals and temporaries, partially redundant ones
+			changed |= pm.runTransform(cse); // Globals and arrays
 		} 
 		if(opts[2]) { // COPY
-			copy = new GlobalCopyPropagationOptimizer(mMap);
-			copy.performGlobalCopyProp();
+			changed |= pm.runTransform(copy);
 		} 
 		if(opts[3]) { // CONST
 //			constant = new GlobalConstantPropagationOptimizer(mMap);
 //			constant.performGlobalConstantProp();
-			newConst = new GlobalConstProp(mMap);
-			newConst.performConstProp();
+			changed |= pm.runTransform(sccp); // Locals and temporaries
+			changed |= pm.runTransform(newConst); // Globals
 		}
 		if(opts[4]) { // DC
-			dc = new GlobalDeadCodeOptimizer(mMap);
-			dc.performDeadCodeElimination();
+			changed |= pm.runTransform(dc);
 		}
+		
+		return changed;
+	}
+	
+	public PassManager getPassManager() {
+		return pm;
 	}
 	
 	public GlobalCSEOptimizer getCse() {
@@ -0,0 +1,304 @@
+package decaf.dataflow.global;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import decaf.codegen.flatir.ConstantName;
+import decaf.codegen.flatir.DynamicVarName;
+import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.Name;
+import decaf.codegen.flatir.QuadrupletOp;
+import decaf.codegen.flatir.QuadrupletStmt;
+import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.PassManager;
+import decaf.dataflow.Transform;
+import decaf.dataflow.cfg.CFGBlock;
+import decaf.dataflow.cfg.DominatorTree;
+import decaf.dataflow.cfg.IndexedCFG;
+import decaf.dataflow.cfg.MethodIR;
+import decaf.dataflow.ssa.PhiStmt;
+import decaf.dataflow.ssa.SSABuilder;
+import decaf.dataflow.ssa.SSADestructor;
+import decaf.dataflow.ssa.SSAName;
+import decaf.dataflow.ssa.SSAStatements;
+
+// Dominator based value numbering (Briggs, Cooper and Simpson) on the SSA form of each method
+// Every SSA version and constant gets a value number, copies share the number of what they
+// copy and an expression gets the number of its operator and the numbers of its args, all
+// kept in hash maps. The dominator tree is walked keeping the expressions computed in the
+// blocks above, so a computation of an expression which was already computed in a
+// dominating block is replaced with a temporary holding that value
+// Only expressions over locals, temporaries and constants are numbered, globals and
+// arrays can change behind our back (calls, other indices)
+public class GlobalValueNumberingOptimizer implements Transform {
+	private HashMap<String, MethodIR> mMap;
+	private PassManager pm;
+	// State of the method being optimized
+	private HashMap<Name, Integer> valueNumbers;
+	// Expression (operator and value numbers of the args) -> value number
+	private HashMap<String, Integer> exprNumbers;
+	// Expression -> computations of it in the dominating blocks, innermost last
+	private HashMap<String, List<QuadrupletStmt>> leaders;
+	// Computation -> temporary its value is saved in, made the first time it is reused
+	private IdentityHashMap<QuadrupletStmt, DynamicVarName> leaderTemps;
+	private IdentityHashMap<CFGBlock, Boolean> changedBlocks;
+	private int nextNumber;
+
+	public GlobalValueNumberingOptimizer(HashMap<String, MethodIR> mMap, PassManager pm) {
+		this.mMap = mMap;
+		this.pm = pm;
+	}
+
+	public boolean apply() {
+		return performGVN();
+	}
+
+	public boolean performGVN() {
+		boolean changed = false;
+
+		for (String methodName: this.mMap.keySet()) {
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
+
+			if (optimizeMethod(methodName)) {
+				pm.invalidate(methodName);
+				changed = true;
+			}
+		}
+
+		return changed;
+	}
+
+	private boolean optimizeMethod(String methodName) {
+		MethodIR methodIR = this.mMap.get(methodName);
+		if (methodIR.getCfgBlocks().isEmpty()) return false;
+
+		this.valueNumbers = new HashMap<Name, Integer>();
+		this.exprNumbers = new HashMap<String, Integer>();
+		this.leaders = new HashMap<String, List<QuadrupletStmt>>();
+		this.leaderTemps = new IdentityHashMap<QuadrupletStmt, DynamicVarName>();
+		this.changedBlocks = new IdentityHashMap<CFGBlock, Boolean>();
+		this.nextNumber = 0;
+
+		IndexedCFG cfg = new IndexedCFG(methodName, methodIR.getCfgBlocks());
+		SSABuilder builder = new SSABuilder(methodIR);
+		builder.build();
+
+		DominatorTree domTree = methodIR.getDominatorTree();
+		if (domTree.getEntry() != null) {
+			walk(domTree);
+		}
+		saveLeaders(methodIR);
+
+		new SSADestructor(methodIR, cfg, builder.getPhis()).destruct();
+
+		if (changedBlocks.isEmpty()) return false;
+
+		for (CFGBlock block: changedBlocks.keySet()) {
+			block.markChanged();
+		}
+		methodIR.regenerateStmts();
+
+		return true;
+	}
+
+	// Preorder walk of the dominator tree, the expressions a block computed go out of
+	// scope when the walk leaves it
+	private void walk(DominatorTree domTree) {
+		List<CFGBlock> stack = new ArrayList<CFGBlock>();
+		List<Integer> nextChild = new ArrayList<Integer>();
+		List<List<String>> pushed = new ArrayList<List<String>>();
+
+		stack.add(domTree.getEntry());
+		nextChild.add(0);
+		pushed.add(numberBlock(domTree.getEntry()));
+		while (!stack.isEmpty()) {
+			int top = stack.size() - 1;
+			CFGBlock block = stack.get(top);
+			int i = nextChild.get(top);
+			List<CFGBlock> kids = domTree.getChildren(block);
+			if (i < kids.size()) {
+				nextChild.set(top, i + 1);
+				stack.add(kids.get(i));
+				nextChild.add(0);
+				pushed.add(numberBlock(kids.get(i)));
+			} else {
+				for (String key: pushed.get(top)) {
+					List<QuadrupletStmt> computations = leaders.get(key);
+					computations.remove(computations.size() - 1);
+				}
+				stack.remove(top);
+				nextChild.remove(top);
+				pushed.remove(top);
+			}
+		}
+	}
+
+	// Returns the expressions the block added to the scope
+	private List<String> numberBlock(CFGBlock block) {
+		List<String> pushed = new ArrayList<String>();
+
+		for (LIRStatement stmt: block.getStatements()) {
+			if (stmt.getClass().equals(PhiStmt.class)) {
+				numberPhi((PhiStmt) stmt);
+			}
+			else if (stmt.getClass().equals(QuadrupletStmt.class)) {
+				numberQuadruplet((QuadrupletStmt) stmt, block, pushed);
+			}
+			else {
+				// Anything else which defines a version (a pop) gives a value nobody else has
+				Name def = SSAStatements.getDef(stmt);
+				if (def != null && def.getClass().equals(SSAName.class)) {
+					valueNumbers.put(def, nextNumber++);
+				}
+			}
+		}
+
+		return pushed;
+	}
+
+	// A phi has the number of its args if they all have the same one. Args coming
+	// through back edges aren't numbered yet, so phis at loop headers get a new number
+	private void numberPhi(PhiStmt phi) {
+		Integer number = null;
+		boolean same = true;
+		for (Name arg: phi.getArgs()) {
+			Integer n = (arg == null) ? null : valueNumbers.get(arg);
+			if (n == null || (number != null && !number.equals(n))) {
+				same = false;
+				break;
+			}
+			number = n;
+		}
+
+		valueNumbers.put(phi.getDestination(), (same && number != null) ? number : nextNumber++);
+	}
+
+	private void numberQuadruplet(QuadrupletStmt qStmt, CFGBlock block, List<String> pushed) {
+		Name dest = qStmt.getDestination();
+		boolean ssaDest = dest.getClass().equals(SSAName.class);
+
+		if (qStmt.getOperator() == QuadrupletOp.MOVE) {
+			if (ssaDest) {
+				int n = getNumber(qStmt.getArg1());
+				valueNumbers.put(dest, (n >= 0) ? n : nextNumber++);
+			}
+			return;
+		}
+
+		String key = getExpressionKey(qStmt);
+		if (key == null) {
+			if (ssaDest) {
+				valueNumbers.put(dest, nextNumber++);
+			}
+			return;
+		}
+
+		Integer number = exprNumbers.get(key);
+		if (number == null) {
+			number = nextNumber++;
+			exprNumbers.put(key, number);
+		}
+
+		List<QuadrupletStmt> computations = leaders.get(key);
+		if (computations != null && !computations.isEmpty()) {
+			// Computed in a dominating block already, reuse that value
+			QuadrupletStmt leader = computations.get(computations.size() - 1);
+			qStmt.setOperator(QuadrupletOp.MOVE);
+			qStmt.setArg1(getTemp(leader));
+			qStmt.setArg2(null);
+			changedBlocks.put(block, true);
+		}
+		else if (ssaDest) {
+			if (computations == null) {
+				computations = new ArrayList<QuadrupletStmt>();
+				leaders.put(key, computations);
+			}
+			computations.add(qStmt);
+			pushed.add(key);
+		}
+
+		if (ssaDest) {
+			valueNumbers.put(dest, number);
+		}
+	}
+
+	// -1 for Names which aren't SSA values (globals, arrays, registers)
+	private int getNumber(Name name) {
+		if (name == null) return -1;
+		if (!name.getClass().equals(SSAName.class) && !name.getClass().equals(ConstantName.class)) return -1;
+
+		Integer n = valueNumbers.get(name);
+		if (n == null) {
+			n = nextNumber++;
+			valueNumbers.put(name, n);
+		}
+		return n;
+	}
+
+	// Null if an arg isn't an SSA value
+	private String getExpressionKey(QuadrupletStmt qStmt) {
+		int n1 = getNumber(qStmt.getArg1());
+		if (n1 < 0) return null;
+		if (!qStmt.hasTwoArgs()) {
+			return qStmt.getOperator() + "(" + n1 + ")";
+		}
+
+		int n2 = getNumber(qStmt.getArg2());
+		if (n2 < 0) return null;
+
+		switch (qStmt.getOperator()) {
+			case ADD:
+			case MUL:
+			case EQ:
+			case NEQ:
+				if (n2 < n1) {
+					int tmp = n1;
+					n1 = n2;
+					n2 = tmp;
+				}
+				break;
+		}
+
+		return qStmt.getOperator() + "(" + n1 + "," + n2 + ")";
+	}
+
+	private DynamicVarName getTemp(QuadrupletStmt leader) {
+		DynamicVarName temp = leaderTemps.get(leader);
+		if (temp == null) {
+			temp = new DynamicVarName(true);
+			leaderTemps.put(leader, temp);
+		}
+		return temp;
+	}
+
+	// Saves the value of every reused computation in its temporary, right after it
+	private void saveLeaders(MethodIR methodIR) {
+		if (leaderTemps.isEmpty()) return;
+
+		for (CFGBlock block: methodIR.getCfgBlocks()) {
+			List<LIRStatement> newStmts = null;
+			List<LIRStatement> stmts = block.getStatements();
+			for (int i = 0; i < stmts.size(); i++) {
+				LIRStatement stmt = stmts.get(i);
+				DynamicVarName temp = stmt.getClass().equals(QuadrupletStmt.class) ? leaderTemps.get(stmt) : null;
+				if (temp != null && newStmts == null) {
+					newStmts = new ArrayList<LIRStatement>(stmts.subList(0, i));
+				}
+				if (newStmts != null) {
+					newStmts.add(stmt);
+					if (temp != null) {
+						newStmts.add(new QuadrupletStmt(QuadrupletOp.MOVE, temp, ((QuadrupletStmt) stmt).getDestination(), null));
+					}
+				}
+			}
+
+			if (newStmts != null) {
+				stmts.clear();
+				stmts.addAll(newStmts);
+				changedBlocks.put(block, true);
+			}
+		}
+	}
+}
@@ -3,6 +3,7 @@ package decaf.dataflow.global;
 import java.util.ArrayList;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.LIRStatement;
 import decaf.codegen.flatir.Name;
 import decaf.codegen.flatir.QuadrupletOp;
@@ -10,7 +11,6 @@ import decaf.codegen.flatir.QuadrupletStmt;
 import decaf.codegen.flatir.VarName;
 
 public class InductionVariable {
-	private static int StatementId = 0;
 	private LoopQuadrupletStmt lqStmt;
 	private List<LIRStatement> boundCheckStmtForDest;
 	private List<LIRStatement> boundCheckStmtForAdder;
@@ -35,8 +35,7 @@ public class InductionVariable {
 	public InductionVariable(LoopQuadrupletStmt lqStmt) {
 		this.lqStmt = lqStmt;
 		this.variable = lqStmt.getqStmt().getDestination();
-		this.variablePrime = new VarName("$srprime" + Integer.toString(StatementId));
-		StatementId++;
+		this.variablePrime = new VarName("$srprime" + Integer.toString(CompilationContext.get().nextInductionVariableId()));
 	}
 	
 	public LoopQuadrupletStmt getLqStmt() {
@@ -80,35 +79,31 @@ public class InductionVariable {
 	}
 	
 	public void setAdderByAdd(Name a, QuadrupletOp qOp, List<LIRStatement> boundChecks) {
-		this.adder = new VarName("$srtemp" + Integer.toString(StatementId));
+		this.adder = new VarName("$srtemp" + Integer.toString(CompilationContext.get().nextInductionVariableId()));
 		((VarName)this.adder).setBlockId(blockId);
 		this.boundCheckStmtForAdder = boundChecks;
 		this.forAdder = new QuadrupletStmt(qOp, this.adder, a, this.derivedFrom.adder);
-		StatementId++;
 	}
 	
 	public void setAdderByMult(Name m, List<LIRStatement> boundChecks) {
-		this.adder = new VarName("$srtemp" + Integer.toString(StatementId));
+		this.adder = new VarName("$srtemp" + Integer.toString(CompilationContext.get().nextInductionVariableId()));
 		((VarName)this.adder).setBlockId(blockId);
 		this.boundCheckStmtForAdder = boundChecks;
 		this.forAdder = new QuadrupletStmt(QuadrupletOp.MUL, this.adder, m, this.derivedFrom.adder);
-		StatementId++;
 	}
 	
 	public void setMultiplierByMult(Name m, List<LIRStatement> boundChecks) {
-		this.multiplier = new VarName("$srtemp" + Integer.toString(StatementId));
+		this.multiplier = new VarName("$srtemp" + Integer.toString(CompilationContext.get().nextInductionVariableId()));
 		((VarName)this.multiplier).setBlockId(blockId);
 		this.boundCheckStmtForMultiplier = boundChecks;
 		this.forMultiplier = new QuadrupletStmt(QuadrupletOp.MUL, this.multiplier, m, this.derivedFrom.multiplier);
-		StatementId++;
 	}
 	
 	// i <- i + c where i is a base induction variable
 	// If j has triple (i,a,b), then j <- j + c*b should be generated
 	// This method should only be used for derived induction variables
 	public List<LIRStatement> getInductionStmts() {
-		VarName temp = new VarName("$srtemp" + Integer.toString(StatementId));
-		StatementId++;
+		VarName temp = new VarName("$srtemp" + Integer.toString(CompilationContext.get().nextInductionVariableId()));
 		temp.setBlockId(blockId);
 		List<LIRStatement> stmts = new ArrayList<LIRStatement>();
 		InductionVariable familyVar = getFamilyInductionVariable();
@@ -120,8 +115,7 @@ public class InductionVariable {
 	// If j has triple (i, a, b), the loop preheader should compute j <- a + i*b
 	// This method should only be used for derived induction variables
 	public List<LIRStatement> getLoopPreheaderStmts() {
-		VarName temp = new VarName("$srtemp" + Integer.toString(StatementId));
-		StatementId++;
+		VarName temp = new VarName("$srtemp" + Integer.toString(CompilationContext.get().nextInductionVariableId()));
 		temp.setBlockId(blockId);
 		List<LIRStatement> stmts = new ArrayList<LIRStatement>();
 		stmts.add(new QuadrupletStmt(QuadrupletOp.MUL, temp, this.familyName, this.multiplier));
@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.ArrayName;
 import decaf.codegen.flatir.CmpStmt;
 import decaf.codegen.flatir.ConstantName;
@@ -15,7 +16,6 @@ import decaf.codegen.flatir.LabelStmt;
 import decaf.codegen.flatir.Name;
 import decaf.codegen.flatir.QuadrupletOp;
 import decaf.codegen.flatir.QuadrupletStmt;
-import decaf.codegen.flattener.ExpressionFlattenerVisitor;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 
@@ -35,6 +35,7 @@ public class LoopInductionVariableGenerator {
 	}
 	
 	public boolean isInductionVariable(Name var, String loopId) {
+		String methodName = loopInvariantGen.getLoopIdToMethod().get(loopId);
 		List<InductionVariable> inductionVarsInLoop = getInductionVariablesForLoop(loopId);
 		return (getInductionVariable(var, inductionVarsInLoop) != null);
 	}
@@ -95,11 +96,12 @@ public class LoopInductionVariableGenerator {
 		Name arg2 = qStmt.getArg2();
 		QuadrupletOp qOp = qStmt.getOperator();	
 		String loopId = lqStmt.getLoopBodyBlockId();
+		String methodName = loopInvariantGen.getLoopIdToMethod().get(loopId);
 		InductionVariable newIVar;
 		if (arg1 != null) {
 			if (arg1.equals(dest)) {
 				if (arg2 != null) {
-					if (loopInvariantGen.argSatisfiesLoopInvariant(arg2, 
+					if (loopInvariantGen.argSatisfiesLoopInvariant(methodName, arg2, 
 							loopInvariantGen.getReachingDefForStmts().get(qStmt), loopQStmts)) {
 								if (qOp == QuadrupletOp.ADD || qOp == QuadrupletOp.MINUS) {
 									newIVar = new InductionVariable(lqStmt);
@@ -128,7 +130,7 @@ public class LoopInductionVariableGenerator {
 			} else if (arg2 != null) {
 				if (arg2.equals(dest)) {
 					// arg1 cannot be null
-					if (loopInvariantGen.argSatisfiesLoopInvariant(arg1, 
+					if (loopInvariantGen.argSatisfiesLoopInvariant(methodName, arg1, 
 							loopInvariantGen.getReachingDefForStmts().get(qStmt), loopQStmts)) {
 								if (qOp == QuadrupletOp.ADD || qOp == QuadrupletOp.MINUS) {
 									newIVar = new InductionVariable(lqStmt);
@@ -162,6 +164,7 @@ public class LoopInductionVariableGenerator {
 		if (arg1 == null) {
 			return false;
 		}
+		String methodName = loopInvariantGen.getLoopIdToMethod().get(loopId);
 		List<InductionVariable> inductionVarsInLoop = getInductionVariablesForLoop(loopId);
 		InductionVariable newIVar = null;
 		List<LIRStatement> boundCheckForArg;
@@ -170,7 +173,7 @@ public class LoopInductionVariableGenerator {
 		if (argIVar != null) {
 			// arg1 is an induction variable
 			if (arg2 != null) {
-				if (loopInvariantGen.argSatisfiesLoopInvariant(arg2, 
+				if (loopInvariantGen.argSatisfiesLoopInvariant(methodName, arg2, 
 						loopInvariantGen.getReachingDefForStmts().get(qStmt), loopQStmts)) {
 					if (qOp == QuadrupletOp.MUL || qOp == QuadrupletOp.ADD || qOp == QuadrupletOp.SUB) {
 						newIVar = new InductionVariable(lqStmt);
@@ -211,7 +214,7 @@ public class LoopInductionVariableGenerator {
 			if (argIVar != null) {
 				// arg2 is induction variable
 				// arg1 cannot be null
-				if (loopInvariantGen.argSatisfiesLoopInvariant(arg1, 
+				if (loopInvariantGen.argSatisfiesLoopInvariant(methodName, arg1, 
 						loopInvariantGen.getReachingDefForStmts().get(qStmt), loopQStmts)) {
 					if (qOp == QuadrupletOp.MUL || qOp == QuadrupletOp.ADD || qOp == QuadrupletOp.SUB) {
 						newIVar = new InductionVariable(lqStmt);
@@ -242,7 +245,7 @@ public class LoopInductionVariableGenerator {
 				// Reaching definition for current QuadrupletStmt
 				BitSet reachingDefForQStmt = loopInvariantGen.getReachingDefForStmts().get(qStmt);
 				// Get all possible definitions for the derivedFrom
-				List<QuadrupletStmt> defsForArg = loopInvariantGen.getGcp().getDefinitionsForName(derivedFrom);
+				List<QuadrupletStmt> defsForArg = loopInvariantGen.getGcp().getDefinitionsForName(methodName, derivedFrom);
 				if (defsForArg != null) {
 					List<QuadrupletStmt> reachingDefsForArg = new ArrayList<QuadrupletStmt>();
 					// Use BitSet to generate list of reaching definitions of the arg
@@ -440,7 +443,7 @@ public class LoopInductionVariableGenerator {
 			stmts.add(block.getStatements().get(i));
 		}
 		
-		ExpressionFlattenerVisitor.MAXBOUNDCHECKS++;
+		CompilationContext.get().nextBoundCheckId();
 		
 		return stmts;
 	}
@@ -472,15 +475,15 @@ public class LoopInductionVariableGenerator {
 	}
 	
 	private String getArrayBoundBegin(String name, String methodName) {
-		return methodName + ".array." + name + "." + ExpressionFlattenerVisitor.MAXBOUNDCHECKS + ".begin";
+		return methodName + ".array." + name + "." + CompilationContext.get().getMaxBoundChecks() + ".begin";
 	}
 	
 	private String getArrayBoundFail(String name, String methodName) {
-		return methodName + ".array." + name + "." + ExpressionFlattenerVisitor.MAXBOUNDCHECKS + ".fail";
+		return methodName + ".array." + name + "." + CompilationContext.get().getMaxBoundChecks() + ".fail";
 	}
 	
 	private String getArrayBoundPass(String name, String methodName) {
-		return methodName + ".array." + name + "." + ExpressionFlattenerVisitor.MAXBOUNDCHECKS + ".pass";
+		return methodName + ".array." + name + "." + CompilationContext.get().getMaxBoundChecks() + ".pass";
 	}
 	
 	// End copy
@@ -4,8 +4,10 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.ArrayName;
 import decaf.codegen.flatir.ConstantName;
 import decaf.codegen.flatir.LIRStatement;
@@ -35,6 +37,10 @@ public class LoopInvariantGenerator {
 	private HashMap<String, List<LoopQuadrupletStmt>> loopBodyQStmtsList;
 	// Map from loop id to block id
 	private HashMap<String, Integer> loopIdToBlockId;
+	// Map from loop id to the method containing the loop
+	private HashMap<String, String> loopIdToMethod;
+	// The statements after the for incr labels, which update the loop variables
+	private IdentityHashMap<QuadrupletStmt, Boolean> loopVarUpdates;
 
 	// This optimizer isn't related to LoopInvariant optimizations, but it updates the Reaching definitions
 	// which we need for loop optimizations
@@ -49,6 +55,8 @@ public class LoopInvariantGenerator {
 		this.loopBodyQStmtsList = new HashMap<String, List<LoopQuadrupletStmt>>();
 		this.allLoopBodyQStmts = new HashMap<String, HashSet<LoopQuadrupletStmt>>();
 		this.loopIdToBlockId = new HashMap<String, Integer>();
+		this.loopIdToMethod = new HashMap<String, String>();
+		this.loopVarUpdates = new IdentityHashMap<QuadrupletStmt, Boolean>();
 		this.gcp = new GlobalConstantPropagationOptimizer(mMap);
 	}
 	
@@ -70,7 +78,9 @@ public class LoopInvariantGenerator {
 			}
 		} while (numLoopInvariants != loopInvariantStmts.size());
 		
-		System.out.println("LOOP INVARIANT STMTS: " + loopInvariantStmts);
+		if (CompilationContext.get().isDebug()) {
+			System.out.println("LOOP INVARIANT STMTS: " + loopInvariantStmts);
+		}
 	}
 	
 	// Returns a map which maps a loop CFGBlock to all the QuadrupletStmts in that block
@@ -88,14 +98,22 @@ public class LoopInvariantGenerator {
 					forLabel = ((LabelStmt)stmt).getLabelString();
 					if (forLabel.matches(ForIncrLabelRegex)) {
 						// Set block id from the next statement which initialized loop var
-						QuadrupletStmt initStmt = (QuadrupletStmt)stmts.get(i+1);
-						int blockId = ((VarName)initStmt.getDestination()).getBlockId();
-						loopIdToBlockId.put(getIdFromForLabel(forLabel), blockId);
+						// It can be gone (hoisted or folded by an earlier pass), then there is none
+						LIRStatement next = (i + 1 < stmts.size()) ? stmts.get(i + 1) : null;
+						if (next != null && next.getClass().equals(QuadrupletStmt.class) &&
+								((QuadrupletStmt)next).getDestination().getClass().equals(VarName.class)) {
+							QuadrupletStmt initStmt = (QuadrupletStmt)next;
+							int blockId = ((VarName)initStmt.getDestination()).getBlockId();
+							loopIdToBlockId.put(getIdFromForLabel(forLabel), blockId);
+							loopVarUpdates.put(initStmt, true);
+						}
 					} else if (forLabel.matches(ForEndLabelRegex)) {
-						forIdList.remove(forIdList.size()-1);
+						// The body of a loop which never runs can be gone, so only close it if it was opened
+						forIdList.remove(getIdFromForLabel(forLabel));
 					} else  if (forLabel.matches(ForBodyLabelRegex)) {
 						// Update map of body label to its stmt index
 						forIdList.add(getIdFromForLabel(forLabel));
+						loopIdToMethod.put(getIdFromForLabel(forLabel), s);
 					}
 					inFor = !forIdList.isEmpty();
 					continue;
@@ -127,23 +145,29 @@ public class LoopInvariantGenerator {
 		// Ignore statements which assign or use registers
 		if (usesRegisters(loopQStmt.getqStmt()))
 			return false;
-		System.out.println("processing " + loopQStmt.getqStmt());
+		// The update of the loop variable runs every iteration, even if it is a constant
+		if (loopVarUpdates.containsKey(loopQStmt.getqStmt()))
+			return false;
+		if (CompilationContext.get().isDebug()) {
+			System.out.println("processing " + loopQStmt.getqStmt());
+		}
 		QuadrupletStmt qStmt = loopQStmt.getqStmt();
 		HashSet<QuadrupletStmt> loopQStmts = getQuadrupletStmtsInLoopBody(loopQStmt.getLoopBodyBlockId());
+		String methodName = loopIdToMethod.get(loopQStmt.getLoopBodyBlockId());
 		BitSet reachingDefForQStmt = reachingDefForStmts.get(qStmt);
 		Name arg1 = qStmt.getArg1();
 		Name arg2 = qStmt.getArg2();
 		// If the dest is array name, check its index argument
 		if (qStmt.getDestination().getClass().equals(ArrayName.class)) {
 			Name index = ((ArrayName)qStmt.getDestination()).getIndex();
-			if (!argSatisfiesLoopInvariant(index, reachingDefForQStmt, loopQStmts)) {
+			if (!argSatisfiesLoopInvariant(methodName, index, reachingDefForQStmt, loopQStmts)) {
 				return false;
 			}
 		}
 		if (arg1 != null) {
-			if (argSatisfiesLoopInvariant(arg1, reachingDefForQStmt, loopQStmts)) {
+			if (argSatisfiesLoopInvariant(methodName, arg1, reachingDefForQStmt, loopQStmts)) {
 				if (arg2 != null) {
-					if (argSatisfiesLoopInvariant(arg2, reachingDefForQStmt, loopQStmts)) {
+					if (argSatisfiesLoopInvariant(methodName, arg2, reachingDefForQStmt, loopQStmts)) {
 						// Both args satisify loop invariant properties
 						return true;
 					}
@@ -160,16 +184,18 @@ public class LoopInvariantGenerator {
 		return false;
 	}
 	
-	public boolean argSatisfiesLoopInvariant(Name arg, BitSet reachingDefForQStmt, 
+	public boolean argSatisfiesLoopInvariant(String methodName, Name arg, BitSet reachingDefForQStmt, 
 			HashSet<QuadrupletStmt> loopQStmts) {
 		boolean argSatisfiesLoopInvariant = false;
-		System.out.println("FOR ARG: " + arg);
+		if (CompilationContext.get().isDebug()) {
+			System.out.println("FOR ARG: " + arg);
+		}
 		// Check if arg is a constant
 		if (arg.getClass().equals(ConstantName.class)) {
 			argSatisfiesLoopInvariant = true;
 		} else {
 			// Get all possible definitions for the arg
-			List<QuadrupletStmt> defsForArg = gcp.getDefinitionsForName(arg);
+			List<QuadrupletStmt> defsForArg = gcp.getDefinitionsForName(methodName, arg);
 			if (defsForArg != null) {
 				List<QuadrupletStmt> reachingDefsForArg = new ArrayList<QuadrupletStmt>();
 				// Use BitSet to generate list of reaching definitions of the arg
@@ -193,7 +219,7 @@ public class LoopInvariantGenerator {
 		}
 		// If arg is ArrayName, ensure that the index also satisfies loop invariant properties
 		if (arg.getClass().equals(ArrayName.class)) {
-			boolean indexSatisifed = argSatisfiesLoopInvariant(((ArrayName)arg).getIndex(), 
+			boolean indexSatisifed = argSatisfiesLoopInvariant(methodName, ((ArrayName)arg).getIndex(), 
 					reachingDefForQStmt, loopQStmts);
 			return indexSatisifed && argSatisfiesLoopInvariant;
 		}
@@ -283,6 +309,10 @@ public class LoopInvariantGenerator {
 	public HashMap<String, Integer> getLoopIdToBlockId() {
 		return loopIdToBlockId;
 	}
+	
+	public HashMap<String, String> getLoopIdToMethod() {
+		return loopIdToMethod;
+	}
 
 	public void setLoopIdToBlockId(HashMap<String, Integer> loopIdToBlockId) {
 		this.loopIdToBlockId = loopIdToBlockId;
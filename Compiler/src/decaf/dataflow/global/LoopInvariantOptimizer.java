@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.ArrayName;
 import decaf.codegen.flatir.CmpStmt;
 import decaf.codegen.flatir.ConstantName;
@@ -17,15 +18,13 @@ import decaf.codegen.flatir.Name;
 import decaf.codegen.flatir.PopStmt;
 import decaf.codegen.flatir.PushStmt;
 import decaf.codegen.flatir.QuadrupletStmt;
-import decaf.codegen.flattener.ExpressionFlattenerVisitor;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 
 public class LoopInvariantOptimizer {
 	private HashMap<String, MethodIR> mMap;
 	private LoopInvariantGenerator loopInvariantGenerator;
-	private BlockReachingDefinitionGenerator reachingDefGenerator;
-	private BlockLivenessGenerator livenessGenerator;
+	private HashMap<String, BlockLivenessGenerator> livenessGenerators;
 	// Loop body id => CFGBlock map where the CFGBlock is the block containing the
 	// init label for the loop with the given id
 	private HashMap<String, CFGBlock> loopIdToLoopInitCFGBlock;
@@ -43,6 +42,8 @@ public class LoopInvariantOptimizer {
 	// test label for the loop with the given id
 	private HashMap<String, CFGBlock> loopIdToLoopTestCFGBlock;
 	private HashMap<String, String> loopIdToMethod;
+	// Methods whose statements were changed by hoisting
+	private HashSet<String> changedMethods;
 	private static String ForInitLabelRegex = "[a-zA-z_]\\w*.for\\d+.init";
 	private static String ForBodyLabelRegex = "[a-zA-z_]\\w*.for\\d+.body";
 	private static String ForEndLabelRegex = "[a-zA-z_]\\w*.for\\d+.end";
@@ -54,14 +55,14 @@ public class LoopInvariantOptimizer {
 	public LoopInvariantOptimizer(HashMap<String, MethodIR> mMap) {
 		this.mMap = mMap;
 		this.loopInvariantGenerator = new LoopInvariantGenerator(mMap);
-		this.reachingDefGenerator = new BlockReachingDefinitionGenerator(mMap, ConfluenceOperator.AND);
-		this.livenessGenerator = new BlockLivenessGenerator(mMap);
 		this.loopIdInitWhichHaveTest = new HashSet<String>();
 		this.loopIdInitWhichHaveHoist = new HashSet<String>();
+		this.changedMethods = new HashSet<String>();
 	}
 	
-	public void performLoopInvariantOptimization() {
-		livenessGenerator.generate();
+	// Returns true if any statement was hoisted
+	public boolean performLoopInvariantOptimization() {
+		livenessGenerators = BlockLivenessGenerator.generateForMethods(mMap);
 		loopInvariantGenerator.generateLoopInvariants();
 		generateLoopIdToCFGBlockMaps();
 		HashSet<QuadrupletStmt> hoistedQStmts = new HashSet<QuadrupletStmt>();
@@ -73,12 +74,16 @@ public class LoopInvariantOptimizer {
 			}
 		}
 		
-		System.out.println("LOOP INVARIANT STMTS WHICH CAN BE HOISTED: " + hoistedLQStmts);
+		if (CompilationContext.get().isDebug()) {
+			System.out.println("LOOP INVARIANT STMTS WHICH CAN BE HOISTED: " + hoistedLQStmts);
+		}
 		
 		// Add all hoisted LoopQuadrupletStmts at the end of the loop init block
 		for (LoopQuadrupletStmt lqs : hoistedLQStmts) {
 			hoist(lqs);
 		}
+		
+		return !hoistedLQStmts.isEmpty();
 	}
 	
 	// A loop invariant statement can be hoisted if it satisifes the 
@@ -98,6 +103,10 @@ public class LoopInvariantOptimizer {
 		CFGBlock forEndBlock = loopIdToLoopEndCFGBlock.get(loopId);
 		CFGBlock forTestBlock = loopIdToLoopTestCFGBlock.get(loopId);
 		CFGBlock forInitBlock = loopIdToLoopInitCFGBlock.get(loopId);
+		String methodName = loopIdToMethod.get(loopId);
+		BlockReachingDefinitionGenerator reachingDefGenerator = 
+			new BlockReachingDefinitionGenerator(mMap.get(methodName), ConfluenceOperator.AND);
+		BlockLivenessGenerator livenessGenerator = livenessGenerators.get(methodName);
 		reachingDefGenerator.generateForForLoop(forTestBlock, forEndBlock, forInitBlock);
 		BlockDataFlowState endBlockReachDefState = reachingDefGenerator.getBlockReachingDefs().get(forEndBlock);
 		int stmtId = qStmt.getMyId();
@@ -108,7 +117,7 @@ public class LoopInvariantOptimizer {
 				// If The dest is not live out of the loop preheader (the end of the block containing 
 				// the for loop init), the simply add the statement
 				BlockDataFlowState initBlockLivenessState = livenessGenerator.getBlockLiveVars().get(forInitBlock);
-				if (notLiveOutOfLoopPreheader(qStmt.getDestination(), initBlockLivenessState)) {
+				if (notLiveOutOfLoopPreheader(qStmt.getDestination(), initBlockLivenessState, livenessGenerator)) {
 					// Satisfied condition 3
 					return true;
 				} 
@@ -141,12 +150,13 @@ public class LoopInvariantOptimizer {
 		return false;
 	}
 	
-	private boolean notLiveOutOfLoopPreheader(Name dest, BlockDataFlowState initBlockLivenessState) {
+	private boolean notLiveOutOfLoopPreheader(Name dest, BlockDataFlowState initBlockLivenessState, 
+			BlockLivenessGenerator livenessGenerator) {
 		Variable destLivenessVar = livenessGenerator.getNameToVar().get(dest);
 		if (!initBlockLivenessState.getOut().get(destLivenessVar.getMyId())) {
 			// If dest is ArrayName, make sure the index is live
 			if (dest.getClass().equals(ArrayName.class)) {
-				return notLiveOutOfLoopPreheader(((ArrayName)dest).getIndex(), initBlockLivenessState);
+				return notLiveOutOfLoopPreheader(((ArrayName)dest).getIndex(), initBlockLivenessState, livenessGenerator);
 			}
 			return true;
 		}
@@ -208,6 +218,7 @@ public class LoopInvariantOptimizer {
 		CFGBlock loopInitBlock = loopIdToLoopInitCFGBlock.get(loopId);
 		List<LIRStatement> loopInitStmtList = loopInitBlock.getStatements();
 		List<LIRStatement> methodStmts = mMap.get((loopId.split("\\."))[0]).getStatements();
+		changedMethods.add((loopId.split("\\."))[0]);
 		int testLabelIndex = getForLabelStmtIndexInMethod(loopId, ForTestLabelRegex);
 		if (!loopIdInitWhichHaveHoist.contains(loopId)) {
 			methodStmts.add(testLabelIndex, new LabelStmt(loopId + ".hoist"));
@@ -269,6 +280,10 @@ public class LoopInvariantOptimizer {
 		}
 	}
 	
+	public HashSet<String> getChangedMethods() {
+		return changedMethods;
+	}
+	
 	private int getForLabelStmtIndexInMethod(String loopId, String label) {
 		String[] loopInfo = loopId.split("\\.");
 		List<LIRStatement> methodStmts = mMap.get(loopInfo[0]).getStatements();
@@ -533,7 +548,7 @@ public class LoopInvariantOptimizer {
 			stmts.add(block.getStatements().get(i));
 		}
 		
-		ExpressionFlattenerVisitor.MAXBOUNDCHECKS++;
+		CompilationContext.get().nextBoundCheckId();
 		
 		return stmts;
 	}
@@ -565,15 +580,15 @@ public class LoopInvariantOptimizer {
 	}
 	
 	private String getArrayBoundBegin(String name, String methodName) {
-		return methodName + ".array." + name + "." + ExpressionFlattenerVisitor.MAXBOUNDCHECKS + ".begin";
+		return methodName + ".array." + name + "." + CompilationContext.get().getMaxBoundChecks() + ".begin";
 	}
 	
 	private String getArrayBoundFail(String name, String methodName) {
-		return methodName + ".array." + name + "." + ExpressionFlattenerVisitor.MAXBOUNDCHECKS + ".fail";
+		return methodName + ".array." + name + "." + CompilationContext.get().getMaxBoundChecks() + ".fail";
 	}
 	
 	private String getArrayBoundPass(String name, String methodName) {
-		return methodName + ".array." + name + "." + ExpressionFlattenerVisitor.MAXBOUNDCHECKS + ".pass";
+		return methodName + ".array." + name + "." + CompilationContext.get().getMaxBoundChecks() + ".pass";
 	}
 	
 	public void setmMap(HashMap<String, MethodIR> mMap) {
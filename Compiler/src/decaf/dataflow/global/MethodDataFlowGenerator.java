@@ -0,0 +1,8 @@
+package decaf.dataflow.global;
+
+// A dataflow analysis over the CFG of a single method
+// Everything it computes (IDs, BitSets, maps) is private to that method, so
+// generators for different methods can run at the same time
+public interface MethodDataFlowGenerator {
+	public void generate();
+}
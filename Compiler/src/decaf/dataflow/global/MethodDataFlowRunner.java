@@ -0,0 +1,51 @@
+package decaf.dataflow.global;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import decaf.CompilationContext;
+import decaf.profile.CompileProfiler;
+
+// Runs per method dataflow generators in parallel
+// The analyses are intraprocedural and every generator only reads the CFG of its own
+// method, so one task per method is enough
+// The tasks run with the context of the compilation which started them, workers of the pool
+// are shared by all compilations. What they allocate is counted for the compilation (-time)
+public class MethodDataFlowRunner {
+	private static ForkJoinPool pool = new ForkJoinPool();
+
+	public static void generateAll(Collection<? extends MethodDataFlowGenerator> generators) {
+		if (generators.size() <= 1) {
+			for (MethodDataFlowGenerator generator : generators) {
+				generator.generate();
+			}
+			return;
+		}
+
+		final CompilationContext context = CompilationContext.get();
+		List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+		for (final MethodDataFlowGenerator generator : generators) {
+			tasks.add(pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					CompilationContext previous = CompilationContext.enter(context);
+					CompileProfiler profiler = context.getProfiler();
+					long startBytes = profiler.beginWorker();
+					try {
+						generator.generate();
+					} finally {
+						profiler.endWorker(startBytes);
+						CompilationContext.exit(previous);
+					}
+				}
+			}));
+		}
+		// join rethrows anything thrown inside a generator
+		for (ForkJoinTask<?> task : tasks) {
+			task.join();
+		}
+	}
+}
@@ -0,0 +1,583 @@
+package decaf.dataflow.global;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import decaf.CompilationContext;
+import decaf.codegen.flatir.CmpStmt;
+import decaf.codegen.flatir.ConstantName;
+import decaf.codegen.flatir.DynamicVarName;
+import decaf.codegen.flatir.JumpStmt;
+import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.LabelStmt;
+import decaf.codegen.flatir.Name;
+import decaf.codegen.flatir.QuadrupletOp;
+import decaf.codegen.flatir.QuadrupletStmt;
+import decaf.codegen.flatir.TempName;
+import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.PassManager;
+import decaf.dataflow.Transform;
+import decaf.dataflow.cfg.CFGBlock;
+import decaf.dataflow.cfg.IndexedCFG;
+import decaf.dataflow.cfg.MethodIR;
+import decaf.dataflow.ssa.SSAStatements;
+
+// Partial redundancy elimination with lazy code motion (Knoop, Ruthing and Steffen, in the
+// edge based form of Drechsler and Stadel)
+// An expression computed on some of the paths into a block and computed again in the block
+// is computed on the other paths as well (on the edges, as late as possible) and the
+// computation in the block becomes a copy of a temporary, e.g. the index arithmetic of
+// an array access repeated after an if/else which computed it in only one arm
+// Four bit vector problems over all the expressions of the method, so the pass is linear
+// in the size of the method times the number of expressions / 64
+// Only expressions over locals, temporaries and constants are moved. Divisions aren't,
+// since a computation moved to a path which didn't have it could divide by zero there
+// Globals and arrays are left to GlobalCSEOptimizer
+public class PartialRedundancyEliminationOptimizer implements Transform {
+	private static String ArrayCheckLabelRegex = "[a-zA-z_]\\w*.array.[a-zA-z_]\\w*.\\d+.(begin|pass|fail)";
+	private static String ForLabelRegex = "[a-zA-z_]\\w*.for\\d+.\\w+";
+	private HashMap<String, MethodIR> mMap;
+	private PassManager pm;
+	// State of the method being optimized
+	private HashMap<AvailableExpression, Integer> exprIds;
+	private List<AvailableExpression> exprs;
+	// Variable -> ids of the expressions using it
+	private HashMap<Name, List<Integer>> operandExprs;
+	private List<CFGBlock> rpo;
+	private CFGBlock entry;
+	private IdentityHashMap<CFGBlock, Boolean> reachable;
+	private IdentityHashMap<CFGBlock, BitSet> antLoc;
+	private IdentityHashMap<CFGBlock, BitSet> comp;
+	private IdentityHashMap<CFGBlock, BitSet> transp;
+	private IdentityHashMap<CFGBlock, BitSet> avOut;
+	private IdentityHashMap<CFGBlock, BitSet> antIn;
+	private IdentityHashMap<CFGBlock, BitSet> antOut;
+	private IdentityHashMap<CFGBlock, BitSet> laterIn;
+	private IdentityHashMap<CFGBlock, IdentityHashMap<CFGBlock, BitSet>> later;
+
+	public PartialRedundancyEliminationOptimizer(HashMap<String, MethodIR> mMap, PassManager pm) {
+		this.mMap = mMap;
+		this.pm = pm;
+	}
+
+	public boolean apply() {
+		return performPRE();
+	}
+
+	public boolean performPRE() {
+		boolean changed = false;
+
+		for (String methodName: this.mMap.keySet()) {
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
+
+			if (optimizeMethod(methodName)) {
+				pm.invalidate(methodName);
+				changed = true;
+			}
+		}
+
+		return changed;
+	}
+
+	private boolean optimizeMethod(String methodName) {
+		MethodIR methodIR = this.mMap.get(methodName);
+		if (methodIR.getCfgBlocks().isEmpty()) return false;
+
+		this.rpo = new ArrayList<CFGBlock>(methodIR.getDominatorTree().getReversePostOrder());
+		if (rpo.isEmpty()) return false;
+		this.entry = rpo.get(0);
+		this.reachable = new IdentityHashMap<CFGBlock, Boolean>();
+		for (CFGBlock block: rpo) {
+			reachable.put(block, true);
+		}
+
+		collectExpressions();
+		if (exprs.isEmpty()) return false;
+
+		computeLocalSets();
+		computeAvailability();
+		computeAnticipability();
+		computeLater();
+
+		int n = exprs.size();
+		// Expressions with a computation to delete
+		BitSet candidates = new BitSet(n);
+		IdentityHashMap<CFGBlock, BitSet> delete = new IdentityHashMap<CFGBlock, BitSet>();
+		for (CFGBlock block: rpo) {
+			if (block == entry) continue;
+
+			BitSet d = (BitSet) antLoc.get(block).clone();
+			d.andNot(laterIn.get(block));
+			delete.put(block, d);
+			candidates.or(d);
+		}
+		if (candidates.isEmpty()) return false;
+
+		// Edges needing computations. An expression is only moved if all its insertions can
+		// be done, the bound checks have to keep their shape for the later passes
+		List<CFGBlock[]> edges = new ArrayList<CFGBlock[]>();
+		List<BitSet> inserts = new ArrayList<BitSet>();
+		for (CFGBlock pred: rpo) {
+			for (CFGBlock succ: distinct(pred.getSuccessors())) {
+				BitSet insert = (BitSet) later.get(pred).get(succ).clone();
+				insert.andNot(laterIn.get(succ));
+				insert.and(candidates);
+				if (insert.isEmpty()) continue;
+
+				if (!canInsert(methodIR, pred, succ)) {
+					candidates.andNot(insert);
+					continue;
+				}
+				edges.add(new CFGBlock[] { pred, succ });
+				inserts.add(insert);
+			}
+		}
+		if (candidates.isEmpty()) return false;
+
+		DynamicVarName[] temps = new DynamicVarName[n];
+		for (int e = candidates.nextSetBit(0); e >= 0; e = candidates.nextSetBit(e + 1)) {
+			temps[e] = new DynamicVarName(true);
+		}
+
+		for (CFGBlock block: rpo) {
+			rewriteBlock(block, delete.get(block), candidates, temps);
+		}
+
+		IndexedCFG cfg = new IndexedCFG(methodName, methodIR.getCfgBlocks());
+		for (int i = 0; i < edges.size(); i++) {
+			BitSet insert = inserts.get(i);
+			insert.and(candidates);
+			if (insert.isEmpty()) continue;
+
+			List<LIRStatement> stmts = new ArrayList<LIRStatement>();
+			for (int e = insert.nextSetBit(0); e >= 0; e = insert.nextSetBit(e + 1)) {
+				AvailableExpression expr = exprs.get(e);
+				stmts.add(new QuadrupletStmt(expr.getOperator(), temps[e], expr.getArg1(), expr.getArg2()));
+			}
+			insertOnEdge(methodIR, cfg, edges.get(i)[0], edges.get(i)[1], stmts);
+		}
+
+		methodIR.invalidateLoops();
+		methodIR.regenerateStmts();
+
+		return true;
+	}
+
+	private void collectExpressions() {
+		exprIds = new HashMap<AvailableExpression, Integer>();
+		exprs = new ArrayList<AvailableExpression>();
+		operandExprs = new HashMap<Name, List<Integer>>();
+
+		for (CFGBlock block: rpo) {
+			for (LIRStatement stmt: block.getStatements()) {
+				if (!isCandidate(stmt)) continue;
+
+				QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
+				AvailableExpression expr = new AvailableExpression(qStmt.getArg1(), qStmt.getArg2(),
+						qStmt.getOperator(), exprs.size());
+				if (exprIds.containsKey(expr)) continue;
+
+				exprIds.put(expr, exprs.size());
+				exprs.add(expr);
+				addOperand(qStmt.getArg1(), expr.getMyId());
+				if (qStmt.getArg2() != null && !qStmt.getArg2().equals(qStmt.getArg1())) {
+					addOperand(qStmt.getArg2(), expr.getMyId());
+				}
+			}
+		}
+	}
+
+	private void addOperand(Name name, int id) {
+		if (name.getClass().equals(ConstantName.class)) return;
+
+		List<Integer> ids = operandExprs.get(name);
+		if (ids == null) {
+			ids = new ArrayList<Integer>();
+			operandExprs.put(name, ids);
+		}
+		ids.add(id);
+	}
+
+	private boolean isCandidate(LIRStatement stmt) {
+		if (!stmt.getClass().equals(QuadrupletStmt.class)) return false;
+
+		QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
+		if (!qStmt.isAvailableExpression()) return false;
+		if (qStmt.getOperator() == QuadrupletOp.DIV || qStmt.getOperator() == QuadrupletOp.MOD) return false;
+		if (!isOperand(qStmt.getArg1())) return false;
+		if (qStmt.hasTwoArgs() && !isOperand(qStmt.getArg2())) return false;
+
+		// Nothing to gain on constants only, that's folded elsewhere
+		return !qStmt.getArg1().getClass().equals(ConstantName.class) ||
+			(qStmt.hasTwoArgs() && !qStmt.getArg2().getClass().equals(ConstantName.class));
+	}
+
+	// Block local temporaries can't be used on other blocks, so they can't be moved
+	private boolean isOperand(Name name) {
+		if (name == null) return false;
+		if (name.getClass().equals(ConstantName.class)) return true;
+		if (name.getClass().equals(DynamicVarName.class)) {
+			return ((DynamicVarName) name).isForGlobal();
+		}
+
+		return SSAStatements.isVariable(name) && !name.getClass().equals(TempName.class);
+	}
+
+	private int getExprId(LIRStatement stmt) {
+		if (!isCandidate(stmt)) return -1;
+
+		QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
+		Integer id = exprIds.get(new AvailableExpression(qStmt.getArg1(), qStmt.getArg2(), qStmt.getOperator(), -1));
+		return (id == null) ? -1 : id;
+	}
+
+	private void kill(LIRStatement stmt, BitSet killed) {
+		Name def = SSAStatements.getDef(stmt);
+		if (def == null) return;
+
+		List<Integer> ids = operandExprs.get(def);
+		if (ids == null) return;
+		for (int id: ids) {
+			killed.set(id);
+		}
+	}
+
+	// ANTLOC: computed before any of its operands are assigned in the block
+	// COMP: computed after the last assignment of its operands in the block
+	// TRANSP: no operand is assigned in the block
+	private void computeLocalSets() {
+		int n = exprs.size();
+		antLoc = new IdentityHashMap<CFGBlock, BitSet>();
+		comp = new IdentityHashMap<CFGBlock, BitSet>();
+		transp = new IdentityHashMap<CFGBlock, BitSet>();
+
+		for (CFGBlock block: rpo) {
+			BitSet a = new BitSet(n);
+			BitSet c = new BitSet(n);
+			BitSet killed = new BitSet(n);
+			for (LIRStatement stmt: block.getStatements()) {
+				int e = getExprId(stmt);
+				if (e >= 0) {
+					if (!killed.get(e)) a.set(e);
+					c.set(e);
+				}
+
+				BitSet k = new BitSet(n);
+				kill(stmt, k);
+				c.andNot(k);
+				killed.or(k);
+			}
+			BitSet t = new BitSet(n);
+			t.set(0, n);
+			t.andNot(killed);
+
+			antLoc.put(block, a);
+			comp.put(block, c);
+			transp.put(block, t);
+		}
+	}
+
+	// AVOUT = COMP | (AVIN & TRANSP), AVIN = AND of the AVOUTs of the predecessors
+	private void computeAvailability() {
+		int n = exprs.size();
+		avOut = new IdentityHashMap<CFGBlock, BitSet>();
+		for (CFGBlock block: rpo) {
+			BitSet all = new BitSet(n);
+			all.set(0, n);
+			avOut.put(block, all);
+		}
+
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (CFGBlock block: rpo) {
+				BitSet in = new BitSet(n);
+				if (block != entry) {
+					in.set(0, n);
+					for (CFGBlock pred: block.getPredecessors()) {
+						if (reachable.containsKey(pred)) in.and(avOut.get(pred));
+					}
+				}
+				in.and(transp.get(block));
+				in.or(comp.get(block));
+				if (!in.equals(avOut.get(block))) {
+					avOut.put(block, in);
+					changed = true;
+				}
+			}
+		}
+	}
+
+	// ANTIN = ANTLOC | (ANTOUT & TRANSP), ANTOUT = AND of the ANTINs of the successors
+	private void computeAnticipability() {
+		int n = exprs.size();
+		antIn = new IdentityHashMap<CFGBlock, BitSet>();
+		antOut = new IdentityHashMap<CFGBlock, BitSet>();
+		for (CFGBlock block: rpo) {
+			BitSet all = new BitSet(n);
+			all.set(0, n);
+			antIn.put(block, all);
+		}
+
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = rpo.size() - 1; i >= 0; i--) {
+				CFGBlock block = rpo.get(i);
+				BitSet out = new BitSet(n);
+				if (!block.getSuccessors().isEmpty()) {
+					out.set(0, n);
+					for (CFGBlock succ: block.getSuccessors()) {
+						out.and(antIn.get(succ));
+					}
+				}
+				antOut.put(block, out);
+
+				BitSet in = (BitSet) out.clone();
+				in.and(transp.get(block));
+				in.or(antLoc.get(block));
+				if (!in.equals(antIn.get(block))) {
+					antIn.put(block, in);
+					changed = true;
+				}
+			}
+		}
+	}
+
+	// EARLIEST(p,s) = ANTIN(s) & ~AVOUT(p) & (~TRANSP(p) | ~ANTOUT(p))
+	// LATER(p,s) = EARLIEST(p,s) | (LATERIN(p) & ~ANTLOC(p))
+	// LATERIN(b) = AND of the LATERs of the edges into b, ANTIN for the entry
+	private void computeLater() {
+		int n = exprs.size();
+		IdentityHashMap<CFGBlock, IdentityHashMap<CFGBlock, BitSet>> earliest =
+			new IdentityHashMap<CFGBlock, IdentityHashMap<CFGBlock, BitSet>>();
+		later = new IdentityHashMap<CFGBlock, IdentityHashMap<CFGBlock, BitSet>>();
+		laterIn = new IdentityHashMap<CFGBlock, BitSet>();
+
+		for (CFGBlock pred: rpo) {
+			BitSet notAvailable = new BitSet(n);
+			notAvailable.set(0, n);
+			notAvailable.andNot(avOut.get(pred));
+			BitSet stops = (BitSet) transp.get(pred).clone();
+			stops.and(antOut.get(pred));
+			stops.flip(0, n);
+
+			IdentityHashMap<CFGBlock, BitSet> e = new IdentityHashMap<CFGBlock, BitSet>();
+			IdentityHashMap<CFGBlock, BitSet> l = new IdentityHashMap<CFGBlock, BitSet>();
+			for (CFGBlock succ: pred.getSuccessors()) {
+				BitSet bits = (BitSet) antIn.get(succ).clone();
+				bits.and(notAvailable);
+				bits.and(stops);
+				e.put(succ, bits);
+				BitSet all = new BitSet(n);
+				all.set(0, n);
+				l.put(succ, all);
+			}
+			earliest.put(pred, e);
+			later.put(pred, l);
+		}
+
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (CFGBlock block: rpo) {
+				BitSet in;
+				if (block == entry) {
+					in = (BitSet) antIn.get(block).clone();
+				}
+				else {
+					in = new BitSet(n);
+					in.set(0, n);
+					for (CFGBlock pred: block.getPredecessors()) {
+						if (reachable.containsKey(pred)) in.and(later.get(pred).get(block));
+					}
+				}
+				laterIn.put(block, in);
+
+				BitSet passOn = (BitSet) in.clone();
+				passOn.andNot(antLoc.get(block));
+				for (CFGBlock succ: block.getSuccessors()) {
+					BitSet bits = (BitSet) earliest.get(block).get(succ).clone();
+					bits.or(passOn);
+					if (!bits.equals(later.get(block).get(succ))) {
+						later.get(block).put(succ, bits);
+						changed = true;
+					}
+				}
+			}
+		}
+	}
+
+	// The first computation of a deleted expression becomes a copy of its temporary, and the
+	// last computation of a moved expression in the block saves its value in the temporary
+	// for the blocks after it
+	private void rewriteBlock(CFGBlock block, BitSet delete, BitSet candidates, DynamicVarName[] temps) {
+		int n = exprs.size();
+		List<LIRStatement> stmts = block.getStatements();
+
+		// The computations which are still valid at the end of the block
+		IdentityHashMap<LIRStatement, Boolean> saves = new IdentityHashMap<LIRStatement, Boolean>();
+		BitSet killedAfter = new BitSet(n);
+		BitSet seen = new BitSet(n);
+		for (int i = stmts.size() - 1; i >= 0; i--) {
+			LIRStatement stmt = stmts.get(i);
+			kill(stmt, killedAfter);
+			int e = getExprId(stmt);
+			if (e >= 0 && candidates.get(e) && !killedAfter.get(e) && !seen.get(e)) {
+				saves.put(stmt, true);
+			}
+			if (e >= 0) seen.set(e);
+		}
+
+		List<LIRStatement> newStmts = new ArrayList<LIRStatement>();
+		BitSet killed = new BitSet(n);
+		seen.clear();
+		boolean changed = false;
+		for (LIRStatement stmt: stmts) {
+			int e = getExprId(stmt);
+			if (e < 0 || !candidates.get(e)) {
+				newStmts.add(stmt);
+				kill(stmt, killed);
+				continue;
+			}
+
+			QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
+			Name dest = qStmt.getDestination();
+			if (delete != null && delete.get(e) && !killed.get(e) && !seen.get(e)) {
+				qStmt.setOperator(QuadrupletOp.MOVE);
+				qStmt.setArg1(temps[e]);
+				qStmt.setArg2(null);
+				newStmts.add(qStmt);
+				changed = true;
+			}
+			else if (saves.containsKey(stmt)) {
+				if (SSAStatements.isVariable(dest)) {
+					newStmts.add(qStmt);
+					newStmts.add(new QuadrupletStmt(QuadrupletOp.MOVE, temps[e], dest, null));
+				}
+				else {
+					newStmts.add(new QuadrupletStmt(qStmt.getOperator(), temps[e], qStmt.getArg1(), qStmt.getArg2()));
+					qStmt.setOperator(QuadrupletOp.MOVE);
+					qStmt.setArg1(temps[e]);
+					qStmt.setArg2(null);
+					newStmts.add(qStmt);
+				}
+				changed = true;
+			}
+			else {
+				newStmts.add(stmt);
+			}
+			seen.set(e);
+			kill(stmt, killed);
+		}
+
+		if (changed) {
+			block.setStatements(newStmts);
+		}
+	}
+
+	// Where the computations of an edge go: the end of the predecessor if it has no other
+	// successor, the start of the successor if it has no other predecessor, else a new block
+	private boolean canInsert(MethodIR methodIR, CFGBlock pred, CFGBlock succ) {
+		if (isBoundCheck(pred)) return false;
+		if (distinct(pred.getSuccessors()).size() == 1) return true;
+		if (isBoundCheck(succ)) return false;
+		if (distinct(succ.getPredecessors()).size() == 1) return true;
+
+		// The store placement finds the end of a loop as the successor of its test, so
+		// nothing can be put between the blocks of a loop
+		if (succ.getLeader().getClass().equals(LabelStmt.class) &&
+				((LabelStmt) succ.getLeader()).getLabelString().matches(ForLabelRegex)) {
+			return false;
+		}
+
+		// A new block needs a jump of pred to succ, or pred falling through into succ
+		LIRStatement last = getLastStatement(pred);
+		if (last != null && last.getClass().equals(JumpStmt.class) && succ.getLeader().getClass().equals(LabelStmt.class)) {
+			if (((JumpStmt) last).getLabel().getLabelString().equals(((LabelStmt) succ.getLeader()).getLabelString())) {
+				return true;
+			}
+		}
+		List<CFGBlock> blocks = methodIR.getCfgBlocks();
+		int i = blocks.indexOf(succ);
+		return i > 0 && blocks.get(i - 1) == pred;
+	}
+
+	private void insertOnEdge(MethodIR methodIR, IndexedCFG cfg, CFGBlock pred, CFGBlock succ, List<LIRStatement> stmts) {
+		if (distinct(pred.getSuccessors()).size() == 1) {
+			pred.getStatements().addAll(getEndPosition(pred), stmts);
+			pred.markChanged();
+		}
+		else if (distinct(succ.getPredecessors()).size() == 1) {
+			succ.getStatements().addAll(getStartPosition(succ), stmts);
+			succ.markChanged();
+		}
+		else {
+			LabelStmt label = new LabelStmt(methodIR.getId() + ".pre." + CompilationContext.get().nextEdgeId() + ".edge");
+			CFGBlock edgeBlock = cfg.splitEdge(pred, succ, label);
+			if (edgeBlock == null) {
+				throw new IllegalStateException("Can't split the edge " + pred.getIndex() + " -> " + succ.getIndex());
+			}
+			edgeBlock.getStatements().addAll(stmts);
+			edgeBlock.markChanged();
+			pred.markChanged();
+		}
+	}
+
+	// Blocks of the bound checks of array accesses, matched by the later passes by their shape
+	private boolean isBoundCheck(CFGBlock block) {
+		LIRStatement leader = block.getLeader();
+		if (leader != null && leader.getClass().equals(LabelStmt.class) &&
+				((LabelStmt) leader).getLabelString().matches(ArrayCheckLabelRegex)) {
+			return true;
+		}
+
+		LIRStatement last = getLastStatement(block);
+		return last != null && last.getClass().equals(JumpStmt.class) &&
+			((JumpStmt) last).getLabel().getLabelString().matches(ArrayCheckLabelRegex);
+	}
+
+	// Before the jump ending the block, and before the cmp of a conditional jump
+	private int getEndPosition(CFGBlock block) {
+		List<LIRStatement> stmts = block.getStatements();
+		int i = stmts.size();
+		if (i > 0 && stmts.get(i - 1).getClass().equals(JumpStmt.class)) {
+			i--;
+			if (i > 0 && stmts.get(i - 1).getClass().equals(CmpStmt.class)) {
+				i--;
+			}
+		}
+		return i;
+	}
+
+	// After the labels the block starts with
+	private int getStartPosition(CFGBlock block) {
+		List<LIRStatement> stmts = block.getStatements();
+		int i = 0;
+		while (i < stmts.size() && stmts.get(i).getClass().equals(LabelStmt.class)) {
+			i++;
+		}
+		return i;
+	}
+
+	private LIRStatement getLastStatement(CFGBlock block) {
+		if (block.getStatements().isEmpty()) return null;
+
+		return block.getStatements().get(block.getStatements().size() - 1);
+	}
+
+	private List<CFGBlock> distinct(List<CFGBlock> blocks) {
+		List<CFGBlock> rtn = new ArrayList<CFGBlock>();
+		for (CFGBlock block: blocks) {
+			boolean found = false;
+			for (CFGBlock b: rtn) {
+				if (b == block) found = true;
+			}
+			if (!found) rtn.add(block);
+		}
+		return rtn;
+	}
+}
@@ -0,0 +1,685 @@
+package decaf.dataflow.global;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import decaf.codegen.flatir.CmpStmt;
+import decaf.codegen.flatir.ConstantName;
+import decaf.codegen.flatir.JumpCondOp;
+import decaf.codegen.flatir.JumpStmt;
+import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.LabelStmt;
+import decaf.codegen.flatir.Name;
+import decaf.codegen.flatir.QuadrupletOp;
+import decaf.codegen.flatir.QuadrupletStmt;
+import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.PassManager;
+import decaf.dataflow.Transform;
+import decaf.dataflow.cfg.CFGBlock;
+import decaf.dataflow.cfg.IndexedCFG;
+import decaf.dataflow.cfg.MethodIR;
+import decaf.dataflow.ssa.NameMapper;
+import decaf.dataflow.ssa.PhiStmt;
+import decaf.dataflow.ssa.SSABuilder;
+import decaf.dataflow.ssa.SSADestructor;
+import decaf.dataflow.ssa.SSAName;
+import decaf.dataflow.ssa.SSAStatements;
+
+// Sparse conditional constant propagation (Wegman and Zadeck) on the SSA form of each method
+// Every SSA version is TOP (no value seen yet), a constant or BOTTOM (not a constant), and
+// only the blocks reached through edges found executable so far are evaluated, so a value
+// coming from a branch which is never taken doesn't stop a variable from being constant
+// Afterwards the constant uses are replaced, constant definitions become moves, branches
+// which always go the same way become jumps (or are removed) and blocks which are never
+// reached are removed
+// Only locals and temporaries are in SSA form, globals are left to GlobalConstProp
+// The for loops keep the shape the flattener gave them: the loop passes after the dataflow
+// (loop invariants, the store optimizer) find them by their labels, and expect the test to
+// branch, the increment to follow its label and every part of the loop to be there
+public class SparseConstantPropagationOptimizer implements Transform {
+	// The array bound checks are left to the bound check passes, which need them whole
+	private static String ArrayCheckLabelRegex = "[a-zA-z_]\\w*.array.[a-zA-z_]\\w*.\\d+.(pass|fail)";
+	private static String ForTestLabelRegex = "[a-zA-z_]\\w*.for\\d+.test";
+	private static String ForIncrLabelRegex = "[a-zA-z_]\\w*.for\\d+.incr";
+	private static String ForLabelRegex = "[a-zA-z_]\\w*.for\\d+.(init|test|body|incr|end)";
+	private HashMap<String, MethodIR> mMap;
+	private PassManager pm;
+	// State of the method being optimized
+	private IndexedCFG cfg;
+	private HashMap<SSAName, Integer> constants;
+	private HashSet<SSAName> overdefined;
+	private HashMap<SSAName, List<LIRStatement>> uses;
+	private IdentityHashMap<LIRStatement, CFGBlock> stmtBlocks;
+	private IdentityHashMap<CFGBlock, Boolean> visited;
+	// Block -> successors through an edge found executable
+	private IdentityHashMap<CFGBlock, List<CFGBlock>> executable;
+	private List<CFGBlock> flowWorklist;
+	private List<SSAName> ssaWorklist;
+
+	public SparseConstantPropagationOptimizer(HashMap<String, MethodIR> mMap, PassManager pm) {
+		this.mMap = mMap;
+		this.pm = pm;
+	}
+
+	public boolean apply() {
+		return performSCCP();
+	}
+
+	public boolean performSCCP() {
+		boolean changed = false;
+
+		for (String methodName: this.mMap.keySet()) {
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
+
+			if (optimizeMethod(methodName)) {
+				pm.invalidate(methodName);
+				changed = true;
+			}
+		}
+
+		return changed;
+	}
+
+	private boolean optimizeMethod(String methodName) {
+		MethodIR methodIR = this.mMap.get(methodName);
+		if (methodIR.getCfgBlocks().isEmpty()) return false;
+
+		this.cfg = new IndexedCFG(methodName, methodIR.getCfgBlocks());
+		this.constants = new HashMap<SSAName, Integer>();
+		this.overdefined = new HashSet<SSAName>();
+		this.uses = new HashMap<SSAName, List<LIRStatement>>();
+		this.stmtBlocks = new IdentityHashMap<LIRStatement, CFGBlock>();
+		this.visited = new IdentityHashMap<CFGBlock, Boolean>();
+		this.executable = new IdentityHashMap<CFGBlock, List<CFGBlock>>();
+		this.flowWorklist = new ArrayList<CFGBlock>();
+		this.ssaWorklist = new ArrayList<SSAName>();
+
+		SSABuilder builder = new SSABuilder(methodIR);
+		builder.build();
+		IdentityHashMap<CFGBlock, List<PhiStmt>> phis = builder.getPhis();
+
+		CFGBlock entry = methodIR.getDominatorTree().getEntry();
+		if (entry == null) return false;
+
+		buildUses(methodIR);
+		flowWorklist.add(entry);
+		propagate();
+
+		IdentityHashMap<CFGBlock, Boolean> changedBlocks = new IdentityHashMap<CFGBlock, Boolean>();
+		boolean changed = rewrite(methodIR, phis, changedBlocks);
+
+		changed |= new SSADestructor(methodIR, cfg, phis).destruct();
+		changed |= removeEmptyBlocks(methodIR);
+
+		if (changed) {
+			for (CFGBlock block: changedBlocks.keySet()) {
+				block.markChanged();
+			}
+			methodIR.invalidateLoops();
+			methodIR.regenerateStmts();
+		}
+
+		return changed;
+	}
+
+	private void buildUses(MethodIR methodIR) {
+		for (CFGBlock block: methodIR.getCfgBlocks()) {
+			for (LIRStatement stmt: block.getStatements()) {
+				stmtBlocks.put(stmt, block);
+				for (Name use: SSAStatements.getUses(stmt)) {
+					if (!use.getClass().equals(SSAName.class)) continue;
+
+					SSAName sName = (SSAName) use;
+					List<LIRStatement> stmts = uses.get(sName);
+					if (stmts == null) {
+						stmts = new ArrayList<LIRStatement>();
+						uses.put(sName, stmts);
+					}
+					stmts.add(stmt);
+				}
+			}
+		}
+	}
+
+	private void propagate() {
+		boolean done = false;
+		while (!done) {
+			while (!flowWorklist.isEmpty() || !ssaWorklist.isEmpty()) {
+				while (!flowWorklist.isEmpty()) {
+					CFGBlock block = flowWorklist.remove(flowWorklist.size() - 1);
+					if (!visited.containsKey(block)) {
+						visited.put(block, true);
+						visitBlock(block);
+					}
+					else {
+						// A new edge into the block only changes its phis
+						for (LIRStatement stmt: block.getStatements()) {
+							if (stmt.getClass().equals(PhiStmt.class)) {
+								visitPhi((PhiStmt) stmt, block);
+							}
+						}
+					}
+				}
+
+				while (!ssaWorklist.isEmpty()) {
+					SSAName name = ssaWorklist.remove(ssaWorklist.size() - 1);
+					if (!uses.containsKey(name)) continue;
+
+					for (LIRStatement stmt: uses.get(name)) {
+						CFGBlock block = stmtBlocks.get(stmt);
+						if (block == null || !visited.containsKey(block)) continue;
+
+						if (stmt.getClass().equals(PhiStmt.class)) {
+							visitPhi((PhiStmt) stmt, block);
+						}
+						else if (stmt.getClass().equals(CmpStmt.class) || stmt.getClass().equals(JumpStmt.class)) {
+							visitTerminator(block);
+						}
+						else {
+							visitStatement(stmt);
+						}
+					}
+				}
+			}
+
+			// A branch still waiting for a value nothing will give can go either way
+			done = true;
+			for (CFGBlock block: visited.keySet()) {
+				CmpStmt cStmt = getBranchCmp(block);
+				if (cStmt == null || getBranchTarget(block) == null) continue;
+
+				if (isTop(cStmt.getArg1()) || isTop(cStmt.getArg2())) {
+					for (CFGBlock succ: block.getSuccessors()) {
+						done &= !markEdge(block, succ);
+					}
+				}
+			}
+		}
+	}
+
+	private void visitBlock(CFGBlock block) {
+		for (LIRStatement stmt: block.getStatements()) {
+			if (stmt.getClass().equals(PhiStmt.class)) {
+				visitPhi((PhiStmt) stmt, block);
+			}
+			else {
+				visitStatement(stmt);
+			}
+		}
+		visitTerminator(block);
+	}
+
+	private void visitPhi(PhiStmt phi, CFGBlock block) {
+		if (!phi.getDestination().getClass().equals(SSAName.class)) return;
+
+		SSAName dest = (SSAName) phi.getDestination();
+		Integer value = null;
+		for (int i = 0; i < phi.getArgs().size(); i++) {
+			if (!isExecutable(phi.getPreds().get(i), block)) continue;
+
+			Name arg = phi.getArgs().get(i);
+			if (arg == null || isBottom(arg)) {
+				setBottom(dest);
+				return;
+			}
+			Integer c = getConstant(arg);
+			if (c == null) continue; // TOP
+
+			if (value == null) {
+				value = c;
+			}
+			else if (!value.equals(c)) {
+				setBottom(dest);
+				return;
+			}
+		}
+
+		if (value != null) {
+			setConstant(dest, value);
+		}
+	}
+
+	private void visitStatement(LIRStatement stmt) {
+		Name def = SSAStatements.getDef(stmt);
+		if (def == null || !def.getClass().equals(SSAName.class)) return;
+
+		SSAName dest = (SSAName) def;
+		if (!stmt.getClass().equals(QuadrupletStmt.class)) {
+			setBottom(dest);
+			return;
+		}
+
+		QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
+		Name arg1 = qStmt.getArg1();
+		Name arg2 = qStmt.hasTwoArgs() ? qStmt.getArg2() : null;
+		if (isBottom(arg1) || (arg2 != null && isBottom(arg2))) {
+			setBottom(dest);
+			return;
+		}
+
+		Integer c1 = getConstant(arg1);
+		Integer c2 = (arg2 != null) ? getConstant(arg2) : null;
+		if (c1 == null || (arg2 != null && c2 == null)) return; // Wait for the args
+
+		Integer result = fold(qStmt.getOperator(), c1, (c2 != null) ? c2 : 0);
+		if (result == null) {
+			setBottom(dest);
+		}
+		else {
+			setConstant(dest, result);
+		}
+	}
+
+	// Null if the result isn't known at compile time (overflow, or a division the
+	// generated code would do differently from Java)
+	private Integer fold(QuadrupletOp op, int arg1, int arg2) {
+		long a = arg1;
+		long b = arg2;
+		long result;
+
+		switch (op) {
+			case MOVE:
+				result = a;
+				break;
+			case NOT:
+				result = (a != 0) ? 0 : 1;
+				break;
+			case MINUS:
+				result = -a;
+				break;
+			case ADD:
+				result = a + b;
+				break;
+			case SUB:
+				result = a - b;
+				break;
+			case MUL:
+				result = a * b;
+				break;
+			case DIV:
+				if (a < 0 || b <= 0) return null;
+				result = a / b;
+				break;
+			case MOD:
+				if (a < 0 || b <= 0) return null;
+				result = a % b;
+				break;
+			case LT:
+				result = (a < b) ? 1 : 0;
+				break;
+			case LTE:
+				result = (a <= b) ? 1 : 0;
+				break;
+			case GT:
+				result = (a > b) ? 1 : 0;
+				break;
+			case GTE:
+				result = (a >= b) ? 1 : 0;
+				break;
+			case EQ:
+				result = (a == b) ? 1 : 0;
+				break;
+			case NEQ:
+				result = (a != b) ? 1 : 0;
+				break;
+			default:
+				return null;
+		}
+
+		if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) return null;
+
+		return (int) result;
+	}
+
+	// Marks the edges out of the block which can be taken
+	private void visitTerminator(CFGBlock block) {
+		CmpStmt cStmt = getBranchCmp(block);
+		CFGBlock target = getBranchTarget(block);
+		if (cStmt == null || target == null || isForLoopBranch(block)) {
+			for (CFGBlock succ: block.getSuccessors()) {
+				markEdge(block, succ);
+			}
+			return;
+		}
+
+		if (isBottom(cStmt.getArg1()) || isBottom(cStmt.getArg2())) {
+			for (CFGBlock succ: block.getSuccessors()) {
+				markEdge(block, succ);
+			}
+			return;
+		}
+		Integer c1 = getConstant(cStmt.getArg1());
+		Integer c2 = getConstant(cStmt.getArg2());
+		if (c1 == null || c2 == null) return; // Wait for the args
+
+		JumpStmt jStmt = (JumpStmt) getLastStatement(block);
+		if (evaluateJump(c1, c2, jStmt.getCondition())) {
+			markEdge(block, target);
+		}
+		else {
+			boolean marked = false;
+			for (CFGBlock succ: block.getSuccessors()) {
+				if (succ != target) {
+					markEdge(block, succ);
+					marked = true;
+				}
+			}
+			// The jump goes to the next block anyway
+			if (!marked) {
+				markEdge(block, target);
+			}
+		}
+	}
+
+	// The test of a for loop, or a branch into a part of one (a break, the end of the body)
+	// Taken both ways, so the loop keeps its shape
+	private boolean isForLoopBranch(CFGBlock block) {
+		if (hasLabel(block, ForTestLabelRegex)) return true;
+		
+		for (CFGBlock succ: block.getSuccessors()) {
+			if (hasLabel(succ, ForLabelRegex)) return true;
+		}
+		return false;
+	}
+
+	private boolean hasLabel(CFGBlock block, String regex) {
+		for (LIRStatement stmt: block.getStatements()) {
+			if (stmt.getClass().equals(LabelStmt.class) && ((LabelStmt) stmt).getLabelString().matches(regex)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean evaluateJump(int arg1, int arg2, JumpCondOp condition) {
+		switch (condition) {
+			case EQ:
+				return arg1 == arg2;
+			case NEQ:
+				return arg1 != arg2;
+			case ZERO:
+				return arg1 == arg2; // jz is identical to je.
+			case GT:
+				return arg1 > arg2;
+			case GTE:
+				return arg1 >= arg2;
+			case LT:
+				return arg1 < arg2;
+			case LTE:
+				return arg1 <= arg2;
+		}
+
+		return false;
+	}
+
+	private LIRStatement getLastStatement(CFGBlock block) {
+		if (block.getStatements().isEmpty()) return null;
+
+		return block.getStatements().get(block.getStatements().size() - 1);
+	}
+
+	// The cmp of the conditional jump ending the block, null if it doesn't end with one
+	private CmpStmt getBranchCmp(CFGBlock block) {
+		List<LIRStatement> stmts = block.getStatements();
+		LIRStatement last = getLastStatement(block);
+		if (last == null || !last.getClass().equals(JumpStmt.class)) return null;
+		if (((JumpStmt) last).getCondition() == JumpCondOp.NONE) return null;
+		if (stmts.size() < 2 || !stmts.get(stmts.size() - 2).getClass().equals(CmpStmt.class)) return null;
+
+		return (CmpStmt) stmts.get(stmts.size() - 2);
+	}
+
+	// The successor the conditional jump ending the block goes to, null if the block
+	// doesn't end with one, the jump leaves the method or is part of a bound check
+	private CFGBlock getBranchTarget(CFGBlock block) {
+		LIRStatement last = getLastStatement(block);
+		if (last == null || !last.getClass().equals(JumpStmt.class)) return null;
+
+		JumpStmt jStmt = (JumpStmt) last;
+		if (jStmt.getCondition() == JumpCondOp.NONE) return null;
+		if (jStmt.getLabel().getLabelString().matches(ArrayCheckLabelRegex)) return null;
+
+		CFGBlock target = cfg.getBlockWithLabel(jStmt.getLabel().getLabelString());
+		if (target == null || !containsBlock(block.getSuccessors(), target)) return null;
+
+		return target;
+	}
+
+	// Returns true if the edge wasn't executable before
+	private boolean markEdge(CFGBlock from, CFGBlock to) {
+		List<CFGBlock> succs = executable.get(from);
+		if (succs == null) {
+			succs = new ArrayList<CFGBlock>();
+			executable.put(from, succs);
+		}
+		if (containsBlock(succs, to)) return false;
+
+		succs.add(to);
+		flowWorklist.add(to);
+		return true;
+	}
+
+	private boolean isExecutable(CFGBlock from, CFGBlock to) {
+		List<CFGBlock> succs = executable.get(from);
+
+		return succs != null && containsBlock(succs, to);
+	}
+
+	private boolean containsBlock(List<CFGBlock> blocks, CFGBlock block) {
+		for (CFGBlock b: blocks) {
+			if (b == block) return true;
+		}
+		return false;
+	}
+
+	// Globals, arrays, registers and the values variables have on entry are BOTTOM
+	private boolean isBottom(Name name) {
+		if (name == null) return true;
+		if (name.getClass().equals(ConstantName.class)) {
+			return parseConstant((ConstantName) name) == null;
+		}
+		if (name.getClass().equals(SSAName.class)) {
+			SSAName sName = (SSAName) name;
+			return sName.getVersion() == 0 || overdefined.contains(sName);
+		}
+
+		return true;
+	}
+
+	private boolean isTop(Name name) {
+		return !isBottom(name) && getConstant(name) == null;
+	}
+
+	// Null for TOP and BOTTOM
+	private Integer getConstant(Name name) {
+		if (name == null) return null;
+		if (name.getClass().equals(ConstantName.class)) {
+			return parseConstant((ConstantName) name);
+		}
+		if (name.getClass().equals(SSAName.class) && !overdefined.contains(name)) {
+			return constants.get(name);
+		}
+
+		return null;
+	}
+
+	private Integer parseConstant(ConstantName name) {
+		try {
+			return Integer.parseInt(name.getValue());
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private void setConstant(SSAName name, int value) {
+		if (overdefined.contains(name)) return;
+
+		Integer old = constants.get(name);
+		if (old == null) {
+			constants.put(name, value);
+			ssaWorklist.add(name);
+		}
+		else if (old != value) {
+			setBottom(name);
+		}
+	}
+
+	private void setBottom(SSAName name) {
+		if (overdefined.contains(name)) return;
+
+		overdefined.add(name);
+		constants.remove(name);
+		ssaWorklist.add(name);
+	}
+
+	private boolean rewrite(MethodIR methodIR, IdentityHashMap<CFGBlock, List<PhiStmt>> phis,
+			IdentityHashMap<CFGBlock, Boolean> changedBlocks) {
+		boolean changed = false;
+		NameMapper replacer = new NameMapper() {
+			@Override
+			public Name map(Name name) {
+				if (!name.getClass().equals(SSAName.class)) return name;
+
+				Integer c = getConstant(name);
+				if (c == null) return name;
+
+				return new ConstantName(c);
+			}
+		};
+
+		for (CFGBlock block: methodIR.getCfgBlocks()) {
+			if (!visited.containsKey(block)) continue;
+
+			boolean afterIncr = false;
+			for (LIRStatement stmt: block.getStatements()) {
+				if (stmt.getClass().equals(PhiStmt.class)) continue;
+
+				// The update of a for loop variable stays as it is
+				boolean isIncr = afterIncr;
+				afterIncr = stmt.getClass().equals(LabelStmt.class) && ((LabelStmt) stmt).getLabelString().matches(ForIncrLabelRegex);
+				if (isIncr) continue;
+
+				if (SSAStatements.mapUses(stmt, replacer)) {
+					changedBlocks.put(block, true);
+				}
+
+				// Constant definitions become moves of the constant
+				if (stmt.getClass().equals(QuadrupletStmt.class)) {
+					QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
+					Integer c = getConstant(qStmt.getDestination());
+					if (c == null) continue;
+
+					if (qStmt.getOperator() != QuadrupletOp.MOVE || !qStmt.getArg1().getClass().equals(ConstantName.class)) {
+						qStmt.setOperator(QuadrupletOp.MOVE);
+						qStmt.setArg1(new ConstantName(c));
+						qStmt.setArg2(null);
+						changedBlocks.put(block, true);
+					}
+				}
+			}
+
+			if (rewriteBranch(block)) {
+				changedBlocks.put(block, true);
+			}
+		}
+		changed |= !changedBlocks.isEmpty();
+
+		// Values from edges which are never taken don't reach the phis
+		for (CFGBlock block: phis.keySet()) {
+			for (PhiStmt phi: phis.get(block)) {
+				for (int i = phi.getPreds().size() - 1; i >= 0; i--) {
+					if (!isExecutable(phi.getPreds().get(i), block)) {
+						phi.removeArg(i);
+					}
+				}
+			}
+		}
+
+		for (CFGBlock block: new ArrayList<CFGBlock>(methodIR.getCfgBlocks())) {
+			if (!visited.containsKey(block)) {
+				cfg.removeBlock(block);
+				phis.remove(block);
+				changed = true;
+			}
+		}
+
+		return changed;
+	}
+
+	// A conditional jump which always goes the same way becomes a jump, or is removed
+	// if it never jumps. Returns true if the block changed
+	private boolean rewriteBranch(CFGBlock block) {
+		CmpStmt cStmt = getBranchCmp(block);
+		CFGBlock target = getBranchTarget(block);
+		if (cStmt == null || target == null) return false;
+
+		boolean targetTaken = isExecutable(block, target);
+		boolean fallTaken = false;
+		List<CFGBlock> others = new ArrayList<CFGBlock>();
+		for (CFGBlock succ: block.getSuccessors()) {
+			if (succ == target || containsBlock(others, succ)) continue;
+
+			others.add(succ);
+			fallTaken |= isExecutable(block, succ);
+		}
+		// Both ways are taken, or the jump goes to the next block anyway
+		if (others.isEmpty() || (targetTaken && fallTaken)) return false;
+
+		List<LIRStatement> stmts = new ArrayList<LIRStatement>(block.getStatements());
+		JumpStmt jStmt = (JumpStmt) stmts.remove(stmts.size() - 1);
+		stmts.remove(stmts.size() - 1);
+		if (targetTaken) {
+			stmts.add(new JumpStmt(JumpCondOp.NONE, jStmt.getLabel()));
+			for (CFGBlock succ: others) {
+				cfg.removeEdge(block, succ);
+			}
+		}
+		else {
+			cfg.removeEdge(block, target);
+		}
+		block.setStatements(stmts);
+
+		// The cmp could have been the first statement of the block
+		if (!stmts.isEmpty() && stmts.get(0) != block.getLeader() && !containsStatement(stmts, block.getLeader())) {
+			stmts.get(0).setIsLeader(true);
+			block.setLeader(stmts.get(0));
+		}
+
+		return true;
+	}
+
+	private boolean containsStatement(List<LIRStatement> stmts, LIRStatement stmt) {
+		for (LIRStatement s: stmts) {
+			if (s == stmt) return true;
+		}
+		return false;
+	}
+
+	// Blocks left without statements (a removed branch was all they had) only fall
+	// through into the next block, so their predecessors go straight there
+	private boolean removeEmptyBlocks(MethodIR methodIR) {
+		boolean changed = false;
+
+		for (CFGBlock block: new ArrayList<CFGBlock>(methodIR.getCfgBlocks())) {
+			if (!block.getStatements().isEmpty() || block.getIndex() == 0) continue;
+
+			CFGBlock succ = block.getSuccessors().isEmpty() ? null : block.getSuccessors().get(0);
+			for (CFGBlock pred: new ArrayList<CFGBlock>(block.getPredecessors())) {
+				if (succ != null) {
+					cfg.redirectEdge(pred, block, succ);
+				}
+				else {
+					cfg.removeEdge(pred, block);
+				}
+			}
+			cfg.removeBlock(block);
+			changed = true;
+		}
+
+		return changed;
+	}
+}
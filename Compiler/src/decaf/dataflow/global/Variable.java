@@ -1,24 +1,28 @@
 package decaf.dataflow.global;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.Name;
 
 public class Variable {
 	private Name var;
 	private int myId;
-	private static int ID = 0;
 
 	public Variable(Name a1) {
 		var = a1;
-		myId = ID;
-		ID++;
+		myId = CompilationContext.get().nextVariableId();
+	}
+	
+	public Variable(Name a1, int id) {
+		var = a1;
+		myId = id;
 	}
 	
 	public static int getID() {
-		return ID;
+		return CompilationContext.get().getVariableId();
 	}
 
 	public static void setID(int iD) {
-		ID = iD;
+		CompilationContext.get().setVariableId(iD);
 	}
 	
 	public int getMyId() {
@@ -27,7 +31,7 @@ public class Variable {
 
 	public void setMyId(int myId) {
 		this.myId = myId;
-		ID++;
+		CompilationContext.get().nextVariableId();
 	}
 	
 	public Name getVar() {
@@ -0,0 +1,8 @@
+package decaf.dataflow.ssa;
+
+import decaf.codegen.flatir.Name;
+
+// Gives the Name a use is replaced with, returns the same Name to keep it
+public interface NameMapper {
+	public Name map(Name name);
+}
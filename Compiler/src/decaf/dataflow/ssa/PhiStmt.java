@@ -0,0 +1,80 @@
+package decaf.dataflow.ssa;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.Name;
+import decaf.codegen.x86.InstructionList;
+import decaf.dataflow.cfg.CFGBlock;
+
+// dest = phi(args), args[i] is the value coming from preds[i]
+// Only exists while a method is in SSA form, so it is never turned into assembly
+public class PhiStmt extends LIRStatement {
+	// The variable the phi merges (not versioned)
+	private Name variable;
+	private Name dest;
+	private List<CFGBlock> preds;
+	private List<Name> args;
+	
+	public PhiStmt(Name variable, List<CFGBlock> preds) {
+		this.variable = variable;
+		this.dest = variable;
+		this.preds = new ArrayList<CFGBlock>(preds);
+		this.args = new ArrayList<Name>();
+		for (int i = 0; i < preds.size(); i++) {
+			this.args.add(null);
+		}
+	}
+
+	public Name getVariable() {
+		return variable;
+	}
+
+	public Name getDestination() {
+		return dest;
+	}
+
+	public void setDestination(Name dest) {
+		this.dest = dest;
+	}
+
+	public List<CFGBlock> getPreds() {
+		return preds;
+	}
+
+	public List<Name> getArgs() {
+		return args;
+	}
+	
+	public void removeArg(int i) {
+		preds.remove(i);
+		args.remove(i);
+	}
+	
+	@Override
+	public String toString() {
+		String rtn = dest + " = phi(";
+		for (int i = 0; i < args.size(); i++) {
+			if (i > 0) rtn += ", ";
+			rtn += args.get(i) + ":" + preds.get(i).getIndex();
+		}
+		return rtn + ")";
+	}
+
+	@Override
+	public void generateInstructions(InstructionList out) {
+		throw new UnsupportedOperationException("Phi left in the code: " + this);
+	}
+
+
+	@Override
+	public Object clone() {
+		PhiStmt phi = new PhiStmt(this.variable, this.preds);
+		phi.dest = this.dest;
+		for (int i = 0; i < args.size(); i++) {
+			phi.args.set(i, args.get(i));
+		}
+		return phi;
+	}
+}
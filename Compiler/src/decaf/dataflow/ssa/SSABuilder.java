@@ -0,0 +1,238 @@
+package decaf.dataflow.ssa;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.LabelStmt;
+import decaf.codegen.flatir.Name;
+import decaf.dataflow.cfg.CFGBlock;
+import decaf.dataflow.cfg.DominatorTree;
+import decaf.dataflow.cfg.MethodIR;
+
+// Puts a method in SSA form (Cytron et al.)
+// Phis are placed on the iterated dominance frontier of the blocks defining a variable,
+// only for variables which are used in some block before being defined there (semi-pruned
+// SSA, the other variables never live across blocks). Then the variables are renamed in
+// a walk of the dominator tree, every definition gets a new SSAName and every use the
+// SSAName of the definition which reaches it
+// Blocks which can't be reached from the entry are left as they are
+public class SSABuilder {
+	private MethodIR methodIR;
+	private DominatorTree domTree;
+	// Phis of each block, in the order they were inserted
+	private IdentityHashMap<CFGBlock, List<PhiStmt>> phis;
+	// One Name for every variable, so Names which are equal map to the same one
+	private HashMap<Name, Name> variables;
+	// Variable -> versions currently in scope, the last one is the reaching definition
+	private HashMap<Name, List<Integer>> stacks;
+	private HashMap<Name, Integer> counters;
+	
+	public SSABuilder(MethodIR methodIR) {
+		this.methodIR = methodIR;
+		this.phis = new IdentityHashMap<CFGBlock, List<PhiStmt>>();
+		this.variables = new HashMap<Name, Name>();
+		this.stacks = new HashMap<Name, List<Integer>>();
+		this.counters = new HashMap<Name, Integer>();
+	}
+	
+	public void build() {
+		this.domTree = methodIR.getDominatorTree();
+		if (domTree.getEntry() == null) return;
+		
+		placePhis();
+		rename();
+	}
+	
+	private Name getVariable(Name name) {
+		Name var = variables.get(name);
+		if (var == null) {
+			variables.put(name, name);
+			var = name;
+		}
+		return var;
+	}
+	
+	private void placePhis() {
+		// Variables used before they are defined in some block, in the order they are found
+		List<Name> exposed = new ArrayList<Name>();
+		HashSet<Name> exposedSet = new HashSet<Name>();
+		HashMap<Name, List<CFGBlock>> defBlocks = new HashMap<Name, List<CFGBlock>>();
+		
+		for (CFGBlock block: domTree.getReversePostOrder()) {
+			HashSet<Name> killed = new HashSet<Name>();
+			for (LIRStatement stmt: block.getStatements()) {
+				for (Name use: SSAStatements.getUses(stmt)) {
+					if (SSAStatements.isVariable(use) && !killed.contains(use) && !exposedSet.contains(use)) {
+						exposedSet.add(use);
+						exposed.add(getVariable(use));
+					}
+				}
+				Name def = SSAStatements.getDef(stmt);
+				if (SSAStatements.isVariable(def)) {
+					Name var = getVariable(def);
+					killed.add(var);
+					List<CFGBlock> blocks = defBlocks.get(var);
+					if (blocks == null) {
+						blocks = new ArrayList<CFGBlock>();
+						defBlocks.put(var, blocks);
+					}
+					if (blocks.isEmpty() || blocks.get(blocks.size() - 1) != block) {
+						blocks.add(block);
+					}
+				}
+			}
+		}
+		
+		for (Name var: exposed) {
+			List<CFGBlock> defs = defBlocks.get(var);
+			if (defs == null) continue;
+			
+			IdentityHashMap<CFGBlock, Boolean> hasPhi = new IdentityHashMap<CFGBlock, Boolean>();
+			IdentityHashMap<CFGBlock, Boolean> onWorklist = new IdentityHashMap<CFGBlock, Boolean>();
+			List<CFGBlock> worklist = new ArrayList<CFGBlock>(defs);
+			for (CFGBlock block: defs) {
+				onWorklist.put(block, true);
+			}
+			
+			while (!worklist.isEmpty()) {
+				CFGBlock block = worklist.remove(worklist.size() - 1);
+				for (CFGBlock frontier: domTree.getDominanceFrontier(block)) {
+					if (hasPhi.containsKey(frontier)) continue;
+					
+					hasPhi.put(frontier, true);
+					getPhis(frontier).add(new PhiStmt(var, frontier.getPredecessors()));
+					if (!onWorklist.containsKey(frontier)) {
+						onWorklist.put(frontier, true);
+						worklist.add(frontier);
+					}
+				}
+			}
+		}
+		
+		// The phis go right after the labels the block starts with
+		for (CFGBlock block: phis.keySet()) {
+			List<LIRStatement> stmts = block.getStatements();
+			int i = 0;
+			while (i < stmts.size() && stmts.get(i).getClass().equals(LabelStmt.class)) {
+				i++;
+			}
+			stmts.addAll(i, phis.get(block));
+		}
+	}
+	
+	private List<PhiStmt> getPhis(CFGBlock block) {
+		List<PhiStmt> blockPhis = phis.get(block);
+		if (blockPhis == null) {
+			blockPhis = new ArrayList<PhiStmt>();
+			phis.put(block, blockPhis);
+		}
+		return blockPhis;
+	}
+	
+	private int currentVersion(Name var) {
+		List<Integer> stack = stacks.get(var);
+		if (stack == null || stack.isEmpty()) return 0;
+		
+		return stack.get(stack.size() - 1);
+	}
+	
+	private int newVersion(Name var) {
+		Integer counter = counters.get(var);
+		int version = (counter == null) ? 1 : counter + 1;
+		counters.put(var, version);
+		
+		List<Integer> stack = stacks.get(var);
+		if (stack == null) {
+			stack = new ArrayList<Integer>();
+			stacks.put(var, stack);
+		}
+		stack.add(version);
+		
+		return version;
+	}
+	
+	// Iterative preorder walk of the dominator tree, the versions a block pushed are
+	// popped when the walk leaves it
+	private void rename() {
+		List<CFGBlock> stack = new ArrayList<CFGBlock>();
+		List<Integer> nextChild = new ArrayList<Integer>();
+		List<List<Name>> pushed = new ArrayList<List<Name>>();
+		
+		stack.add(domTree.getEntry());
+		nextChild.add(0);
+		pushed.add(renameBlock(domTree.getEntry()));
+		while (!stack.isEmpty()) {
+			int top = stack.size() - 1;
+			CFGBlock block = stack.get(top);
+			int i = nextChild.get(top);
+			List<CFGBlock> kids = domTree.getChildren(block);
+			if (i < kids.size()) {
+				nextChild.set(top, i + 1);
+				stack.add(kids.get(i));
+				nextChild.add(0);
+				pushed.add(renameBlock(kids.get(i)));
+			} else {
+				for (Name var: pushed.get(top)) {
+					List<Integer> versions = stacks.get(var);
+					versions.remove(versions.size() - 1);
+				}
+				stack.remove(top);
+				nextChild.remove(top);
+				pushed.remove(top);
+			}
+		}
+	}
+	
+	// Returns the variables the block defined
+	private List<Name> renameBlock(CFGBlock block) {
+		List<Name> defined = new ArrayList<Name>();
+		NameMapper renamer = new NameMapper() {
+			@Override
+			public Name map(Name name) {
+				if (!SSAStatements.isVariable(name)) return name;
+				
+				return new SSAName(name, currentVersion(getVariable(name)));
+			}
+		};
+		
+		for (LIRStatement stmt: block.getStatements()) {
+			if (!stmt.getClass().equals(PhiStmt.class)) {
+				SSAStatements.mapUses(stmt, renamer);
+			}
+			
+			Name def = SSAStatements.getDef(stmt);
+			if (SSAStatements.isVariable(def)) {
+				Name var = getVariable(def);
+				SSAStatements.setDef(stmt, new SSAName(def, newVersion(var)));
+				defined.add(var);
+			}
+		}
+		
+		// Fill in the phi args for the edges out of the block
+		List<CFGBlock> done = new ArrayList<CFGBlock>();
+		for (CFGBlock succ: block.getSuccessors()) {
+			if (done.contains(succ)) continue;
+			done.add(succ);
+			
+			List<PhiStmt> succPhis = phis.get(succ);
+			if (succPhis == null) continue;
+			for (PhiStmt phi: succPhis) {
+				for (int i = 0; i < phi.getPreds().size(); i++) {
+					if (phi.getPreds().get(i) == block) {
+						phi.getArgs().set(i, new SSAName(phi.getVariable(), currentVersion(phi.getVariable())));
+					}
+				}
+			}
+		}
+		
+		return defined;
+	}
+	
+	public IdentityHashMap<CFGBlock, List<PhiStmt>> getPhis() {
+		return phis;
+	}
+}
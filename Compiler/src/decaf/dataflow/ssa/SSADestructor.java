@@ -0,0 +1,150 @@
+package decaf.dataflow.ssa;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import decaf.CompilationContext;
+import decaf.codegen.flatir.CmpStmt;
+import decaf.codegen.flatir.JumpStmt;
+import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.LabelStmt;
+import decaf.codegen.flatir.Name;
+import decaf.codegen.flatir.QuadrupletOp;
+import decaf.codegen.flatir.QuadrupletStmt;
+import decaf.dataflow.cfg.CFGBlock;
+import decaf.dataflow.cfg.IndexedCFG;
+import decaf.dataflow.cfg.MethodIR;
+
+// Takes a method out of SSA form
+// Every version of a variable goes back to the variable itself, so a phi arg which is a
+// version of the phi's own variable needs no copy (the versions are coalesced). Any other
+// arg becomes a copy at the end of the predecessor, or on a new block on the edge if the
+// predecessor has other successors
+// The copies are done one after the other, not in parallel. That is only right while the
+// versions of a variable never live at the same time, so a pass working on the SSA form
+// may replace uses with constants or drop them, but must not move a version past another
+// version of the same variable or put other variables into phis
+public class SSADestructor {
+	private MethodIR methodIR;
+	private IndexedCFG cfg;
+	private IdentityHashMap<CFGBlock, List<PhiStmt>> phis;
+	
+	public SSADestructor(MethodIR methodIR, IndexedCFG cfg, IdentityHashMap<CFGBlock, List<PhiStmt>> phis) {
+		this.methodIR = methodIR;
+		this.cfg = cfg;
+		this.phis = phis;
+	}
+	
+	// Returns true if copies had to be added
+	public boolean destruct() {
+		// Pred -> successor -> copies on that edge
+		IdentityHashMap<CFGBlock, IdentityHashMap<CFGBlock, List<LIRStatement>>> copies = 
+			new IdentityHashMap<CFGBlock, IdentityHashMap<CFGBlock, List<LIRStatement>>>();
+		List<CFGBlock> preds = new ArrayList<CFGBlock>();
+		
+		for (CFGBlock block: phis.keySet()) {
+			for (PhiStmt phi: phis.get(block)) {
+				for (int i = 0; i < phi.getArgs().size(); i++) {
+					Name arg = phi.getArgs().get(i);
+					CFGBlock pred = phi.getPreds().get(i);
+					// Unreachable predecessor, or coalesced with the variable
+					if (arg == null) continue;
+					if (arg.getClass().equals(SSAName.class) && ((SSAName) arg).getName().equals(phi.getVariable())) continue;
+					
+					IdentityHashMap<CFGBlock, List<LIRStatement>> edges = copies.get(pred);
+					if (edges == null) {
+						edges = new IdentityHashMap<CFGBlock, List<LIRStatement>>();
+						copies.put(pred, edges);
+						preds.add(pred);
+					}
+					List<LIRStatement> edgeCopies = edges.get(block);
+					if (edgeCopies == null) {
+						edgeCopies = new ArrayList<LIRStatement>();
+						edges.put(block, edgeCopies);
+					}
+					edgeCopies.add(new QuadrupletStmt(QuadrupletOp.MOVE, phi.getVariable(), arg, null));
+				}
+			}
+			block.getStatements().removeAll(phis.get(block));
+		}
+		
+		for (CFGBlock pred: preds) {
+			IdentityHashMap<CFGBlock, List<LIRStatement>> edges = copies.get(pred);
+			List<CFGBlock> succs = distinct(pred.getSuccessors());
+			
+			for (CFGBlock succ: succs) {
+				List<LIRStatement> edgeCopies = edges.get(succ);
+				if (edgeCopies == null) continue;
+				
+				if (succs.size() == 1) {
+					pred.getStatements().addAll(getCopyPosition(pred), edgeCopies);
+				}
+				else {
+					LabelStmt label = new LabelStmt(methodIR.getId() + ".ssa." + CompilationContext.get().nextEdgeId() + ".edge");
+					CFGBlock edgeBlock = cfg.splitEdge(pred, succ, label);
+					if (edgeBlock == null) {
+						throw new IllegalStateException("Can't split the edge " + pred.getIndex() + " -> " + succ.getIndex());
+					}
+					edgeBlock.getStatements().addAll(edgeCopies);
+				}
+				pred.markChanged();
+			}
+		}
+		
+		unwrapAll();
+		
+		return !preds.isEmpty();
+	}
+	
+	// The copies go before the jump ending the block, and before the cmp of a conditional jump
+	private int getCopyPosition(CFGBlock block) {
+		List<LIRStatement> stmts = block.getStatements();
+		int i = stmts.size();
+		if (i > 0 && stmts.get(i - 1).getClass().equals(JumpStmt.class)) {
+			i--;
+			if (i > 0 && stmts.get(i - 1).getClass().equals(CmpStmt.class)) {
+				i--;
+			}
+		}
+		return i;
+	}
+	
+	private List<CFGBlock> distinct(List<CFGBlock> blocks) {
+		List<CFGBlock> rtn = new ArrayList<CFGBlock>();
+		for (CFGBlock block: blocks) {
+			boolean found = false;
+			for (CFGBlock b: rtn) {
+				if (b == block) found = true;
+			}
+			if (!found) rtn.add(block);
+		}
+		return rtn;
+	}
+	
+	private void unwrapAll() {
+		NameMapper unwrapper = new NameMapper() {
+			@Override
+			public Name map(Name name) {
+				return unwrap(name);
+			}
+		};
+		
+		for (CFGBlock block: methodIR.getCfgBlocks()) {
+			for (LIRStatement stmt: block.getStatements()) {
+				SSAStatements.mapUses(stmt, unwrapper);
+				Name def = SSAStatements.getDef(stmt);
+				if (def != null && def.getClass().equals(SSAName.class)) {
+					SSAStatements.setDef(stmt, unwrap(def));
+				}
+			}
+		}
+	}
+	
+	private static Name unwrap(Name name) {
+		if (name != null && name.getClass().equals(SSAName.class)) {
+			return ((SSAName) name).getName();
+		}
+		return name;
+	}
+}
@@ -0,0 +1,60 @@
+package decaf.dataflow.ssa;
+
+import decaf.codegen.flatir.Name;
+
+// A version of a local variable (VarName, TempName or DynamicVarName) while the method
+// is in SSA form. Version 0 is the value the variable has when the method is entered
+// The wrapped Name is the instance the statement had before renaming, it is put back
+// when the method leaves SSA form
+public class SSAName extends Name {
+	private Name name;
+	private int version;
+	
+	public SSAName(Name name, int version) {
+		this.name = name;
+		this.version = version;
+	}
+
+	public Name getName() {
+		return name;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+	
+	@Override
+	public String toString() {
+		return name + "_" + version;
+	}
+	
+	public String hashString() {
+		return name.hashString() + "_" + version;
+	}
+	
+	@Override
+	public int hashCode() {
+		return name.hashCode() * 31 + version;
+	}
+	
+	@Override 
+	public boolean equals(Object o) {
+		if (o == null) return false;
+		if (this == o) return true;
+		if (!o.getClass().equals(SSAName.class)) return false;
+		
+		SSAName sName = (SSAName) o;
+		
+		return this.version == sName.version && this.name.equals(sName.name);
+	}
+
+	@Override
+	public boolean isArray() {
+		return false;
+	}
+
+	@Override
+	public Object clone() {
+		return new SSAName((Name) this.name.clone(), this.version);
+	}
+}
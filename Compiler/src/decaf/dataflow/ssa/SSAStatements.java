@@ -0,0 +1,141 @@
+package decaf.dataflow.ssa;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import decaf.codegen.flatir.ArrayName;
+import decaf.codegen.flatir.CmpStmt;
+import decaf.codegen.flatir.DynamicVarName;
+import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.Name;
+import decaf.codegen.flatir.PopStmt;
+import decaf.codegen.flatir.PushStmt;
+import decaf.codegen.flatir.QuadrupletStmt;
+import decaf.codegen.flatir.TempName;
+import decaf.codegen.flatir.VarName;
+
+// Where the statements define and use Names, for the SSA passes
+// Globals and arrays live in memory (and calls can change them), so only the locals,
+// params and temporaries are variables, the rest is left alone
+public class SSAStatements {
+	public static boolean isVariable(Name name) {
+		if (name == null) return false;
+		if (name.getClass().equals(SSAName.class)) return true;
+		if (name.getClass().equals(VarName.class)) {
+			VarName vName = (VarName) name;
+			return !vName.isGlobal() && !vName.isString();
+		}
+		
+		return name.getClass().equals(TempName.class) || name.getClass().equals(DynamicVarName.class);
+	}
+	
+	// The Name the statement assigns, null if it assigns nothing
+	public static Name getDef(LIRStatement stmt) {
+		if (stmt.getClass().equals(QuadrupletStmt.class)) {
+			return ((QuadrupletStmt) stmt).getDestination();
+		}
+		else if (stmt.getClass().equals(PopStmt.class)) {
+			return ((PopStmt) stmt).getName();
+		}
+		else if (stmt.getClass().equals(PhiStmt.class)) {
+			return ((PhiStmt) stmt).getDestination();
+		}
+		
+		return null;
+	}
+	
+	public static void setDef(LIRStatement stmt, Name name) {
+		if (stmt.getClass().equals(QuadrupletStmt.class)) {
+			((QuadrupletStmt) stmt).setDestination(name);
+		}
+		else if (stmt.getClass().equals(PopStmt.class)) {
+			((PopStmt) stmt).setName(name);
+		}
+		else if (stmt.getClass().equals(PhiStmt.class)) {
+			((PhiStmt) stmt).setDestination(name);
+		}
+	}
+	
+	// Replaces every use of the statement (including array indices) with what the mapper
+	// gives for it. Phi args are not touched, their values belong to the predecessors
+	// Returns true if any use changed
+	public static boolean mapUses(LIRStatement stmt, NameMapper mapper) {
+		boolean changed = false;
+		
+		if (stmt.getClass().equals(QuadrupletStmt.class)) {
+			QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
+			Name arg1 = mapUse(qStmt.getArg1(), mapper);
+			Name arg2 = mapUse(qStmt.getArg2(), mapper);
+			changed |= (arg1 != qStmt.getArg1()) || (arg2 != qStmt.getArg2());
+			qStmt.setArg1(arg1);
+			qStmt.setArg2(arg2);
+			
+			// The index of an array destination is a use
+			if (qStmt.getDestination() != null && qStmt.getDestination().isArray()) {
+				Name dest = mapIndex((ArrayName) qStmt.getDestination(), mapper);
+				changed |= (dest != qStmt.getDestination());
+				qStmt.setDestination(dest);
+			}
+		}
+		else if (stmt.getClass().equals(CmpStmt.class)) {
+			CmpStmt cStmt = (CmpStmt) stmt;
+			Name arg1 = mapUse(cStmt.getArg1(), mapper);
+			Name arg2 = mapUse(cStmt.getArg2(), mapper);
+			changed |= (arg1 != cStmt.getArg1()) || (arg2 != cStmt.getArg2());
+			cStmt.setArg1(arg1);
+			cStmt.setArg2(arg2);
+		}
+		else if (stmt.getClass().equals(PushStmt.class)) {
+			PushStmt pStmt = (PushStmt) stmt;
+			Name name = mapUse(pStmt.getName(), mapper);
+			changed |= (name != pStmt.getName());
+			pStmt.setName(name);
+		}
+		else if (stmt.getClass().equals(PopStmt.class)) {
+			PopStmt pStmt = (PopStmt) stmt;
+			if (pStmt.getName() != null && pStmt.getName().isArray()) {
+				Name name = mapIndex((ArrayName) pStmt.getName(), mapper);
+				changed |= (name != pStmt.getName());
+				pStmt.setName(name);
+			}
+		}
+		
+		return changed;
+	}
+	
+	private static Name mapUse(Name name, NameMapper mapper) {
+		if (name == null) return null;
+		if (name.isArray()) return mapIndex((ArrayName) name, mapper);
+		
+		return mapper.map(name);
+	}
+	
+	// Array Names can be shared between statements, so a new one is made instead of
+	// changing the index in place
+	private static Name mapIndex(ArrayName name, NameMapper mapper) {
+		Name index = mapUse(name.getIndex(), mapper);
+		if (index == name.getIndex()) return name;
+		
+		return new ArrayName(name.getId(), index);
+	}
+	
+	public static List<Name> getUses(LIRStatement stmt) {
+		final List<Name> uses = new ArrayList<Name>();
+		if (stmt.getClass().equals(PhiStmt.class)) {
+			for (Name arg: ((PhiStmt) stmt).getArgs()) {
+				if (arg != null) uses.add(arg);
+			}
+			return uses;
+		}
+		
+		mapUses(stmt, new NameMapper() {
+			@Override
+			public Name map(Name name) {
+				uses.add(name);
+				return name;
+			}
+		});
+		
+		return uses;
+	}
+}
@@ -2,8 +2,8 @@ package decaf.ir.semcheck;
 
 import java.io.PrintStream;
 import java.util.List;
-import java6035.tools.CLI.CLI;
 
+import decaf.CompilationContext;
 import decaf.ir.ast.ClassDecl;
 import decaf.ir.ast.MethodDecl;
 import decaf.test.PrettyPrintVisitor;
@@ -11,7 +11,7 @@ import decaf.test.Error;
 
 public class SemanticChecker {
 
-	public static boolean performSemanticChecks(ClassDecl cd, PrintStream out, boolean optimize) {	
+	public static boolean performSemanticChecks(CompilationContext context, ClassDecl cd, PrintStream out, boolean optimize) {	
 		// Check integer overflow (must do before symbol table generation)
 		IntOverflowCheckVisitor ibv = new IntOverflowCheckVisitor();
 		cd.accept(ibv);
@@ -60,7 +60,7 @@ public class SemanticChecker {
 				mainMethodError != null);
 		
 		// Print errors if -debug on
-		if (CLI.debug || hasErrors) {
+		if (context.isDebug() || hasErrors) {
 			// Print AST
 			out.println("AST:");
 			PrettyPrintVisitor pv = new PrettyPrintVisitor();
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.ArrayName;
 import decaf.codegen.flatir.CallStmt;
 import decaf.codegen.flatir.CmpStmt;
@@ -18,7 +19,6 @@ import decaf.codegen.flatir.PopStmt;
 import decaf.codegen.flatir.PushStmt;
 import decaf.codegen.flatir.QuadrupletStmt;
 import decaf.codegen.flatir.VarName;
-import decaf.codegen.flattener.ExpressionFlattenerVisitor;
 import decaf.codegen.flattener.ProgramFlattener;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
@@ -48,7 +48,7 @@ public class NaiveLoadAdder {
 		this.df.analyze();
 
 		for (String methodName : this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			processMethod(methodName);
 			this.mMap.get(methodName).regenerateStmts();
@@ -139,7 +139,7 @@ public class NaiveLoadAdder {
 				}
 			}
 			else if (stmt.getClass().equals(CallStmt.class)) {
-				if (((CallStmt)stmt).getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+				if (((CallStmt)stmt).getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 				invalidateFunctionCall();
 			}
 		}
@@ -205,7 +205,9 @@ public class NaiveLoadAdder {
 	}
 	
 	private boolean isValidName(Name name) {
-		System.out.println("CHECK NAME!");
+		if (CompilationContext.get().isDebug()) {
+			System.out.println("CHECK NAME!");
+		}
 		
 		if (name == null) return false;
 		
@@ -219,7 +221,9 @@ public class NaiveLoadAdder {
 			if (var.isString()) return false;
 			
 			if (var.isStackParam() && var.getBlockId() == -2) {
-				System.out.println("STACK PARAM!");
+				if (CompilationContext.get().isDebug()) {
+					System.out.println("STACK PARAM!");
+				}
 				return true;
 			}
 		}
@@ -343,7 +347,7 @@ public class NaiveLoadAdder {
 			stmts.add(block.getStatements().get(i));
 		}
 		
-		ExpressionFlattenerVisitor.MAXBOUNDCHECKS++;
+		CompilationContext.get().nextBoundCheckId();
 		
 		return stmts;
 	}
@@ -383,14 +387,14 @@ public class NaiveLoadAdder {
 	}
 	
 	private String getArrayBoundBegin(String name, String methodName) {
-		return methodName + ".array." + name + "." + ExpressionFlattenerVisitor.MAXBOUNDCHECKS + ".begin";
+		return methodName + ".array." + name + "." + CompilationContext.get().getMaxBoundChecks() + ".begin";
 	}
 	
 	private String getArrayBoundFail(String name, String methodName) {
-		return methodName + ".array." + name + "." + ExpressionFlattenerVisitor.MAXBOUNDCHECKS + ".fail";
+		return methodName + ".array." + name + "." + CompilationContext.get().getMaxBoundChecks() + ".fail";
 	}
 	
 	private String getArrayBoundPass(String name, String methodName) {
-		return methodName + ".array." + name + "." + ExpressionFlattenerVisitor.MAXBOUNDCHECKS + ".pass";
+		return methodName + ".array." + name + "." + CompilationContext.get().getMaxBoundChecks() + ".pass";
 	}
 }
@@ -56,7 +56,7 @@ public class NaiveLoadOptimizer {
 		this.df.analyze();
 		
 		for (String methodName : this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			optimizeMethod(methodName);
 			
@@ -230,7 +230,7 @@ public class NaiveLoadOptimizer {
 				}
 			}
 			else if (stmt.getClass().equals(CallStmt.class)) {
-				if (((CallStmt)stmt).getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+				if (((CallStmt)stmt).getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 				invalidateFunctionCall();
 			}
 		}
@@ -38,7 +38,7 @@ public class NaiveStoreAdder {
 		this.lgs.analyze();
 
 		for (String methodName : this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			processMethod(methodName);
 			this.mMap.get(methodName).regenerateStmts();
@@ -104,7 +104,7 @@ public class NaiveStoreAdder {
 				killLocalGlobals(qStmt);
 			}
 			else if (stmt.getClass().equals(CallStmt.class)) {
-				if (((CallStmt)stmt).getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+				if (((CallStmt)stmt).getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 				this.globalsSavedInBlock.clear();
 				this.seenCall = true;
 			}
@@ -3,8 +3,10 @@ package decaf.memory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.ArrayName;
 import decaf.codegen.flatir.CallStmt;
 import decaf.codegen.flatir.ConstantName;
@@ -52,7 +54,7 @@ public class NaiveStoreOptimizer {
 		this.lgs.analyze();
 		
 		for (String methodName : this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			optimizeMethod(methodName);
 			
@@ -110,6 +112,7 @@ public class NaiveStoreOptimizer {
 		
 		while (!isOptimized) {
 			CFGBlock next = getChildForEndBlock(prev, depth);
+			if (next == null) break; // No loop to move it out of
 			prevStmts = copyStmts(prev);
 			nextStmts = copyStmts(next);
 			
@@ -178,7 +181,7 @@ public class NaiveStoreOptimizer {
 				}
 			} 
 			else if (stmt.getClass().equals(CallStmt.class)) {
-				if (((CallStmt)stmt).getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+				if (((CallStmt)stmt).getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 				this.globalsInBlock.clear();
 				this.seenCall = true;
 			}
@@ -188,7 +191,9 @@ public class NaiveStoreOptimizer {
 	}
 	
 	private boolean checkName(Name name, CFGBlock block) {
-		System.out.println("CHECKING: " + name);
+		if (CompilationContext.get().isDebug()) {
+			System.out.println("CHECKING: " + name);
+		}
 		if (name.getClass().equals(VarName.class)) {
 			VarName var = (VarName)name;
 			if (var.isString()) return true;
@@ -217,16 +222,22 @@ public class NaiveStoreOptimizer {
 		
 		BlockDataFlowState state = this.lgs.getCfgBlocksState().get(block);
 		if (!state.getOut().get(i)) {
-			System.out.println("FALSE: " + name);
+			if (CompilationContext.get().isDebug()) {
+				System.out.println("FALSE: " + name);
+			}
 			return false;
 		}
 
-		System.out.println("TRUE: " + name);
+		if (CompilationContext.get().isDebug()) {
+			System.out.println("TRUE: " + name);
+		}
 		return true;
 	}
 	
 	private void killGlobals(QuadrupletStmt qStmt, CFGBlock block) {
-		System.out.println("KILL: " + qStmt);
+		if (CompilationContext.get().isDebug()) {
+			System.out.println("KILL: " + qStmt);
+		}
 		HashSet<Name> remove = new HashSet<Name>();
 		for (Name name: this.lgs.getUniqueGlobals().get(block.getMethodName())) {
 			boolean resetName = false;
@@ -257,14 +268,18 @@ public class NaiveStoreOptimizer {
 			}
 			
 			if (resetName) {
-				System.out.println("KILLING! : " + name);
+				if (CompilationContext.get().isDebug()) {
+					System.out.println("KILLING! : " + name);
+				}
 				List<Name> uniqueGlobals = this.lgs.getUniqueGlobals().get(block.getMethodName());
 				int i = uniqueGlobals.indexOf(name);
 				this.lgs.getCfgBlocksState().get(block).getOut().set(i, false);
 				remove.add(name);
 			}
 		}
-		System.out.println("KILL DONE");
+		if (CompilationContext.get().isDebug()) {
+			System.out.println("KILL DONE");
+		}
 		this.globalsInBlock.removeAll(remove);
 	}
 
@@ -303,24 +318,32 @@ public class NaiveStoreOptimizer {
 		return newStmts;
 	}
 	
+	// The block after the for loop the block is in, null if there is no for test block
+	// with its two successors before it (the loop test or its branch can be gone)
 	private CFGBlock getChildForEndBlock(CFGBlock block, int depth) {
 		CFGBlock succ = block;
+		IdentityHashMap<CFGBlock, Boolean> seen = new IdentityHashMap<CFGBlock, Boolean>();
 		
-		while (true) {
-			LIRStatement stmt = succ.getStatements().get(0);
-			
-			if (stmt.getClass().equals(LabelStmt.class)) {
-				LabelStmt lStmt = (LabelStmt) stmt;
-				if (lStmt.getLabelString().matches(ForTestLabelRegex)) {
-					succ = succ.getSuccessors().get(1);
-					break;
+		while (!seen.containsKey(succ)) {
+			seen.put(succ, true);
+			if (!succ.getStatements().isEmpty()) {
+				LIRStatement stmt = succ.getStatements().get(0);
+				
+				if (stmt.getClass().equals(LabelStmt.class)) {
+					LabelStmt lStmt = (LabelStmt) stmt;
+					if (lStmt.getLabelString().matches(ForTestLabelRegex)) {
+						if (succ.getSuccessors().size() < 2) return null;
+						
+						return succ.getSuccessors().get(1);
+					}
 				}
 			}
 			
+			if (succ.getPredecessors().isEmpty()) return null;
 			succ = succ.getPredecessors().get(0);
 		}
 		
-		return succ;
+		return null;
 	}
 
 	private CFGBlock getBlockForStmt(StoreStmt lStmt, String methodName) {
@@ -43,7 +43,7 @@ public class ReachingGlobalDefinitions {
 		this.uniqueGlobals.clear();
 		
 		for (String methodName: this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			initialize(methodName);
 			runWorkList(methodName);
@@ -213,7 +213,7 @@ public class ReachingGlobalDefinitions {
 	}
 	
 	private void updateKillGenSet(String methodName, CallStmt stmt, BlockDataFlowState bFlow) {
-		if (stmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) return;
+		if (stmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) return;
 		
 		// Kill all globals!
 		for (int i = 0; i < bFlow.getIn().size(); i++) {
@@ -39,7 +39,7 @@ public class ReachingLoads {
 		this.globalLoads.clear();
 		
 		for (String methodName: this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			initialize(methodName);
 			runWorkList(methodName);
@@ -173,7 +173,7 @@ public class ReachingLoads {
 	}
 	
 	private void updateKillGenSet(String methodName, CallStmt stmt, BlockDataFlowState bFlow) {
-		if (stmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) return;
+		if (stmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) return;
 		
 		// Kill all loads!
 		for (int i = 0; i < this.globalLoads.get(methodName).size(); i++) {
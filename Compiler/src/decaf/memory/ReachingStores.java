@@ -38,7 +38,7 @@ public class ReachingStores {
 		this.globalStores.clear();
 		
 		for (String methodName: this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			initialize(methodName);
 			runWorkList(methodName);
@@ -190,7 +190,7 @@ public class ReachingStores {
 	}
 	
 	private void updateKillGenSet(String methodName, CallStmt stmt, BlockDataFlowState bFlow) {
-		if (stmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) return;
+		if (stmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) return;
 		
 		// Kill all stores!
 		for (int i = 0; i < bFlow.getIn().size(); i++) {
@@ -36,7 +36,7 @@ public class BoundCheckCSEOptimizer {
 		this.bc.analyze();
 		
 		for (String methodName: this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			optimize(methodName);
 			
@@ -116,7 +116,7 @@ public class BoundCheckCSEOptimizer {
 	}
 	
 	private void invalidateFunctionCall(CFGBlock block, CallStmt stmt) {
-		if (stmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) return;
+		if (stmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) return;
 		
 		BlockDataFlowState bFlow = this.bc.getCfgBlocksState().get(block);
 		String methodName = block.getMethodName();
@@ -36,7 +36,7 @@ public class BoundCheckDCOptimizer {
 	
 	public void performBoundCheckDC() {
 		for (String s: this.mMap.keySet()) {
-			if (s.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			performDC(this.mMap.get(s));
 			this.mMap.get(s).regenerateStmts();
@@ -93,7 +93,7 @@ public class BoundCheckDCOptimizer {
 			}
 			else if (stmt.getClass().equals(CallStmt.class)) {
 				CallStmt cStmt = (CallStmt) stmt;
-				if (!cStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) {
+				if (!cStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) {
 					this.uncheckedArrayNames.clear(); // Invalidate all bound checks
 				}
 			}
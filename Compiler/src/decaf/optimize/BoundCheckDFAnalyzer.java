@@ -85,7 +85,7 @@ public class BoundCheckDFAnalyzer {
 		this.indicesMap.clear();
 		
 		for (String methodName: this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			initialize(methodName);
 			runWorkList(methodName);
@@ -290,7 +290,7 @@ public class BoundCheckDFAnalyzer {
 	}
 	
 	private void updateKillGenSet(String methodName, CallStmt stmt, BlockDataFlowState bFlow) {
-		if (stmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) return;
+		if (stmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) return;
 		
 		// Kill bc for globals
 		for (int i = 0; i < this.indicesMap.get(methodName).size(); i++) {
@@ -1,14 +1,13 @@
 package decaf.optimize;
 
 import java.util.HashMap;
-import java6035.tools.CLI.CLI;
 
 import decaf.codegen.flattener.ProgramFlattener;
-import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.CFGBuilder;
 import decaf.dataflow.cfg.MethodIR;
 import decaf.dataflow.global.LoopInvariantOptimizer;
 import decaf.dataflow.global.LoopStrengthReductionOptimizer;
+import decaf.profile.CompileProfiler;
 
 public class PostDataFlowOptimizer {
 	private ArrayAccessOptimizer arrOpt;
@@ -18,12 +17,10 @@ public class PostDataFlowOptimizer {
 	private CFGBuilder cb;
 	private LoopInvariantOptimizer loopInvariants;
 	private LoopStrengthReductionOptimizer loopStrRed;
-	private HashMap<CFGBlock, String> blockState;
 	
 	public PostDataFlowOptimizer(ProgramFlattener pf, CFGBuilder cb) {
 		this.pf = pf;
 		this.cb = cb;
-		this.blockState = new HashMap<CFGBlock, String>();
 		
 		init();
 	}
@@ -37,7 +34,6 @@ public class PostDataFlowOptimizer {
 	public void optimize() {
 		int i = 0;
 		while (i < 25) {
-			updateBlockState();			
 //			System.out.println("BEFORE LOOP STRENGTH REDUCTION");
 //			this.cb.printCFG(System.out);
 //			
@@ -45,66 +41,47 @@ public class PostDataFlowOptimizer {
 //			loopStrRed.performStrengthReductionOptimization();
 //			cb.generateCFGs();
 			
-//			System.out.println("BEFORE LOOP INVARIANTS");
-			this.cb.printCFG(System.out);
+			if (pf.getContext().isDebug()) {
+				System.out.println("BEFORE LOOP INVARIANTS");
+				this.cb.printCFG(System.out);
+			}
 			
+			CompileProfiler.get().begin("loop invariants");
 			this.loopInvariants = new LoopInvariantOptimizer(this.mMap);
-			loopInvariants.performLoopInvariantOptimization();
-			cb.generateCFGs();
+			boolean changed = loopInvariants.performLoopInvariantOptimization();
+			// Only the methods with hoisted statements need new CFGs
+			for (String methodName: loopInvariants.getChangedMethods()) {
+				cb.generateCFG(methodName);
+			}
+			CompileProfiler.get().end();
 			
-//			System.out.println("AFTER LOOP INVARIANTS");
-			this.cb.printCFG(System.out);
+			if (pf.getContext().isDebug()) {
+				System.out.println("AFTER LOOP INVARIANTS");
+				this.cb.printCFG(System.out);
+			}
 			
-			if (!isChanged()) {
+			// Nothing was hoisted, so another pass would find the same statements
+			if (!changed) {
 				break;
 			}
 				
 			i++;
 		}
 		
+		CompileProfiler.get().begin("array access");
 		this.arrOpt = new ArrayAccessOptimizer(this.mMap);
-		arrOpt.optimize(CLI.opts);
+		arrOpt.optimize(pf.getContext().getOpts());
+		CompileProfiler.get().end();
 		
-//		System.out.println("BEFORE SJE");
-		this.cb.printCFG(System.out);
+		if (pf.getContext().isDebug()) {
+			System.out.println("BEFORE SJE");
+			this.cb.printCFG(System.out);
+		}
 
+		CompileProfiler.get().begin("static jumps");
 		this.sje = new StaticJumpEvaluator(pf, cb);
 		sje.staticEvaluateJumps();
 		this.mMap = MethodIR.generateMethodIRs(pf, cb);
-	}
-
-	private boolean isChanged() {
-		for (String methodName: this.cb.getCfgMap().keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
-			
-			for (CFGBlock block: this.cb.getCfgMap().get(methodName)) {
-				if (!block.toString().equals(this.blockState.get(block))) {
-//					System.out.println("=========================");
-//					System.out.println("CHECKING: " + block.getMethodName() + ":" + block.getIndex() + "; " + block.hashCode());
-//					System.out.println("IS IN MAP: " + this.blockState.containsKey(block));
-//					for (CFGBlock b: this.blockState.keySet()) {
-//						System.out.println("CONTAINS: " + b.getMethodName() + ":" + b.getIndex() + "; " + b.hashCode());
-//					}
-//					System.out.println(block.toString());
-//					System.out.println("************************");
-//					System.out.println(this.blockState.get(block));
-					return true;
-				}
-			}
-		}
-		
-		return false;
-	}
-
-	private void updateBlockState() {
-		for (String methodName: this.cb.getCfgMap().keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
-			
-			for (CFGBlock block: this.cb.getCfgMap().get(methodName)) {
-//				System.out.println("ADDING: " + block.getMethodName() + ":" + block.getIndex());
-				this.blockState.put(block, block.toString());
-//				System.out.println("ADDING CHECK: " + this.blockState.containsKey(block) + "; " + block.hashCode());
-			}
-		}
+		CompileProfiler.get().end();
 	}
 }
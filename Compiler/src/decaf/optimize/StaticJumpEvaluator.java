@@ -1,7 +1,10 @@
 package decaf.optimize;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import decaf.codegen.flatir.CmpStmt;
 import decaf.codegen.flatir.ConstantName;
@@ -26,11 +29,14 @@ public class StaticJumpEvaluator {
 	private ProgramFlattener pf;
 	private CFGBuilder cb;
 	private List<CFGBlock> deadBlocks;
+	// Statements of the dead blocks, by identity
+	private Set<LIRStatement> deadStmts;
 	
 	public StaticJumpEvaluator(ProgramFlattener pf, CFGBuilder cb) {
 		this.pf = pf;
 		this.cb = cb;
 		this.deadBlocks = new ArrayList<CFGBlock>();
+		this.deadStmts = Collections.newSetFromMap(new IdentityHashMap<LIRStatement, Boolean>());
 	}
 	
 	public void staticEvaluateJumps() {
@@ -38,17 +44,19 @@ public class StaticJumpEvaluator {
 		cb.generateCFGs();
 		
 		for (String methodName: this.pf.getLirMap().keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			String prev = "";
 			String current = this.pf.getLirMap().get(methodName).toString();
 			
 			while (!prev.equals(current)) {
-				// Regen cfg
-				cb.generateCFGs();
+				// Regen cfg, only this method is changed here
+				cb.generateCFG(methodName);
 				
-				System.out.println("BEFORE COND OPTIMIZE");
-				this.cb.printCFG(System.out);
+				if (pf.getContext().isDebug()) {
+					System.out.println("BEFORE COND OPTIMIZE");
+					this.cb.printCFG(System.out);
+				}
 				
 				optimize(methodName);
 				dcBlocksAndFixLIR(methodName);
@@ -62,25 +70,32 @@ public class StaticJumpEvaluator {
 	}
 
 	private void dcBlocksAndFixLIR(String methodName) {
-		cb.generateCFGs();
+		cb.generateCFG(methodName);
 		
 		this.deadBlocks.clear();
+		this.deadStmts.clear();
 		
 
-		System.out.println("BEFORE DC CFG");
-		this.cb.printCFG(System.out);
+		if (pf.getContext().isDebug()) {
+			System.out.println("BEFORE DC CFG");
+			this.cb.printCFG(System.out);
+		}
 		
 		// Gen dead CFG block
 		getDeadCFGBlocks(methodName);
 
-		System.out.println("BEFORE DC STATEMENTS");
-		this.cb.printCFG(System.out);
+		if (pf.getContext().isDebug()) {
+			System.out.println("BEFORE DC STATEMENTS");
+			this.cb.printCFG(System.out);
+		}
 		
 		// Remove from LIR lists	
 		removeDeadStmtsFromLIR(methodName);
 		
-		System.out.println("BEFORE REDUNDANT JMPS");
-		this.cb.printCFG(System.out);
+		if (pf.getContext().isDebug()) {
+			System.out.println("BEFORE REDUNDANT JMPS");
+			this.cb.printCFG(System.out);
+		}
 		
 		// Remove redundant jumps
 		removeRedundantJumps(methodName);
@@ -276,18 +291,13 @@ public class StaticJumpEvaluator {
 			if (block.getPredecessors().size() == 0 && block.getIndex() != 0) {
 //				System.out.println(block + "\n====");
 				this.deadBlocks.add(block);
+				this.deadStmts.addAll(block.getStatements());
 			}
 		}
 	}
 	
 	private boolean isDead(LIRStatement stmt) {
-		for (CFGBlock block: this.deadBlocks) {
-			for (LIRStatement s: block.getStatements()) {
-				if (stmt == s) return true;
-			}
-		}
-		
-		return false;
+		return this.deadStmts.contains(stmt);
 	}
 
 	private void optimize(String methodName) {
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.CallStmt;
 import decaf.codegen.flatir.CmpStmt;
 import decaf.codegen.flatir.ConstantName;
@@ -39,10 +40,7 @@ public class LoopParallelizer {
 	private static String ForBodyLabelRegex = "[a-zA-z_]\\w*.for\\d+.body";
 	private static String ForEndLabelRegex = "[a-zA-z_]\\w*.for\\d+.end";
 	private static int NumThreads = 4;
-	private static int BaseBlockId = 1000;
-	private static int BaseMethodId = 1000;
 	// Minimum number of iterations to allow parallelization (if we know the number of iterations)
-	private static int BaseGlobalId = 1;
 	
 	public LoopParallelizer(HashMap<String, MethodIR> mMap, List<String> parallelLoops, ProgramFlattener pf) {
 		this.mMap = mMap;
@@ -53,17 +51,17 @@ public class LoopParallelizer {
 	public void parallelize() {
 		for (String loopId : parallelLoops) {
 			parallelizeLoop(loopId);
-			BaseBlockId++;
+			CompilationContext.get().nextBaseBlockId();
 		}
 		
 		// Set the num pthreads in main
+		int methodId = CompilationContext.get().nextBaseMethodId();
 		List<LIRStatement> pthreadCall = new ArrayList<LIRStatement>();
-		pthreadCall.add(new LabelStmt("main.mcall.set_num_threads."+BaseMethodId+".begin"));
+		pthreadCall.add(new LabelStmt("main.mcall.set_num_threads."+methodId+".begin"));
 		pthreadCall.add(new QuadrupletStmt(QuadrupletOp.MOVE, new RegisterName(Register.RDI), new ConstantName(NumThreads), null));
 		pthreadCall.add(new QuadrupletStmt(QuadrupletOp.MOVE, new RegisterName(Register.RAX), new ConstantName(0), null));
 		pthreadCall.add(new CallStmt("set_num_threads"));
-		pthreadCall.add(new LabelStmt("main.mcall.set_num_threads."+BaseMethodId+".end"));
-		BaseMethodId++;
+		pthreadCall.add(new LabelStmt("main.mcall.set_num_threads."+methodId+".end"));
 		List<LIRStatement> mainMethodStmts = mMap.get("main").getStatements();
 		mainMethodStmts.addAll(2, pthreadCall);
 	}
@@ -121,9 +119,9 @@ public class LoopParallelizer {
 				List<Name> invalidNames = ndt.validStmt(stmt, loopId);
 				if (invalidNames.size() != 0) {
 					for (Name in : invalidNames) {
-						localToGlobal.put(in, new VarName(".glpar"+BaseGlobalId));
-						dataStmts.add(new DataStmt(".glpar"+BaseGlobalId));
-						BaseGlobalId++;
+						int globalId = CompilationContext.get().nextBaseGlobalId();
+						localToGlobal.put(in, new VarName(".glpar"+globalId));
+						dataStmts.add(new DataStmt(".glpar"+globalId));
 					}
 				}
 			} 
@@ -141,9 +139,9 @@ public class LoopParallelizer {
 		
 		// Temporary bounds in loop method
 		VarName tempLoopMin = new VarName(".tlmin" + loopId);
-		tempLoopMin.setBlockId(BaseBlockId);
+		tempLoopMin.setBlockId(CompilationContext.get().getBaseBlockId());
 		VarName tempLoopMax = new VarName(".tlmax" + loopId);
-		tempLoopMax.setBlockId(BaseBlockId);
+		tempLoopMax.setBlockId(CompilationContext.get().getBaseBlockId());
 		
 		// Thread id parameter
 		VarName threadId = new VarName(".tid" + loopId);
@@ -152,7 +150,7 @@ public class LoopParallelizer {
 		// Add the conditional logic to determine loop boundaries based on thread id
 		List<LIRStatement> conditionalBoundaryStmts = new ArrayList<LIRStatement>();
 		VarName boundDiff = new VarName(".tldiff" + loopId);
-		boundDiff.setBlockId(BaseBlockId);
+		boundDiff.setBlockId(CompilationContext.get().getBaseBlockId());
 		QuadrupletStmt boundDiffCalc = new QuadrupletStmt(QuadrupletOp.SUB, boundDiff, globalLoopMax, globalLoopMin);
 		conditionalBoundaryStmts.add(boundDiffCalc);
 		
@@ -164,12 +162,12 @@ public class LoopParallelizer {
 		for (Name local : localToGlobal.keySet()) {
 			pthreadCall.add(new QuadrupletStmt(QuadrupletOp.MOVE, localToGlobal.get(local), local, null));
 		}
-		pthreadCall.add(new LabelStmt(loopInfo[0]+".mcall."+"create_and_run_thread."+BaseMethodId+".begin"));
+		int methodId = CompilationContext.get().nextBaseMethodId();
+		pthreadCall.add(new LabelStmt(loopInfo[0]+".mcall."+"create_and_run_thread."+methodId+".begin"));
 		pthreadCall.add(new QuadrupletStmt(QuadrupletOp.MOVE, new RegisterName(Register.RDI), new ConstantName(loopId), null));
 		pthreadCall.add(new QuadrupletStmt(QuadrupletOp.MOVE, new RegisterName(Register.RAX), new ConstantName(0), null));
 		pthreadCall.add(new CallStmt("create_and_run_threads"));
-		pthreadCall.add(new LabelStmt(loopInfo[0]+".mcall."+"create_and_run_thread."+BaseMethodId+".end"));
-		BaseMethodId++;
+		pthreadCall.add(new LabelStmt(loopInfo[0]+".mcall."+"create_and_run_thread."+methodId+".end"));
 		methodStmts.addAll(forBodyLabelIndex, pthreadCall);
 		
 		System.out.println("ABCDEF Method has end label: " + (getForLabelStmtIndexInMethod(loopId, ForEndLabelRegex) != -1));
@@ -191,7 +189,7 @@ public class LoopParallelizer {
 			if (stmt.getClass().equals(JumpStmt.class)) {
 				LabelStmt jumpLabel = ((JumpStmt)stmt).getLabel();
 				String labelStr = jumpLabel.getLabelString();
-				if (!labelStr.equals(ProgramFlattener.exceptionHandlerLabel)) {
+				if (!labelStr.equals(ProgramFlattener.getExceptionHandlerLabel())) {
 					((LabelStmt)jumpLabel).setLabel(labelStr.replaceFirst(loopInfo[0], loopId));
 				}
 			}
@@ -251,7 +249,7 @@ public class LoopParallelizer {
 		
 		// Calculate chunk size and temp loop min
 		VarName chunkSize = new VarName(".tchunk" + loopId);
-		chunkSize.setBlockId(BaseBlockId);
+		chunkSize.setBlockId(CompilationContext.get().getBaseBlockId());
 		QuadrupletStmt chunkSizeCalc = new QuadrupletStmt(QuadrupletOp.DIV, chunkSize, boundDiff, new ConstantName(NumThreads));
 		QuadrupletStmt tempLoopMinCalc = new QuadrupletStmt(QuadrupletOp.MUL, tempLoopMin, chunkSize, threadId);
 		conditionalBoundaryStmts.add(chunkSizeCalc);
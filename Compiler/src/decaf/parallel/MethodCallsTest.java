@@ -47,7 +47,7 @@ public class MethodCallsTest {
 			LIRStatement stmt = methodStmts.get(i);
 			if (stmt.getClass().equals(CallStmt.class)) {
 				String methodLabel = ((CallStmt)stmt).getMethodLabel();
-				if (methodLabel.equals(ProgramFlattener.exceptionHandlerLabel)) {
+				if (methodLabel.equals(ProgramFlattener.getExceptionHandlerLabel())) {
 					continue;
 				}
 				// If methodLabel does not start with '"', it is method call
@@ -7,12 +7,13 @@ import java.util.List;
 import decaf.codegen.flatir.LIRStatement;
 import decaf.codegen.flatir.LabelStmt;
 import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.cfg.CFGBlock;
+import decaf.dataflow.cfg.Loop;
+import decaf.dataflow.cfg.LoopNestForest;
 import decaf.dataflow.cfg.MethodIR;
 
 public class ParallelizationOptimizer {
-	private static String ForBodyLabelRegex = "[a-zA-z_]\\w*.for\\d+.body";
-	private static String ForInitLabelRegex = "[a-zA-z_]\\w*.for\\d+.init";
-	private static String ForEndLabelRegex = "[a-zA-z_]\\w*.for\\d+.end";
+	private static String ForTestLabelRegex = "[a-zA-z_]\\w*.for\\d+.test";
 	private HashMap<String, MethodIR> mMap;
 	private ProgramFlattener pf;
 	
@@ -54,54 +55,58 @@ public class ParallelizationOptimizer {
 	}
 	
 	// Returns the list of child loop ids for the given loop id
+	// The nesting comes from the loop forest of the method, so it works whatever order
+	// the loops are laid out in
 	public List<String> getChildLoopIds(String loopId) {
 		String[] loopInfo = loopId.split("\\.");
-		List<LIRStatement> methodStmts = mMap.get(loopInfo[0]).getStatements();
-		int forInitLabelIndex = getForLabelStmtIndexInMethod(loopId, ForInitLabelRegex);
-		int forEndLabelIndex = getForLabelStmtIndexInMethod(loopId, ForEndLabelRegex);
+		LoopNestForest forest = mMap.get(loopInfo[0]).getLoopNestForest();
 		List<String> childLoopIds = new ArrayList<String>();
-		String forLabel;
 		
-		for (int i = forInitLabelIndex + 1; i < forEndLabelIndex; i++) {
-			LIRStatement stmt = methodStmts.get(i);
-			if (stmt.getClass().equals(LabelStmt.class)) {
-				forLabel = ((LabelStmt)stmt).getLabelString();
-				if (forLabel.matches(ForInitLabelRegex)) {
-					childLoopIds.add(getIdFromForLabel(forLabel));
+		Loop loop = null;
+		for (Loop l : forest.getLoops()) {
+			if (loopId.equals(getLoopId(l))) {
+				loop = l;
+				break;
+			}
+		}
+		if (loop == null) return childLoopIds;
+		
+		for (Loop l : forest.getLoops()) {
+			if (l != loop && loop.contains(l)) {
+				String id = getLoopId(l);
+				if (id != null) {
+					childLoopIds.add(id);
 				}
 			}
 		}
 		return childLoopIds;
 	}
 	
-	private int getForLabelStmtIndexInMethod(String loopId, String label) {
-		String[] loopInfo = loopId.split("\\.");
-		List<LIRStatement> methodStmts = mMap.get(loopInfo[0]).getStatements();
-		for (int i = 0; i < methodStmts.size(); i++) {
-			LIRStatement stmt = methodStmts.get(i);
-			if (stmt.getClass().equals(LabelStmt.class)) {
-				LabelStmt lStmt = (LabelStmt)stmt;
-				String labelStr = lStmt.getLabelString();
-				if (labelStr.matches(label)) {
-					// Label points to this for loop's id
-					if (getIdFromForLabel(labelStr).equals(loopId)) {
-						return i;
-					}
-				}
+	// The id of a for loop is the prefix of its test label, which starts the loop header
+	// Null for loops which don't come from a for statement
+	private String getLoopId(Loop loop) {
+		LIRStatement leader = loop.getHeader().getLeader();
+		if (leader != null && leader.getClass().equals(LabelStmt.class)) {
+			String labelStr = ((LabelStmt)leader).getLabelString();
+			if (labelStr.matches(ForTestLabelRegex)) {
+				return getIdFromForLabel(labelStr);
 			}
 		}
-		return -1;
+		return null;
 	}
 	
 	private List<String> getAllLoopIds() {
 		List<String> uniqueLoopIds = new ArrayList<String>();
 		for (String s : mMap.keySet()) {
-			for (LIRStatement stmt : mMap.get(s).getStatements()) {
-				if (stmt.getClass().equals(LabelStmt.class)) {
-					LabelStmt lStmt = (LabelStmt)stmt;
-					String labelStr = lStmt.getLabelString();
-					if (labelStr.matches(ForBodyLabelRegex)) {
-						uniqueLoopIds.add(getIdFromForLabel(labelStr));
+			if (s.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
+			
+			// Blocks are in layout order, so the loops are too
+			LoopNestForest forest = mMap.get(s).getLoopNestForest();
+			for (CFGBlock block : mMap.get(s).getCfgBlocks()) {
+				if (forest.isLoopHeader(block)) {
+					String id = getLoopId(forest.getLoopWithHeader(block));
+					if (id != null) {
+						uniqueLoopIds.add(id);
 					}
 				}
 			}
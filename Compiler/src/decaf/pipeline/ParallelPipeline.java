@@ -0,0 +1,148 @@
+package decaf.pipeline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import decaf.CompilationContext;
+import decaf.codegen.flatir.AsmEmitter;
+import decaf.codegen.flatir.DataStmt;
+import decaf.codegen.flattener.CodeGenerator;
+import decaf.codegen.flattener.LocationResolver;
+import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.block.BlockOptimizer;
+import decaf.dataflow.cfg.CFGBuilder;
+import decaf.dataflow.cfg.CFGDataflowOptimizer;
+import decaf.dataflow.cfg.MethodIR;
+import decaf.dataflow.global.GlobalOptimizer;
+import decaf.ir.ast.ClassDecl;
+import decaf.ir.ast.MethodDecl;
+import decaf.optimize.PostDataFlowOptimizer;
+import decaf.profile.CompileProfiler;
+
+// Compiles the methods of a flattened program at the same time, on a work stealing pool
+// Once flattened, the statements of a method don't depend on the other methods, so every
+// method goes through the CFG, the optimizers, location resolution and code generation on its
+// own (on a slice of the program with only that method). The code of the methods is then put
+// together in the order they are declared, with the strings each of them uses
+// Every method is compiled with a context of its own made from the context of the program (see
+// CompilationContext.forMethod), so the output is the same whatever the number of threads, and
+// the same as the one of the whole program pipeline in Main
+public class ParallelPipeline {
+	private CompilationContext context;
+	private ProgramFlattener pf;
+	private ClassDecl cd;
+	private int threads;
+	
+	public ParallelPipeline(CompilationContext context, ProgramFlattener pf, ClassDecl cd, int threads) {
+		this.context = context;
+		this.pf = pf;
+		this.cd = cd;
+		this.threads = threads;
+	}
+	
+	// Writes the assembly of the program to out
+	public void compile(AsmEmitter out) throws Exception {
+		List<MethodDecl> methods = cd.getMethodDeclarations();
+		
+		// The contexts are made before any method starts, so they all start from the same ids
+		List<CompilationContext> contexts = new ArrayList<CompilationContext>();
+		for (int i = 0; i < methods.size(); i++) {
+			contexts.add(context.forMethod());
+		}
+		
+		List<ProgramFlattener> slices = new ArrayList<ProgramFlattener>();
+		List<ForkJoinTask<AsmEmitter>> tasks = new ArrayList<ForkJoinTask<AsmEmitter>>();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for (int i = 0; i < methods.size(); i++) {
+				final MethodDecl md = methods.get(i);
+				final CompilationContext methodContext = contexts.get(i);
+				final ProgramFlattener slice = pf.getMethodSlice(md.getId(), methodContext);
+				slices.add(slice);
+				tasks.add(pool.submit(new Callable<AsmEmitter>() {
+					public AsmEmitter call() throws Exception {
+						CompilationContext previous = CompilationContext.enter(methodContext);
+						try {
+							return compileMethod(slice, md, methodContext);
+						} finally {
+							CompilationContext.exit(previous);
+						}
+					}
+				}));
+			}
+			
+			HashMap<String, AsmEmitter> methodCode = new HashMap<String, AsmEmitter>();
+			HashMap<String, ProgramFlattener> methodSlices = new HashMap<String, ProgramFlattener>();
+			for (int i = 0; i < methods.size(); i++) {
+				// join rethrows anything thrown while compiling the method
+				methodCode.put(methods.get(i).getId(), tasks.get(i).join());
+				methodSlices.put(methods.get(i).getId(), slices.get(i));
+				context.getProfiler().merge(contexts.get(i).getProfiler());
+			}
+			
+			// Strings in the order LocationResolver adds them when it runs on the whole program
+			for (String methodName: pf.getLirMap().keySet()) {
+				if (!methodSlices.containsKey(methodName)) continue;
+				for (DataStmt ds: methodSlices.get(methodName).getDataStmtList()) {
+					pf.getDataStmtList().add(ds);
+				}
+			}
+			
+			// The exception handler is not a method of the program, it only needs its locations
+			LocationResolver lr = new LocationResolver(pf.getMethodSlice(context.getExceptionHandlerLabel(), context), cd);
+			lr.resolveLocations();
+			
+			CodeGenerator cg = new CodeGenerator(pf, cd, out);
+			cg.generateCode(methodCode);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	// The stages Main runs on the whole program, on the method alone
+	// They are timed like in Main, in a phase named after the method
+	private AsmEmitter compileMethod(ProgramFlattener slice, MethodDecl md, CompilationContext context) {
+		CompileProfiler profiler = context.getProfiler();
+		profiler.begin(md.getId());
+		profiler.setProgram(slice, null);
+		
+		profiler.begin("cfg");
+		CFGBuilder cb = new CFGBuilder(slice);
+		cb.generateCFGs();
+		profiler.setProgram(slice, cb);
+		HashMap<String, MethodIR> mMap = MethodIR.generateMethodIRs(slice, cb);
+		profiler.end();
+		
+		if (context.isOptimizing()) {
+			BlockOptimizer bo = new BlockOptimizer(mMap);
+			GlobalOptimizer go = new GlobalOptimizer(mMap);
+			CFGDataflowOptimizer cfgdo = new CFGDataflowOptimizer(mMap, slice, bo, go, context.getOpts());
+			profiler.begin("dataflow");
+			cfgdo.optimizeCFGDataflow();
+			profiler.end();
+			
+			profiler.begin("post dataflow");
+			PostDataFlowOptimizer pdfo = new PostDataFlowOptimizer(slice, cb);
+			pdfo.optimize();
+			profiler.end();
+		}
+		
+		profiler.begin("resolve locations");
+		LocationResolver lr = new LocationResolver(slice, cd);
+		lr.resolveLocations();
+		profiler.end();
+		
+		profiler.begin("codegen");
+		AsmEmitter code = new AsmEmitter();
+		CodeGenerator cg = new CodeGenerator(slice, cd, code);
+		cg.generateMethod(md);
+		profiler.end();
+		
+		profiler.end();
+		return code;
+	}
+}
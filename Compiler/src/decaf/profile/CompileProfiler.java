@@ -0,0 +1,251 @@
+package decaf.profile;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import decaf.CompilationContext;
+import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.cfg.CFGBuilder;
+import decaf.ralloc.Web;
+
+// Records wall time, allocated bytes and IR size for the compiler phases (-time)
+// Phases are opened with begin and closed with end from the thread running the compilation and
+// can be nested, passes of an optimizer are recorded inside the phase of the optimizer. Does
+// nothing unless enabled
+// Every compilation has its own profiler (in its CompilationContext). The methods compiled by
+// ParallelPipeline each have one too, their phases are merged into the one of the compilation
+public class CompileProfiler {
+	private boolean enabled = false;
+	// The program being compiled, used to measure the IR at the end of every phase
+	private ProgramFlattener pf;
+	private CFGBuilder cb;
+	private HashMap<String, List<Web>> webMap;
+	// All finished phases, in the order they were started
+	private List<PhaseRecord> records = new ArrayList<PhaseRecord>();
+	private List<PhaseRecord> open = new ArrayList<PhaseRecord>();
+	// Thread running the compilation (the one which began the phases)
+	private volatile Thread thread;
+	// Bytes allocated by the tasks other threads ran for the compilation, as they finished
+	private AtomicLong workerBytes = new AtomicLong();
+	
+	// Profiler of the compilation the thread is working for
+	public static CompileProfiler get() {
+		return CompilationContext.get().getProfiler();
+	}
+	
+	public void enable() {
+		enabled = true;
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+			if (bean.isThreadAllocatedMemorySupported()) {
+				bean.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+	}
+	
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	public void setProgram(ProgramFlattener flattener, CFGBuilder builder) {
+		pf = flattener;
+		cb = builder;
+	}
+	
+	public void setWebMap(HashMap<String, List<Web>> webs) {
+		webMap = webs;
+	}
+	
+	public void begin(String name) {
+		if (!enabled) return;
+		
+		thread = Thread.currentThread();
+		String path = name;
+		if (!open.isEmpty()) {
+			path = open.get(open.size() - 1).getPath() + "/" + name;
+		}
+		PhaseRecord record = new PhaseRecord(name, path, open.size());
+		records.add(record);
+		open.add(record);
+		record.start(System.nanoTime(), getAllocatedBytes());
+	}
+	
+	public void end() {
+		if (!enabled || open.isEmpty()) return;
+		
+		PhaseRecord record = open.remove(open.size() - 1);
+		long nanos = System.nanoTime();
+		long bytes = getAllocatedBytes();
+		record.stop(nanos, bytes);
+		
+		record.setIrSize(IRSize.measure(pf, cb, webMap));
+		
+		// The enclosing phase shouldn't be charged for measuring the IR
+		if (!open.isEmpty()) {
+			long measureNanos = System.nanoTime() - nanos;
+			long measureBytes = (bytes < 0) ? 0 : getAllocatedBytes() - bytes;
+			open.get(open.size() - 1).addOverhead(record.getOverheadNanos() + measureNanos, 
+					record.getOverheadBytes() + measureBytes);
+		}
+	}
+	
+	// Bytes allocated so far for this compilation: by the thread running it, and by the tasks
+	// other threads ran for it (the parallel dataflow generators, the methods of ParallelPipeline)
+	// once they finished. Other compilations of the JVM (-batch, -serve) and the threads of the
+	// JVM itself (JIT, GC) aren't counted. -1 if the JVM doesn't support it
+	private long getAllocatedBytes() {
+		long bytes = getThreadAllocatedBytes();
+		if (bytes < 0) return -1;
+		return bytes + workerBytes.get();
+	}
+	
+	// Bytes allocated so far by the current thread, -1 if the JVM doesn't support it
+	private static long getThreadAllocatedBytes() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (!(threadBean instanceof com.sun.management.ThreadMXBean)) return -1;
+		
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+		if (!bean.isThreadAllocatedMemoryEnabled()) return -1;
+		
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	// Called by a thread before it runs a task for the compilation, what it gets back goes to
+	// endWorker. A task joined by the thread running the compilation may run on it, its bytes
+	// are counted already
+	public long beginWorker() {
+		if (!enabled || Thread.currentThread() == thread) return -1;
+		return getThreadAllocatedBytes();
+	}
+	
+	// The task started with beginWorker is done, its bytes are counted for the phases open when
+	// it ends
+	public void endWorker(long startBytes) {
+		if (startBytes < 0) return;
+		
+		long bytes = getThreadAllocatedBytes();
+		if (bytes >= startBytes) {
+			workerBytes.addAndGet(bytes - startBytes);
+		}
+	}
+	
+	// Adds the phases of a method compiled on its own (ParallelPipeline) under the phase open
+	// here, and the bytes they allocated to it. The methods are done, so only this thread reads
+	// their profilers
+	public void merge(CompileProfiler method) {
+		if (!enabled) return;
+		
+		String prefix = open.isEmpty() ? "" : open.get(open.size() - 1).getPath() + "/";
+		for (PhaseRecord record: method.records) {
+			record.nest(prefix, open.size());
+			records.add(record);
+			if (record.getDepth() == open.size() && record.getAllocatedBytes() > 0) {
+				workerBytes.addAndGet(record.getAllocatedBytes());
+			}
+		}
+		method.records = new ArrayList<PhaseRecord>();
+	}
+	
+	public List<PhaseRecord> getRecords() {
+		return records;
+	}
+	
+	// Prints one line per phase, runs of the same pass (rounds of the dataflow
+	// optimizers) are added up and show the IR size after the last run
+	public void printReport(PrintStream out) {
+		LinkedHashMap<String, List<PhaseRecord>> byPath = new LinkedHashMap<String, List<PhaseRecord>>();
+		for (PhaseRecord record: records) {
+			if (!byPath.containsKey(record.getPath())) {
+				byPath.put(record.getPath(), new ArrayList<PhaseRecord>());
+			}
+			byPath.get(record.getPath()).add(record);
+		}
+		
+		out.println("COMPILE TIME REPORT");
+		out.println(String.format("%-50s %5s %10s %12s %8s %7s %7s %7s", 
+				"phase", "runs", "ms", "alloc KB", "stmts", "blocks", "temps", "webs"));
+		for (String path: byPath.keySet()) {
+			List<PhaseRecord> runs = byPath.get(path);
+			PhaseRecord last = runs.get(runs.size() - 1);
+			long nanos = 0, bytes = 0;
+			for (PhaseRecord record: runs) {
+				nanos += record.getWallNanos();
+				if (record.getAllocatedBytes() < 0 || bytes < 0) {
+					bytes = -1;
+				} else {
+					bytes += record.getAllocatedBytes();
+				}
+			}
+			
+			String name = "";
+			for (int i = 0; i < last.getDepth(); i++) {
+				name += "  ";
+			}
+			name += last.getName();
+			out.println(String.format("%-50s %5d %10.2f %12s %8d %7d %7d %7d", name, runs.size(), 
+					nanos / 1000000.0, (bytes < 0) ? "n/a" : Long.toString(bytes / 1024), 
+					last.getTotalStatements(), last.getTotalBlocks(), last.getTotalTemps(), 
+					last.getTotalWebs()));
+		}
+	}
+	
+	// Writes every run of every phase, with the IR size of each method
+	public void writeJSON(String filename) throws FileNotFoundException {
+		PrintStream out = new PrintStream(filename);
+		
+		out.println("{");
+		out.println("  \"phases\": [");
+		for (int i = 0; i < records.size(); i++) {
+			PhaseRecord record = records.get(i);
+			out.println("    {");
+			out.println("      \"name\": " + quote(record.getName()) + ",");
+			out.println("      \"path\": " + quote(record.getPath()) + ",");
+			out.println("      \"depth\": " + record.getDepth() + ",");
+			out.println("      \"wallNanos\": " + record.getWallNanos() + ",");
+			out.println("      \"allocatedBytes\": " + record.getAllocatedBytes() + ",");
+			out.println("      \"methods\": [");
+			
+			List<String> methods = new ArrayList<String>(record.getIrSize().keySet());
+			Collections.sort(methods);
+			for (int j = 0; j < methods.size(); j++) {
+				IRSize size = record.getIrSize().get(methods.get(j));
+				out.print("        {\"method\": " + quote(size.getMethodName()) + 
+						", \"statements\": " + size.getStatements() + 
+						", \"blocks\": " + size.getBlocks() + 
+						", \"temps\": " + size.getTemps() + 
+						", \"webs\": " + size.getWebs() + "}");
+				out.println((j < methods.size() - 1) ? "," : "");
+			}
+			out.println("      ]");
+			out.println((i < records.size() - 1) ? "    }," : "    }");
+		}
+		out.println("  ]");
+		out.println("}");
+		
+		out.close();
+	}
+	
+	private static String quote(String s) {
+		String rtn = "\"";
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				rtn += "\\" + c;
+			} else if (c < ' ') {
+				rtn += String.format("\\u%04x", (int) c);
+			} else {
+				rtn += c;
+			}
+		}
+		return rtn + "\"";
+	}
+}
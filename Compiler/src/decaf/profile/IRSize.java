@@ -0,0 +1,135 @@
+package decaf.profile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import decaf.codegen.flatir.ArrayName;
+import decaf.codegen.flatir.CmpStmt;
+import decaf.codegen.flatir.DynamicVarName;
+import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.LoadStmt;
+import decaf.codegen.flatir.Name;
+import decaf.codegen.flatir.PopStmt;
+import decaf.codegen.flatir.PushStmt;
+import decaf.codegen.flatir.QuadrupletStmt;
+import decaf.codegen.flatir.StoreStmt;
+import decaf.codegen.flatir.TempName;
+import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.cfg.CFGBlock;
+import decaf.dataflow.cfg.CFGBuilder;
+import decaf.ralloc.Web;
+
+// Size of the IR of a single method
+// Blocks and webs are -1 when there are no CFGs / webs for the method at that point
+public class IRSize {
+	private String methodName;
+	private int statements;
+	private int blocks;
+	private int temps;
+	private int webs;
+	
+	public IRSize(String methodName, int statements, int blocks, int temps, int webs) {
+		this.methodName = methodName;
+		this.statements = statements;
+		this.blocks = blocks;
+		this.temps = temps;
+		this.webs = webs;
+	}
+	
+	// Measures every method, from the CFGs if there are any so the statements
+	// don't have to be linearized. cb and webMap can be null
+	public static HashMap<String, IRSize> measure(ProgramFlattener pf, CFGBuilder cb, 
+			HashMap<String, List<Web>> webMap) {
+		HashMap<String, IRSize> sizes = new HashMap<String, IRSize>();
+		if (pf == null) return sizes;
+		
+		Set<String> methodNames = (cb != null) ? cb.getCfgMap().keySet() : pf.getLirMap().keySet();
+		for (String methodName: methodNames) {
+			List<LIRStatement> stmts;
+			int blocks = -1;
+			if (cb != null) {
+				List<CFGBlock> cfg = cb.getCfgMap().get(methodName);
+				blocks = cfg.size();
+				stmts = new ArrayList<LIRStatement>();
+				for (CFGBlock block: cfg) {
+					stmts.addAll(block.getStatements());
+				}
+			} else {
+				stmts = pf.getLirMap().get(methodName);
+			}
+			int webs = -1;
+			if (webMap != null && webMap.containsKey(methodName)) {
+				webs = webMap.get(methodName).size();
+			}
+			
+			sizes.put(methodName, new IRSize(methodName, stmts.size(), blocks, countTemps(stmts), webs));
+		}
+		
+		return sizes;
+	}
+	
+	// Number of distinct temporaries (TempName and DynamicVarName) used in the statements
+	private static int countTemps(List<LIRStatement> stmts) {
+		HashSet<Name> temps = new HashSet<Name>();
+		
+		for (LIRStatement stmt: stmts) {
+			if (stmt.getClass().equals(QuadrupletStmt.class)) {
+				QuadrupletStmt qStmt = (QuadrupletStmt)stmt;
+				addTemp(qStmt.getDestination(), temps);
+				addTemp(qStmt.getArg1(), temps);
+				addTemp(qStmt.getArg2(), temps);
+			} else if (stmt.getClass().equals(CmpStmt.class)) {
+				CmpStmt cStmt = (CmpStmt)stmt;
+				addTemp(cStmt.getArg1(), temps);
+				addTemp(cStmt.getArg2(), temps);
+			} else if (stmt.getClass().equals(PushStmt.class)) {
+				addTemp(((PushStmt)stmt).getName(), temps);
+			} else if (stmt.getClass().equals(PopStmt.class)) {
+				addTemp(((PopStmt)stmt).getName(), temps);
+			} else if (stmt.getClass().equals(LoadStmt.class)) {
+				addTemp(((LoadStmt)stmt).getVariable(), temps);
+			} else if (stmt.getClass().equals(StoreStmt.class)) {
+				addTemp(((StoreStmt)stmt).getVariable(), temps);
+			}
+		}
+		
+		return temps.size();
+	}
+	
+	private static void addTemp(Name name, HashSet<Name> temps) {
+		while (name != null) {
+			if (name.getClass().equals(TempName.class) || name.getClass().equals(DynamicVarName.class)) {
+				temps.add(name);
+			}
+			// Indexes of arrays are uses as well
+			if (name.getClass().equals(ArrayName.class)) {
+				name = ((ArrayName)name).getIndex();
+			} else {
+				name = null;
+			}
+		}
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+
+	public int getStatements() {
+		return statements;
+	}
+
+	public int getBlocks() {
+		return blocks;
+	}
+
+	public int getTemps() {
+		return temps;
+	}
+
+	public int getWebs() {
+		return webs;
+	}
+}
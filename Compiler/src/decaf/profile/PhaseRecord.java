@@ -0,0 +1,124 @@
+package decaf.profile;
+
+import java.util.HashMap;
+
+// Measurements of one run of a compiler phase or optimization pass
+public class PhaseRecord {
+	private String name;
+	// Name of the phase prefixed by the names of the enclosing phases
+	private String path;
+	private int depth;
+	private long startNanos;
+	private long startBytes;
+	private long wallNanos;
+	// -1 if the JVM can't report allocations
+	private long allocatedBytes;
+	// Time and allocations spent measuring the IR of nested phases, which is
+	// not counted for this phase
+	private long overheadNanos;
+	private long overheadBytes;
+	// IR size at the end of the phase, by method name
+	private HashMap<String, IRSize> irSize;
+	
+	public PhaseRecord(String name, String path, int depth) {
+		this.name = name;
+		this.path = path;
+		this.depth = depth;
+		this.overheadNanos = 0;
+		this.overheadBytes = 0;
+		this.irSize = new HashMap<String, IRSize>();
+	}
+	
+	public void start(long nanos, long bytes) {
+		this.startNanos = nanos;
+		this.startBytes = bytes;
+	}
+	
+	public void stop(long nanos, long bytes) {
+		this.wallNanos = nanos - startNanos - overheadNanos;
+		if (bytes < 0 || startBytes < 0) {
+			this.allocatedBytes = -1;
+		} else {
+			this.allocatedBytes = bytes - startBytes - overheadBytes;
+		}
+	}
+	
+	public void addOverhead(long nanos, long bytes) {
+		this.overheadNanos += nanos;
+		this.overheadBytes += bytes;
+	}
+	
+	public int getTotalStatements() {
+		int total = 0;
+		for (IRSize size: irSize.values()) {
+			total += size.getStatements();
+		}
+		return total;
+	}
+	
+	public int getTotalBlocks() {
+		int total = 0;
+		for (IRSize size: irSize.values()) {
+			if (size.getBlocks() > 0) total += size.getBlocks();
+		}
+		return total;
+	}
+	
+	public int getTotalTemps() {
+		int total = 0;
+		for (IRSize size: irSize.values()) {
+			total += size.getTemps();
+		}
+		return total;
+	}
+	
+	public int getTotalWebs() {
+		int total = 0;
+		for (IRSize size: irSize.values()) {
+			if (size.getWebs() > 0) total += size.getWebs();
+		}
+		return total;
+	}
+
+	// The phase ran inside the phase with the path prefix (ending with a /), at depth
+	public void nest(String prefix, int depth) {
+		this.path = prefix + this.path;
+		this.depth += depth;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getWallNanos() {
+		return wallNanos;
+	}
+
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	public long getOverheadNanos() {
+		return overheadNanos;
+	}
+
+	public long getOverheadBytes() {
+		return overheadBytes;
+	}
+
+	public HashMap<String, IRSize> getIrSize() {
+		return irSize;
+	}
+
+	public void setIrSize(HashMap<String, IRSize> irSize) {
+		this.irSize = irSize;
+	}
+}
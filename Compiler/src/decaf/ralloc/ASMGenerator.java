@@ -1,235 +1,89 @@
 package decaf.ralloc;
 
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import decaf.codegen.flatir.ArrayName;
-import decaf.codegen.flatir.CallStmt;
-import decaf.codegen.flatir.DataStmt;
+import decaf.codegen.flatir.AsmEmitter;
 import decaf.codegen.flatir.EnterStmt;
 import decaf.codegen.flatir.LIRStatement;
-import decaf.codegen.flatir.LabelStmt;
 import decaf.codegen.flatir.LeaveStmt;
-import decaf.codegen.flatir.Name;
-import decaf.codegen.flatir.QuadrupletStmt;
 import decaf.codegen.flatir.Register;
-import decaf.codegen.flatir.RegisterName;
-import decaf.codegen.flatir.VarName;
+import decaf.codegen.flatir.StackLocation;
+import decaf.codegen.flattener.CodeGenerator;
 import decaf.codegen.flattener.ProgramFlattener;
-
-public class ASMGenerator {
-	private static String CallBeginRegex = "[a-zA-z_]\\w*.mcall.[a-zA-z_]\\w*.\\d+.begin";
-	private static String CallEndRegex = "[a-zA-z_]\\w*.mcall.[a-zA-z_]\\w*.\\d+.end";
-	private ProgramFlattener pf;
-	private WebColorer wc;
-	private PrintStream out;
-	private List<Register> callee;
-	private List<Name> liveAtCaller;
-
-	public ASMGenerator(ProgramFlattener pf, WebColorer wc, PrintStream out) {
-		this.pf = pf;
-		this.out = out;
-		this.wc = wc;
-		this.callee = new ArrayList<Register>();
-		this.liveAtCaller = new ArrayList<Name>();
-	}
-	
-	public ASMGenerator(ProgramFlattener pf, WebColorer wc, String filename) throws FileNotFoundException {
-		File f = new File(filename);
-		this.out = new PrintStream(f);
-		this.pf = pf;
-		this.wc = wc;
-		this.callee = new ArrayList<Register>();
-		this.liveAtCaller = new ArrayList<Name>();
+import decaf.codegen.x86.InstructionList;
+import decaf.codegen.x86.Opcode;
+import decaf.codegen.x86.Operand;
+import decaf.ir.ast.ClassDecl;
+import decaf.ir.ast.MethodDecl;
+
+// Code of the program with the registers of the allocator (-ralloc). The statements print the
+// same code as for CodeGenerator, a name given a register is just found there instead of on
+// the stack (LocationResolver). A method saves the callee-saved registers it uses in its frame,
+// after its variables, and restores them when it returns
+// Webs only get callee-saved registers (WebColorer.registers), so calls and callouts keep them
+// and nothing is saved around a CallStmt. The argument registers, RAX and RDX are only written
+// by the code of calls, returns and divisions, R10 and R11 are the scratch of every statement
+public class ASMGenerator extends CodeGenerator {
+	private RegisterAllocator ra;
+	// Registers saved by the method being generated, the first one is right after its variables
+	private List<Register> saved;
+	private int savedOffset;
+
+	public ASMGenerator(ProgramFlattener pf, ClassDecl cd, RegisterAllocator ra, String filename) throws FileNotFoundException {
+		super(pf, cd, filename);
+		this.ra = ra;
+		this.saved = new ArrayList<Register>();
 	}
 
-	public void generateAssembly() {
-		out.println(".data");
-		for (DataStmt s : pf.getDataStmtList()) {
-			s.generateRegAllocAssembly(out);
-		}
-
-		out.println();
-		out.println(".text");
-		for (String methodName : pf.getLirMap().keySet()) {
-			generateCalleeSave(methodName);
-
-			out.println();
-			List<LIRStatement> lirList = pf.getLirMap().get(methodName);
-			if (methodName.equals("main")) {
-				out.println("\t.globl main");
-			}
-
-			for (int i = 0; i < lirList.size(); i++) {
-				LIRStatement s = lirList.get(i);
-				// Caller save handling
-				if (s.getClass().equals(LabelStmt.class)) {
-					LabelStmt lStmt = (LabelStmt) s;
-					if (lStmt.getLabelString().matches(CallBeginRegex)) {
-						i = processMethodCall(methodName, i);
-					}
-					else {
-						s.generateRegAllocAssembly(out);
-					}
-				}
-
-				// Callee save handling
-				else if (s.getClass().equals(EnterStmt.class)) {
-					s.generateRegAllocAssembly(out);
-					saveeCallee();
-				} else if (s.getClass().equals(LeaveStmt.class)) {
-					restoreCallee();
-					s.generateRegAllocAssembly(out);
-				}
-
-				else {
-					s.generateRegAllocAssembly(out);
-				}
-			}
-		}
-
-		// generateExceptionHanlder();
+	public ASMGenerator(ProgramFlattener pf, ClassDecl cd, RegisterAllocator ra, AsmEmitter out) {
+		super(pf, cd, out);
+		this.ra = ra;
+		this.saved = new ArrayList<Register>();
 	}
 
-	// Start label of mcall NOT already printed
-	private int processMethodCall(String methodName, int i) {
-		int callIndex = i;
-		LIRStatement s = this.pf.getLirMap().get(methodName).get(callIndex);
-		QuadrupletStmt.NOREGS = true;
-
-		while (!s.getClass().equals(CallStmt.class)) {
-			callIndex++;
-			s = this.pf.getLirMap().get(methodName).get(callIndex);
-		}
-
-		CallStmt call = (CallStmt) s;
-
-		List<Web> liveWebs = call.getLiveWebs();
-		generateCallerSave(liveWebs);
+	@Override
+	public void generateMethod(MethodDecl md) {
+		this.saved.clear();
 
-		while (true) {
-			s = this.pf.getLirMap().get(methodName).get(i);
-			i++;
-			
-			if (s.getClass().equals(CallStmt.class)) {
-				s.generateRegAllocAssembly(out);
-				restoreCaller();
-				QuadrupletStmt.NOREGS = false;
-				continue;
-			}
-			
-			if (s.getClass().equals(LabelStmt.class)) {
-				LabelStmt lStmt = (LabelStmt) s;
-				if (lStmt.getLabelString().matches(CallEndRegex)) { // call end
-					s.generateRegAllocAssembly(out);
-					return i-1;
-				} else if (lStmt.getLabelString().matches(CallBeginRegex)) { // call start
-					s.generateRegAllocAssembly(out);
-					saveCaller(); // Save caller chutiap
-					continue;
+		List<Register> used = this.ra.getRegistersUsed().get(md.getId());
+		if (used != null) {
+			for (Register r: Register.calleeSaved) {
+				if (used.contains(r)) {
+					this.saved.add(r);
 				}
 			}
-			
-			s.generateRegAllocAssembly(out);
 		}
-	}
-
-	private void saveCaller() {
-		out.println("\t// caller save");
 
-		for (Name var : this.liveAtCaller) {
-			out.println("\tmov\t" + var.getRegister() + ", "
-					+ getLocationForName(var, out, true));
-		}
-		out.println("\t//");
+		super.generateMethod(md);
 	}
 
-	private void restoreCaller() {
-		out.println("\t// caller restore");
+	@Override
+	protected void generateStatement(InstructionList code, LIRStatement s) {
+		if (s.getClass().equals(EnterStmt.class)) {
+			EnterStmt enter = (EnterStmt) s;
+			this.savedOffset = enter.getStackSize();
+			enter.setStackSize(this.savedOffset + this.saved.size());
+			enter.generateInstructions(code);
 
-		for (int i = this.liveAtCaller.size()-1; i >=0 ; i--) {
-			Name var = this.liveAtCaller.get(i);
-			out.println("\tmov\t" + getLocationForName(var, out, true) + ", " + var.getRegister());
-		}
-		out.println("\t//");
-	}
-
-	private void generateCallerSave(List<Web> liveWebs) {
-		for (Web w : liveWebs) {
-			if (w.getRegister() != null) {
-				Register live = w.getRegister();
-				for (Register save : Register.callerSaved) {
-					if (live == save) {
-						this.liveAtCaller.add(w.getVariable());
-					}
-				}
+			for (int i = 0; i < this.saved.size(); i++) {
+				code.add(Opcode.MOV, Operand.register(this.saved.get(i)), getSaveLocation(i));
 			}
 		}
-	}
-
-	private void saveeCallee() {
-		for (Register r : this.callee) {
-			out.println("\tpush\t" + r);
-		}
-	}
-
-	private void restoreCallee() {
-		for (int i = this.callee.size() - 1; i >= 0; i--) {
-			Register r = this.callee.get(i);
-			out.println("\tpop\t" + r);
-		}
-	}
-
-	private void generateCalleeSave(String methodName) {
-		this.callee.clear();
-
-		if (methodName.equals(ProgramFlattener.exceptionHandlerLabel))
-			return;
-
-		for (Register used : this.wc.getRegistersUsed().get(methodName)) {
-			for (Register save : Register.calleeSaved) {
-				if (used == save) {
-					this.callee.add(used);
-				}
+		else if (s.getClass().equals(LeaveStmt.class)) {
+			for (int i = 0; i < this.saved.size(); i++) {
+				code.add(Opcode.MOV, getSaveLocation(i), Operand.register(this.saved.get(i)));
 			}
-		}
-	}
-	
-	public static String getLocationForName(Name name, PrintStream out, boolean skipRegister) {
-		if (name.isGlobal() && !name.isArray()) {
-			VarName var = (VarName) name;
-			if (var.isString()) return var.getLocation().getASMRepresentation();
-		}
-		
-		if (name.getMyRegister() != null && !skipRegister) {
-			return name.getRegister();
-		}
-		
-		if (name.isArray()) {
-			return getArrayName((ArrayName)name, out);
-		}
-		
-		return name.getLocation().getASMRepresentation();
-	}
 
-	private static String getArrayName(ArrayName name, PrintStream out) {
-		if (name.getMyRegister() != null) return name.getRegister();
-		
-		if (name.getIndex().isArray()) {
-			getArrayName((ArrayName)name.getIndex(), out);
-		}
-		
-		if (name.getIndex().getMyRegister() != null) {
-			name.setOffsetRegister(name.getIndex().getMyRegister());
-			return name.getLocation().getASMRepresentation();
+			s.generateInstructions(code);
 		}
 		else {
-			out.println("\tmov\t" + name.getIndex().getLocation().getASMRepresentation() + ", " + Register.R10);
-			name.setOffsetRegister(Register.R10);
-			return name.getLocation().getASMRepresentation();
+			s.generateInstructions(code);
 		}
 	}
+
+	private Operand getSaveLocation(int i) {
+		return new StackLocation(-(this.savedOffset + i + 1)).getOperand();
+	}
 }
@@ -0,0 +1,72 @@
+package decaf.ralloc;
+
+// Interference graph of the webs of a method, numbered from 0. Whether two webs interfere is
+// one bit of a triangular bit matrix, and the neighbors of every web are also kept in an array
+// to go through them without looking at the whole row
+public class InterferenceGraph {
+	private int size;
+	private long[] matrix;
+	private int[][] neighbors;
+	private int[] neighborCount;
+
+	public InterferenceGraph(int size) {
+		this.size = size;
+		long bits = (long) size * (size - 1) / 2;
+		this.matrix = new long[(int) ((bits + 63) >> 6)];
+		this.neighbors = new int[size][];
+		this.neighborCount = new int[size];
+		for (int i = 0; i < size; i++) {
+			this.neighbors[i] = new int[4];
+		}
+	}
+
+	// Bit of the pair in the lower triangle of the matrix
+	private static long getBit(int a, int b) {
+		if (a < b) {
+			int t = a;
+			a = b;
+			b = t;
+		}
+		return (long) a * (a - 1) / 2 + b;
+	}
+
+	public boolean interferes(int a, int b) {
+		if (a == b) return false;
+
+		long bit = getBit(a, b);
+		return (this.matrix[(int) (bit >> 6)] & (1L << (bit & 63))) != 0;
+	}
+
+	// False if they already interfered
+	public boolean addEdge(int a, int b) {
+		if (a == b || interferes(a, b)) return false;
+
+		long bit = getBit(a, b);
+		this.matrix[(int) (bit >> 6)] |= 1L << (bit & 63);
+		addNeighbor(a, b);
+		addNeighbor(b, a);
+		return true;
+	}
+
+	private void addNeighbor(int node, int neighbor) {
+		if (this.neighborCount[node] == this.neighbors[node].length) {
+			int[] larger = new int[this.neighbors[node].length * 2];
+			System.arraycopy(this.neighbors[node], 0, larger, 0, this.neighborCount[node]);
+			this.neighbors[node] = larger;
+		}
+		this.neighbors[node][this.neighborCount[node]++] = neighbor;
+	}
+
+	// Every node the node ever interfered with, in the order the edges were added
+	public int getNeighborCount(int node) {
+		return this.neighborCount[node];
+	}
+
+	public int getNeighbor(int node, int i) {
+		return this.neighbors[node][i];
+	}
+
+	public int size() {
+		return size;
+	}
+}
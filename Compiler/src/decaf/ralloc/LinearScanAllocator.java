@@ -0,0 +1,219 @@
+package decaf.ralloc;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.Register;
+import decaf.dataflow.cfg.CFGBlock;
+import decaf.dataflow.cfg.MethodIR;
+import decaf.dataflow.global.BlockDataFlowState;
+
+// Linear scan (Poletto and Sarkar) over the webs of WebGenerator, instead of coloring their
+// interference graph, for huge methods where WebColorer takes too long (-ralloc=linear)
+// The blocks are laid out by index like the statements of the method. The interval of a web
+// goes from its first to its last def or use, from the start of the method if its variable
+// comes in live, and over every loop it's live around. Webs get the registers of WebColorer
+// in the order they start, when none is free the one ending last stays in memory
+public class LinearScanAllocator implements RegisterAllocator {
+	private HashMap<String, MethodIR> mMap;
+	private WebGenerator webGen;
+	private HashMap<String, List<Register>> registersUsed;
+	// Start and end of the interval of each web of the method being allocated
+	private HashMap<Web, int[]> intervals;
+
+	public LinearScanAllocator(HashMap<String, MethodIR> mMap) {
+		this.mMap = mMap;
+		this.webGen = new WebGenerator(this.mMap);
+		this.registersUsed = new HashMap<String, List<Register>>();
+		this.intervals = new HashMap<Web, int[]>();
+	}
+
+	public void allocate() {
+		this.webGen.generateWebs();
+
+		for (String methodName: this.webGen.getWebMap().keySet()) {
+			this.intervals.clear();
+
+			List<Web> webs = this.webGen.getWebMap().get(methodName);
+			computeIntervals(methodName, webs);
+			this.registersUsed.put(methodName, scan(webs));
+		}
+	}
+
+	private void computeIntervals(String methodName, List<Web> webs) {
+		List<CFGBlock> blocks = new ArrayList<CFGBlock>(this.mMap.get(methodName).getCfgBlocks());
+		Collections.sort(blocks, new Comparator<CFGBlock>() {
+			public int compare(CFGBlock a, CFGBlock b) {
+				return a.getIndex() - b.getIndex();
+			}
+		});
+
+		// Position of every statement, and where every block starts and ends
+		IdentityHashMap<LIRStatement, Integer> positions = new IdentityHashMap<LIRStatement, Integer>();
+		HashMap<CFGBlock, int[]> blockRanges = new HashMap<CFGBlock, int[]>();
+		int position = 0;
+		for (CFGBlock block: blocks) {
+			int start = position;
+			for (LIRStatement stmt: block.getStatements()) {
+				if (stmt == null) continue;
+				positions.put(stmt, position++);
+			}
+			blockRanges.put(block, new int[] { start, position - 1 });
+		}
+
+		// Back edges, the loop goes from the start of the block jumped to until the end of
+		// the block jumping
+		List<int[]> loops = new ArrayList<int[]>();
+		List<CFGBlock> heads = new ArrayList<CFGBlock>();
+		for (CFGBlock block: blocks) {
+			for (CFGBlock succ: block.getSuccessors()) {
+				if (succ.getIndex() > block.getIndex()) continue;
+
+				loops.add(new int[] { blockRanges.get(succ)[0], blockRanges.get(block)[1] });
+				heads.add(succ);
+			}
+		}
+
+		LivenessAnalysis liveness = this.webGen.getLivenessAnalyzer();
+		BitSet liveAtEntry = null;
+		if (!blocks.isEmpty()) {
+			BlockDataFlowState entry = liveness.getCfgBlocksState().get(blocks.get(0));
+			if (entry != null) liveAtEntry = entry.getIn();
+		}
+
+		for (Web web: webs) {
+			int start = position;
+			int end = -1;
+
+			for (LIRStatement stmt: web.getDefinitions()) {
+				Integer p = positions.get(stmt);
+				if (p == null) continue;
+				start = Math.min(start, p);
+				end = Math.max(end, p);
+			}
+			for (LIRStatement stmt: web.getUses()) {
+				Integer p = positions.get(stmt);
+				if (p == null) continue;
+				start = Math.min(start, p);
+				end = Math.max(end, p);
+			}
+
+			int index = liveness.getVariableIndex(methodName, web.getVariable());
+
+			// Params and globals come in live, they may not be defined in the method at all
+			if (web.getDefinitions().isEmpty() || (index >= 0 && liveAtEntry != null && liveAtEntry.get(index))) {
+				start = 0;
+			}
+			if (end < start) {
+				end = start;
+			}
+
+			// Live at the start of a loop it overlaps, so it is live all around it. Nested
+			// loops may get overlapped only once the outer one is covered
+			boolean changed = (index >= 0);
+			while (changed) {
+				changed = false;
+				for (int i = 0; i < loops.size(); i++) {
+					int[] loop = loops.get(i);
+					if (loop[0] >= start && loop[1] <= end) continue;
+					if (loop[1] < start || loop[0] > end) continue;
+
+					BlockDataFlowState state = liveness.getCfgBlocksState().get(heads.get(i));
+					if (state == null || !state.getIn().get(index)) continue;
+
+					start = Math.min(start, loop[0]);
+					end = Math.max(end, loop[1]);
+					changed = true;
+				}
+			}
+
+			this.intervals.put(web, new int[] { start, end });
+		}
+	}
+
+	// Registers of the webs, returns the ones used
+	private List<Register> scan(List<Web> webs) {
+		List<Web> sorted = new ArrayList<Web>(webs);
+		Collections.sort(sorted, new Comparator<Web>() {
+			public int compare(Web a, Web b) {
+				int rtn = getStart(a) - getStart(b);
+				if (rtn != 0) return rtn;
+				return a.getId() - b.getId();
+			}
+		});
+
+		List<Register> free = new ArrayList<Register>();
+		for (int i = 0; i < WebColorer.regCount; i++) {
+			free.add(WebColorer.registers[i]);
+		}
+
+		// Webs holding a register, by end
+		List<Web> active = new ArrayList<Web>();
+		HashMap<Web, Register> assigned = new HashMap<Web, Register>();
+
+		for (Web web: sorted) {
+			// Expire the ones ending before this one starts, a register isn't given to the
+			// destination of the statement its web is last used in
+			while (!active.isEmpty() && getEnd(active.get(0)) < getStart(web)) {
+				free.add(0, assigned.get(active.remove(0)));
+			}
+
+			if (!free.isEmpty()) {
+				assigned.put(web, free.remove(0));
+				addActive(active, web);
+				continue;
+			}
+
+			// Spill the web ending last, it keeps the register the longest
+			Web last = active.get(active.size() - 1);
+			if (getEnd(last) > getEnd(web)) {
+				assigned.put(web, assigned.remove(last));
+				active.remove(active.size() - 1);
+				addActive(active, web);
+			}
+		}
+
+		Set<Register> used = new HashSet<Register>();
+		for (Web web: webs) {
+			Register reg = assigned.get(web);
+			web.setRegister(reg);
+			if (reg != null) {
+				used.add(reg);
+			}
+		}
+
+		return new ArrayList<Register>(used);
+	}
+
+	private void addActive(List<Web> active, Web web) {
+		int i = active.size();
+		while (i > 0 && getEnd(active.get(i - 1)) > getEnd(web)) {
+			i--;
+		}
+		active.add(i, web);
+	}
+
+	private int getStart(Web web) {
+		return this.intervals.get(web)[0];
+	}
+
+	private int getEnd(Web web) {
+		return this.intervals.get(web)[1];
+	}
+
+	public WebGenerator getWebGen() {
+		return webGen;
+	}
+
+	public HashMap<String, List<Register>> getRegistersUsed() {
+		return registersUsed;
+	}
+}
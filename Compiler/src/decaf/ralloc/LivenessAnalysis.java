@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import decaf.codegen.flatir.ArrayName;
@@ -12,6 +13,7 @@ import decaf.codegen.flatir.ConstantName;
 import decaf.codegen.flatir.LIRStatement;
 import decaf.codegen.flatir.LoadStmt;
 import decaf.codegen.flatir.Name;
+import decaf.codegen.flatir.PackedStatements;
 import decaf.codegen.flatir.PopStmt;
 import decaf.codegen.flatir.PushStmt;
 import decaf.codegen.flatir.QuadrupletStmt;
@@ -21,24 +23,39 @@ import decaf.codegen.flattener.ProgramFlattener;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 import decaf.dataflow.global.BlockDataFlowState;
+import decaf.dataflow.global.BlockFactCache;
 
 public class LivenessAnalysis {
 	private HashSet<CFGBlock> cfgBlocksToProcess;
 	private HashMap<CFGBlock, BlockDataFlowState> cfgBlocksState;
 	private HashMap<String, MethodIR> mMap;
 	private HashMap<String, List<Name>> uniqueVariables;
+	// Name id (NameTable) -> index of the variable in uniqueVariables, for each method
+	private HashMap<String, HashMap<Integer, Integer>> variableIndices;
+	// The transfer function runs on the packed statements of the blocks, a block WebSplitter
+	// changed is packed again the next time its sets are replayed
+	private HashMap<CFGBlock, PackedStatements> packedBlocks;
+	// Variables live at each statement, replayed from the OUT of its block
+	private BlockFactCache liveIns;
 	
 	public LivenessAnalysis(HashMap<String, MethodIR> mMap) {
 		this.mMap = mMap;
 		this.cfgBlocksToProcess = new HashSet<CFGBlock>();
 		this.cfgBlocksState = new HashMap<CFGBlock, BlockDataFlowState>();
 		this.uniqueVariables = new HashMap<String, List<Name>>();
+		this.variableIndices = new HashMap<String, HashMap<Integer, Integer>>();
+		this.packedBlocks = new HashMap<CFGBlock, PackedStatements>();
+		this.liveIns = new BlockFactCache() {
+			protected void replay(CFGBlock block, IdentityHashMap<LIRStatement, BitSet> facts) {
+				replayBlock(block, facts);
+			}
+		};
 	}
 	
 	// Each QuadrupletStmt will have a unique ID
 	public void analyze() {
 		for (String methodName: this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			initialize(methodName);
 			runWorkList(methodName);
@@ -50,7 +67,7 @@ public class LivenessAnalysis {
 		
 		CFGBlock exit = this.getExitBlock(methodName);
 		BlockDataFlowState exitBlockFlow = new BlockDataFlowState(totalDefs); // IN = GEN for exit block
-		calculateGenKillSets(exit, exitBlockFlow);
+		calculateGenKillSets(exit, exitBlockFlow, null);
 		exitBlockFlow.setIn(exitBlockFlow.getGen());
 		exitBlockFlow.getOut().clear();
 		cfgBlocksToProcess.remove(exit);
@@ -82,6 +99,7 @@ public class LivenessAnalysis {
 			List<LIRStatement> blockStmts = block.getStatements();
 			for (int i = 0; i < blockStmts.size(); i++) {
 				LIRStatement stmt = blockStmts.get(i);
+				stmt.setLiveIn(this.liveIns);
 				
 				if (stmt.getClass().equals(QuadrupletStmt.class)) {
 					QuadrupletStmt qStmt = (QuadrupletStmt)stmt;
@@ -89,24 +107,32 @@ public class LivenessAnalysis {
 					temp.add(qStmt.getArg1());
 					temp.add(qStmt.getDestination());					
 					if (qStmt.getArg2() != null) temp.add(qStmt.getArg2());
+					addIndex(temp, qStmt.getArg1());
+					addIndex(temp, qStmt.getArg2());
+					addIndex(temp, qStmt.getDestination());
 				}
 				else if (stmt.getClass().equals(LoadStmt.class)) {
 					LoadStmt lStmt = (LoadStmt)stmt;
 					temp.add(lStmt.getVariable());					
+					addIndex(temp, lStmt.getVariable());
 				}
 				else if (stmt.getClass().equals(StoreStmt.class)) {
 					StoreStmt sStmt = (StoreStmt)stmt;
 					temp.add(sStmt.getVariable());
+					addIndex(temp, sStmt.getVariable());
 				}
 				else if (stmt.getClass().equals(CmpStmt.class)) {
 					CmpStmt cStmt = (CmpStmt)stmt;
 					
 					temp.add(cStmt.getArg1());	
 					temp.add(cStmt.getArg2());
+					addIndex(temp, cStmt.getArg1());
+					addIndex(temp, cStmt.getArg2());
 				}
 				else if (stmt.getClass().equals(PushStmt.class)) {
 					PushStmt pStmt = (PushStmt) stmt;
 					temp.add(pStmt.getName());
+					addIndex(temp, pStmt.getName());
 				}
 				else if (stmt.getClass().equals(PopStmt.class)) {
 					PopStmt pStmt = (PopStmt) stmt;
@@ -114,14 +140,27 @@ public class LivenessAnalysis {
 				}
 			}
 			
+			this.packedBlocks.put(block, new PackedStatements(blockStmts));
+			this.liveIns.register(block);
 			this.cfgBlocksToProcess.add(block);
 		}
 		
+		HashMap<Integer, Integer> indices = new HashMap<Integer, Integer>();
 		for (Name n: temp) {
 			if (n.getClass().equals(ConstantName.class) || n.getClass().equals(RegisterName.class)) continue;
 			
+			indices.put(n.getNameId(), this.uniqueVariables.get(methodName).size());
 			this.uniqueVariables.get(methodName).add(n);
 		}
+		this.variableIndices.put(methodName, indices);
+	}
+	
+	// The index of an array is a variable too, nested ones included
+	private void addIndex(HashSet<Name> temp, Name name) {
+		while (name != null && name.isArray()) {
+			name = ((ArrayName) name).getIndex();
+			temp.add(name);
+		}
 	}
 	
 	private BlockDataFlowState generateDFState(CFGBlock block) {
@@ -151,7 +190,7 @@ public class LivenessAnalysis {
 			}
 		}
 		
-		calculateGenKillSets(block, bFlow);
+		calculateGenKillSets(block, bFlow, null);
 		
 		// Calculate Out
 		BitSet in = bFlow.getIn(); // IN = (OUT - KILL) U GEN
@@ -183,102 +222,109 @@ public class LivenessAnalysis {
 		return in;
 	}
 	
-	private void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow) {
-		List<LIRStatement> blockStmts = block.getStatements();
+	// Runs the block again from the OUT it got in the worklist, for the sets of its statements
+	private void replayBlock(CFGBlock block, IdentityHashMap<LIRStatement, BitSet> facts) {
+		BlockDataFlowState state = this.cfgBlocksState.get(block);
+		if (state == null) return;
+		
+		BlockDataFlowState bFlow = new BlockDataFlowState(this.uniqueVariables.get(block.getMethodName()).size());
+		bFlow.getOut().or(state.getOut());
+		calculateGenKillSets(block, bFlow, facts);
+	}
+	
+	// If facts isn't null, the variables live at each statement are put in it
+	private void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow, IdentityHashMap<LIRStatement, BitSet> facts) {
+		PackedStatements packed = this.packedBlocks.get(block);
+		if (!packed.isPackingOf(block.getStatements())) {
+			packed = new PackedStatements(block.getStatements());
+			this.packedBlocks.put(block, packed);
+		}
 		String methodName = block.getMethodName();
+		HashMap<Integer, Integer> indices = this.variableIndices.get(methodName);
 		
-		for (int i = blockStmts.size() - 1; i >= 0; i --) {
-			LIRStatement stmt = blockStmts.get(i);
-			
-			if (stmt.getClass().equals(QuadrupletStmt.class)) {
-				QuadrupletStmt qStmt = (QuadrupletStmt)stmt;
-				
-				updateKillGenSet(methodName, qStmt, bFlow);
-				
-				markLive(methodName, qStmt.getArg1(), bFlow);
-				markLive(methodName, qStmt.getArg2(), bFlow);
-			}
-			else if (stmt.getClass().equals(LoadStmt.class)) {
-				LoadStmt lStmt = (LoadStmt) stmt;
-				
-				if (lStmt.getVariable().isArray()) {
-					ArrayName arr = (ArrayName) lStmt.getVariable();
-					markLive(methodName, arr.getIndex(), bFlow);
-				}
-				
-				updateKillGenSet(methodName, lStmt, bFlow);
-			}
-			else if (stmt.getClass().equals(StoreStmt.class)) {
-				StoreStmt sStmt = (StoreStmt) stmt;
-				
-				markLive(methodName, sStmt.getVariable(), bFlow);
-				
-				if (sStmt.getVariable().isArray()) {
-					ArrayName arr = (ArrayName) sStmt.getVariable();
-					markLive(methodName, arr.getIndex(), bFlow);
-				}
-			}
-			else if (stmt.getClass().equals(CmpStmt.class)) {
-				CmpStmt cStmt = (CmpStmt)stmt;
-				markLive(methodName, cStmt.getArg1(), bFlow);
-				markLive(methodName, cStmt.getArg2(), bFlow);
-			}
-			else if (stmt.getClass().equals(PushStmt.class)) {
-				PushStmt pStmt = (PushStmt) stmt;
-				markLive(methodName, pStmt.getName(), bFlow);
-			}
-			else if (stmt.getClass().equals(PopStmt.class)) {
-				PopStmt pStmt = (PopStmt) stmt;
-				markLive(methodName, pStmt.getName(), bFlow);
+		for (int i = packed.size() - 1; i >= 0; i --) {
+			switch (packed.getKind(i)) {
+				case PackedStatements.QUADRUPLET:
+					kill(indices, packed.getDest(i), bFlow);
+					markLive(indices, packed.getArg1(i), bFlow);
+					markLive(indices, packed.getArg2(i), bFlow);
+					markIndicesLive(indices, packed.getStatement(i), bFlow);
+					break;
+				case PackedStatements.LOAD:
+					markLive(indices, packed.getArg1(i), bFlow); // Index of an array
+					kill(indices, packed.getDest(i), bFlow);
+					break;
+				case PackedStatements.STORE:
+					markLive(indices, packed.getArg1(i), bFlow);
+					markLive(indices, packed.getArg2(i), bFlow);
+					break;
+				case PackedStatements.CMP:
+					markLive(indices, packed.getArg1(i), bFlow);
+					markLive(indices, packed.getArg2(i), bFlow);
+					markIndicesLive(indices, packed.getStatement(i), bFlow);
+					break;
+				case PackedStatements.PUSH:
+					markLive(indices, packed.getArg1(i), bFlow);
+					markIndicesLive(indices, packed.getStatement(i), bFlow);
+					break;
+				case PackedStatements.POP:
+					markLive(indices, packed.getDest(i), bFlow);
+					break;
 			}
 			
 			// Set to stmt in set
-			stmt.setLiveInSet(getCurrentInSet(bFlow, methodName));
-//			System.out.println("=====> " + stmt + "  ::  " + stmt.getLiveInSet());
+			if (facts != null) {
+				facts.put(packed.getStatement(i), getCurrentInSet(bFlow, methodName));
+			}
 		}
 	}
 	
-	public void markLive(String methodName, Name name, BlockDataFlowState bFlow) {
-		if (name == null) return;
-		if (name.getClass().equals(RegisterName.class) || name.getClass().equals(ConstantName.class)) return;
+	// Constants and registers have no index, they are never live
+	private void markLive(HashMap<Integer, Integer> indices, int nameId, BlockDataFlowState bFlow) {
+		if (nameId < 0) return;
 		
-		int index = this.uniqueVariables.get(methodName).indexOf(name);
+		Integer index = indices.get(nameId);
+		if (index == null) return;
 		
 		bFlow.getGen().set(index);
 	}
 	
-	public void updateKillGenSet(String methodName, QuadrupletStmt stmt, BlockDataFlowState bFlow) {
-		if (stmt == null) return;
-		
-		BitSet out = bFlow.getOut();
-		BitSet gen = bFlow.getGen();
-		BitSet kill = bFlow.getKill();
-
-		Name dest = stmt.getDestination();
-		if (dest.getClass().equals(RegisterName.class)) return;
-		
-		int i = this.uniqueVariables.get(methodName).indexOf(dest);
-		
-		if (out.get(i)) {
-			kill.set(i, true);
+	// The packed statements only have the ids of the operands, the indices of the array ones
+	// (a[i] = x uses i too) come from the statement
+	private void markIndicesLive(HashMap<Integer, Integer> indices, LIRStatement stmt, BlockDataFlowState bFlow) {
+		if (stmt.getClass().equals(QuadrupletStmt.class)) {
+			QuadrupletStmt qStmt = (QuadrupletStmt) stmt;
+			markIndexLive(indices, qStmt.getDestination(), bFlow);
+			markIndexLive(indices, qStmt.getArg1(), bFlow);
+			markIndexLive(indices, qStmt.getArg2(), bFlow);
+		}
+		else if (stmt.getClass().equals(CmpStmt.class)) {
+			CmpStmt cStmt = (CmpStmt) stmt;
+			markIndexLive(indices, cStmt.getArg1(), bFlow);
+			markIndexLive(indices, cStmt.getArg2(), bFlow);
+		}
+		else if (stmt.getClass().equals(PushStmt.class)) {
+			markIndexLive(indices, ((PushStmt) stmt).getName(), bFlow);
+		}
+	}
+	
+	private void markIndexLive(HashMap<Integer, Integer> indices, Name name, BlockDataFlowState bFlow) {
+		while (name != null && name.isArray()) {
+			name = ((ArrayName) name).getIndex();
+			markLive(indices, name.getNameId(), bFlow);
 		}
-		gen.clear(i);
 	}
 	
-	public void updateKillGenSet(String methodName, LoadStmt stmt, BlockDataFlowState bFlow) {
-		if (stmt == null) return;
+	private void kill(HashMap<Integer, Integer> indices, int nameId, BlockDataFlowState bFlow) {
+		if (nameId < 0) return;
 		
-		BitSet out = bFlow.getOut();
-		BitSet gen = bFlow.getGen();
-		BitSet kill = bFlow.getKill();
-
-		Name dest = stmt.getVariable();
-		int i = this.uniqueVariables.get(methodName).indexOf(dest);
+		Integer index = indices.get(nameId);
+		if (index == null) return;
 		
-		if (out.get(i)) {
-			kill.set(i, true);
+		if (bFlow.getOut().get(index)) {
+			bFlow.getKill().set(index, true);
 		}
-		gen.clear(i);
+		bFlow.getGen().clear(index);
 	}
 
 	public HashMap<CFGBlock, BlockDataFlowState> getCfgBlocksState() {
@@ -290,6 +336,13 @@ public class LivenessAnalysis {
 		this.cfgBlocksState = cfgBlocksState;
 	}
 
+	// Index of the variable in the sets of the method, -1 if it's never used there
+	public int getVariableIndex(String methodName, Name name) {
+		Integer index = this.variableIndices.get(methodName).get(name.getNameId());
+		if (index == null) return -1;
+		return index;
+	}
+
 	public HashMap<String, List<Name>> getUniqueVariables() {
 		return uniqueVariables;
 	}
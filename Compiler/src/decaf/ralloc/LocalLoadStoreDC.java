@@ -66,7 +66,7 @@ public class LocalLoadStoreDC {
 			}
 			else if (stmt.getClass().equals(CallStmt.class)) {
 				CallStmt cStmt = (CallStmt) stmt;
-				if (cStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+				if (cStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 				
 				List<Name> globals = new ArrayList<Name>();
 				for (Name n: this.loads) {
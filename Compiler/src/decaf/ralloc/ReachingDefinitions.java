@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import decaf.codegen.flatir.ArrayName;
@@ -18,24 +19,32 @@ import decaf.codegen.flattener.ProgramFlattener;
 import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 import decaf.dataflow.global.BlockDataFlowState;
+import decaf.dataflow.global.BlockFactCache;
 
 public class ReachingDefinitions {
 	private HashSet<CFGBlock> cfgBlocksToProcess;
 	private HashMap<CFGBlock, BlockDataFlowState> cfgBlocksState;
 	private HashMap<String, MethodIR> mMap;
 	private HashMap<String, List<LIRStatement>> uniqueDefinitions;
+	// Definitions reaching the end of each statement, replayed from the IN of its block
+	private BlockFactCache reachingDefs;
 	
 	public ReachingDefinitions(HashMap<String, MethodIR> mMap) {
 		this.mMap = mMap;
 		this.cfgBlocksToProcess = new HashSet<CFGBlock>();
 		this.cfgBlocksState = new HashMap<CFGBlock, BlockDataFlowState>();
 		this.uniqueDefinitions = new HashMap<String, List<LIRStatement>>();
+		this.reachingDefs = new BlockFactCache() {
+			protected void replay(CFGBlock block, IdentityHashMap<LIRStatement, BitSet> facts) {
+				replayBlock(block, facts);
+			}
+		};
 	}
 	
 	// Each QuadrupletStmt will have a unique ID
 	public void analyze() {
 		for (String methodName: this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			initialize(methodName);
 			runWorkList(methodName);
@@ -47,7 +56,7 @@ public class ReachingDefinitions {
 		
 		CFGBlock entry = this.getBlockById(methodName, 0);
 		BlockDataFlowState entryBlockFlow = new BlockDataFlowState(totalDefs); // OUT = GEN for entry block
-		calculateGenKillSets(entry, entryBlockFlow);
+		calculateGenKillSets(entry, entryBlockFlow, null);
 		entryBlockFlow.setOut(entryBlockFlow.getGen());
 		cfgBlocksToProcess.remove(entry);
 		
@@ -80,6 +89,8 @@ public class ReachingDefinitions {
 			List<LIRStatement> blockStmts = block.getStatements();
 			for (int i = 0; i < blockStmts.size(); i++) {
 				LIRStatement stmt = blockStmts.get(i);
+				stmt.setReachingDefIn(this.reachingDefs);
+				
 				if (stmt.getClass().equals(QuadrupletStmt.class)) {
 					QuadrupletStmt qStmt = (QuadrupletStmt)stmt;
 					
@@ -97,6 +108,7 @@ public class ReachingDefinitions {
 				}
 			}
 			
+			this.reachingDefs.register(block);
 			this.cfgBlocksToProcess.add(block);
 		}
 	}
@@ -126,7 +138,7 @@ public class ReachingDefinitions {
 			}
 		}
 		
-		calculateGenKillSets(block, bFlow);
+		calculateGenKillSets(block, bFlow, null);
 		
 		// Calculate Out
 		BitSet out = bFlow.getOut(); // OUT = (IN - KILL) U GEN
@@ -149,7 +161,18 @@ public class ReachingDefinitions {
 		return bFlow;
 	}
 	
-	private void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow) {
+	// Runs the block again from the IN it got in the worklist, for the sets of its statements
+	private void replayBlock(CFGBlock block, IdentityHashMap<LIRStatement, BitSet> facts) {
+		BlockDataFlowState state = this.cfgBlocksState.get(block);
+		if (state == null) return;
+		
+		BlockDataFlowState bFlow = new BlockDataFlowState(this.uniqueDefinitions.get(block.getMethodName()).size());
+		bFlow.getIn().or(state.getIn());
+		calculateGenKillSets(block, bFlow, facts);
+	}
+	
+	// If facts isn't null, the definitions reaching the end of each statement are put in it
+	private void calculateGenKillSets(CFGBlock block, BlockDataFlowState bFlow, IdentityHashMap<LIRStatement, BitSet> facts) {
 		List<LIRStatement> blockStmts = block.getStatements();
 		QuadrupletStmt qStmt;
 		
@@ -165,15 +188,19 @@ public class ReachingDefinitions {
 			}
 			else if (stmt.getClass().equals(CallStmt.class)) {
 				CallStmt cStmt = (CallStmt) stmt;
-				if (cStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) {
-					stmt.setReachingDefInSet(getReachingInSet(bFlow, block.getMethodName()));
+				if (cStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) {
+					if (facts != null) {
+						facts.put(stmt, getReachingInSet(bFlow, block.getMethodName()));
+					}
 					continue;
 				}
 				
 				invalidateFunctionCall(block, bFlow);
 			}
 			
-			stmt.setReachingDefInSet(getReachingInSet(bFlow, block.getMethodName()));
+			if (facts != null) {
+				facts.put(stmt, getReachingInSet(bFlow, block.getMethodName()));
+			}
 		}
 	}
 
@@ -0,0 +1,18 @@
+package decaf.ralloc;
+
+import java.util.HashMap;
+import java.util.List;
+
+import decaf.codegen.flatir.Register;
+
+// Gives the webs of every method a register, or none if they stay in memory (Web.setRegister),
+// for ASMGenerator. WebColorer colors the interference graph, LinearScanAllocator is the fast
+// one for huge methods (-ralloc=linear)
+public interface RegisterAllocator {
+	public void allocate();
+
+	public WebGenerator getWebGen();
+
+	// Registers given to the webs of each method, the callee-saved ones are saved by it
+	public HashMap<String, List<Register>> getRegistersUsed();
+}
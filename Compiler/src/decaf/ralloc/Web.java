@@ -3,6 +3,7 @@ package decaf.ralloc;
 import java.util.ArrayList;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.ArrayName;
 import decaf.codegen.flatir.CmpStmt;
 import decaf.codegen.flatir.LIRStatement;
@@ -15,7 +16,6 @@ import decaf.codegen.flatir.Register;
 import decaf.codegen.flatir.StoreStmt;
 
 public class Web {
-	public static int ID = 0;
 	private Name variable;
 	private List<Web> interferingWebs;
 	private List<LIRStatement> definitions;
@@ -31,8 +31,7 @@ public class Web {
 		this.uses = new ArrayList<LIRStatement>();
 		this.register = null;
 		this.interferingWebs = new ArrayList<Web>();
-		this.id = ID;
-		ID++;
+		this.id = CompilationContext.get().nextWebId();
 	}
 
 	public List<Web> getInterferingWebs() {
@@ -124,6 +123,10 @@ public class Web {
 			if (this.variable.equals(qStmt.getArg2())) {
 				qStmt.setArg2(this.variable);
 			}
+			
+			qStmt.setArg1(processIndex(qStmt.getArg1()));
+			qStmt.setArg2(processIndex(qStmt.getArg2()));
+			qStmt.setDestination(processIndex(qStmt.getDestination()));
 		}
 		else if (use.getClass().equals(CmpStmt.class)) {
 			CmpStmt cStmt = (CmpStmt) use;
@@ -133,12 +136,17 @@ public class Web {
 			if (this.variable.equals(cStmt.getArg2())) {
 				cStmt.setArg2(this.variable);
 			}
+			
+			cStmt.setArg1(processIndex(cStmt.getArg1()));
+			cStmt.setArg2(processIndex(cStmt.getArg2()));
 		}
 		else if (use.getClass().equals(PushStmt.class)) {
 			PushStmt pStmt = (PushStmt) use;
 			if (pStmt.getName().equals(this.variable)) {
 				pStmt.setName(this.variable);
 			}
+			
+			pStmt.setName(processIndex(pStmt.getName()));
 		}
 		else if (use.getClass().equals(PopStmt.class)) {
 			PopStmt pStmt = (PopStmt) use;
@@ -152,26 +160,30 @@ public class Web {
 				sStmt.setVariable(this.variable);
 			}
 			
-			Name dest = sStmt.getVariable();
-			
-			if (dest.isArray()) {
-				ArrayName aDest = (ArrayName) dest;
-				if (aDest.getIndex().equals(this.variable)) {
-					aDest.setIndex(this.variable);
-				}
-			}
+			sStmt.setVariable(processIndex(sStmt.getVariable()));
 		}
 		else if (use.getClass().equals(LoadStmt.class)) {
-			Name dest = ((LoadStmt)use).getVariable();
-			
-			if (dest.isArray()) {
-				ArrayName aDest = (ArrayName) dest;
-				if (aDest.getIndex().equals(this.variable)) {
-					aDest.setIndex(this.variable);
-				}
-			}
+			LoadStmt lStmt = (LoadStmt) use;
+			lStmt.setVariable(processIndex(lStmt.getVariable()));
 		}
 	}
+	
+	// The array with the variable of the web as its index. A new ArrayName, the same one can be
+	// in statements of other webs of the variable
+	private Name processIndex(Name name) {
+		if (name == null || !name.isArray()) return name;
+		
+		ArrayName aName = (ArrayName) name;
+		Name index = processIndex(aName.getIndex());
+		if (this.variable.equals(index)) {
+			index = this.variable;
+		}
+		if (index == aName.getIndex()) return name;
+		
+		ArrayName rtn = new ArrayName(aName.getId(), index);
+		rtn.setLocation(aName.getLocation());
+		return rtn;
+	}
 
 	public Register getRegister() {
 		return register;
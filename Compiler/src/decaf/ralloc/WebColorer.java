@@ -3,85 +3,101 @@ package decaf.ralloc;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.Stack;
 
+import decaf.codegen.flatir.ConstantName;
 import decaf.codegen.flatir.LIRStatement;
+import decaf.codegen.flatir.Name;
 import decaf.codegen.flatir.QuadrupletOp;
 import decaf.codegen.flatir.QuadrupletStmt;
 import decaf.codegen.flatir.Register;
 import decaf.codegen.flatir.RegisterName;
+import decaf.codegen.flatir.VarName;
 import decaf.codegen.flattener.ProgramFlattener;
+import decaf.dataflow.cfg.CFGBlock;
 import decaf.dataflow.cfg.MethodIR;
 
-public class WebColorer {
-	public static int regCount = 3;
-	public static int combinedWebId = -1;
+// Chaitin-Briggs coloring of the interference graph of the webs of each method
+// The webs on the two sides of a MOVE are coalesced first when it can't make the graph harder
+// to color (Briggs or George), so they get the same register and the move goes away. Webs
+// which can't be colored are spilled, the ones cheapest to keep in memory first: their defs
+// and uses count 10 times more for every loop they are in
+public class WebColorer implements RegisterAllocator {
+	// Callee-saved only, the others are written by the code of calls, returns and divisions (see
+	// ASMGenerator), and a call clobbers them. A value keeps its register across calls and callouts
+	public static Register[] registers = Register.calleeSaved;
+	public static int regCount = registers.length;
 	private HashMap<String, MethodIR> mMap;
 	private WebGenerator webGen;
 	private Stack<Integer> coloringStack;
-	private List<Integer> spillList;
-	private HashMap<Integer, Set<Integer>> webGraph;
 	private HashMap<Integer, Register> registersAssigned;
 	private HashMap<String, List<Register>> registersUsed;
 	private HashMap<String, HashMap<Integer, Register>> methodRegAllocations;
-	
+	// Moves between coalesced webs, removed once both sides have their register
+	private HashMap<String, List<QuadrupletStmt>> coalescedMoves;
+
+	// Webs of the method being colored, web i is node i of the graph
+	private List<Web> webs;
+	private InterferenceGraph graph;
+	// Node each node was coalesced into, itself if it wasn't
+	private int[] alias;
+	// Neighbors still in the graph, only for the nodes not coalesced into others
+	private int[] degree;
+	private boolean[] removed;
+	private double[] spillCosts;
+	// The two nodes of each move which may be coalesced, and the move
+	private List<int[]> moves;
+	private List<QuadrupletStmt> moveStmts;
+
 	public WebColorer(HashMap<String, MethodIR> mMap) {
 		this.mMap = mMap;
 		this.webGen = new WebGenerator(this.mMap);
 		this.coloringStack = new Stack<Integer>();
-		this.spillList = new ArrayList<Integer>();
-		this.webGraph = new HashMap<Integer, Set<Integer>>();
 		this.registersAssigned = new HashMap<Integer, Register>();
 		this.registersUsed = new HashMap<String, List<Register>>();
 		this.methodRegAllocations = new HashMap<String, HashMap<Integer, Register>>();
+		this.coalescedMoves = new HashMap<String, List<QuadrupletStmt>>();
+		this.moves = new ArrayList<int[]>();
+		this.moveStmts = new ArrayList<QuadrupletStmt>();
 	}
-	
+
 	private void reset() {
 		this.coloringStack.clear();
-		this.spillList.clear();
-		this.webGraph.clear();
 		this.registersAssigned.clear();
+		this.moves.clear();
+		this.moveStmts.clear();
 	}
-	
+
+	public void allocate() {
+		colorWebs();
+	}
+
 	public void colorWebs() {
-		this.webGen.generateWebs(); 
-		
+		this.webGen.generateWebs();
+
 		for (String methodName: this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 
 			reset();
-			
+
 			buildGraph(methodName); // Build
-			
-			while (!this.webGraph.isEmpty()) {
-				int oldSize = -1;
-				int newSize = this.webGraph.keySet().size();
-				
-				while (oldSize != newSize) {
-					this.webGen.printInterferenceGraph(System.out);
-					
-					simplifyGraph(methodName); // Remove low degree nodes, add to stack
-					oldSize = newSize;
-					newSize = this.webGraph.keySet().size();
-				}
-				
-				// Potentially spill webs and jump to simplify again
-				spillWebs(methodName);
-			}
-			
+			coalesceMoves(methodName);
+			simplifyGraph(); // Remove low degree nodes (or spill candidates), add to stack
 			selectWebs(methodName);
 			saveAssignments(methodName);
 		}
-		
+
 		assignRegistersToMethods();
+		removeCoalescedMoves();
 	}
-	
+
 	private void assignRegistersToMethods() {
 		for (String methodName: this.webGen.getWebMap().keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
-			
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
+
 			for (Web web: this.webGen.getWebMap().get(methodName)) {
 				int id = web.getId();
 				if (this.methodRegAllocations.get(methodName).containsKey(id)) {
@@ -91,185 +107,322 @@ public class WebColorer {
 					web.setRegister(null);
 				}
 			}
-			
+
 			Set<Register> registers = new HashSet<Register>();
 			for (Register r: this.methodRegAllocations.get(methodName).values()) {
-				registers.add(r);
+				if (r != null) {
+					registers.add(r);
+				}
 			}
-			
+
 			List<Register> list = new ArrayList<Register>();
 			list.addAll(registers);
 			this.registersUsed.put(methodName, list);
 		}
 	}
 
+	// Both sides of a coalesced move are in the same register, unless they were spilled
+	private void removeCoalescedMoves() {
+		for (String methodName: this.coalescedMoves.keySet()) {
+			boolean changed = false;
+			for (QuadrupletStmt qStmt: this.coalescedMoves.get(methodName)) {
+				Register dest = qStmt.getDestination().getMyRegister();
+				if (dest != null && dest == qStmt.getArg1().getMyRegister()) {
+					qStmt.setDead(true);
+					changed = true;
+				}
+			}
+			if (!changed) continue;
+
+			for (CFGBlock block: this.mMap.get(methodName).getCfgBlocks()) {
+				List<LIRStatement> newStmts = new ArrayList<LIRStatement>();
+				for (LIRStatement stmt: block.getStatements()) {
+					if (!stmt.isDead()) {
+						newStmts.add(stmt);
+					}
+				}
+				block.setStatements(newStmts);
+			}
+			this.mMap.get(methodName).regenerateStmts();
+		}
+	}
+
+	// Coalesced webs get the register of the node they were coalesced into
 	private void saveAssignments(String methodName) {
 		HashMap<Integer, Register> assign = new HashMap<Integer, Register>();
 		this.methodRegAllocations.put(methodName, assign);
-		
-		for (Integer id: this.registersAssigned.keySet()) {
-			assign.put(id, this.registersAssigned.get(id));
+
+		for (int i = 0; i < this.webs.size(); i++) {
+			int id = this.webs.get(getAlias(i)).getId();
+			if (this.registersAssigned.containsKey(id)) {
+				assign.put(this.webs.get(i).getId(), this.registersAssigned.get(id));
+			}
+		}
+
+		List<QuadrupletStmt> coalesced = new ArrayList<QuadrupletStmt>();
+		for (int i = 0; i < this.moves.size(); i++) {
+			int[] move = this.moves.get(i);
+			if (getAlias(move[0]) == getAlias(move[1])) {
+				coalesced.add(this.moveStmts.get(i));
+			}
 		}
+		this.coalescedMoves.put(methodName, coalesced);
 	}
 
-	private boolean selectWebs(String methodName) {
-		preColorWebs(methodName);
-		
+	private void selectWebs(String methodName) {
 		while (!this.coloringStack.isEmpty()) {
-			int webId = this.coloringStack.pop();
-			
-			if (this.spillList.contains(webId)) {
-				this.registersAssigned.put(webId, null);
-				continue; // spill instead
-			}
-			
+			int node = this.coloringStack.pop();
+			int webId = this.webs.get(node).getId();
+
 			if (this.registersAssigned.containsKey(webId)) {
 				continue;
 			}
-			
-			Web web = getWebFromId(methodName, webId);
+
 			List<Register> used = new ArrayList<Register>();
-			
-			for (Web neighbor: web.getInterferingWebs()) { // Want original state of graph now!
-				int wid = neighbor.getId();
+			for (int i = 0; i < this.graph.getNeighborCount(node); i++) { // Want original state of graph now!
+				int neighbor = this.graph.getNeighbor(node, i);
+				if (getAlias(neighbor) != neighbor) continue;
+
+				int wid = this.webs.get(neighbor).getId();
 				if (this.registersAssigned.containsKey(wid)) {
 					used.add(this.registersAssigned.get(wid));
 				}
 			}
-			
-			boolean assigned = false;
+
+			// Spill candidates may still find one free
+			Register assigned = null;
 			for (int i = 0; i < regCount; i++) {
-				Register reg = Register.availableRegs[i];
-			
-				if (used.contains(reg)) continue;
-				assigned = true;
-				this.registersAssigned.put(webId, reg);
+				Register reg = registers[i];
+
+				if (!used.contains(reg)) {
+					assigned = reg;
+					break;
+				}
 			}
-			
-			if (!assigned) {
-				return false;
+
+			this.registersAssigned.put(webId, assigned); // null to spill
+		}
+	}
+
+	// The node to spill when none has a low degree, the one with the lowest cost per neighbor
+	private int getSpillCandidate() {
+		int node = -1;
+		double minHeuristic = Double.MAX_VALUE;
+		for (int i = 0; i < this.webs.size(); i++) {
+			if (!isInGraph(i)) continue;
+
+			double myHeuristic = this.spillCosts[i] / Math.max(1, this.degree[i]);
+			if (node < 0 || myHeuristic < minHeuristic) {
+				minHeuristic = myHeuristic;
+				node = i;
 			}
 		}
-		
-		return true;
+
+		return node;
 	}
 
-	private void preColorWebs(String methodName) {
-		for (Web w: this.getWebGen().getWebMap().get(methodName)) {
-			for (LIRStatement def: w.getDefinitions()) {
-				if (def.getClass().equals(QuadrupletStmt.class)) {
-					QuadrupletStmt qStmt = (QuadrupletStmt) def;
-					
-					if (qStmt.getOperator() == QuadrupletOp.MOVE && qStmt.getArg1().getClass().equals(RegisterName.class)) {
-						List<Register> used = new ArrayList<Register>();
-						
-						Register r = ((RegisterName)qStmt.getArg1()).getMyRegister();
-						if (r == Register.RAX) continue;
-						
-						for (Web neighbor: w.getInterferingWebs()) { // Want original state of graph now!
-							int wid = neighbor.getId();
-							if (this.registersAssigned.containsKey(wid)) {
-								used.add(this.registersAssigned.get(wid));
-							}
-						}
-						
-						if (used.contains(r)) {
-							this.registersAssigned.put(w.getId(), null);
-							this.spillList.add(w.getId());
-						}
-						else {
-							this.registersAssigned.put(w.getId(), r);
-						}
-					}
-				}
+	// Defs and uses of the webs of each node, weighted by the depth of the loops they are in
+	private void computeSpillCosts() {
+		this.spillCosts = new double[this.webs.size()];
+		for (int i = 0; i < this.webs.size(); i++) {
+			Web web = this.webs.get(i);
+			double cost = 0;
+			for (LIRStatement stmt: web.getDefinitions()) {
+				cost += Math.pow(10, stmt.getDepth());
+			}
+			for (LIRStatement stmt: web.getUses()) {
+				cost += Math.pow(10, stmt.getDepth());
 			}
+			this.spillCosts[getAlias(i)] += cost;
 		}
-		
 	}
 
-	private void spillWebs(String methodName) {
-		if (this.webGraph.isEmpty()) return;
-		
-		// Determine web to spill based on heuristic
-		int minHeuristic = 2147483647;
-		int webToSpill = 0;
-		for (int webId: this.webGraph.keySet()) {
-			int myHeuristic = getHeuristicValue(methodName, webId);
-			if (myHeuristic < minHeuristic) {
-				minHeuristic = myHeuristic;
-				webToSpill = webId;
+	private void buildGraph(String methodName) {
+		this.webs = this.webGen.getWebMap().get(methodName);
+		int size = this.webs.size();
+		this.graph = new InterferenceGraph(size);
+		this.alias = new int[size];
+		this.degree = new int[size];
+		this.removed = new boolean[size];
+
+		HashMap<Web, Integer> nodes = new HashMap<Web, Integer>();
+		for (int i = 0; i < size; i++) {
+			nodes.put(this.webs.get(i), i);
+			this.alias[i] = i;
+		}
+
+		for (int i = 0; i < size; i++) {
+			for (Web neighbor: this.webs.get(i).getInterferingWebs()) {
+				Integer j = nodes.get(neighbor);
+				if (j != null) {
+					this.graph.addEdge(i, j);
+				}
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			this.degree[i] = this.graph.getNeighborCount(i);
+		}
+
+		// Moves between two webs of variables of the method
+		IdentityHashMap<LIRStatement, Integer> defNodes = new IdentityHashMap<LIRStatement, Integer>();
+		for (int i = 0; i < size; i++) {
+			if (!isCoalescable(this.webs.get(i))) continue;
+
+			for (LIRStatement def: this.webs.get(i).getDefinitions()) {
+				if (def.getClass().equals(QuadrupletStmt.class)
+						&& ((QuadrupletStmt) def).getOperator() == QuadrupletOp.MOVE) {
+					defNodes.put(def, i);
+				}
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			Web web = this.webs.get(i);
+			if (!isCoalescable(web)) continue;
+
+			for (LIRStatement use: web.getUses()) {
+				Integer def = defNodes.get(use);
+				if (def == null || def == i) continue;
+				if (!web.getVariable().equals(((QuadrupletStmt) use).getArg1())) continue;
+
+				this.moves.add(new int[] { def, i });
+				this.moveStmts.add((QuadrupletStmt) use);
 			}
 		}
-		
-		spillWeb(methodName, webToSpill);
 	}
 
-	private void spillWeb(String methodName, int webToSpill) {
-		this.spillList.add(webToSpill);
-		this.coloringStack.push(webToSpill);
-		removeFromGraph(webToSpill); // remove from node
+	// Locals and temps only, globals and arrays have their own loads and stores
+	private boolean isCoalescable(Web web) {
+		Name name = web.getVariable();
+		if (name.isGlobal() || name.isArray()) return false;
+		if (name.getClass().equals(ConstantName.class) || name.getClass().equals(RegisterName.class)) return false;
+		if (name.getClass().equals(VarName.class) && ((VarName) name).isString()) return false;
+
+		return true;
 	}
 
-	private int getHeuristicValue(String methodName, int webId) {
-		Web web = getWebFromId(methodName, webId);
-		int neighbors = this.webGraph.get(webId).size();
-		
-		List<LIRStatement> defUses = new ArrayList<LIRStatement>();
-		defUses.addAll(web.getDefinitions());
-		defUses.addAll(web.getUses());
-		
-		int depth = 0;
-		for (LIRStatement stmt: defUses) {
-			depth += stmt.getDepth();
+	// Coalesces the nodes of moves until no more can be, with the Briggs or the George test
+	private void coalesceMoves(String methodName) {
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+
+			for (int[] move: this.moves) {
+				int u = getAlias(move[0]);
+				int v = getAlias(move[1]);
+				if (u == v || this.graph.interferes(u, v)) continue;
+
+				if (isBriggsSafe(u, v) || isGeorgeSafe(u, v)) {
+					combine(u, v);
+					changed = true;
+				}
+				else if (isGeorgeSafe(v, u)) {
+					combine(v, u);
+					changed = true;
+				}
+			}
 		}
-		
-		return depth + neighbors;		
 	}
 
-	private Web getWebFromId(String methodName, int id) {
-		System.out.println(methodName + "        " + id);
-		for (Web web: this.webGen.getWebMap().get(methodName)) {
-			if (web.getId() == id) return web;
+	// Fewer than regCount neighbors of the combined node have regCount neighbors or more
+	private boolean isBriggsSafe(int u, int v) {
+		int significant = 0;
+		for (int i = 0; i < this.graph.getNeighborCount(u); i++) {
+			int t = this.graph.getNeighbor(u, i);
+			if (getAlias(t) != t) continue;
+
+			int d = this.degree[t];
+			if (this.graph.interferes(t, v)) d--; // Loses one of its two neighbors
+			if (d >= regCount) significant++;
 		}
-		
-		return null;
+		for (int i = 0; i < this.graph.getNeighborCount(v); i++) {
+			int t = this.graph.getNeighbor(v, i);
+			if (getAlias(t) != t || this.graph.interferes(t, u)) continue; // Counted already
+
+			if (this.degree[t] >= regCount) significant++;
+		}
+
+		return significant < regCount;
 	}
 
-	private void buildGraph(String methodName) {
-		for (Web web: this.webGen.getWebMap().get(methodName)) {
-			Set<Integer> neighbors = new HashSet<Integer>();
-			
-			for (Web neighbor: web.getInterferingWebs()) {
-				neighbors.add(neighbor.getId());
+	// Every neighbor of v already interferes with u or has a low degree
+	private boolean isGeorgeSafe(int u, int v) {
+		for (int i = 0; i < this.graph.getNeighborCount(v); i++) {
+			int t = this.graph.getNeighbor(v, i);
+			if (getAlias(t) != t) continue;
+
+			if (this.degree[t] >= regCount && !this.graph.interferes(t, u)) return false;
+		}
+
+		return true;
+	}
+
+	// v is coalesced into u, u gets its neighbors
+	private void combine(int u, int v) {
+		this.alias[v] = u;
+
+		for (int i = 0; i < this.graph.getNeighborCount(v); i++) {
+			int t = this.graph.getNeighbor(v, i);
+			if (getAlias(t) != t) continue;
+
+			if (this.graph.addEdge(u, t)) {
+				this.degree[u]++;
+			}
+			else {
+				this.degree[t]--; // Had both
 			}
-			
-			this.webGraph.put(web.getId(), neighbors);
 		}
 	}
 
-	private void simplifyGraph(String methodName) {
-		List<Integer> remove = new ArrayList<Integer>();
-		
-		for (Integer webId: this.webGraph.keySet()) {
-			if (this.webGraph.get(webId).size() < regCount) { // low degree
-				remove.add(webId);
+	private int getAlias(int node) {
+		while (this.alias[node] != node) {
+			node = this.alias[node];
+		}
+		return node;
+	}
+
+	private boolean isInGraph(int node) {
+		return !this.removed[node] && getAlias(node) == node;
+	}
+
+	private void simplifyGraph() {
+		computeSpillCosts();
+
+		Stack<Integer> lowDegree = new Stack<Integer>();
+		int left = 0;
+		for (int i = 0; i < this.webs.size(); i++) {
+			if (!isInGraph(i)) continue;
+
+			left++;
+			if (this.degree[i] < regCount) { // low degree
+				lowDegree.push(i);
 			}
 		}
-		
-		for (int webId: remove) {
-			removeFromGraph(webId);
-			this.coloringStack.push(webId);
+
+		while (left > 0) {
+			// Potentially spill a node when none has a low degree, it may still be colored
+			int node = lowDegree.isEmpty() ? getSpillCandidate() : lowDegree.pop();
+			if (this.removed[node]) continue;
+
+			removeFromGraph(node, lowDegree);
+			this.coloringStack.push(node);
+			left--;
 		}
 	}
 
-	private void removeFromGraph(int webId) {
+	private void removeFromGraph(int node, Stack<Integer> lowDegree) {
+		this.removed[node] = true;
+
 		// Remove from neighbors
-		for (Integer neighbor: this.webGraph.get(webId)) {
-			this.webGraph.get(neighbor).remove(webId);
+		for (int i = 0; i < this.graph.getNeighborCount(node); i++) {
+			int neighbor = this.graph.getNeighbor(node, i);
+			if (!isInGraph(neighbor)) continue;
+
+			this.degree[neighbor]--;
+			if (this.degree[neighbor] == regCount - 1) {
+				lowDegree.push(neighbor);
+			}
 		}
-		
-		// Remove from graph
-		this.webGraph.remove(webId);
 	}
 
 	public WebGenerator getWebGen() {
@@ -2,9 +2,11 @@ package decaf.ralloc;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 
+import decaf.CompilationContext;
 import decaf.codegen.flatir.ArrayName;
 import decaf.codegen.flatir.CallStmt;
 import decaf.codegen.flatir.CmpStmt;
@@ -56,15 +58,15 @@ public class WebGenerator {
 	}
 	
 	public void generateWebs() {	
-		QuadrupletStmt.USERIGIDHASH = true;
-		Web.ID = 0;
+		CompilationContext.get().setRigidQuadrupletHash(true);
+		CompilationContext.get().resetWebId();
 		
 		this.reachingDef.analyze();
 
 		this.liveAnalysis.analyze();
 		
 		for (String methodName: this.mMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			this.currentMethod = methodName;
 			
@@ -74,6 +76,7 @@ public class WebGenerator {
 		
 		unionWebs();
 		removeRedundantWebs();
+		removeMemoryWebs();
 		indexWebs(); // Don't use this to generate interference graph
 		removeDeadCodedInstructions();
 	}
@@ -98,7 +101,7 @@ public class WebGenerator {
 
 	private void unionWebs() {
 		for (String methodName: this.webMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			List<Web> webs = this.webMap.get(methodName);
 			List<Web> oldWebs = new ArrayList<Web>();
@@ -137,9 +140,60 @@ public class WebGenerator {
 		}
 	}
 
+	// Webs with their value in memory stay there: the ones of a variable live into the method (a
+	// local used before it's assigned), and the ones with loads or stores (a param past the
+	// sixth), which print nothing
+	private void removeMemoryWebs() {
+		for (String methodName: this.webMap.keySet()) {
+			CFGBlock entry = null;
+			for (CFGBlock block: this.mMap.get(methodName).getCfgBlocks()) {
+				if (entry == null || block.getIndex() < entry.getIndex()) {
+					entry = block;
+				}
+			}
+			
+			BlockDataFlowState state = this.liveAnalysis.getCfgBlocksState().get(entry);
+			if (state == null) continue;
+			
+			List<Web> remove = new ArrayList<Web>();
+			for (Web w: this.webMap.get(methodName)) {
+				int index = this.liveAnalysis.getVariableIndex(methodName, w.getVariable());
+				if (index >= 0 && state.getIn().get(index)) {
+					remove.add(w);
+					continue;
+				}
+				
+				for (LIRStatement def: w.getDefinitions()) {
+					if (def.getClass().equals(LoadStmt.class)) {
+						remove.add(w);
+						break;
+					}
+				}
+				if (remove.contains(w)) continue;
+				
+				for (LIRStatement use: w.getUses()) {
+					// The index of an array stored is only used
+					if (use.getClass().equals(StoreStmt.class) && w.getVariable().equals(((StoreStmt) use).getVariable())) {
+						remove.add(w);
+						break;
+					}
+				}
+			}
+			
+			for (Web web: remove) {
+				List<Web> neighbors = new ArrayList<Web>(web.getInterferingWebs());
+				for (Web w: neighbors) {
+					w.removeInterferingWeb(web);
+				}
+				
+				this.webMap.get(methodName).remove(web);
+			}
+		}
+	}
+
 	private void indexWebs() {
 		for (String methodName: this.webMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			List<Web> webs = this.webMap.get(methodName);
 			
@@ -169,7 +223,7 @@ public class WebGenerator {
 	private void removeRedundantWebs() {
 		List<Web> temp = new ArrayList<Web>();
 		for (String methodName: this.webMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			for (Web w: this.webMap.get(methodName)) {
 				if (w.getVariable().getClass().equals(VarName.class)) { // Strings are refs only and unmutable
@@ -280,6 +334,10 @@ public class WebGenerator {
 					}
 				}
 				
+				addIndexUse(mName, arg1, stmt);
+				addIndexUse(mName, arg2, stmt);
+				addIndexUse(mName, dest, stmt); // a[i] = x uses i
+				
 				if (isValidWebName(mName, dest)) {		
 					this.nameToWebs.put(dest, new ArrayList<Web>());
 					
@@ -313,6 +371,9 @@ public class WebGenerator {
 						w.addUse(cStmt);
 					}
 				}
+				
+				addIndexUse(mName, arg1, stmt);
+				addIndexUse(mName, arg2, stmt);
 			}
 			else if (stmt.getClass().equals(PushStmt.class)) {
 				PushStmt pStmt = (PushStmt) stmt;
@@ -324,6 +385,8 @@ public class WebGenerator {
 						w.addUse(pStmt);
 					}
 				}
+				
+				addIndexUse(mName, arg, stmt);
 			}
 			else if (stmt.getClass().equals(PopStmt.class)) {
 				PopStmt pStmt = (PopStmt) stmt;
@@ -340,6 +403,8 @@ public class WebGenerator {
 				LoadStmt lStmt = (LoadStmt) stmt;
 				Name dest = lStmt.getVariable();
 				
+				addIndexUse(mName, dest, stmt); // Add use for index variable if load is for array
+				
 				if (isValidWebName(mName, dest)) {
 					this.nameToWebs.put(dest, new ArrayList<Web>());
 					
@@ -353,16 +418,6 @@ public class WebGenerator {
 					Web web = this.defToWeb.get(lStmt);
 					this.nameToWebs.get(dest).add(web);
 					addToInterferingGraph(web, stmt);
-					
-					if (dest.isArray()) {
-						ArrayName aDest = (ArrayName)dest;
-						if (isValidWebName(mName, aDest.getIndex())) { // Add use for index variable if load is for array
-							for (Web w: this.nameToWebs.get(aDest.getIndex())) {
-								addToInterferingGraph(w, stmt);
-								w.addUse(lStmt);
-							}
-						}
-					}
 				}
 			}
 			else if (stmt.getClass().equals(StoreStmt.class)) {
@@ -376,19 +431,11 @@ public class WebGenerator {
 					}
 				}
 				
-				if (dest.isArray()) { // Add use for index variable if store is for array
-					ArrayName aDest = (ArrayName)dest;
-					if (isValidWebName(mName, aDest.getIndex())) {
-						for (Web w: this.nameToWebs.get(aDest.getIndex())) {
-							addToInterferingGraph(w, stmt);
-							w.addUse(sStmt);
-						}
-					}
-				}
+				addIndexUse(mName, dest, stmt); // Add use for index variable if store is for array
 			}
 			else if (stmt.getClass().equals(CallStmt.class)) {
 				CallStmt cStmt = (CallStmt) stmt;
-				if (cStmt.getMethodLabel().equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+				if (cStmt.getMethodLabel().equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 				
 				invalidateFunctionCall(cStmt);
 			}
@@ -401,6 +448,21 @@ public class WebGenerator {
 		}
 	}
 
+	// The index of an array operand is used by the statement
+	private void addIndexUse(String mName, Name name, LIRStatement stmt) {
+		if (name == null || !name.isArray()) return;
+		
+		Name index = ((ArrayName) name).getIndex();
+		if (isValidWebName(mName, index)) {
+			for (Web w: this.nameToWebs.get(index)) {
+				addToInterferingGraph(w, stmt);
+				w.addUse(stmt);
+			}
+		}
+		
+		addIndexUse(mName, index, stmt);
+	}
+
 	private void generateLiveWebsAtCall() {
 		// Store all live webs (for caller saving shit)
 		this.websLiveAtCall = new ArrayList<Web>();
@@ -418,11 +480,13 @@ public class WebGenerator {
 		
 		if (block.getStatements().size() > i+1) { // Has next statement
 			LIRStatement next = block.getStatements().get(i+1);
+			BitSet stmtLive = stmt.getLiveInSet();
+			BitSet nextLive = next.getLiveInSet();
 			
 			for (int j = 0; j < this.liveAnalysis.getUniqueVariables().get(this.currentMethod).size(); j++) {
 				Name name = this.liveAnalysis.getUniqueVariables().get(this.currentMethod).get(j);
 				
-				if (stmt.getLiveInSet().get(j) && !next.getLiveInSet().get(j)) { // Live now but not live at start of next stmt
+				if (stmtLive.get(j) && !nextLive.get(j)) { // Live now but not live at start of next stmt
 					this.namesDeadAtOutStmt.add(name);
 				}
 			}
@@ -430,10 +494,11 @@ public class WebGenerator {
 		
 		tryReducingInterference(stmt);
 		
+		BitSet live = stmt.getLiveInSet();
 		for (int j = 0; j < this.liveAnalysis.getUniqueVariables().get(this.currentMethod).size(); j++) {
 			Name name = this.liveAnalysis.getUniqueVariables().get(this.currentMethod).get(j);
 			
-			if (!stmt.getLiveInSet().get(j)) { // Not live at in, so clear all *reaching* webs
+			if (!live.get(j)) { // Not live at in, so clear all *reaching* webs
 				this.nameToWebs.remove(name);
 			}
 		}
@@ -540,6 +605,8 @@ public class WebGenerator {
 					dest =  ((QuadrupletStmt)stmt).getDestination();
 				}
 				
+				if (!isRegisterCandidate(dest)) continue;
+				
 				// If definition has no Web currently associated to it
 				if (!this.defToWeb.containsKey(stmt)) {
 					Web w = new Web(dest);
@@ -580,17 +647,19 @@ public class WebGenerator {
 		this.webMap = webMap;
 	}
 	
+	// Locals and temps only. Globals and arrays stay in memory, the methods called read and
+	// write them there
+	private boolean isRegisterCandidate(Name name) {
+		if (name == null || name.isGlobal()) return false;
+		if (name.getClass().equals(RegisterName.class) || name.getClass().equals(ConstantName.class)) return false;
+		if (name.getClass().equals(VarName.class) && ((VarName) name).isString()) return false;
+		
+		return true;
+	}
+	
 	private boolean isValidWebName(String methodName, Name name) {
-		if (name != null && 
-				!name.getClass().equals(RegisterName.class) && 
-				!name.getClass().equals(ConstantName.class)) {
-			
-			if (name.getClass().equals(VarName.class)) {
-				VarName var = (VarName) name;
-				if (var.isString()) return false;
-			}
-			
-			// Process for Global, Param (on stack)
+		if (isRegisterCandidate(name)) {
+			// Process for Param (on stack), or a local used before it's assigned
 			if (!this.nameToWebs.containsKey(name)) {
 				this.nameToWebs.put(name, new ArrayList<Web>());
 				Web w = new Web(name);
@@ -628,7 +697,7 @@ public class WebGenerator {
 	
 	public void printInterferenceGraph(PrintStream out) {
 		for (String methodName: this.webMap.keySet()) {
-			if (methodName.equals(ProgramFlattener.exceptionHandlerLabel)) continue;
+			if (methodName.equals(ProgramFlattener.getExceptionHandlerLabel())) continue;
 			
 			out.println(methodName + ":");
 			for (Web w: this.webMap.get(methodName)) {
@@ -14,13 +14,12 @@ import decaf.codegen.flatir.LoadStmt;
 import decaf.codegen.flatir.Name;
 import decaf.codegen.flatir.StoreStmt;
 import decaf.dataflow.cfg.CFGBlock;
+import decaf.dataflow.cfg.Loop;
 import decaf.dataflow.cfg.MethodIR;
 
 public class WebSplitter {
    private static String IfEndRegex = "[a-zA-z_]\\w*.if\\d+.end";
    private static String IfTestRegex = "[a-zA-z_]\\w*.if\\d+.test";
-   private static String ForEndRegex = "[a-zA-z_]\\w*.for\\d+.end";
-   private static String ForTestRegex = "[a-zA-z_]\\w*.for\\d+.test";
    
 	private HashMap<String, MethodIR> mMap;
 	private String currentMethod;
@@ -505,14 +504,19 @@ public class WebSplitter {
 		CFGBlock nextPrev = null;
 		
 		if (isForTestBlock(currentPrevious)) { // FORK (get node on top of for loop)
-			CFGBlock init = currentPrevious.getPredecessors().get(0); // init
-			CFGBlock body = currentPrevious.getPredecessors().get(1); // body
+			Loop loop = this.mMap.get(this.currentMethod).getLoopNestForest().getLoopWithHeader(currentPrevious);
+			CFGBlock init = null; // init (entry into the loop)
+			CFGBlock body = null; // body (back edge)
+			for (CFGBlock pred: currentPrevious.getPredecessors()) {
+				if (loop.contains(pred)) body = pred;
+				else init = pred;
+			}
 			boolean reachesInit = this.definitionReaches(init);
 			boolean reachesBody = this.definitionReaches(body);
 			
 			if (reachesInit && reachesBody) {
 				if (this.previousUse.getIndex() < currentPrevious.getIndex()) {
-					nextPrev = currentPrevious.getPredecessors().get(0);
+					nextPrev = init;
 				}
 				else {
 					nextPrev = currentPrevious;
@@ -569,6 +573,8 @@ public class WebSplitter {
 	}
 
 	private boolean definitionReaches(CFGBlock block) {
+		if (block == null) return false;
+		
 		List<LIRStatement> defs = this.reachingDefinitions.getUniqueDefinitions().get(this.currentMethod);
 		
 		for (LIRStatement def: this.currentWeb.getDefinitions()) {
@@ -583,6 +589,8 @@ public class WebSplitter {
 	}
 	
 	private boolean isLiveIn(CFGBlock block) {
+		if (block == null) return false;
+		
 		int index = this.livenessAnalysis.getUniqueVariables().get(this.currentMethod).indexOf(this.currentWeb.getVariable());
 		return this.livenessAnalysis.getCfgBlocksState().get(block).getIn().get(index);
 	}
@@ -593,8 +601,13 @@ public class WebSplitter {
 		if (isForTestBlock(currentNext)) { // FORK (go to end of loop)
 			assert (currentNext.getSuccessors().size() == 2);
 			
-			CFGBlock body = currentNext.getSuccessors().get(0); // body
-			CFGBlock end = currentNext.getSuccessors().get(1); //end
+			Loop loop = this.mMap.get(this.currentMethod).getLoopNestForest().getLoopWithHeader(currentNext);
+			CFGBlock body = null; // body
+			CFGBlock end = null; //end
+			for (CFGBlock succ: currentNext.getSuccessors()) {
+				if (loop.contains(succ)) body = succ;
+				else end = succ;
+			}
 			boolean liveBody = isLiveIn(body);
 			boolean liveEnd = isLiveIn(end);
 			
@@ -774,13 +787,14 @@ public class WebSplitter {
 //		System.out.println("POTENTIAL WEBS: " + potentialLiveWebs);
 		
 		List<Web> temp = new ArrayList<Web>();
+		BitSet reaching = stmt.getReachingDefInSet();
 
 		for (Web w: potentialLiveWebs) {
 			boolean defFound = false;
 			
 			for (LIRStatement def : w.getDefinitions()) {
 				int index = defs.indexOf(def);
-				if (stmt.getReachingDefInSet().get(index)) {
+				if (reaching.get(index)) {
 					defFound = true;
 					break;
 				}
@@ -838,50 +852,21 @@ public class WebSplitter {
       return name; 
 	}
 	
+	// Any loop header, not only the test blocks of for loops
 	private boolean isForTestBlock(CFGBlock block) {
-		if (!block.getStatements().isEmpty()) {
-			LIRStatement stmt = block.getStatements().get(0);
-			
-			if (stmt.getClass().equals(LabelStmt.class)) {
-				LabelStmt label = (LabelStmt) stmt;
-				return (label.getLabelString().matches(ForTestRegex));
-			}
-		}
-		
-		return false;
+		return this.mMap.get(this.currentMethod).getLoopNestForest().isLoopHeader(block);
 	}
 	
+	// First block after the loop (the end block for a for loop)
 	private CFGBlock getForEndBlock(CFGBlock block) {
-		LabelStmt label = null;
+		Loop loop = this.mMap.get(this.currentMethod).getLoopNestForest().getLoopWithHeader(block);
+		List<CFGBlock> exits = loop.getExitBlocks();
 		
-		for (LIRStatement stmt: block.getStatements()) {
-			if (stmt.getClass().equals(LabelStmt.class)) {
-				LabelStmt l = (LabelStmt) stmt;
-				if (l.getLabelString().matches(ForTestRegex)) {
-					label = l;
-				}
-			}
+		for (CFGBlock exit: exits) {
+			if (block.getSuccessors().contains(exit)) return exit;
 		}
 		
-		String index = getIndexOfFor(label.getLabelString());
-		
-		int found = -1;
-		
-		for (int i = 0; i < this.mMap.get(this.currentMethod).getStatements().size(); i++) {
-			LIRStatement stmt = this.mMap.get(this.currentMethod).getStatements().get(i);
-			
-			if (stmt.getClass().equals(LabelStmt.class)) {
-				LabelStmt l = (LabelStmt) stmt;
-				if (l.getLabelString().matches(ForEndRegex)) {
-					if (l.getLabelString().contains(index)) {
-						found = i;
-						break;
-					}
-				}
-			}
-		}
-		
-		return getBlockWithStmtIndex(found);
+		return exits.isEmpty() ? null : exits.get(0);
 	}
 
 	// IF STUFF
@@ -1,7 +1,8 @@
 package decaf.test;
 
+import decaf.CompilationContext;
+
 public class Error {
-	public static String fileName = null;
 	int lineNumber;
 	int columnNumber;
 	String description;
@@ -44,6 +45,6 @@ public class Error {
 	
 	@Override
 	public String toString() {
-		return fileName + ": (" + lineNumber + ", " + columnNumber + ")" + " " + description;
+		return CompilationContext.get().getFileName() + ": (" + lineNumber + ", " + columnNumber + ")" + " " + description;
 	}
 }
@@ -96,6 +96,85 @@ public class CLI
      */
     public static boolean debug;
 
+    /**
+     * The time flag.  This is true if <tt>-time</tt> or <tt>-time-json</tt>
+     * was passed on the command line, requesting the wall time, allocated
+     * bytes and IR size of every compiler phase.
+     */
+    public static boolean time;
+
+    /**
+     * Name of the file to write the time report to as JSON, given with
+     * <tt>-time-json <I>file</I></tt>.  This is null if the report should
+     * be printed instead.
+     */
+    public static String timefile;
+
+    /**
+     * The batch flag.  This is true if <tt>-batch</tt> was passed on the
+     * command line, requesting that every file named on the command line
+     * be compiled in one process.  The files are in <tt>infiles</tt>.
+     */
+    public static boolean batch;
+
+    /**
+     * The serve flag.  This is true if <tt>-serve</tt> or <tt>-port</tt>
+     * was passed on the command line, requesting that the compiler read
+     * the files to compile from stdin, or from connections to
+     * <tt>port</tt>.
+     */
+    public static boolean serve;
+
+    /**
+     * Local port to accept compile requests on, given with <tt>-port
+     * <I>port</I></tt>.  This is -1 if requests should be read from stdin.
+     */
+    public static int port;
+
+    /**
+     * The parallel flag.  This is true if <tt>-parallel</tt> was passed on
+     * the command line, requesting that the methods of the program be
+     * optimized and generated at the same time.  Main rejects it together
+     * with <tt>-ralloc</tt>.
+     */
+    public static boolean parallel;
+
+    /**
+     * The fastscan flag.  This is true if <tt>-fastscan</tt> was passed on
+     * the command line, requesting that the source be read by the
+     * hand-written FastScanner instead of the scanner generated from
+     * Lexer.g.
+     */
+    public static boolean fastscan;
+
+    /**
+     * Register allocator of the register allocated backend, given with
+     * <tt>-ralloc</tt> (<tt>color</tt>) or <tt>-ralloc=<I>name</I></tt>,
+     * <tt>color</tt> or <tt>linear</tt>.  This is null if the code should
+     * keep every variable on the stack.
+     */
+    public static String ralloc;
+
+    /**
+     * Number of files compiled at the same time in batch and serve mode,
+     * or of methods with <tt>-parallel</tt>, given with <tt>-threads
+     * <I>n</I></tt>.  Defaults to the number of processors.
+     */
+    public static int threads;
+
+    /**
+     * Number of times the files are compiled before the timed batch
+     * compilation, given with <tt>-warmup <I>n</I></tt>, so it is
+     * measured with the JIT warm.
+     */
+    public static int warmup;
+
+    /**
+     * Vector of String containing every input file named on the command
+     * line, in order.
+     */
+    public static Vector<String> infiles;
+
     /**
      * Sets up default values for all of the
      * result fields.  Specifically, sets the input and output files
@@ -106,6 +185,11 @@ public class CLI
     {
 	outfile = null;
 	infile = null;
+	timefile = null;
+	port = -1;
+	threads = Runtime.getRuntime().availableProcessors();
+	warmup = 0;
+	infiles = new Vector<String>();
 	target = DEFAULT;
 	extras = new Vector<String>();
 	extraopts = new Vector<String>();
@@ -115,6 +199,26 @@ public class CLI
      * Parse the command-line arguments.  Sets all of the result fields
      * accordingly. <BR>
      *
+     * <TT>-time</TT> prints a report of every compiler phase, <TT>-time-json
+     * <I>file</I></TT> writes it to <I>file</I> as JSON. <BR>
+     *
+     * <TT>-parallel</TT> compiles the methods of the program at the same
+     * time, with the stack code only: it can't be used with
+     * <TT>-ralloc</TT>, which allocates the registers for the whole
+     * program at once. <BR>
+     *
+     * <TT>-fastscan</TT> reads the source with the hand-written scanner.
+     * <BR>
+     *
+     * <TT>-ralloc</TT> keeps variables in registers colored by WebColorer,
+     * <TT>-ralloc=linear</TT> in registers given by linear scan. <BR>
+     *
+     * <TT>-batch</TT> compiles every file named on the command line,
+     * <TT>-serve</TT> compiles the files named on stdin and <TT>-port
+     * <I>port</I></TT> the ones sent to <I>port</I>.  <TT>-threads
+     * <I>n</I></TT> and <TT>-warmup <I>n</I></TT> set <TT>threads</TT>
+     * and <TT>warmup</TT>. <BR>
+     *
      * <TT>-target <I>target</I></TT> sets the CLI.target field based
      * on the <I>target</I> specified. <BR>
      * <TT>scan</TT> or <TT>scanner</TT> specifies CLI.SCAN
@@ -133,7 +237,6 @@ public class CLI
     public static void parse(String args[], String optnames[])
     {
 	int context = 0;
-	String ext = ".out";
 
 	opts = new boolean[optnames.length];
 
@@ -144,6 +247,49 @@ public class CLI
 			context = 0;
 			debug = true;
 		    }
+		else if (args[i].equals("-time"))
+		    {
+			context = 0;
+			time = true;
+		    }
+		else if (args[i].equals("-time-json"))
+		    context = 4;
+		else if (args[i].equals("-batch"))
+		    {
+			context = 0;
+			batch = true;
+		    }
+		else if (args[i].equals("-serve"))
+		    {
+			context = 0;
+			serve = true;
+		    }
+		else if (args[i].equals("-parallel"))
+		    {
+			context = 0;
+			parallel = true;
+		    }
+		else if (args[i].equals("-fastscan"))
+		    {
+			context = 0;
+			fastscan = true;
+		    }
+		else if (args[i].equals("-ralloc"))
+		    {
+			context = 0;
+			ralloc = "color";
+		    }
+		else if (args[i].startsWith("-ralloc="))
+		    {
+			context = 0;
+			ralloc = args[i].substring("-ralloc=".length());
+		    }
+		else if (args[i].equals("-port"))
+		    context = 5;
+		else if (args[i].equals("-threads"))
+		    context = 6;
+		else if (args[i].equals("-warmup"))
+		    context = 7;
 		else if (args[i].equals("-opt"))
 		    context = 1;
 		else if (args[i].equals("-o"))
@@ -196,24 +342,64 @@ public class CLI
 			    target = DEFAULT; // Anything else is just default
 			context = 0;
 		    }
+		else if (context == 4)
+		    {
+			timefile = args[i];
+			time = true;
+			context = 0;
+		    }
+		else if (context == 5)
+		    {
+			port = Integer.parseInt(args[i]);
+			serve = true;
+			context = 0;
+		    }
+		else if (context == 6)
+		    {
+			threads = Math.max(1, Integer.parseInt(args[i]));
+			context = 0;
+		    }
+		else if (context == 7)
+		    {
+			warmup = Integer.parseInt(args[i]);
+			context = 0;
+		    }
 		else
 		    extras.addElement(args[i]);
 	    }
 
-	// grab infile and lose extra args
+	// grab infiles and lose extra args
 	int i = 0;
-	while (infile == null && i < extras.size())
+	while (i < extras.size())
 	    {
 		String fn = (String) extras.elementAt(i);
 	  
 		if (fn.charAt(0) != '-')
 		    {
-			infile = fn;
+			infiles.addElement(fn);
 			extras.removeElementAt(i);
 		    }
-		i++;
+		else
+		    i++;
 	    }
 
+	if (!infiles.isEmpty())
+	    infile = infiles.elementAt(0);
+
+	if (outfile == null && infile != null)
+	    outfile = getOutfile(infile);
+    }
+
+    /**
+     * Name of the output file for <tt>infile</tt>: its name with the
+     * extension of the target stage instead of its own.
+     *
+     * @param infile Name of an input file.
+     */
+    public static String getOutfile(String infile)
+    {
+	String ext;
+
 	// create outfile name
 	switch (target) {
 	case SCAN:
@@ -237,18 +423,15 @@ public class CLI
 	    break;
 	}
 
-	if (outfile == null && infile != null)
-	    {
-		int dot = infile.lastIndexOf('.');
-		int slash = infile.lastIndexOf('/');
-		// Last dot comes after last slash means that the file
-		// has an extention.  Note that the base case where dot
-		// or slash are -1 also work.
-		if (dot <= slash)
-		    outfile = infile + ext;
-		else
-		    outfile = infile.substring(0, dot) + ext;
-	    }
+	int dot = infile.lastIndexOf('.');
+	int slash = infile.lastIndexOf('/');
+	// Last dot comes after last slash means that the file
+	// has an extention.  Note that the base case where dot
+	// or slash are -1 also work.
+	if (dot <= slash)
+	    return infile + ext;
+	else
+	    return infile.substring(0, dot) + ext;
     }
 }
 
@@ -22,6 +22,7 @@ class config:
   codegen_public_dir  = join(dirname(abspath(sys.argv[0])), "tests/codegen")
   codegen_hidden_dir  = join(dirname(abspath(sys.argv[0])), "tests/codegen/hidden")
   codegen_tests       = True
+  batch_tests         = True #the same programs in one -batch run and one -serve session
 
   pad = 20
   showscore=False
@@ -138,6 +139,61 @@ def testcase_codegen(cmd, testname, i, correct):
   return diff_answer(testname, norm(correct), norm(output))
 
 
+def test_batch(cmd, testdir):
+  '''compile every program of testdir alone, in one -batch run and in one -serve session,
+  each must give the same assembly all three ways'''
+  cmd = cmd[0:-2] + ['-opt', 'all'] + cmd[-2:]
+  names = [os.path.splitext(f)[0] for f in sorted(os.listdir(testdir))
+           if isfile(join(testdir, f)) and isfile(join(testdir, "output", os.path.splitext(f)[0]+".out"))]
+  work = tempfile.mkdtemp(dir=config.tmp)
+  null = open("/dev/null", "w")
+  def dcf(mode, name):
+    return join(work, mode, name+".dcf")
+  def asm(mode, name):
+    return join(work, mode, name+".s")
+  for mode in ["alone", "batch", "serve"]:
+    os.mkdir(join(work, mode))
+    for f in sorted(os.listdir(testdir)):
+      if os.path.splitext(f)[0] in names:
+        shutil.copy(join(testdir, f), dcf(mode, os.path.splitext(f)[0]))
+
+  for name in names:
+    subprocess.call(cmd + [dcf("alone", name)], stdout=null, stderr=null)
+
+  #exits with 0 only if every file compiled
+  rv = subprocess.call(cmd + ["-batch"] + [dcf("batch", name) for name in names], stdout=null, stderr=null)
+  if rv!=0:
+    print "-batch".ljust(config.pad), "INCORRECT, returncode", rv
+
+  #one response per request, in order, a missing file is an error that doesn't end the session
+  requests = ["%s %s" % (dcf("serve", name), asm("serve", name)) for name in names]
+  requests += [join(work, "missing.dcf"), "stats", "quit"]
+  p = subprocess.Popen(cmd + ["-serve"], stdin=subprocess.PIPE, stdout=subprocess.PIPE, stderr=null)
+  responses = p.communicate("\n".join(requests)+"\n")[0].strip().split("\n")
+  expected = ["ok "+dcf("serve", name) for name in names] + ["error "+join(work, "missing.dcf"), "stats"]
+  if len(responses)!=len(expected) or filter(lambda x: not x[0].startswith(x[1]), zip(responses, expected)):
+    print "-serve".ljust(config.pad), "INCORRECT, RESPONSES:"
+    for line in responses:
+      print "      |", line
+    rv = 1
+  null.close()
+
+  correct = 0
+  for name in names:
+    if not isfile(asm("alone", name)):
+      print name.ljust(config.pad), "INCORRECT, COMPILE FAILED"
+      continue
+    alone = open(asm("alone", name)).read()
+    wrong = [mode for mode in ["batch", "serve"] if not isfile(asm(mode, name)) or open(asm(mode, name)).read()!=alone]
+    if wrong:
+      print name.ljust(config.pad), "INCORRECT, DIFFERENT ASSEMBLY WITH", ", ".join(["-"+mode for mode in wrong])
+    else:
+      print name.ljust(config.pad), "CORRECT"
+      correct+=1
+  if rv!=0:
+    correct = 0
+  return correct,len(names)
+
 def testcase_legalillegal(cmd, testname, i):
   '''check the return value of cmd given input i against testname'''
   rv, students, tmpfilename = run_tmpfile(cmd, i)
@@ -262,6 +318,8 @@ def main(filename, tmpdir):
   if config.codegen_tests:
     testwrap('CODEGEN PUBLIC', test_codegen, config.codegen_public_dir)
     testwrap('CODEGEN HIDDEN', test_codegen, config.codegen_hidden_dir)
+  if config.batch_tests:
+    testwrap('BATCH PUBLIC', test_batch, config.codegen_public_dir)
 
   #print results
   for k,v in sorted(rx.items()):
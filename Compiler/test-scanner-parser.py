@@ -10,6 +10,7 @@ class config:
   scanner_hidden_dir = join(dirname(abspath(sys.argv[0])), "tests/scanner/hidden")
   parser_public_dir  = join(dirname(abspath(sys.argv[0])), "tests/parser/")
   parser_hidden_dir  = join(dirname(abspath(sys.argv[0])), "tests/parser/hidden")
+  fastscan_tests     = True #again with the hand-written scanner (-fastscan)
   verbose=True
 
 def run_tmpfile(cmd, i):
@@ -153,12 +154,30 @@ def main(filename, tmpdir):
   s1 = test_parser(cmd, config.parser_public_dir)
   s2 = test_parser(cmd, config.parser_hidden_dir)
   parseresult = (s1[0] + s2[0], s1[1] + s2[1])
+  results = [scanresult, parseresult]
+
+  #both again with -fastscan, it must find the same tokens and errors
+  if config.fastscan_tests:
+    cmd = cmd[0:-2] + ["-fastscan"] + cmd[-2:]
+    cmd[-1]="scan"
+    s1 = test_scanner(cmd, config.scanner_public_dir)
+    s2 = test_scanner(cmd, config.scanner_hidden_dir)
+    fastscanresult = (s1[0] + s2[0], s1[1] + s2[1])
+
+    cmd[-1]="parse"
+    s1 = test_parser(cmd, config.parser_public_dir)
+    s2 = test_parser(cmd, config.parser_hidden_dir)
+    fastparseresult = (s1[0] + s2[0], s1[1] + s2[1])
+    results += [fastscanresult, fastparseresult]
 
   #print results
   print
   print "SCANNER: %d of %d correct"%scanresult
   print "PARSER:  %d of %d correct"%parseresult
-  print "TOTAL:   %d of %d correct"%tuple(map(sum,zip(scanresult,parseresult)))
+  if config.fastscan_tests:
+    print "SCANNER (-fastscan): %d of %d correct"%fastscanresult
+    print "PARSER (-fastscan):  %d of %d correct"%fastparseresult
+  print "TOTAL:   %d of %d correct"%tuple(map(sum,zip(*results)))
 
 if __name__ == "__main__":
   if len(sys.argv)!=2: